@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.benchmarks.common;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleSystem;
+import de.axelfaust.alfresco.nashorn.common.util.NashornUtils;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+
+/**
+ * Benchmarks the stack walking performed by {@link NashornUtils#getCallerScriptURL() caller script URL lookups}, both from plain Java
+ * code (no script frame on the stack) and from within a (nested) script function call, compared to the lookup of an explicitly
+ * {@link ModuleSystem#withTaggedCallerContextScriptUrl(String, ModuleSystem.TaggedCallerContextScriptUrlCallback) tagged caller}.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NashornUtilsBenchmark
+{
+
+    private static final String SCRIPT = "(function(){ var NashornUtils = Java.type('" + NashornUtils.class.getName() + "');"
+            + " function lookup(){ return NashornUtils.getCallerScriptURL(); }"
+            + " function nested(depth){ return depth > 0 ? nested(depth - 1) : NashornUtils.getCallerScriptURL(true, true); }"
+            + " return { lookup : lookup, nested : nested }; }())";
+
+    protected ScriptObjectMirror functions;
+
+    @Setup(Level.Trial)
+    public void setup() throws ScriptException
+    {
+        final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+        final ScriptEngine scriptEngine = scriptEngineManager.getEngineByName("nashorn");
+
+        final SimpleScriptContext scriptContext = new SimpleScriptContext();
+        final Bindings engineBindings = scriptEngine.createBindings();
+        scriptContext.setBindings(engineBindings, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setBindings(new SimpleBindings(), ScriptContext.GLOBAL_SCOPE);
+        scriptContext.setAttribute(ScriptEngine.FILENAME, "benchmark://nashornUtils.js", ScriptContext.ENGINE_SCOPE);
+
+        this.functions = (ScriptObjectMirror) scriptEngine.eval(SCRIPT, scriptContext);
+    }
+
+    @Benchmark
+    public String callerScriptURLFromJava()
+    {
+        return NashornUtils.getCallerScriptURL();
+    }
+
+    @Benchmark
+    public Object callerScriptURLFromScript()
+    {
+        return this.functions.callMember("lookup");
+    }
+
+    @Benchmark
+    public Object callerScriptURLFromNestedScript()
+    {
+        return this.functions.callMember("nested", Integer.valueOf(10));
+    }
+
+    @Benchmark
+    public String taggedCallerContextScriptUrl()
+    {
+        return ModuleSystem.withTaggedCallerContextScriptUrl("benchmark://tagged.js", ModuleSystem::getCallerContextScriptUrl);
+    }
+}
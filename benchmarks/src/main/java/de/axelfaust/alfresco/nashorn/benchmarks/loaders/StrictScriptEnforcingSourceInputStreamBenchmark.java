@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.benchmarks.loaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.StrictScriptEnforcingSourceInputStream;
+import de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor;
+
+/**
+ * Benchmarks the throughput of {@link StrictScriptEnforcingSourceInputStream} when reading actual script sources of the script processor,
+ * both byte-by-byte and via bulk reads as performed when script files are cached or served via URL connections.
+ *
+ * @author Axel Faust
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StrictScriptEnforcingSourceInputStreamBenchmark
+{
+
+    /**
+     * The script resource (relative to {@link NashornScriptProcessor}) to use as source.
+     */
+    @Param({ "amd.js", "noSuchProperty.js" })
+    public String script;
+
+    protected byte[] source;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        try (InputStream is = NashornScriptProcessor.class.getResourceAsStream(this.script))
+        {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, read);
+            }
+            this.source = os.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public long readByteByByte() throws IOException
+    {
+        long total = 0;
+        try (InputStream is = new StrictScriptEnforcingSourceInputStream(new ByteArrayInputStream(this.source)))
+        {
+            int read;
+            while ((read = is.read()) != -1)
+            {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long readBulk() throws IOException
+    {
+        long total = 0;
+        try (InputStream is = new StrictScriptEnforcingSourceInputStream(new ByteArrayInputStream(this.source)))
+        {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer, 0, buffer.length)) != -1)
+            {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.benchmarks.processor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptModel;
+import de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import jdk.nashorn.api.scripting.URLReader;
+
+/**
+ * Benchmarks full define / require round trips of the AMD loader ({@code amd.js}) or the Java-based module system
+ * ({@code amd-module-system.js}) on a bare Nashorn engine, i.e. without any of the Alfresco-specific loader modules or base modules that
+ * are bootstrapped by {@link NashornScriptProcessor}.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AMDRoundTripBenchmark
+{
+
+    @Param({ "amd.js", "amd-module-system.js" })
+    protected String moduleSystemScript;
+
+    protected ScriptObjectMirror roundTrip;
+
+    protected NashornScriptModel iterationModel;
+
+    @Setup(Level.Trial)
+    public void setup() throws ScriptException
+    {
+        final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+        final ScriptEngine scriptEngine = scriptEngineManager.getEngineByName("nashorn");
+
+        final SimpleScriptContext scriptContext = new SimpleScriptContext();
+        final Bindings engineBindings = scriptEngine.createBindings();
+        scriptContext.setBindings(engineBindings, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setBindings(new SimpleBindings(), ScriptContext.GLOBAL_SCOPE);
+        // only set during engine setup of the actual processor
+        engineBindings.put("applicationContext", null);
+
+        try (NashornScriptModel model = NashornScriptModel.openModel())
+        {
+            final String[] bootstrapScripts = { "simple-logger.js", this.moduleSystemScript, "noSuchProperty.js" };
+            for (final String script : bootstrapScripts)
+            {
+                executeScriptFromResource(NashornScriptProcessor.class.getResource(script), scriptEngine, scriptContext);
+            }
+
+            this.roundTrip = (ScriptObjectMirror) executeScriptFromResource(
+                    AMDRoundTripBenchmark.class.getResource("amdRoundTrip.js"), scriptEngine, scriptContext);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openIterationModel()
+    {
+        this.iterationModel = NashornScriptModel.openModel();
+        this.roundTrip.callMember("defineModules");
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeIterationModel()
+    {
+        this.iterationModel.close();
+        this.iterationModel = null;
+    }
+
+    /**
+     * Measures the define and initial require of modules in a new script model, as is the case for every script execution.
+     *
+     * @return the result of the require call
+     */
+    @Benchmark
+    public Object defineAndRequire()
+    {
+        try (NashornScriptModel model = NashornScriptModel.openModel())
+        {
+            this.roundTrip.callMember("defineModules");
+            return this.roundTrip.callMember("requireModule");
+        }
+    }
+
+    /**
+     * Measures the repeated require of already defined and initialised modules within the same script model.
+     *
+     * @return the result of the require call
+     */
+    @Benchmark
+    public Object requireDefined()
+    {
+        return this.roundTrip.callMember("requireModule");
+    }
+
+    protected static Object executeScriptFromResource(final URL resource, final ScriptEngine engine, final ScriptContext ctxt)
+            throws ScriptException
+    {
+        try (Reader reader = new URLReader(resource))
+        {
+            ctxt.setAttribute(ScriptEngine.FILENAME, resource.toString(), ScriptContext.ENGINE_SCOPE);
+            return engine.eval(reader, ctxt);
+        }
+        catch (final IOException e)
+        {
+            throw new ScriptException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.benchmarks.processor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.axelfaust.alfresco.nashorn.repo.processor.AMDUtils;
+
+/**
+ * Benchmarks the module ID mapping and normalisation utilities used by the AMD loader of the repository-tier script processor.
+ *
+ * @author Axel Faust
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AMDUtilsBenchmark
+{
+
+    protected final Map<String, Map<String, String>> mappings = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        final Map<String, String> contextMapping = new HashMap<>();
+        contextMapping.put("alfresco/common/QName", "custom/common/QName");
+        this.mappings.put("custom", contextMapping);
+
+        final Map<String, String> globalMapping = new HashMap<>();
+        globalMapping.put("alfresco/node", "custom/node");
+        this.mappings.put("*", globalMapping);
+    }
+
+    @Benchmark
+    public String mapUnmappedModuleId()
+    {
+        return AMDUtils.mapModuleId("alfresco/search/Search", "alfresco/node/ScriptNode", this.mappings);
+    }
+
+    @Benchmark
+    public String mapContextMappedModuleId()
+    {
+        return AMDUtils.mapModuleId("alfresco/common/QName", "custom/node/ScriptNode", this.mappings);
+    }
+
+    @Benchmark
+    public String mapGloballyMappedModuleId()
+    {
+        return AMDUtils.mapModuleId("alfresco/node/ScriptNode", "alfresco/search/Search", this.mappings);
+    }
+
+    @Benchmark
+    public String normalizeAbsoluteModuleId()
+    {
+        return AMDUtils.normalizeSimpleModuleId("alfresco/node/ScriptNode", "alfresco/search/Search");
+    }
+
+    @Benchmark
+    public String normalizeRelativeModuleId()
+    {
+        return AMDUtils.normalizeSimpleModuleId("../common/QName", "alfresco/node/ScriptNode");
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.benchmarks.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the cost of guarding a script execution against concurrent re-initialisation of the script processor state. The fair read /
+ * write lock variant reflects the guard previously used by {@code NashornScriptProcessor}, the volatile generation variant the one
+ * currently in use. The benchmark state is shared by all benchmark threads, and the nested sub-classes run the inherited benchmarks with
+ * 1, 8 and 32 JMH threads so that a plain JMH run reports the aggregate throughput for each thread count.
+ *
+ * @author Axel Faust
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class ExecutionGuardBenchmark
+{
+
+    /**
+     * Runs the execution guard benchmarks with a single thread.
+     *
+     * @author Axel Faust
+     */
+    @Threads(1)
+    public static class SingleThread extends ExecutionGuardBenchmark
+    {
+        // NO-OP
+    }
+
+    /**
+     * Runs the execution guard benchmarks with 8 concurrent threads.
+     *
+     * @author Axel Faust
+     */
+    @Threads(8)
+    public static class EightThreads extends ExecutionGuardBenchmark
+    {
+        // NO-OP
+    }
+
+    /**
+     * Runs the execution guard benchmarks with 32 concurrent threads.
+     *
+     * @author Axel Faust
+     */
+    @Threads(32)
+    public static class ThirtyTwoThreads extends ExecutionGuardBenchmark
+    {
+        // NO-OP
+    }
+
+    /**
+     * Simple stand-in for the state pinned by a script execution.
+     *
+     * @author Axel Faust
+     */
+    protected static class Generation
+    {
+
+        protected final long generation;
+
+        protected Generation(final long generation)
+        {
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * The simulated amount of work performed by the script execution while the guard is held.
+     */
+    @Param({ "0", "64" })
+    public int workTokens;
+
+    protected final ReentrantReadWriteLock fairReadWriteLock = new ReentrantReadWriteLock(true);
+
+    protected final StampedLock stampedLock = new StampedLock();
+
+    protected Generation stampedGeneration = new Generation(0);
+
+    protected volatile Generation volatileGeneration = new Generation(0);
+
+    @Benchmark
+    public long fairReadWriteLock()
+    {
+        this.fairReadWriteLock.readLock().lock();
+        try
+        {
+            Blackhole.consumeCPU(this.workTokens);
+            return this.stampedGeneration.generation;
+        }
+        finally
+        {
+            this.fairReadWriteLock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    public long stampedLockOptimisticRead()
+    {
+        long stamp = this.stampedLock.tryOptimisticRead();
+        Generation generation = this.stampedGeneration;
+        if (!this.stampedLock.validate(stamp))
+        {
+            stamp = this.stampedLock.readLock();
+            try
+            {
+                generation = this.stampedGeneration;
+            }
+            finally
+            {
+                this.stampedLock.unlockRead(stamp);
+            }
+        }
+
+        Blackhole.consumeCPU(this.workTokens);
+        return generation.generation;
+    }
+
+    @Benchmark
+    public long volatileGeneration()
+    {
+        final Generation generation = this.volatileGeneration;
+        Blackhole.consumeCPU(this.workTokens);
+        return generation.generation;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.common.amd.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jdk.nashorn.api.scripting.URLReader;
+
+/**
+ * Benchmarks the module lookup operations of the common {@link ModuleSystem}. This class resides in the package of the module system to
+ * be able to access the internal {@link ModuleLoadService} without any reflection overhead distorting the results.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleSystemBenchmark
+{
+
+    protected ModuleSystem moduleSystem;
+
+    protected ModuleLoadService moduleLoadService;
+
+    protected ModuleHolder contextModule;
+
+    @Setup(Level.Trial)
+    public void setup() throws ScriptException
+    {
+        final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+        final ScriptEngine scriptEngine = scriptEngineManager.getEngineByName("nashorn");
+
+        final SimpleScriptContext scriptContext = new SimpleScriptContext();
+        final Bindings engineBindings = scriptEngine.createBindings();
+        scriptContext.setBindings(engineBindings, ScriptContext.ENGINE_SCOPE);
+        scriptContext.setBindings(new SimpleBindings(), ScriptContext.GLOBAL_SCOPE);
+
+        final URL resource = ModuleSystemBenchmark.class.getResource("moduleSystemBenchmark.js");
+        try (Reader reader = new URLReader(resource))
+        {
+            scriptContext.setAttribute(ScriptEngine.FILENAME, resource.toString(), ScriptContext.ENGINE_SCOPE);
+            scriptEngine.eval(reader, scriptContext);
+        }
+        catch (final IOException e)
+        {
+            throw new ScriptException(e);
+        }
+
+        this.moduleSystem = (ModuleSystem) engineBindings.get("moduleSystem");
+        this.moduleLoadService = this.moduleSystem.getModuleLoadService();
+        this.contextModule = this.moduleSystem.getModuleRegistry().lookupModuleByPublicModuleId("benchmark/nested/dependant");
+    }
+
+    @Benchmark
+    public Object retrieveModuleInCurrentContext()
+    {
+        return this.moduleSystem.retrieveModuleInCurrentContext("benchmark/simple");
+    }
+
+    @Benchmark
+    public Object retrieveModuleInTaggedContext()
+    {
+        return ModuleSystem.withTaggedCallerContextModule(this.contextModule,
+                () -> this.moduleSystem.retrieveModuleInCurrentContext("../simple"));
+    }
+
+    @Benchmark
+    public String normalizeAndMapAbsoluteModuleId()
+    {
+        return this.moduleLoadService.normalizeAndMapModuleId("benchmark/simple", null);
+    }
+
+    @Benchmark
+    public String normalizeAndMapRelativeModuleId()
+    {
+        return this.moduleLoadService.normalizeAndMapModuleId("../simple", this.contextModule);
+    }
+}
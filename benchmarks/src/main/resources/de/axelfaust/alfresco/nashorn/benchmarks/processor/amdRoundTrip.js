@@ -0,0 +1,38 @@
+/* globals -require */
+/* globals -define */
+(function amdRoundTrip()
+{
+    'use strict';
+
+    return {
+
+        defineModules : function amdRoundTrip_defineModules()
+        {
+            define('benchmark/base', [], function amdRoundTrip_baseFactory()
+            {
+                return {
+                    value : 'base'
+                };
+            });
+
+            define('benchmark/dependant', [ 'benchmark/base' ], function amdRoundTrip_dependantFactory(base)
+            {
+                return {
+                    value : base.value + '-dependant'
+                };
+            });
+        },
+
+        requireModule : function amdRoundTrip_requireModule()
+        {
+            var result;
+
+            require([ 'benchmark/dependant' ], function amdRoundTrip_requireCallback(dependant)
+            {
+                result = dependant.value;
+            });
+
+            return result;
+        }
+    };
+}());
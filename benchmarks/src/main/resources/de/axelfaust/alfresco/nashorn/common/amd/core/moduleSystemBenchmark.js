@@ -0,0 +1,48 @@
+'use strict';
+(function initModuleSystem()
+{
+    var ClassPathScriptURLResolverCls, ModuleSystemCls, scriptUrlResolver, moduleSystem, globalScope;
+
+    ClassPathScriptURLResolverCls = Java.type('de.axelfaust.alfresco.nashorn.common.amd.core.ClassPathScriptURLResolver');
+    ModuleSystemCls = Java.type('de.axelfaust.alfresco.nashorn.common.amd.core.ModuleSystem');
+
+    globalScope = this;
+    scriptUrlResolver = new ClassPathScriptURLResolverCls();
+    scriptUrlResolver.addSupportedFileSuffix('js');
+    scriptUrlResolver.addSupportedFileSuffix('nashornjs');
+    moduleSystem = new ModuleSystemCls(scriptUrlResolver, Object, function scopeBuilder(contextRequire, contextDefine)
+    {
+        var newScope = Object.create(globalScope, {
+            define : {
+                value : contextDefine
+            },
+            require : {
+                value : contextRequire
+            }
+        });
+        return newScope;
+    }, load);
+
+    this.require = moduleSystem.requireFunction;
+    this.define = moduleSystem.defineFunction;
+
+    // exposed for benchmarks to call into directly
+    this.moduleSystem = moduleSystem;
+
+    define('benchmark/simple', [], function benchmark_simple()
+    {
+        return {
+            value : 'simple'
+        };
+    });
+
+    define('benchmark/nested/dependant', [ '../simple' ], function benchmark_nested_dependant(simple)
+    {
+        return {
+            value : simple.value + '-dependant'
+        };
+    });
+
+    // initialise modules so benchmarks only measure lookup
+    require('benchmark/nested/dependant');
+}.call(this));
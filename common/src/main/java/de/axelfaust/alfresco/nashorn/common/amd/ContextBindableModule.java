@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.common.amd;
+
+/**
+ * Instances of this interface are module values that can bind themselves to the context of the module depending on them when they are
+ * resolved as a dependency, instead of having to determine the calling module on every invocation.
+ *
+ * @author Axel Faust
+ */
+@FunctionalInterface
+public interface ContextBindableModule
+{
+
+    /**
+     * Binds this module value to the context of a specific module.
+     *
+     * @param normalizedContextModuleId
+     *            the normalised ID of the module which depends on this module
+     * @return the module value bound to the context module
+     */
+    Object bindToContext(String normalizedContextModuleId);
+}
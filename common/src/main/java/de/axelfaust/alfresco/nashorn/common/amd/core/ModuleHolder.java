@@ -13,6 +13,8 @@
  */
 package de.axelfaust.alfresco.nashorn.common.amd.core;
 
+import java.util.function.UnaryOperator;
+
 import javax.script.ScriptException;
 
 import de.axelfaust.alfresco.nashorn.common.amd.SecureModuleException;
@@ -86,6 +88,24 @@ public interface ModuleHolder
      */
     boolean isFromSecureSource();
 
+    /**
+     * Determines if the module instance represented by this holder has already been initialised.
+     *
+     * @return {@code true} if the module instance has been initialised, {@code false} if it still needs to be constructed via its factory
+     */
+    boolean isInitialized();
+
+    /**
+     * Creates a copy of this holder in the initial state of the module instance it represents, so that the module can be initialised in an
+     * isolated scope without affecting the state of this holder. Holders of already initialised module instances may return themselves.
+     *
+     * @param copyResolver
+     *            the resolver for copies of other holders this holder delegates to - used to preserve the identity of holders sharing the
+     *            same module instance
+     * @return the copy of this holder
+     */
+    ModuleHolder copyInInitialState(UnaryOperator<ModuleHolder> copyResolver);
+
     /**
      * Retrieves the resolved module instance. This operation will not initialise the module instance if it has not been properly
      * initialised yet.
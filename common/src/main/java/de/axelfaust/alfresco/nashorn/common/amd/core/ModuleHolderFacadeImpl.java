@@ -13,6 +13,8 @@
  */
 package de.axelfaust.alfresco.nashorn.common.amd.core;
 
+import java.util.function.UnaryOperator;
+
 import de.axelfaust.alfresco.nashorn.common.util.ParameterCheck;
 
 /**
@@ -88,6 +90,26 @@ public class ModuleHolderFacadeImpl implements ModuleHolder
         return this.delegate.isFromSecureSource();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isInitialized()
+    {
+        return this.delegate.isInitialized();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ModuleHolder copyInInitialState(final UnaryOperator<ModuleHolder> copyResolver)
+    {
+        final ModuleHolder delegateCopy = copyResolver.apply(this.delegate);
+        final ModuleHolder copy = delegateCopy != this.delegate ? new ModuleHolderFacadeImpl(this.publicModuleId, delegateCopy) : this;
+        return copy;
+    }
+
     /**
      * {@inheritDoc}
      */
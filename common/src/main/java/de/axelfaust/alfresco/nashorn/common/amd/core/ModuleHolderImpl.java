@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +53,7 @@ public class ModuleHolderImpl implements ModuleHolder
 
     private volatile boolean initialized = false;
 
-    private volatile boolean constructing = false;
+    private SingleFlight construction;
 
     private JSObject factory = null;
 
@@ -173,6 +174,36 @@ public class ModuleHolderImpl implements ModuleHolder
         return this.fromSecureSource;
     }
 
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isInitialized()
+    {
+        return this.initialized;
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public ModuleHolder copyInInitialState(final UnaryOperator<ModuleHolder> copyResolver)
+    {
+        ModuleHolder copy;
+        if (this.initialized || this.factory == null)
+        {
+            copy = this;
+        }
+        else
+        {
+            copy = new ModuleHolderImpl(this.publicModuleId, this.moduleId, this.loaderModuleId, this.contextScriptUrl,
+                    this.definedDependencies, this.factory, this.fromSecureSource);
+        }
+        return copy;
+    }
+
     /**
      *
      * {@inheritDoc}
@@ -211,13 +242,50 @@ public class ModuleHolderImpl implements ModuleHolder
         }
         else if (forceConstruct && this.factory != null)
         {
-            if (this.constructing)
+            result = this.constructModule(moduleRegistry);
+        }
+        else
+        {
+            LOGGER.info("Module {} has not been initialized", this.normalizedModuleId);
+            throw new UnavailableModuleException("Module '{}' has not been initialized", this.normalizedModuleId);
+        }
+        return result;
+    }
+
+    protected Object constructModule(final ModuleRegistry moduleRegistry)
+    {
+        final SingleFlight activeConstruction;
+        final SingleFlight construction;
+        synchronized (this)
+        {
+            activeConstruction = this.construction;
+            if (activeConstruction == null && !this.initialized)
+            {
+                this.construction = new SingleFlight();
+            }
+            construction = this.construction;
+        }
+
+        Object result;
+        if (construction == null)
+        {
+            // completed by a concurrent thread since the initial check
+            result = this.value;
+        }
+        else if (activeConstruction != null)
+        {
+            if (construction.isOwnedByCurrentThread() || !this.awaitConstruction(construction))
             {
                 LOGGER.info("Module {} is included in a circular dependency graph", this.normalizedModuleId);
                 throw new UnavailableModuleException("Module '{}' is included in a circular dependency graph", this.normalizedModuleId);
             }
 
-            this.constructing = true;
+            LOGGER.debug("Module {} has been initialized by a concurrent thread", this.normalizedModuleId);
+            result = this.getModule(false, moduleRegistry);
+        }
+        else
+        {
+            RuntimeException failure = null;
             try
             {
                 final List<Object> resolvedDependencies = new ArrayList<>();
@@ -278,19 +346,38 @@ public class ModuleHolderImpl implements ModuleHolder
                 LOGGER.debug("Completed initialization via factory of module {}", this.normalizedModuleId);
                 this.initialized = true;
             }
+            catch (final RuntimeException e)
+            {
+                failure = e;
+                throw e;
+            }
             finally
             {
-                this.constructing = false;
+                synchronized (this)
+                {
+                    this.construction = null;
+                }
+                construction.complete(failure);
             }
 
             result = this.value;
         }
-        else
+        return result;
+    }
+
+    protected boolean awaitConstruction(final SingleFlight construction)
+    {
+        LOGGER.debug("Waiting for concurrent initialization of module {}", this.normalizedModuleId);
+        try
         {
-            LOGGER.info("Module {} has not been initialized", this.normalizedModuleId);
-            throw new UnavailableModuleException("Module '{}' has not been initialized", this.normalizedModuleId);
+            return construction.await();
+        }
+        catch (final InterruptedException iex)
+        {
+            Thread.currentThread().interrupt();
+            throw new UnavailableModuleException("Interrupted while waiting for initialization of module '{}'", iex,
+                    this.normalizedModuleId);
         }
-        return result;
     }
 
     /**
@@ -149,14 +149,7 @@ public class ModuleLoadService
                         return normalizedId;
                     });
 
-                    final JSObject contextModuleObj = this.moduleSystem.newNativeObject();
-                    contextModuleObj.setMember("id", contextModule.getPublicModuleId());
-                    contextModuleObj.setMember("moduleId", contextModule.getModuleId());
-                    contextModuleObj.setMember("loaderModuleId", contextModule.getLoaderModuleId());
-                    contextModuleObj.setMember("contextScriptUrl", contextModule.getContextScriptUrl());
-                    contextModuleObj.setMember("fromSecureSource", contextModule.isFromSecureSource());
-                    contextModuleObj.eval("Object.freeze(this);");
-
+                    final JSObject contextModuleObj = this.newContextModuleObject(contextModule);
                     normalizedModuleId = ((ModuleNormalizingLoader) loaderModule).normalize(moduleId, normalizeDelegate, contextModuleObj);
                 }
                 else
@@ -193,6 +186,25 @@ public class ModuleLoadService
         return publicModuleId;
     }
 
+    /**
+     * Builds the (frozen) script representation of a context module as passed to the {@code normalize()} function of a loader module.
+     *
+     * @param contextModule
+     *            the context module requesting a module
+     * @return the script representation of the context module
+     */
+    protected JSObject newContextModuleObject(final ModuleHolder contextModule)
+    {
+        final JSObject contextModuleObj = this.newNativeObject();
+        contextModuleObj.setMember("id", contextModule.getPublicModuleId());
+        contextModuleObj.setMember("moduleId", contextModule.getModuleId());
+        contextModuleObj.setMember("loaderModuleId", contextModule.getLoaderModuleId());
+        contextModuleObj.setMember("contextScriptUrl", contextModule.getContextScriptUrl());
+        contextModuleObj.setMember("fromSecureSource", contextModule.isFromSecureSource());
+        contextModuleObj.eval("Object.freeze(this);");
+        return contextModuleObj;
+    }
+
     protected String mapModuleId(final String moduleId, final ModuleHolder contextModule)
     {
         ParameterCheck.mandatoryString("moduleId", moduleId);
@@ -395,6 +407,27 @@ public class ModuleLoadService
 
     protected void loadModuleViaLoader(final String publicModuleId, final String loaderModuleId, final String moduleId,
             final ModuleHolder contextModule)
+    {
+        this.loadModuleViaLoader(publicModuleId, loaderModuleId, moduleId, moduleId, contextModule);
+    }
+
+    /**
+     * Loads a module via a loader module, using a resource ID for the loader that may differ from the ID of the module to be defined (e.g.
+     * when the location of a package has been prepended to the module ID).
+     *
+     * @param publicModuleId
+     *            the module ID by which the module will be registered
+     * @param loaderModuleId
+     *            the ID of the loader module
+     * @param moduleId
+     *            the ID of the module to be defined
+     * @param loaderResourceId
+     *            the ID of the resource to be loaded by the loader module
+     * @param contextModule
+     *            the module requesting the load
+     */
+    protected void loadModuleViaLoader(final String publicModuleId, final String loaderModuleId, final String moduleId,
+            final String loaderResourceId, final ModuleHolder contextModule)
     {
         final ModuleLoader loaderModule = this.getLoaderModule(loaderModuleId, contextModule);
 
@@ -403,6 +436,16 @@ public class ModuleLoadService
             final Object value = args[0];
             final boolean isSecureSource = args.length > 1 ? Boolean.TRUE.equals(ScriptUtils.convert(args[1], Boolean.class)) : false;
             final String overrideUrl = args.length > 2 && args[2] != null ? String.valueOf(args[2]) : null;
+
+            if (isSecureSource)
+            {
+                final ModuleHolder loaderModuleDef = this.moduleSystem.getModuleRegistry().lookupModuleByPublicModuleId(loaderModuleId);
+                if (loaderModuleDef == null || !loaderModuleDef.isFromSecureSource())
+                {
+                    throw new SecureModuleException("Insecure loader module '{}' cannot declare a loaded module as secure", loaderModuleId);
+                }
+            }
+
             this.checkAndProcessLoaderModuleResult(publicModuleId, loaderModuleId, moduleId, value, isSecureSource, overrideUrl);
             return null;
         });
@@ -412,7 +455,7 @@ public class ModuleLoadService
         final Object require = this.moduleSystem.getModuleRegistry().getOrResolveModule("require", contextModule);
         ParameterCheck.mandatory("requre", require);
 
-        loaderModule.load(moduleId, (JSObject) require, load);
+        loaderModule.load(loaderResourceId, (JSObject) require, load);
     }
 
     protected void checkAndProcessLoaderModuleResult(final String publicModuleId, final String loaderModuleId, final String moduleId,
@@ -544,6 +587,11 @@ public class ModuleLoadService
         }
     }
 
+    protected JSObject newNativeObject()
+    {
+        return this.moduleSystem.newNativeObject();
+    }
+
     protected ModuleLoader getLoaderModule(final String loaderModuleId, final ModuleHolder contextModule)
     {
         final Object loaderModuleObj = this.moduleSystem.getModuleRegistry().getOrResolveModule(loaderModuleId, contextModule);
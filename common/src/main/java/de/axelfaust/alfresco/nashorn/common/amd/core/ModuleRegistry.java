@@ -13,17 +13,18 @@
  */
 package de.axelfaust.alfresco.nashorn.common.amd.core;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.axelfaust.alfresco.nashorn.common.amd.ContextBindableModule;
 import de.axelfaust.alfresco.nashorn.common.amd.EnumBackedModuleFlags;
 import de.axelfaust.alfresco.nashorn.common.amd.ModuleFlags;
 import de.axelfaust.alfresco.nashorn.common.amd.SecureModuleException;
@@ -48,9 +49,11 @@ public class ModuleRegistry
 
     private final Set<String> loadFailedModules;
 
+    private final ConcurrentMap<String, SingleFlight> activeModuleLoads = new ConcurrentHashMap<>();
+
     protected ModuleRegistry(final ModuleSystem moduleSystem)
     {
-        this(moduleSystem, new HashMap<>(), new HashMap<>(), new HashSet<>());
+        this(moduleSystem, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
     }
 
     protected ModuleRegistry(final ModuleSystem moduleSystem, final Map<String, ModuleHolder> modules,
@@ -73,52 +76,130 @@ public class ModuleRegistry
         {
             LOGGER.debug("Module {} has not yet been defined", publicModuleId);
 
-            if (this.loadFailedModules.contains(publicModuleId))
+            moduleHolder = this.loadModule(publicModuleId, contextModule);
+
+            LOGGER.debug("Module {} has been loaded", publicModuleId);
+            result = moduleHolder.getOrResolveModule(this);
+        }
+        else
+        {
+            LOGGER.debug("Module {} has already been defined", publicModuleId);
+            result = moduleHolder.getOrResolveModule(this);
+        }
+
+        result = this.handleResolvedModuleInstance(result, moduleHolder, contextModule);
+
+        return result;
+    }
+
+    /**
+     * Loads a module that has not yet been defined. Concurrent loads of the same module are coordinated so that only the first thread
+     * actually loads the script defining the module while all other threads wait for it to complete. Re-entrant loads by the same thread
+     * or waits that would result in a deadlock are handled as if no other thread was loading the module.
+     *
+     * @param publicModuleId
+     *            the module ID by which the module will be registered
+     * @param contextModule
+     *            the module requesting the load
+     * @return the holder of the loaded module - never {@code null}
+     */
+    protected ModuleHolder loadModule(final String publicModuleId, final ModuleHolder contextModule)
+    {
+        final SingleFlight load = new SingleFlight();
+        final SingleFlight activeLoad = this.activeModuleLoads.putIfAbsent(publicModuleId, load);
+
+        ModuleHolder moduleHolder;
+        if (activeLoad != null && !activeLoad.isOwnedByCurrentThread() && this.awaitModuleLoad(publicModuleId, activeLoad))
+        {
+            LOGGER.debug("Module {} has been loaded by a concurrent thread", publicModuleId);
+            moduleHolder = this.lookupModuleByPublicModuleId(publicModuleId);
+            if (moduleHolder == null)
             {
-                LOGGER.debug("Loading module {} has already been attempted and failed", publicModuleId);
                 throw new UnavailableModuleException("Module '{}' could not be loaded", publicModuleId);
             }
-
+        }
+        else
+        {
+            RuntimeException failure = null;
             try
             {
-                this.moduleSystem.getModuleLoadService().loadModule(publicModuleId, contextModule);
-                moduleHolder = this.lookupModuleByPublicModuleId(publicModuleId);
+                moduleHolder = this.loadModuleImpl(publicModuleId, contextModule);
             }
-            catch (final SecureModuleException smex)
+            catch (final RuntimeException e)
             {
-                LOGGER.debug("Loading module {} failed - marking to avoid further load attempts", publicModuleId, smex);
-                this.loadFailedModules.add(publicModuleId);
-                throw smex;
+                failure = e;
+                throw e;
             }
-            catch (final Exception e)
+            finally
             {
-                LOGGER.debug("Loading module {} failed", publicModuleId, e);
-                if (e instanceof RuntimeException)
+                if (activeLoad == null)
                 {
-                    throw (RuntimeException) e;
+                    this.activeModuleLoads.remove(publicModuleId, load);
+                    load.complete(failure);
                 }
-                throw new UnavailableModuleException("Module '{}' could not be loaded", e, publicModuleId);
             }
+        }
 
-            if (moduleHolder == null)
+        return moduleHolder;
+    }
+
+    protected ModuleHolder loadModuleImpl(final String publicModuleId, final ModuleHolder contextModule)
+    {
+        if (this.loadFailedModules.contains(publicModuleId))
+        {
+            LOGGER.debug("Loading module {} has already been attempted and failed", publicModuleId);
+            throw new UnavailableModuleException("Module '{}' could not be loaded", publicModuleId);
+        }
+
+        ModuleHolder moduleHolder;
+        try
+        {
+            this.moduleSystem.getModuleLoadService().loadModule(publicModuleId, contextModule);
+            moduleHolder = this.lookupModuleByPublicModuleId(publicModuleId);
+        }
+        catch (final SecureModuleException smex)
+        {
+            LOGGER.debug("Loading module {} failed - marking to avoid further load attempts", publicModuleId, smex);
+            this.loadFailedModules.add(publicModuleId);
+            throw smex;
+        }
+        catch (final Exception e)
+        {
+            LOGGER.debug("Loading module {} failed", publicModuleId, e);
+            if (e instanceof RuntimeException)
             {
-                LOGGER.debug("Loading module {} failed - marking to avoid further load attempts", publicModuleId);
-                this.loadFailedModules.add(publicModuleId);
-                throw new UnavailableModuleException("Module '{}' could not be loaded", publicModuleId);
+                throw (RuntimeException) e;
             }
-
-            LOGGER.debug("Module {} has been loaded", publicModuleId);
-            result = moduleHolder.getOrResolveModule(this);
+            throw new UnavailableModuleException("Module '{}' could not be loaded", e, publicModuleId);
         }
-        else
+
+        if (moduleHolder == null)
         {
-            LOGGER.debug("Module {} has already been defined", publicModuleId);
-            result = moduleHolder.getOrResolveModule(this);
+            LOGGER.debug("Loading module {} failed - marking to avoid further load attempts", publicModuleId);
+            this.loadFailedModules.add(publicModuleId);
+            throw new UnavailableModuleException("Module '{}' could not be loaded", publicModuleId);
         }
 
-        result = this.handleResolvedModuleInstance(result, moduleHolder, contextModule);
+        return moduleHolder;
+    }
 
-        return result;
+    protected boolean awaitModuleLoad(final String publicModuleId, final SingleFlight activeLoad)
+    {
+        LOGGER.debug("Waiting for concurrent load of module {}", publicModuleId);
+        try
+        {
+            final boolean awaited = activeLoad.await();
+            if (!awaited)
+            {
+                LOGGER.debug("Waiting for concurrent load of module {} would result in a deadlock", publicModuleId);
+            }
+            return awaited;
+        }
+        catch (final InterruptedException iex)
+        {
+            Thread.currentThread().interrupt();
+            throw new UnavailableModuleException("Interrupted while waiting for concurrent load of module '{}'", iex, publicModuleId);
+        }
     }
 
     public Object getResolvedModule(final String publicModuleId, final ModuleHolder contextModule)
@@ -200,7 +281,7 @@ public class ModuleRegistry
         if (contextScriptUrl != null)
         {
             this.modulesByScriptUrl.computeIfAbsent(contextScriptUrl, (x) -> {
-                return new ArrayList<>();
+                return new CopyOnWriteArrayList<>();
             }).add(moduleHolder);
         }
 
@@ -230,8 +311,17 @@ public class ModuleRegistry
                         contextModule.getNormalizedModuleId());
             }
 
-            final ModuleFlags effectiveFlags = flags != null ? flags : new EnumBackedModuleFlags();
-            resultModuleInstance = new ContextualModuleProxy(this.moduleSystem, (JSObject) moduleInstance, contextModule, effectiveFlags);
+            if (moduleInstance instanceof ContextBindableModule)
+            {
+                // module bound once to its context does not need a proxy tagging the context on each call
+                resultModuleInstance = ((ContextBindableModule) moduleInstance).bindToContext(contextModule.getNormalizedModuleId());
+            }
+            else
+            {
+                final ModuleFlags effectiveFlags = flags != null ? flags : new EnumBackedModuleFlags();
+                resultModuleInstance = new ContextualModuleProxy(this.moduleSystem, (JSObject) moduleInstance, contextModule,
+                        effectiveFlags);
+            }
         }
 
         return resultModuleInstance;
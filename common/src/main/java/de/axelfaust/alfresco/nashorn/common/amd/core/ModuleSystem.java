@@ -14,7 +14,6 @@
 package de.axelfaust.alfresco.nashorn.common.amd.core;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 import java.util.regex.Pattern;
@@ -63,6 +62,8 @@ public class ModuleSystem
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ModuleSystem.class);
 
+    // explicit per-thread stack of caller contexts pushed / popped at module factory / proxy boundaries
+    // random access list so that lookups of the current (or skipped) caller context require no stack walking
     private static final ThreadLocal<List<Object>> TAGGED_CALLERS = new ThreadLocal<List<Object>>()
     {
 
@@ -73,7 +74,7 @@ public class ModuleSystem
         @Override
         protected List<Object> initialValue()
         {
-            return new LinkedList<>();
+            return new ArrayList<>();
         }
     };
 
@@ -102,19 +103,16 @@ public class ModuleSystem
 
         this.nativeObjectConstructor = nativeObjectConstructor;
         this.moduleRegistry = this.buildModuleRegistry();
-        this.moduleLoadService = new ModuleLoadService(this, scriptUrlResolver, isolatedScopeBuilder, nashornLoader);
+        this.moduleLoadService = this.buildModuleLoadService(scriptUrlResolver, isolatedScopeBuilder, nashornLoader);
 
         this.requireFunction = this.buildRequireFunction();
-        final ModuleHolderImpl requireModule = new ModuleHolderImpl("require", "require", null, null, this.requireFunction, true, false);
-        this.moduleRegistry.registerModule(requireModule);
+        this.registerBuiltInModule("require", null, this.requireFunction);
 
         this.defineFunction = this.buildDefineFunction();
-        final ModuleHolderImpl defineModule = new ModuleHolderImpl("define", "define", null, null, this.defineFunction, true, false);
-        this.moduleRegistry.registerModule(defineModule);
+        this.registerBuiltInModule("define", null, this.defineFunction);
 
         final Object logger = this.buildLoggerModule();
-        final ModuleHolderImpl loggerModule = new ModuleHolderImpl("logger", "logger", null, null, logger, true, false);
-        this.moduleRegistry.registerModule(loggerModule);
+        this.registerBuiltInModule("logger", null, logger);
     }
 
     /**
@@ -161,7 +159,7 @@ public class ModuleSystem
         final List<Object> taggedCallers = TAGGED_CALLERS.get();
         if (!taggedCallers.isEmpty() && !suppressTaggedCaller)
         {
-            final Object taggedCaller = taggedCallers.get(Math.min(0, taggedCallers.size() - (1 + skipCallerContexts)));
+            final Object taggedCaller = taggedCallers.get(Math.max(0, taggedCallers.size() - (1 + skipCallerContexts)));
             if (taggedCaller instanceof String)
             {
                 contextScriptUrl = (String) taggedCaller;
@@ -295,7 +293,8 @@ public class ModuleSystem
                 : effectivePublicModuleId;
         final String loaderModuleId = contextModule != null && contextModule.getLoaderModuleId() != null ? contextModule.getLoaderModuleId()
                 : null;
-        final String contextScriptUrl = contextModule != null ? contextModule.getContextScriptUrl() : NashornUtils.getCallerScriptURL();
+        // a tagged script URL (e.g. during the load of a script file) avoids the fallback to walking the stack
+        final String contextScriptUrl = contextModule != null ? contextModule.getContextScriptUrl() : getCallerContextScriptUrl();
         final boolean secureSource = contextModule != null ? contextModule.isFromSecureSource() : false;
 
         ModuleHolder module;
@@ -381,6 +380,22 @@ public class ModuleSystem
         return contextModule;
     }
 
+    /**
+     * Registers a pre-resolved module provided by the module system itself. Such modules are always considered to be from a secure source.
+     *
+     * @param moduleId
+     *            the ID of the module
+     * @param contextScriptUrl
+     *            the script URL of the script providing the module - may be {@code null}
+     * @param moduleValue
+     *            the module instance
+     */
+    protected void registerBuiltInModule(final String moduleId, final String contextScriptUrl, final Object moduleValue)
+    {
+        final ModuleHolder module = new ModuleHolderImpl(moduleId, moduleId, null, contextScriptUrl, moduleValue, true, false);
+        this.moduleRegistry.registerModule(module);
+    }
+
     protected JSObject newNativeObject()
     {
         final JSObject nativeObject = (JSObject) this.nativeObjectConstructor.newObject();
@@ -392,6 +407,12 @@ public class ModuleSystem
         return new ModuleRegistry(this);
     }
 
+    protected ModuleLoadService buildModuleLoadService(final ScriptURLResolver scriptUrlResolver, final JSObject isolatedScopeBuilder,
+            final JSObject nashornLoader)
+    {
+        return new ModuleLoadService(this, scriptUrlResolver, isolatedScopeBuilder, nashornLoader);
+    }
+
     protected JSObject buildDefineFunction()
     {
         return new DefineFunction(this);
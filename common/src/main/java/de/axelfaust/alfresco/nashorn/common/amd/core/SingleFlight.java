@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.common.amd.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Instances of this class represent a single operation (e.g. loading or constructing a module) that may be requested by multiple threads
+ * concurrently. Only the thread that created the instance performs the operation while all other threads {@link #await() wait} for its
+ * completion. Waits that would result in a deadlock - e.g. two threads loading modules with a circular dependency on each other - are
+ * detected via a wait-for graph spanning all instances and are refused, so callers can fall back to their single-threaded handling.
+ *
+ * @author Axel Faust
+ */
+class SingleFlight
+{
+
+    private static final Object WAIT_GRAPH_LOCK = new Object();
+
+    private static final Map<Thread, SingleFlight> AWAITED_FLIGHTS = new HashMap<>();
+
+    private final Thread owner = Thread.currentThread();
+
+    private boolean completed = false;
+
+    private RuntimeException failure;
+
+    /**
+     * Checks if this operation is being performed by the current thread.
+     *
+     * @return {@code true} if the current thread owns this operation, {@code false} otherwise
+     */
+    boolean isOwnedByCurrentThread()
+    {
+        return this.owner == Thread.currentThread();
+    }
+
+    /**
+     * Waits for the completion of this operation.
+     *
+     * @return {@code true} if the operation has been completed successfully, {@code false} if waiting was refused as it would result in a
+     *         deadlock
+     * @throws InterruptedException
+     *             if the current thread was interrupted while waiting
+     * @throws RuntimeException
+     *             the failure of the operation if it failed
+     */
+    boolean await() throws InterruptedException
+    {
+        final Thread currentThread = Thread.currentThread();
+        synchronized (WAIT_GRAPH_LOCK)
+        {
+            SingleFlight flight = this;
+            while (flight != null)
+            {
+                if (flight.owner == currentThread)
+                {
+                    return false;
+                }
+                flight = AWAITED_FLIGHTS.get(flight.owner);
+            }
+            AWAITED_FLIGHTS.put(currentThread, this);
+        }
+
+        try
+        {
+            synchronized (this)
+            {
+                while (!this.completed)
+                {
+                    this.wait();
+                }
+            }
+        }
+        finally
+        {
+            synchronized (WAIT_GRAPH_LOCK)
+            {
+                AWAITED_FLIGHTS.remove(currentThread);
+            }
+        }
+
+        if (this.failure != null)
+        {
+            throw this.failure;
+        }
+        return true;
+    }
+
+    /**
+     * Marks this operation as completed and wakes up all waiting threads.
+     *
+     * @param failure
+     *            the failure of the operation or {@code null} if it completed successfully
+     */
+    synchronized void complete(final RuntimeException failure)
+    {
+        this.failure = failure;
+        this.completed = true;
+        this.notifyAll();
+    }
+}
@@ -14,14 +14,15 @@
 package de.axelfaust.alfresco.nashorn.common.amd.modules;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.axelfaust.alfresco.nashorn.common.amd.ContextBindableModule;
 import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleSystem;
 import de.axelfaust.alfresco.nashorn.common.util.AbstractJavaScriptObject;
 import de.axelfaust.alfresco.nashorn.common.util.LambdaJavaScriptFunction;
@@ -33,10 +34,13 @@ import jdk.nashorn.api.scripting.ScriptUtils;
  * @author Axel Faust
  */
 @SuppressWarnings("restriction")
-public class LoggerModule extends AbstractJavaScriptObject
+public class LoggerModule extends AbstractJavaScriptObject implements ContextBindableModule
 {
 
-    private static final Map<String, Logger> LOGGER_LOOKUP = new HashMap<>();
+    // concurrent map does not support null keys
+    private static final String GLOBAL_CONTEXT_KEY = "-global-";
+
+    private static final ConcurrentMap<String, Logger> LOGGER_LOOKUP = new ConcurrentHashMap<>();
 
     /**
      *
@@ -82,19 +86,33 @@ public class LoggerModule extends AbstractJavaScriptObject
 
     protected final NormalizedContextModuleIdProvider normalizedContextModuleIdProvider;
 
+    protected final Logger boundLogger;
+
+    protected final ConcurrentMap<String, LoggerModule> boundModules = new ConcurrentHashMap<>();
+
     public LoggerModule(final NormalizedContextModuleIdProvider normalizedContextModuleIdProvider)
+    {
+        this(normalizedContextModuleIdProvider, null);
+    }
+
+    protected LoggerModule(final NormalizedContextModuleIdProvider normalizedContextModuleIdProvider, final Logger boundLogger)
     {
         ParameterCheck.mandatory("normalizedContextModuleIdProvider", normalizedContextModuleIdProvider);
         this.normalizedContextModuleIdProvider = normalizedContextModuleIdProvider;
+        this.boundLogger = boundLogger;
 
         final LambdaJavaScriptFunction isTraceEnabled = new LambdaJavaScriptFunction((thiz, args) -> {
             return this.getApplicableLogger().isTraceEnabled();
         });
         this.setMemberImpl("isTraceEnabled", isTraceEnabled, false);
         final LambdaJavaScriptFunction trace = new LambdaJavaScriptFunction((thiz, args) -> {
-            this.logWithArguments((message, arguments) -> {
-                this.getApplicableLogger().trace(message, arguments);
-            }, "trace", args);
+            final Logger logger = this.getApplicableLogger();
+            if (logger.isTraceEnabled())
+            {
+                this.logWithArguments((message, arguments) -> {
+                    logger.trace(message, arguments);
+                }, "trace", args);
+            }
             return null;
         });
         this.setMemberImpl("trace", trace, false);
@@ -104,9 +122,13 @@ public class LoggerModule extends AbstractJavaScriptObject
         });
         this.setMemberImpl("isDebugEnabled", isDebugEnabled, false);
         final LambdaJavaScriptFunction debug = new LambdaJavaScriptFunction((thiz, args) -> {
-            this.logWithArguments((message, arguments) -> {
-                this.getApplicableLogger().debug(message, arguments);
-            }, "debug", args);
+            final Logger logger = this.getApplicableLogger();
+            if (logger.isDebugEnabled())
+            {
+                this.logWithArguments((message, arguments) -> {
+                    logger.debug(message, arguments);
+                }, "debug", args);
+            }
             return null;
         });
         this.setMemberImpl("debug", debug, false);
@@ -116,9 +138,13 @@ public class LoggerModule extends AbstractJavaScriptObject
         });
         this.setMemberImpl("isInfoEnabled", isInfoEnabled, false);
         final LambdaJavaScriptFunction info = new LambdaJavaScriptFunction((thiz, args) -> {
-            this.logWithArguments((message, arguments) -> {
-                this.getApplicableLogger().info(message, arguments);
-            }, "info", args);
+            final Logger logger = this.getApplicableLogger();
+            if (logger.isInfoEnabled())
+            {
+                this.logWithArguments((message, arguments) -> {
+                    logger.info(message, arguments);
+                }, "info", args);
+            }
             return null;
         });
         this.setMemberImpl("info", info, false);
@@ -128,9 +154,13 @@ public class LoggerModule extends AbstractJavaScriptObject
         });
         this.setMemberImpl("isWarnEnabled", isWarnEnabled, false);
         final LambdaJavaScriptFunction warn = new LambdaJavaScriptFunction((thiz, args) -> {
-            this.logWithArguments((message, arguments) -> {
-                this.getApplicableLogger().warn(message, arguments);
-            }, "warn", args);
+            final Logger logger = this.getApplicableLogger();
+            if (logger.isWarnEnabled())
+            {
+                this.logWithArguments((message, arguments) -> {
+                    logger.warn(message, arguments);
+                }, "warn", args);
+            }
             return null;
         });
         this.setMemberImpl("warn", warn, false);
@@ -140,9 +170,13 @@ public class LoggerModule extends AbstractJavaScriptObject
         });
         this.setMemberImpl("isErrorEnabled", isErrorEnabled, false);
         final LambdaJavaScriptFunction error = new LambdaJavaScriptFunction((thiz, args) -> {
-            this.logWithArguments((message, arguments) -> {
-                this.getApplicableLogger().error(message, arguments);
-            }, "error", args);
+            final Logger logger = this.getApplicableLogger();
+            if (logger.isErrorEnabled())
+            {
+                this.logWithArguments((message, arguments) -> {
+                    logger.error(message, arguments);
+                }, "error", args);
+            }
             return null;
         });
         this.setMemberImpl("error", error, false);
@@ -275,33 +309,75 @@ public class LoggerModule extends AbstractJavaScriptObject
         return logArguments;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object bindToContext(final String normalizedContextModuleId)
+    {
+        final LoggerModule boundModule;
+        if (this.boundLogger != null)
+        {
+            boundModule = this;
+        }
+        else
+        {
+            final String key = normalizedContextModuleId != null ? normalizedContextModuleId : GLOBAL_CONTEXT_KEY;
+            boundModule = this.boundModules.computeIfAbsent(key, (moduleId) -> {
+                return new LoggerModule(() -> {
+                    return normalizedContextModuleId;
+                }, getLogger(normalizedContextModuleId));
+            });
+        }
+        return boundModule;
+    }
+
     protected Logger getApplicableLogger()
     {
-        final String normalizedModuleId = this.normalizedContextModuleIdProvider.getNormalisedContextModuleId();
-        final Logger logger = LOGGER_LOOKUP.computeIfAbsent(normalizedModuleId, (moduleId) -> {
-            final StringBuilder loggerNameBuilder = new StringBuilder(LoggerModule.class.getName());
-            loggerNameBuilder.append(".scripts");
-            if (normalizedModuleId != null)
-            {
-                if (normalizedModuleId.indexOf('!') == -1)
+        final Logger logger;
+        if (this.boundLogger != null)
+        {
+            logger = this.boundLogger;
+        }
+        else
+        {
+            final String normalizedModuleId = this.normalizedContextModuleIdProvider.getNormalisedContextModuleId();
+            logger = getLogger(normalizedModuleId);
+        }
+        return logger;
+    }
+
+    protected static Logger getLogger(final String normalizedModuleId)
+    {
+        final String key = normalizedModuleId != null ? normalizedModuleId : GLOBAL_CONTEXT_KEY;
+        Logger logger = LOGGER_LOOKUP.get(key);
+        if (logger == null)
+        {
+            logger = LOGGER_LOOKUP.computeIfAbsent(key, (moduleId) -> {
+                final StringBuilder loggerNameBuilder = new StringBuilder(LoggerModule.class.getName());
+                loggerNameBuilder.append(".scripts");
+                if (normalizedModuleId != null)
                 {
-                    loggerNameBuilder.append(".-defaultLoader-");
+                    if (normalizedModuleId.indexOf('!') == -1)
+                    {
+                        loggerNameBuilder.append(".-defaultLoader-");
+                    }
+                    final String[] nameFragments = normalizedModuleId.split("[\\!\\/]");
+                    for (final String nameFragment : nameFragments)
+                    {
+                        loggerNameBuilder.append('.').append(nameFragment);
+                    }
                 }
-                final String[] nameFragments = normalizedModuleId.split("[\\!\\/]");
-                for (final String nameFragment : nameFragments)
+                else
                 {
-                    loggerNameBuilder.append('.').append(nameFragment);
+                    loggerNameBuilder.append(".-global-");
                 }
-            }
-            else
-            {
-                loggerNameBuilder.append(".-global-");
-            }
 
-            final String loggerName = loggerNameBuilder.toString();
-            final Logger computedLogger = LoggerFactory.getLogger(loggerName);
-            return computedLogger;
-        });
+                final String loggerName = loggerNameBuilder.toString();
+                final Logger computedLogger = LoggerFactory.getLogger(loggerName);
+                return computedLogger;
+            });
+        }
         return logger;
     }
 
@@ -186,7 +186,7 @@ public class RequireFunction extends AbstractJavaScriptObject
                 // errorCallback cannot be null here otherwise we would have already re-thrown an exception in the resolution catch block
                 LOGGER.debug("Failed to resolve modules {} - resolved {} and got errors {}", requiredModuleIds,
                         Arrays.asList(resolvedModules), Arrays.asList(resolutionErrors));
-                result = errorCallback.call(null, new Object[] { resolvedModules, resolutionErrors });
+                result = this.invokeErrorCallback(errorCallback, requiredModuleIds, resolvedModules, resolutionErrors);
             }
         }
 
@@ -211,6 +211,25 @@ public class RequireFunction extends AbstractJavaScriptObject
         return true;
     }
 
+    /**
+     * Invokes the error callback provided in a call to {@code require} after at least one of the required modules could not be resolved.
+     *
+     * @param errorCallback
+     *            the error callback
+     * @param requiredModuleIds
+     *            the IDs of the required modules
+     * @param resolvedModules
+     *            the resolved modules - an entry will be {@code null} if the corresponding module could not be resolved
+     * @param resolutionErrors
+     *            the resolution errors - an entry will be {@code null} if the corresponding module could be resolved
+     * @return the result of the error callback
+     */
+    protected Object invokeErrorCallback(final JSObject errorCallback, final List<String> requiredModuleIds, final Object[] resolvedModules,
+            final Object[] resolutionErrors)
+    {
+        return errorCallback.call(null, new Object[] { resolvedModules, resolutionErrors });
+    }
+
     protected List<String> extractRequiredModuleIdsFromArgs(final Object[] args)
     {
         final List<String> requiredModuleIds = new ArrayList<>();
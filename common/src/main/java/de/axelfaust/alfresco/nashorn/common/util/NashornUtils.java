@@ -13,26 +13,151 @@
  */
 package de.axelfaust.alfresco.nashorn.common.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
-import sun.misc.JavaLangAccess;
-import sun.misc.SharedSecrets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class provides a collection of generic utilities to determine / collect information that scripts running inside the Nashorn engine
  * cannot determine themselves. This currently includes the ability to determine the calling script as {@code arguments.callee} is both not
  * available in strict mode and deprecated / removed from later EcmaScript standard revisions.
  *
- * This utility class makes use of {@link SharedSecrets JVM internal APIs} to improve the efficiency of its utilities that may potentially
- * be called very frequently. These APIs might be inaccessible in Java 9, so this class is currently only guaranteed to work in Java 8.
+ * Determining the caller requires walking the stack of the current thread and should only be used as a fallback if no caller has been
+ * explicitly tagged for the current execution context (see the caller tagging of the AMD module systems). If the JVM-internal
+ * {@code sun.misc.SharedSecrets} API is accessible at runtime (Java 8), it is used to access individual stack frames without building the
+ * entire stack trace. On later Java versions this class falls back to the regular {@link Throwable#getStackTrace() stack trace}.
  *
  * @author Axel Faust
  */
 public abstract class NashornUtils
 {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(NashornUtils.class);
+
+    private static final Object JAVA_LANG_ACCESS;
+
+    private static final MethodHandle GET_STACK_TRACE_DEPTH;
+
+    private static final MethodHandle GET_STACK_TRACE_ELEMENT;
+
+    static
+    {
+        Object javaLangAccess = null;
+        MethodHandle getStackTraceDepth = null;
+        MethodHandle getStackTraceElement = null;
+        try
+        {
+            final Class<?> sharedSecrets = Class.forName("sun.misc.SharedSecrets");
+            final Class<?> javaLangAccessType = Class.forName("sun.misc.JavaLangAccess");
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            javaLangAccess = lookup.findStatic(sharedSecrets, "getJavaLangAccess", MethodType.methodType(javaLangAccessType)).invoke();
+            getStackTraceDepth = lookup.findVirtual(javaLangAccessType, "getStackTraceDepth",
+                    MethodType.methodType(int.class, Throwable.class));
+            getStackTraceElement = lookup.findVirtual(javaLangAccessType, "getStackTraceElement",
+                    MethodType.methodType(StackTraceElement.class, Throwable.class, int.class));
+        }
+        catch (final Throwable t)
+        {
+            LOGGER.debug("JVM-internal stack frame access is not available - falling back to regular stack traces", t);
+            javaLangAccess = null;
+            getStackTraceDepth = null;
+            getStackTraceElement = null;
+        }
+
+        JAVA_LANG_ACCESS = javaLangAccess;
+        GET_STACK_TRACE_DEPTH = getStackTraceDepth;
+        GET_STACK_TRACE_ELEMENT = getStackTraceElement;
+    }
+
+    /**
+     * Instances of this class provide access to the stack frames of the current thread at the time of their construction.
+     *
+     * @author Axel Faust
+     */
+    protected static class StackFrames
+    {
+
+        protected final Throwable throwable = new Throwable();
+
+        protected final StackTraceElement[] frames;
+
+        protected final int depth;
+
+        protected StackFrames()
+        {
+            if (JAVA_LANG_ACCESS != null)
+            {
+                this.frames = null;
+                this.depth = getStackTraceDepth(this.throwable);
+            }
+            else
+            {
+                this.frames = this.throwable.getStackTrace();
+                this.depth = this.frames.length;
+            }
+        }
+
+        protected int getDepth()
+        {
+            return this.depth;
+        }
+
+        protected StackTraceElement getFrame(final int idx)
+        {
+            final StackTraceElement frame;
+            if (this.frames != null)
+            {
+                frame = this.frames[idx];
+            }
+            else
+            {
+                // Calling getStackTraceElement directly prevents the VM
+                // from paying the cost of building the entire stack frame.
+                frame = getStackTraceElement(this.throwable, idx);
+            }
+            return frame;
+        }
+
+        private static int getStackTraceDepth(final Throwable throwable)
+        {
+            try
+            {
+                return (int) GET_STACK_TRACE_DEPTH.invoke(JAVA_LANG_ACCESS, throwable);
+            }
+            catch (final RuntimeException | Error e)
+            {
+                throw e;
+            }
+            catch (final Throwable t)
+            {
+                throw new IllegalStateException("Failed to determine stack trace depth", t);
+            }
+        }
+
+        private static StackTraceElement getStackTraceElement(final Throwable throwable, final int idx)
+        {
+            try
+            {
+                return (StackTraceElement) GET_STACK_TRACE_ELEMENT.invoke(JAVA_LANG_ACCESS, throwable, idx);
+            }
+            catch (final RuntimeException | Error e)
+            {
+                throw e;
+            }
+            catch (final Throwable t)
+            {
+                throw new IllegalStateException("Failed to access stack frame", t);
+            }
+        }
+    }
+
     protected NashornUtils()
     {
         // NO-OP
@@ -63,19 +188,13 @@ public abstract class NashornUtils
         StackTraceElement topJSFrame = null;
         String topFrameScript = null;
 
-        @SuppressWarnings("restriction")
-        final JavaLangAccess access = SharedSecrets.getJavaLangAccess();
-        final Throwable throwable = new Throwable();
-        @SuppressWarnings("restriction")
-        final int depth = access.getStackTraceDepth(throwable);
+        final StackFrames frames = new StackFrames();
+        final int depth = frames.getDepth();
 
         boolean topFrameExcluded = false;
         for (int idx = 0; idx < depth; idx++)
         {
-            // Calling getStackTraceElement directly prevents the VM
-            // from paying the cost of building the entire stack frame.
-            @SuppressWarnings("restriction")
-            final StackTraceElement frame = access.getStackTraceElement(throwable, idx);
+            final StackTraceElement frame = frames.getFrame(idx);
             final String className = frame.getClassName();
             final String methodName = frame.getMethodName();
 
@@ -106,18 +225,12 @@ public abstract class NashornUtils
     {
         StackTraceElement topJSFrame = null;
 
-        @SuppressWarnings("restriction")
-        final JavaLangAccess access = SharedSecrets.getJavaLangAccess();
-        final Throwable throwable = new Throwable();
-        @SuppressWarnings("restriction")
-        final int depth = access.getStackTraceDepth(throwable);
+        final StackFrames frames = new StackFrames();
+        final int depth = frames.getDepth();
 
         for (int idx = 0; idx < depth; idx++)
         {
-            // Calling getStackTraceElement directly prevents the VM
-            // from paying the cost of building the entire stack frame.
-            @SuppressWarnings("restriction")
-            final StackTraceElement frame = access.getStackTraceElement(throwable, idx);
+            final StackTraceElement frame = frames.getFrame(idx);
             final String className = frame.getClassName();
             final String fileName = frame.getFileName();
             final String methodName = frame.getMethodName();
@@ -148,18 +261,12 @@ public abstract class NashornUtils
 
         final Set<String> excludedTopFrameScripts = new HashSet<>();
 
-        @SuppressWarnings("restriction")
-        final JavaLangAccess access = SharedSecrets.getJavaLangAccess();
-        final Throwable throwable = new Throwable();
-        @SuppressWarnings("restriction")
-        final int depth = access.getStackTraceDepth(throwable);
+        final StackFrames frames = new StackFrames();
+        final int depth = frames.getDepth();
 
         for (int idx = 0; idx < depth; idx++)
         {
-            // Calling getStackTraceElement directly prevents the VM
-            // from paying the cost of building the entire stack frame.
-            @SuppressWarnings("restriction")
-            final StackTraceElement frame = access.getStackTraceElement(throwable, idx);
+            final StackTraceElement frame = frames.getFrame(idx);
             final String className = frame.getClassName();
             final String methodName = frame.getMethodName();
 
@@ -0,0 +1,471 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.common.amd.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.axelfaust.alfresco.nashorn.common.amd.UnavailableModuleException;
+import jdk.nashorn.api.scripting.AbstractJSObject;
+
+/**
+ * Tests the coordination of concurrent module loads and constructions via {@link SingleFlight single-flight operations}.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+public class SingleFlightTest
+{
+
+    private static final int CONCURRENT_THREADS = 4;
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Simple module registry that does not load any scripts but simulates loading modules via a load handler.
+     *
+     * @author Axel Faust
+     */
+    private static class TestModuleRegistry extends ModuleRegistry
+    {
+
+        private final Map<String, LoadHandler> loadHandlers = new HashMap<>();
+
+        private volatile CyclicBarrier resolutionBarrier;
+
+        private final ThreadLocal<Boolean> passedResolutionBarrier = new ThreadLocal<>();
+
+        private TestModuleRegistry()
+        {
+            super(null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object getOrResolveModule(final String publicModuleId, final ModuleHolder contextModule)
+        {
+            final CyclicBarrier resolutionBarrier = this.resolutionBarrier;
+            if (resolutionBarrier != null && this.passedResolutionBarrier.get() == null)
+            {
+                this.passedResolutionBarrier.set(Boolean.TRUE);
+                awaitBarrier(resolutionBarrier);
+            }
+            return super.getOrResolveModule(publicModuleId, contextModule);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected ModuleHolder loadModuleImpl(final String publicModuleId, final ModuleHolder contextModule)
+        {
+            final LoadHandler loadHandler = this.loadHandlers.get(publicModuleId);
+            if (loadHandler == null)
+            {
+                throw new UnavailableModuleException("Module '{}' could not be loaded", publicModuleId);
+            }
+            loadHandler.load(this, publicModuleId);
+
+            final ModuleHolder moduleHolder = this.lookupModuleByPublicModuleId(publicModuleId);
+            if (moduleHolder == null)
+            {
+                throw new UnavailableModuleException("Module '{}' could not be loaded", publicModuleId);
+            }
+            return moduleHolder;
+        }
+    }
+
+    /**
+     * Simulates the load of a module script.
+     *
+     * @author Axel Faust
+     */
+    @FunctionalInterface
+    private static interface LoadHandler
+    {
+
+        void load(TestModuleRegistry moduleRegistry, String publicModuleId);
+    }
+
+    /**
+     * Simple module factory function that does not require a script engine.
+     *
+     * @author Axel Faust
+     */
+    private static class TestFactory extends AbstractJSObject
+    {
+
+        private final Supplier<Object> valueSupplier;
+
+        private TestFactory(final Supplier<Object> valueSupplier)
+        {
+            this.valueSupplier = valueSupplier;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isFunction()
+        {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object call(final Object thiz, final Object... args)
+        {
+            return this.valueSupplier.get();
+        }
+    }
+
+    @Test
+    public void concurrentLoadOfModuleIsPerformedOnce() throws Exception
+    {
+        final TestModuleRegistry moduleRegistry = new TestModuleRegistry();
+
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadReleased = new CountDownLatch(1);
+        moduleRegistry.loadHandlers.put("a", (registry, moduleId) -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            awaitLatch(loadReleased);
+            registry.registerModule(newValueModule(moduleId, "valueA"));
+        });
+
+        final List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final Thread loader = startThread(() -> results.add(moduleRegistry.getOrResolveModule("a", null)), failures);
+        awaitLatch(loadStarted);
+
+        final List<Thread> waiters = new ArrayList<>();
+        for (int idx = 1; idx < CONCURRENT_THREADS; idx++)
+        {
+            waiters.add(startThread(() -> results.add(moduleRegistry.getOrResolveModule("a", null)), failures));
+        }
+        awaitWaitingState(waiters);
+
+        loadReleased.countDown();
+        joinThread(loader);
+        joinThreads(waiters);
+
+        Assert.assertEquals("Failures during concurrent load", Collections.emptyList(), failures);
+        Assert.assertEquals("Module should have been loaded exactly once", 1, loads.get());
+        Assert.assertEquals("All threads should have received the module", Collections.nCopies(CONCURRENT_THREADS, "valueA"), results);
+    }
+
+    @Test
+    public void concurrentLoadFailureIsPropagatedToWaiters() throws Exception
+    {
+        final TestModuleRegistry moduleRegistry = new TestModuleRegistry();
+
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch loadReleased = new CountDownLatch(1);
+        final UnavailableModuleException loadFailure = new UnavailableModuleException("Module '{}' failed to load", "a");
+        moduleRegistry.loadHandlers.put("a", (registry, moduleId) -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            awaitLatch(loadReleased);
+            throw loadFailure;
+        });
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final Thread loader = startThread(() -> moduleRegistry.getOrResolveModule("a", null), failures);
+        awaitLatch(loadStarted);
+
+        final List<Thread> waiters = new ArrayList<>();
+        for (int idx = 1; idx < CONCURRENT_THREADS; idx++)
+        {
+            waiters.add(startThread(() -> moduleRegistry.getOrResolveModule("a", null), failures));
+        }
+        awaitWaitingState(waiters);
+
+        loadReleased.countDown();
+        joinThread(loader);
+        joinThreads(waiters);
+
+        Assert.assertEquals("Module load should have been attempted exactly once", 1, loads.get());
+        Assert.assertEquals("All threads should have failed with the load failure", Collections.nCopies(CONCURRENT_THREADS, loadFailure),
+                failures);
+    }
+
+    @Test
+    public void concurrentLoadOfCircularDependenciesDoesNotDeadlock() throws Exception
+    {
+        final TestModuleRegistry moduleRegistry = new TestModuleRegistry();
+
+        final Map<String, String> dependencies = new HashMap<>();
+        dependencies.put("a", "b");
+        dependencies.put("b", "a");
+
+        final CyclicBarrier loadBarrier = new CyclicBarrier(2);
+        final ThreadLocal<Set<String>> activeLoads = ThreadLocal.withInitial(HashSet::new);
+        final LoadHandler loadHandler = (registry, moduleId) -> {
+            final Set<String> threadLoads = activeLoads.get();
+            if (threadLoads.isEmpty())
+            {
+                // make sure both threads own their load before requiring the circular dependency
+                awaitBarrier(loadBarrier);
+            }
+            threadLoads.add(moduleId);
+            try
+            {
+                final String dependency = dependencies.get(moduleId);
+                if (!threadLoads.contains(dependency))
+                {
+                    registry.getOrResolveModule(dependency, null);
+                }
+                registry.registerModule(newValueModule(moduleId, "value" + moduleId.toUpperCase()));
+            }
+            finally
+            {
+                threadLoads.remove(moduleId);
+            }
+        };
+        moduleRegistry.loadHandlers.put("a", loadHandler);
+        moduleRegistry.loadHandlers.put("b", loadHandler);
+
+        final List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final Thread loaderA = startThread(() -> results.add(moduleRegistry.getOrResolveModule("a", null)), failures);
+        final Thread loaderB = startThread(() -> results.add(moduleRegistry.getOrResolveModule("b", null)), failures);
+
+        joinThread(loaderA);
+        joinThread(loaderB);
+
+        Assert.assertEquals("Failures during concurrent load", Collections.emptyList(), failures);
+        Assert.assertEquals("Both threads should have received their module", new HashSet<>(Arrays.asList("valueA", "valueB")),
+                new HashSet<>(results));
+        Assert.assertNotNull("Module a should have been registered", moduleRegistry.lookupModuleByPublicModuleId("a"));
+        Assert.assertNotNull("Module b should have been registered", moduleRegistry.lookupModuleByPublicModuleId("b"));
+    }
+
+    @Test
+    public void concurrentConstructionOfModuleIsPerformedOnce() throws Exception
+    {
+        final TestModuleRegistry moduleRegistry = new TestModuleRegistry();
+
+        final AtomicInteger constructions = new AtomicInteger();
+        final CountDownLatch constructionStarted = new CountDownLatch(1);
+        final CountDownLatch constructionReleased = new CountDownLatch(1);
+        final ModuleHolderImpl module = newFactoryModule("a", Collections.emptyList(), () -> {
+            constructions.incrementAndGet();
+            constructionStarted.countDown();
+            awaitLatch(constructionReleased);
+            return "valueA";
+        });
+
+        final List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final Thread constructor = startThread(() -> results.add(module.getOrResolveModule(moduleRegistry)), failures);
+        awaitLatch(constructionStarted);
+
+        final List<Thread> waiters = new ArrayList<>();
+        for (int idx = 1; idx < CONCURRENT_THREADS; idx++)
+        {
+            waiters.add(startThread(() -> results.add(module.getOrResolveModule(moduleRegistry)), failures));
+        }
+        awaitWaitingState(waiters);
+
+        constructionReleased.countDown();
+        joinThread(constructor);
+        joinThreads(waiters);
+
+        Assert.assertEquals("Failures during concurrent construction", Collections.emptyList(), failures);
+        Assert.assertEquals("Module factory should have been called exactly once", 1, constructions.get());
+        Assert.assertEquals("All threads should have received the module", Collections.nCopies(CONCURRENT_THREADS, "valueA"), results);
+        Assert.assertTrue("Module should have been initialized", module.isInitialized());
+    }
+
+    @Test
+    public void concurrentConstructionFailureIsPropagatedToWaiters() throws Exception
+    {
+        final TestModuleRegistry moduleRegistry = new TestModuleRegistry();
+
+        final AtomicInteger constructions = new AtomicInteger();
+        final CountDownLatch constructionStarted = new CountDownLatch(1);
+        final CountDownLatch constructionReleased = new CountDownLatch(1);
+        final IllegalStateException constructionFailure = new IllegalStateException("Factory failed");
+        final ModuleHolderImpl module = newFactoryModule("a", Collections.emptyList(), () -> {
+            constructions.incrementAndGet();
+            constructionStarted.countDown();
+            awaitLatch(constructionReleased);
+            throw constructionFailure;
+        });
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final Thread constructor = startThread(() -> module.getOrResolveModule(moduleRegistry), failures);
+        awaitLatch(constructionStarted);
+
+        final List<Thread> waiters = new ArrayList<>();
+        for (int idx = 1; idx < CONCURRENT_THREADS; idx++)
+        {
+            waiters.add(startThread(() -> module.getOrResolveModule(moduleRegistry), failures));
+        }
+        awaitWaitingState(waiters);
+
+        constructionReleased.countDown();
+        joinThread(constructor);
+        joinThreads(waiters);
+
+        Assert.assertEquals("Module factory should have been called exactly once", 1, constructions.get());
+        Assert.assertEquals("All threads should have failed with the factory failure",
+                Collections.nCopies(CONCURRENT_THREADS, constructionFailure), failures);
+        Assert.assertFalse("Module should not have been initialized", module.isInitialized());
+    }
+
+    @Test
+    public void concurrentConstructionOfCircularDependenciesDoesNotDeadlock() throws Exception
+    {
+        final TestModuleRegistry moduleRegistry = new TestModuleRegistry();
+        // make sure both threads own their construction before resolving the circular dependency
+        moduleRegistry.resolutionBarrier = new CyclicBarrier(2);
+
+        final ModuleHolderImpl moduleA = newFactoryModule("a", Collections.singletonList("b"), () -> "valueA");
+        final ModuleHolderImpl moduleB = newFactoryModule("b", Collections.singletonList("a"), () -> "valueB");
+        moduleRegistry.registerModule(moduleA);
+        moduleRegistry.registerModule(moduleB);
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        final Thread constructorA = startThread(() -> moduleA.getOrResolveModule(moduleRegistry), failures);
+        final Thread constructorB = startThread(() -> moduleB.getOrResolveModule(moduleRegistry), failures);
+
+        joinThread(constructorA);
+        joinThread(constructorB);
+
+        Assert.assertEquals("Both threads should have failed", 2, failures.size());
+        failures.forEach(failure -> {
+            Assert.assertTrue("Circular dependency should be reported as unavailable module",
+                    failure instanceof UnavailableModuleException);
+        });
+        Assert.assertFalse("Module a should not have been initialized", moduleA.isInitialized());
+        Assert.assertFalse("Module b should not have been initialized", moduleB.isInitialized());
+    }
+
+    private static ModuleHolderImpl newValueModule(final String moduleId, final Object value)
+    {
+        return new ModuleHolderImpl(moduleId, moduleId, null, "test:" + moduleId, value, false, false);
+    }
+
+    private static ModuleHolderImpl newFactoryModule(final String moduleId, final List<String> dependencies,
+            final Supplier<Object> valueSupplier)
+    {
+        return new ModuleHolderImpl(moduleId, moduleId, null, "test:" + moduleId, dependencies, new TestFactory(valueSupplier), false);
+    }
+
+    private static Thread startThread(final Runnable runnable, final List<Throwable> failures)
+    {
+        final Thread thread = new Thread(() -> {
+            try
+            {
+                runnable.run();
+            }
+            catch (final Throwable t)
+            {
+                failures.add(t);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaitingState(final List<Thread> threads) throws InterruptedException, TimeoutException
+    {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (final Thread thread : threads)
+        {
+            while (thread.getState() != Thread.State.WAITING)
+            {
+                if (System.currentTimeMillis() > deadline)
+                {
+                    throw new TimeoutException("Thread " + thread.getName() + " did not start waiting in time");
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static void joinThreads(final List<Thread> threads) throws InterruptedException, TimeoutException
+    {
+        for (final Thread thread : threads)
+        {
+            joinThread(thread);
+        }
+    }
+
+    private static void joinThread(final Thread thread) throws InterruptedException, TimeoutException
+    {
+        thread.join(TIMEOUT_MILLIS);
+        if (thread.isAlive())
+        {
+            throw new TimeoutException("Thread " + thread.getName() + " did not complete in time - potential deadlock");
+        }
+    }
+
+    private static void awaitLatch(final CountDownLatch latch)
+    {
+        try
+        {
+            if (!latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+            {
+                throw new IllegalStateException("Latch was not released in time");
+            }
+        }
+        catch (final InterruptedException iex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for latch", iex);
+        }
+    }
+
+    private static void awaitBarrier(final CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException iex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for barrier", iex);
+        }
+        catch (final BrokenBarrierException | TimeoutException e)
+        {
+            throw new IllegalStateException("Barrier was not passed in time", e);
+        }
+    }
+}
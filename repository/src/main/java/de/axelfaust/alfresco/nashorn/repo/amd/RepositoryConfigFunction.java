@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.amd;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.axelfaust.alfresco.nashorn.common.amd.ModuleSystemRuntimeException;
+import de.axelfaust.alfresco.nashorn.common.amd.modules.ConfigFunction;
+import de.axelfaust.alfresco.nashorn.common.util.ParameterCheck;
+import jdk.nashorn.api.scripting.JSObject;
+
+/**
+ * This specialisation of the generic {@code require.config} function supports the {@code packages} and {@code map} options of the
+ * repository-tier AMD configuration and - in contrast to the generic variant - can only be called once.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+public class RepositoryConfigFunction extends ConfigFunction
+{
+
+    /**
+     *
+     * @author Axel Faust
+     */
+    @FunctionalInterface
+    public static interface PackagesConfigHandle
+    {
+
+        /**
+         * Adds a package to the effective module system configuration
+         *
+         * @param packageName
+         *            the name of the package, acting as the module ID prefix of all modules in the package
+         * @param loaderModuleId
+         *            the ID of the loader module to use for loading the modules in the package
+         * @param location
+         *            the location to prepend to module IDs (sans package name) when calling the loader module - may be {@code null}
+         */
+        void addPackage(String packageName, String loaderModuleId, String location);
+    }
+
+    private static final String KEY_MAP = "map";
+
+    private static final String KEY_PACKAGES = "packages";
+
+    private static final String ERR_PACKAGES_ARRAY = "Config parameter 'packages' must be an array";
+
+    private static final String ERR_PACKAGE_OBJECT = "Invalid package config structure";
+
+    private static final Pattern VALID_NAME_PATTERN = Pattern.compile("^(?:\\w|[\\-_.])+(?:/(?:\\w|[\\-_.])+)*$");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryConfigFunction.class);
+
+    /**
+     * Handle rejecting any configuration of lookup paths, as all repository-tier modules are loaded either via explicit loader modules or
+     * packages.
+     */
+    protected static final PathsConfigHandle UNSUPPORTED_PATHS_CONFIG_HANDLE = (moduleIdPrefix, paths) -> {
+        throw new ModuleSystemRuntimeException(
+                "Config option 'paths' (for module ID prefix '{}') is not supported in the repository tier - use 'packages' instead",
+                moduleIdPrefix);
+    };
+
+    protected final PackagesConfigHandle packagesConfigHandle;
+
+    protected final AtomicBoolean called = new AtomicBoolean(false);
+
+    public RepositoryConfigFunction(final PackagesConfigHandle packagesConfigHandle, final MappingsConfigHandle mappingsConfigHandle)
+    {
+        super(UNSUPPORTED_PATHS_CONFIG_HANDLE, mappingsConfigHandle);
+
+        ParameterCheck.mandatory("packagesConfigHandle", packagesConfigHandle);
+        this.packagesConfigHandle = packagesConfigHandle;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object call(final Object thiz, final Object... inboundArgs)
+    {
+        final Object[] args = this.correctArgsAbstraction(inboundArgs);
+
+        if (args.length == 0 || !(args[0] instanceof JSObject) || ((JSObject) args[0]).isArray() || ((JSObject) args[0]).isFunction())
+        {
+            throw new IllegalArgumentException("Invalid config parameter");
+        }
+
+        if (!this.called.compareAndSet(false, true))
+        {
+            throw new ModuleSystemRuntimeException("'require.config' can only be called once");
+        }
+
+        final JSObject configObj = (JSObject) args[0];
+        boolean configured = false;
+        for (final String key : configObj.keySet())
+        {
+            switch (key)
+            {
+                case KEY_PACKAGES:
+                    configured = this.handlePackagesConfig(configObj) || configured;
+                    break;
+                case KEY_MAP:
+                    configured = this.handleMapConfig(configObj) || configured;
+                    break;
+                default:
+                    LOGGER.warn("Ignoring unsupported AMD loader option {}", key);
+            }
+        }
+
+        return configured;
+    }
+
+    protected boolean handlePackagesConfig(final JSObject configObj)
+    {
+        final Object packagesVal = configObj.getMember(KEY_PACKAGES);
+        if (!(packagesVal instanceof JSObject) || !((JSObject) packagesVal).isArray())
+        {
+            throw new IllegalArgumentException(ERR_PACKAGES_ARRAY);
+        }
+
+        final JSObject packagesArr = (JSObject) packagesVal;
+        final int packagesLength = ParameterCheck.mandatoryNativeArray("packages", packagesArr);
+        for (int slot = 0; slot < packagesLength; slot++)
+        {
+            final Object packageVal = packagesArr.getSlot(slot);
+            if (!(packageVal instanceof JSObject) || ((JSObject) packageVal).isArray() || ((JSObject) packageVal).isFunction())
+            {
+                throw new IllegalArgumentException(ERR_PACKAGE_OBJECT);
+            }
+
+            final JSObject packageObj = (JSObject) packageVal;
+            final Object nameVal = packageObj.getMember("name");
+            final Object loaderVal = packageObj.getMember("loader");
+            final Object locationVal = packageObj.getMember("location");
+
+            if (!(nameVal instanceof CharSequence) || !VALID_NAME_PATTERN.matcher((CharSequence) nameVal).matches())
+            {
+                throw new IllegalArgumentException("Package name has not been set or is not a valid string");
+            }
+            final String packageName = nameVal.toString();
+
+            if (!(loaderVal instanceof CharSequence) || !VALID_NAME_PATTERN.matcher((CharSequence) loaderVal).matches())
+            {
+                throw new IllegalArgumentException("Loader name for package '" + packageName + "' has not been set or is not a valid string");
+            }
+
+            String location = null;
+            if (locationVal instanceof CharSequence)
+            {
+                if (!VALID_NAME_PATTERN.matcher((CharSequence) locationVal).matches())
+                {
+                    throw new IllegalArgumentException("Location for package '" + packageName + "' is not a valid string");
+                }
+                location = locationVal.toString();
+            }
+
+            LOGGER.debug("Adding AMD package {} using loader {} (package location: {})", packageName, loaderVal, location);
+            this.packagesConfigHandle.addPackage(packageName, loaderVal.toString(), location);
+        }
+
+        return packagesLength > 0;
+    }
+}
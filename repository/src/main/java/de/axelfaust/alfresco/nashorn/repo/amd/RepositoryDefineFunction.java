@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.amd;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.axelfaust.alfresco.nashorn.common.amd.modules.DefineFunction;
+import de.axelfaust.alfresco.nashorn.common.util.LambdaJavaScriptFunction;
+import de.axelfaust.alfresco.nashorn.common.util.ParameterCheck;
+import jdk.nashorn.api.scripting.JSObject;
+
+/**
+ * This specialisation of the generic {@code define} function provides the additional members of the repository-tier AMD API as
+ * previously provided by the script-based module system.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+public class RepositoryDefineFunction extends DefineFunction
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryDefineFunction.class);
+
+    public RepositoryDefineFunction(final RepositoryModuleSystem moduleSystem, final JSObject amd)
+    {
+        super(moduleSystem);
+        ParameterCheck.mandatory("amd", amd);
+
+        final LambdaJavaScriptFunction asSpecialModule = new LambdaJavaScriptFunction((thiz, args) -> {
+            ParameterCheck.mandatory("module", args.length > 0 ? args[0] : null);
+
+            boolean secureUseOnly = false;
+            boolean callerTagged = false;
+            boolean callerProvided = false;
+            boolean callerBound = false;
+            if (args.length > 1 && args[1] instanceof JSObject && ((JSObject) args[1]).isArray())
+            {
+                final JSObject flags = (JSObject) args[1];
+                final int flagsLength = ParameterCheck.mandatoryNativeArray("flags", flags);
+                for (int slot = 0; slot < flagsLength; slot++)
+                {
+                    final String flag = String.valueOf(flags.getSlot(slot));
+                    secureUseOnly = secureUseOnly || SpecialModule.FLAG_SECURE_USE_ONLY.equals(flag);
+                    callerTagged = callerTagged || SpecialModule.FLAG_CALLER_TAGGED.equals(flag);
+                    callerProvided = callerProvided || SpecialModule.FLAG_CALLER_PROVIDED.equals(flag);
+                    callerBound = callerBound || SpecialModule.FLAG_CALLER_BOUND.equals(flag);
+                }
+            }
+
+            final SpecialModule specialModule = new SpecialModule(args[0], secureUseOnly, callerTagged, callerProvided, callerBound);
+            LOGGER.debug("Tagged module as special: {}", specialModule);
+            return specialModule;
+        });
+        this.setMemberImpl("asSpecialModule", asSpecialModule, false);
+
+        final LambdaJavaScriptFunction preload = new LambdaJavaScriptFunction((thiz, args) -> {
+            ParameterCheck.mandatoryCharSequence("moduleId", args.length > 0 ? args[0] : null);
+            final String moduleId = String.valueOf(args[0]);
+            final String aliasModuleId = args.length > 1 && args[1] instanceof CharSequence ? String.valueOf(args[1]) : null;
+            moduleSystem.preloadModule(moduleId, aliasModuleId);
+            return null;
+        });
+        this.setMemberImpl("preload", preload, false);
+
+        this.setMemberImpl("amd", amd, false);
+    }
+}
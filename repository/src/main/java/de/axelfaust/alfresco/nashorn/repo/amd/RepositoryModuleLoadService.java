@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.amd;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.axelfaust.alfresco.nashorn.common.amd.ModuleLoader;
+import de.axelfaust.alfresco.nashorn.common.amd.ModuleNormalizingLoader;
+import de.axelfaust.alfresco.nashorn.common.amd.UnavailableModuleException;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleHolder;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleLoadService;
+import de.axelfaust.alfresco.nashorn.common.util.LambdaJavaScriptFunction;
+import de.axelfaust.alfresco.nashorn.common.util.ParameterCheck;
+import de.axelfaust.alfresco.nashorn.repo.processor.AMDUtils;
+import jdk.nashorn.api.scripting.JSObject;
+
+/**
+ * This specialisation of the generic module load service implements the module ID normalisation and package-based module resolution
+ * semantics of the repository-tier AMD configuration. Module IDs without an explicit loader module are never resolved to script URLs
+ * directly but always via the loader module of the configured package they belong to.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+public class RepositoryModuleLoadService extends ModuleLoadService
+{
+
+    /**
+     * Instances of this class represent a single package configured via {@code require.config}.
+     *
+     * @author Axel Faust
+     */
+    protected static class PackageConfig
+    {
+
+        protected final String loaderModuleId;
+
+        protected final String location;
+
+        protected PackageConfig(final String loaderModuleId, final String location)
+        {
+            this.loaderModuleId = loaderModuleId;
+            this.location = location;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryModuleLoadService.class);
+
+    protected final Map<String, PackageConfig> packages = new ConcurrentHashMap<>();
+
+    protected RepositoryModuleLoadService(final RepositoryModuleSystem moduleSystem, final JSObject isolatedScopeBuilder,
+            final JSObject nashornLoader)
+    {
+        super(moduleSystem, (moduleId, locations) -> {
+            // never used - see loadModuleViaScriptResolver
+            return null;
+        }, isolatedScopeBuilder, nashornLoader);
+    }
+
+    protected void addPackage(final String packageName, final String loaderModuleId, final String location)
+    {
+        ParameterCheck.mandatoryString("packageName", packageName);
+        ParameterCheck.mandatoryString("loaderModuleId", loaderModuleId);
+
+        final PackageConfig existing = this.packages.putIfAbsent(packageName, new PackageConfig(loaderModuleId, location));
+        if (existing != null)
+        {
+            throw new IllegalArgumentException("Package '" + packageName + "' has already been defined");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setMappings(final String moduleIdPrefix, final Map<String, String> mappings)
+    {
+        LOGGER.trace("Setting mappings {} for module ID prefix {}", mappings, moduleIdPrefix);
+        super.setMappings(moduleIdPrefix, mappings);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * In contrast to the generic module system, loader modules are not subject to normalisation / mapping themselves, and loader modules
+     * are asked to normalise any module ID they are referenced in, not just relative IDs.
+     */
+    @Override
+    protected String normalizeAndMapModuleId(final String id, final ModuleHolder contextModule)
+    {
+        ParameterCheck.mandatoryString("id", id);
+
+        final String contextModuleId = contextModule != null ? contextModule.getModuleId() : null;
+
+        final String normalizedModuleId;
+        final int loaderSeparatorIdx = id.indexOf('!');
+        if (loaderSeparatorIdx > 0 && loaderSeparatorIdx < id.length() - 1)
+        {
+            final String loaderModuleId = id.substring(0, loaderSeparatorIdx);
+            final String moduleId = id.substring(loaderSeparatorIdx + 1);
+
+            final ModuleLoader loaderModule = this.getLoaderModule(loaderModuleId, contextModule);
+            if (loaderModule instanceof ModuleNormalizingLoader)
+            {
+                LOGGER.trace("Calling normalize-function of loader {}", loaderModuleId);
+
+                final JSObject normalizeSimpleId = new LambdaJavaScriptFunction((thiz, args) -> {
+                    ParameterCheck.mandatoryCharSequence("id", args.length > 0 ? args[0] : null);
+                    return this.normalizeAndMapSimpleModuleId(String.valueOf(args[0]), contextModuleId);
+                });
+                final JSObject contextModuleObj = contextModule != null ? this.newContextModuleObject(contextModule) : null;
+
+                normalizedModuleId = loaderModuleId + "!"
+                        + ((ModuleNormalizingLoader) loaderModule).normalize(moduleId, normalizeSimpleId, contextModuleObj);
+            }
+            else
+            {
+                normalizedModuleId = loaderModuleId + "!" + this.normalizeAndMapSimpleModuleId(moduleId, contextModuleId);
+            }
+        }
+        else
+        {
+            normalizedModuleId = this.normalizeAndMapSimpleModuleId(id, contextModuleId);
+        }
+
+        LOGGER.trace("Normalized module id {} to {}", id, normalizedModuleId);
+        return normalizedModuleId;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The script representation of a context module mirrors the structure of modules in the script-based module system as expected by
+     * loader modules.
+     */
+    @Override
+    protected JSObject newContextModuleObject(final ModuleHolder contextModule)
+    {
+        final JSObject contextModuleObj = this.newNativeObject();
+        contextModuleObj.setMember("id", contextModule.getModuleId());
+        contextModuleObj.setMember("loader", contextModule.getLoaderModuleId());
+        contextModuleObj.setMember("url", contextModule.getContextScriptUrl());
+        contextModuleObj.setMember("secureSource", contextModule.isFromSecureSource());
+        contextModuleObj.setMember("initialized", contextModule.isInitialized());
+        contextModuleObj.eval("Object.freeze(this);");
+        return contextModuleObj;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Module IDs without an explicit loader module are resolved against the configured packages, using the loader module of the package
+     * with the longest matching name.
+     */
+    @Override
+    protected void loadModuleViaScriptResolver(final String publicModuleId, final String moduleId, final ModuleHolder contextModule)
+    {
+        LOGGER.trace("Resolving module {} against configured packages", moduleId);
+
+        PackageConfig packageConfig = null;
+        int packageNameEndIdx = moduleId.lastIndexOf('/');
+        while (packageConfig == null && packageNameEndIdx > 0)
+        {
+            packageConfig = this.packages.get(moduleId.substring(0, packageNameEndIdx));
+            if (packageConfig == null)
+            {
+                packageNameEndIdx = moduleId.lastIndexOf('/', packageNameEndIdx - 1);
+            }
+        }
+
+        if (packageConfig == null)
+        {
+            throw new UnavailableModuleException("Module '{}' does not belong to any configured package - unable to load", publicModuleId);
+        }
+
+        final String packageRelativeId = moduleId.substring(packageNameEndIdx + 1);
+        final String loaderResourceId = packageConfig.location != null ? (packageConfig.location + "/" + packageRelativeId)
+                : packageRelativeId;
+        this.loadModuleViaLoader(publicModuleId, packageConfig.loaderModuleId, moduleId, loaderResourceId, contextModule);
+    }
+
+    protected String normalizeAndMapSimpleModuleId(final String moduleId, final String contextModuleId)
+    {
+        final String normalizedModuleId = AMDUtils.normalizeSimpleModuleId(moduleId, contextModuleId);
+        final String mappedModuleId = AMDUtils.mapModuleId(normalizedModuleId, contextModuleId, this.mappingsByModuleIdPrefix);
+        return mappedModuleId;
+    }
+}
@@ -13,18 +13,277 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.amd;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.axelfaust.alfresco.nashorn.common.amd.ContextBindableModule;
+import de.axelfaust.alfresco.nashorn.common.amd.SecureModuleException;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleHolder;
 import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleRegistry;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleSystem;
+import de.axelfaust.alfresco.nashorn.common.util.ParameterCheck;
 import de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptModel;
+import de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor;
+import de.axelfaust.alfresco.nashorn.repo.utils.SpecialModuleHandler;
+import jdk.nashorn.api.scripting.JSObject;
 
 /**
+ * This specialisation of the generic module registry separates the modules registered during the initialisation of a script context from
+ * the modules registered during individual script executions. Modules registered during initialisation are shared by all script
+ * executions, while modules registered during a script execution - as well as the initialisation of shared modules that were not
+ * initialised during the initialisation of the script context - are only visible to that script execution.
+ *
  * @author Axel Faust
  */
+@SuppressWarnings("restriction")
 public class RepositoryModuleRegistry extends ModuleRegistry
 {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryModuleRegistry.class);
+
+    private final Map<String, ModuleHolder> sharedModules = new ConcurrentHashMap<>();
+
+    private final Map<String, List<ModuleHolder>> sharedModulesByScriptUrl = new ConcurrentHashMap<>();
+
+    private final Map<String, ModuleHolder> executionModules = NashornScriptModel.newMap();
+
+    private final Map<String, List<ModuleHolder>> executionModulesByScriptUrl = NashornScriptModel.newMap();
+
+    private final Map<ModuleHolder, ModuleHolder> executionCopiesOfSharedModules = NashornScriptModel.newMap();
+
     protected RepositoryModuleRegistry(final RepositoryModuleSystem moduleSystem)
     {
-        super(moduleSystem, NashornScriptModel.newMap(), NashornScriptModel.newMap(), NashornScriptModel.newSet());
+        // module state is managed by this class - failed loads are only tracked for the current initialisation / script execution
+        super(moduleSystem, Collections.emptyMap(), Collections.emptyMap(), NashornScriptModel.newSet());
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Any registrations of a module load are either made during the (single-threaded) initialisation of a script context or in the state
+     * of the current script execution, so there is no need to coordinate concurrent loads of the same module.
+     */
+    @Override
+    protected ModuleHolder loadModule(final String publicModuleId, final ModuleHolder contextModule)
+    {
+        return this.loadModuleImpl(publicModuleId, contextModule);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<ModuleHolder> lookupModulesByScriptUrl(final String scriptUrl)
+    {
+        final List<ModuleHolder> sharedModuleHolders = this.sharedModulesByScriptUrl.getOrDefault(scriptUrl, Collections.emptyList());
+
+        List<ModuleHolder> moduleHolders;
+        if (NashornScriptProcessor.isInEngineContextInitialization())
+        {
+            moduleHolders = sharedModuleHolders;
+        }
+        else
+        {
+            final List<ModuleHolder> executionModuleHolders = this.executionModulesByScriptUrl.get(scriptUrl);
+            if (sharedModuleHolders.isEmpty())
+            {
+                moduleHolders = executionModuleHolders != null ? executionModuleHolders : Collections.emptyList();
+            }
+            else
+            {
+                moduleHolders = new ArrayList<>(sharedModuleHolders.size() + (executionModuleHolders != null ? executionModuleHolders.size() : 0));
+                for (final ModuleHolder sharedModuleHolder : sharedModuleHolders)
+                {
+                    moduleHolders.add(this.getExecutionStateModule(sharedModuleHolder));
+                }
+                if (executionModuleHolders != null)
+                {
+                    moduleHolders.addAll(executionModuleHolders);
+                }
+            }
+        }
+
+        LOGGER.trace("Lookup of modules by script URL {} yielded {}", scriptUrl, moduleHolders);
+        return Collections.unmodifiableList(moduleHolders);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ModuleHolder lookupModuleByScriptUrl(final String scriptUrl)
+    {
+        final List<ModuleHolder> moduleHolders = this.lookupModulesByScriptUrl(scriptUrl);
+        final ModuleHolder moduleHolder = moduleHolders.isEmpty() ? null : moduleHolders.get(moduleHolders.size() - 1);
+        LOGGER.trace("Lookup of (last) module by script URL {} yielded {}", scriptUrl, moduleHolder);
+        return moduleHolder;
+    }
+
+    /**
+     * Looks up the first module by the URL of the script from which it was loaded. All modules loaded from the same script share the loader
+     * module and security context of the script load, so the first module can act as the context module for any module defined by that
+     * script.
+     *
+     * @param scriptUrl
+     *            the URL of the script from which the module was loaded
+     * @return the holder of the first module loaded from the specified script or {@code null} if no module has been loaded from that script
+     *         yet
+     */
+    protected ModuleHolder lookupFirstModuleByScriptUrl(final String scriptUrl)
+    {
+        final List<ModuleHolder> moduleHolders = this.lookupModulesByScriptUrl(scriptUrl);
+        final ModuleHolder moduleHolder = moduleHolders.isEmpty() ? null : moduleHolders.get(0);
+        LOGGER.trace("Lookup of (first) module by script URL {} yielded {}", scriptUrl, moduleHolder);
+        return moduleHolder;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ModuleHolder lookupModuleByPublicModuleId(final String publicModuleId)
+    {
+        ModuleHolder moduleHolder;
+        if (NashornScriptProcessor.isInEngineContextInitialization())
+        {
+            moduleHolder = this.sharedModules.get(publicModuleId);
+        }
+        else
+        {
+            moduleHolder = this.executionModules.get(publicModuleId);
+            if (moduleHolder == null)
+            {
+                moduleHolder = this.sharedModules.get(publicModuleId);
+                if (moduleHolder != null)
+                {
+                    moduleHolder = this.getExecutionStateModule(moduleHolder);
+                }
+            }
+        }
+        LOGGER.trace("Lookup of module by public module ID {} yielded {}", publicModuleId, moduleHolder);
+        return moduleHolder;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void registerModule(final ModuleHolder moduleHolder)
+    {
+        ParameterCheck.mandatory("module", moduleHolder);
+
+        final boolean shared = NashornScriptProcessor.isInEngineContextInitialization();
+        LOGGER.debug("Registering {} (shared: {})", moduleHolder, shared);
+
+        final Map<String, ModuleHolder> modules = shared ? this.sharedModules : this.executionModules;
+        final Map<String, List<ModuleHolder>> modulesByScriptUrl = shared ? this.sharedModulesByScriptUrl
+                : this.executionModulesByScriptUrl;
+
+        final String publicModuleId = moduleHolder.getPublicModuleId();
+        final ModuleHolder oldModule = modules.put(publicModuleId, moduleHolder);
+        final String contextScriptUrl = moduleHolder.getContextScriptUrl();
+        if (contextScriptUrl != null)
+        {
+            List<ModuleHolder> moduleHolders = modulesByScriptUrl.get(contextScriptUrl);
+            if (moduleHolders == null)
+            {
+                moduleHolders = shared ? new CopyOnWriteArrayList<>() : new ArrayList<>();
+                modulesByScriptUrl.put(contextScriptUrl, moduleHolders);
+            }
+            moduleHolders.add(moduleHolder);
+        }
+
+        if (oldModule != null)
+        {
+            LOGGER.debug("Old module {} has been overriden by {} - existing modules may still have references to old module", oldModule,
+                    moduleHolder);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object handleResolvedModuleInstance(final Object moduleInstance, final ModuleHolder module, final ModuleHolder contextModule)
+    {
+        Object resultModuleInstance;
+        if (moduleInstance instanceof SpecialModule)
+        {
+            final SpecialModule specialModule = (SpecialModule) moduleInstance;
+            final String callerUrl = contextModule != null ? contextModule.getContextScriptUrl() : ModuleSystem.getCallerContextScriptUrl();
+            final boolean callerSecure = contextModule != null ? contextModule.isFromSecureSource()
+                    : RepositoryModuleSystem.isInSecurePreload();
+
+            if (specialModule.isSecureUseOnly() && !callerSecure)
+            {
+                throw new SecureModuleException("Access to module '{}' is not allowed for unsecure caller '{}'", module.getNormalizedModuleId(),
+                        callerUrl);
+            }
+
+            final Object wrapped = specialModule.getWrapped();
+            if (specialModule.isCallerBound() && wrapped instanceof JSObject && ((JSObject) wrapped).isFunction())
+            {
+                // module binds itself to the caller once instead of requiring the caller to be tagged on every call
+                resultModuleInstance = ((JSObject) wrapped).call(null, callerUrl);
+            }
+            else if ((specialModule.isCallerTagged() || specialModule.isCallerProvided()) && wrapped instanceof JSObject)
+            {
+                resultModuleInstance = new SpecialModuleHandler((JSObject) wrapped, specialModule.isCallerProvided(),
+                        specialModule.isCallerTagged(), callerUrl, (callback, url) -> {
+                            ModuleSystem.withTaggedCallerContextScriptUrl(url, () -> {
+                                callback.callback();
+                                return null;
+                            });
+                        });
+            }
+            else
+            {
+                resultModuleInstance = wrapped;
+            }
+        }
+        else if (moduleInstance == this.moduleSystem.getRequireFunction() || moduleInstance == this.moduleSystem.getDefineFunction()
+                || moduleInstance instanceof ContextBindableModule)
+        {
+            // the module system's own modules need to be bound to the context module
+            resultModuleInstance = super.handleResolvedModuleInstance(moduleInstance, module, contextModule);
+        }
+        else
+        {
+            resultModuleInstance = moduleInstance;
+        }
+
+        return resultModuleInstance;
+    }
+
+    /**
+     * Retrieves the state of a shared module specific to the current script execution. Shared modules that have not been initialised
+     * during the initialisation of the script context are copied on first access so that their initialisation only affects the current
+     * script execution.
+     *
+     * @param sharedModuleHolder
+     *            the holder of the shared module
+     * @return the holder of the module specific to the current script execution - may be the shared module holder itself if the module
+     *         has already been initialised
+     */
+    protected ModuleHolder getExecutionStateModule(final ModuleHolder sharedModuleHolder)
+    {
+        ModuleHolder moduleHolder = sharedModuleHolder;
+        if (!sharedModuleHolder.isInitialized())
+        {
+            moduleHolder = this.executionCopiesOfSharedModules.get(sharedModuleHolder);
+            if (moduleHolder == null)
+            {
+                moduleHolder = sharedModuleHolder.copyInInitialState(this::getExecutionStateModule);
+                this.executionCopiesOfSharedModules.put(sharedModuleHolder, moduleHolder);
+            }
+        }
+        return moduleHolder;
+    }
 }
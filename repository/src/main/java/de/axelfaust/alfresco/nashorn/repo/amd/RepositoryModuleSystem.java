@@ -13,27 +13,148 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.amd;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import de.axelfaust.alfresco.nashorn.common.amd.ScriptURLResolver;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleHolder;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleLoadService;
 import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleRegistry;
 import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleSystem;
+import de.axelfaust.alfresco.nashorn.common.util.ParameterCheck;
 import jdk.nashorn.api.scripting.JSObject;
-import jdk.nashorn.api.scripting.ScriptObjectMirror;
 
 /**
+ * This specialisation of the generic module system provides the repository-tier AMD API ({@code require.config} with packages,
+ * {@code define.asSpecialModule}, {@code define.preload} etc.) so that it can be used by the script processor instead of the script-based
+ * module system.
+ *
  * @author Axel Faust
  */
 @SuppressWarnings("restriction")
 public class RepositoryModuleSystem extends ModuleSystem
 {
 
-    public RepositoryModuleSystem(final ScriptURLResolver scriptUrlResolver, final ScriptObjectMirror nativeObjectConstructor,
-            final JSObject isolatedScopeBuilder, final JSObject nashornLoader)
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryModuleSystem.class);
+
+    // preloads are only triggered by the script processor itself and act as a secure caller
+    private static final ThreadLocal<Boolean> IN_SECURE_PRELOAD = new ThreadLocal<>();
+
+    /**
+     * Checks if the current thread is currently preloading a module on behalf of the script processor.
+     *
+     * @return {@code true} if the current thread is preloading a module
+     */
+    protected static boolean isInSecurePreload()
+    {
+        final boolean result = Boolean.TRUE.equals(IN_SECURE_PRELOAD.get());
+        return result;
+    }
+
+    public RepositoryModuleSystem(final JSObject nativeObjectConstructor, final JSObject isolatedScopeBuilder, final JSObject nashornLoader)
     {
-        super(scriptUrlResolver, nativeObjectConstructor, isolatedScopeBuilder, nashornLoader);
+        // modules are never resolved to script URLs directly - see RepositoryModuleLoadService
+        super((moduleId, locations) -> {
+            return null;
+        }, nativeObjectConstructor, isolatedScopeBuilder, nashornLoader);
     }
 
     /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerBuiltInModule(final String moduleId, final String contextScriptUrl, final Object moduleValue)
+    {
+        ParameterCheck.mandatoryString("moduleId", moduleId);
+        ParameterCheck.mandatory("moduleValue", moduleValue);
+        super.registerBuiltInModule(moduleId, contextScriptUrl, moduleValue);
+    }
+
+    /**
+     * Preloads a specific module in such a way that its defining script file is loaded to ensure that the module is defined. The module
+     * will only be initialised if it was defined by the specified (or alias) module ID.
      *
+     * @param moduleId
+     *            the ID of the module to preload
+     * @param aliasModuleId
+     *            an alternative ID of the module to be used to lookup / initialize the module after load (in case the moduleId is used to
+     *            load a module which specifies a different module ID in its call to define) - may be {@code null}
+     */
+    public void preloadModule(final String moduleId, final String aliasModuleId)
+    {
+        ParameterCheck.mandatoryString("moduleId", moduleId);
+
+        final RepositoryModuleLoadService moduleLoadService = (RepositoryModuleLoadService) this.moduleLoadService;
+        final RepositoryModuleRegistry moduleRegistry = (RepositoryModuleRegistry) this.moduleRegistry;
+
+        final Boolean inSecurePreload = IN_SECURE_PRELOAD.get();
+        IN_SECURE_PRELOAD.set(Boolean.TRUE);
+        try
+        {
+            final String normalizedModuleId = moduleLoadService.normalizeAndMapModuleId(moduleId, null);
+            if (moduleRegistry.lookupModuleByPublicModuleId(normalizedModuleId) == null)
+            {
+                LOGGER.debug("Pre-loading module {}", normalizedModuleId);
+                moduleRegistry.loadModule(normalizedModuleId, null);
+
+                // if a module has been registered with the expected name (checking alias first) initialize it too
+                final String effectiveModuleId = aliasModuleId != null ? moduleLoadService.normalizeAndMapModuleId(aliasModuleId, null)
+                        : normalizedModuleId;
+                final ModuleHolder module = moduleRegistry.lookupModuleByPublicModuleId(effectiveModuleId);
+                if (module != null && !module.isInitialized())
+                {
+                    LOGGER.debug("Initializing pre-loaded module {}", effectiveModuleId);
+                    moduleRegistry.getOrResolveModule(effectiveModuleId, null);
+                }
+            }
+        }
+        finally
+        {
+            if (inSecurePreload != null)
+            {
+                IN_SECURE_PRELOAD.set(inSecurePreload);
+            }
+            else
+            {
+                IN_SECURE_PRELOAD.remove();
+            }
+        }
+    }
+
+    /**
+     * Looks up the module defined by a specific script file.
+     *
+     * @param scriptUrl
+     *            the URL of the script file
+     * @return the holder of the (last) module defined by the script file or {@code null} if the script file has not defined any module
+     */
+    protected ModuleHolder lookupScriptFileModule(final String scriptUrl)
+    {
+        return ((RepositoryModuleRegistry) this.moduleRegistry).lookupModuleByScriptUrl(scriptUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * In contrast to the generic module system, the first module defined by a script file acts as the context module if the script file has
+     * defined more than one module (e.g. the {@code classpath} and {@code extensible-classpath} loader modules).
+     */
+    @Override
+    protected ModuleHolder getCallerContextModule()
+    {
+        ModuleHolder contextModule = super.getCallerContextModule();
+        if (contextModule == null)
+        {
+            final String contextScriptUrl = getCallerContextScriptUrl();
+            if (contextScriptUrl != null)
+            {
+                contextModule = ((RepositoryModuleRegistry) this.moduleRegistry).lookupFirstModuleByScriptUrl(contextScriptUrl);
+            }
+        }
+        return contextModule;
+    }
+
+    /**
      * {@inheritDoc}
      */
     @Override
@@ -41,4 +162,47 @@ public class RepositoryModuleSystem extends ModuleSystem
     {
         return new RepositoryModuleRegistry(this);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ModuleLoadService buildModuleLoadService(final ScriptURLResolver scriptUrlResolver, final JSObject isolatedScopeBuilder,
+            final JSObject nashornLoader)
+    {
+        return new RepositoryModuleLoadService(this, isolatedScopeBuilder, nashornLoader);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected JSObject buildRequireFunction()
+    {
+        final RepositoryModuleLoadService moduleLoadService = (RepositoryModuleLoadService) this.moduleLoadService;
+        return new RepositoryRequireFunction(this, (packageName, loaderModuleId, location) -> {
+            moduleLoadService.addPackage(packageName, loaderModuleId, location);
+        }, (moduleIdPrefix, mappings) -> {
+            moduleLoadService.setMappings(moduleIdPrefix, mappings);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected JSObject buildDefineFunction()
+    {
+        final JSObject amd = this.newNativeObject();
+        final JSObject supportedModuleFlags = (JSObject) amd.eval("[]");
+        for (int idx = 0; idx < SpecialModule.SUPPORTED_FLAGS.size(); idx++)
+        {
+            supportedModuleFlags.setSlot(idx, SpecialModule.SUPPORTED_FLAGS.get(idx));
+        }
+        supportedModuleFlags.eval("Object.freeze(this);");
+        amd.setMember("supportedModuleFlags", supportedModuleFlags);
+        amd.eval("Object.freeze(this);");
+
+        return new RepositoryDefineFunction(this, amd);
+    }
 }
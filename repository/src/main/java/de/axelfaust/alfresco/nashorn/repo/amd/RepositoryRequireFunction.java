@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.amd;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.axelfaust.alfresco.nashorn.common.amd.ModuleSystemRuntimeException;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleHolder;
+import de.axelfaust.alfresco.nashorn.common.amd.core.ModuleSystem;
+import de.axelfaust.alfresco.nashorn.common.amd.modules.ConfigFunction.MappingsConfigHandle;
+import de.axelfaust.alfresco.nashorn.common.amd.modules.RequireFunction;
+import de.axelfaust.alfresco.nashorn.common.util.LambdaJavaScriptFunction;
+import de.axelfaust.alfresco.nashorn.repo.amd.RepositoryConfigFunction.PackagesConfigHandle;
+import jdk.nashorn.api.scripting.JSObject;
+
+/**
+ * This specialisation of the generic {@code require} function provides the additional members of the repository-tier AMD API as
+ * previously provided by the script-based module system.
+ *
+ * @author Axel Faust
+ */
+@SuppressWarnings("restriction")
+public class RepositoryRequireFunction extends RequireFunction
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryRequireFunction.class);
+
+    protected final JSObject repositoryConfigFunction;
+
+    public RepositoryRequireFunction(final RepositoryModuleSystem moduleSystem, final PackagesConfigHandle packagesConfigHandle,
+            final MappingsConfigHandle mappingsConfigHandle)
+    {
+        super(moduleSystem, RepositoryConfigFunction.UNSUPPORTED_PATHS_CONFIG_HANDLE, mappingsConfigHandle);
+
+        this.repositoryConfigFunction = new RepositoryConfigFunction(packagesConfigHandle, mappingsConfigHandle);
+
+        final LambdaJavaScriptFunction getScriptFileModuleId = new LambdaJavaScriptFunction((thiz, args) -> {
+            final String scriptUrl = args.length > 0 && args[0] != null ? String.valueOf(args[0]) : null;
+            final ModuleHolder module = scriptUrl != null ? moduleSystem.lookupScriptFileModule(scriptUrl) : null;
+            final String moduleId = module != null ? module.getModuleId() : null;
+            LOGGER.debug("Determined module id {} for script url {}", moduleId, scriptUrl);
+            return moduleId;
+        });
+        this.setMemberImpl("getScriptFileModuleId", getScriptFileModuleId, false);
+
+        final LambdaJavaScriptFunction getScriptFileModuleLoader = new LambdaJavaScriptFunction((thiz, args) -> {
+            final String scriptUrl = args.length > 0 && args[0] != null ? String.valueOf(args[0]) : null;
+            final ModuleHolder module = scriptUrl != null ? moduleSystem.lookupScriptFileModule(scriptUrl) : null;
+            final String loaderModuleId = module != null ? module.getLoaderModuleId() : null;
+            LOGGER.debug("Determined module loader id {} for script url {}", loaderModuleId, scriptUrl);
+            return loaderModuleId;
+        });
+        this.setMemberImpl("getScriptFileModuleLoader", getScriptFileModuleLoader, false);
+
+        final LambdaJavaScriptFunction withTaggedCallerScript = new LambdaJavaScriptFunction((thiz, args) -> {
+            Object result = null;
+            if (args.length > 0 && args[0] instanceof JSObject && ((JSObject) args[0]).isFunction())
+            {
+                final JSObject callback = (JSObject) args[0];
+                final boolean untaggedOnly = args.length > 1 && Boolean.TRUE.equals(args[1]);
+
+                // we want to tag the caller of the calling script, so need to skip one layer
+                final String contextScriptUrl = untaggedOnly && !ModuleSystem.isInUntaggedContext()
+                        ? ModuleSystem.getCallerContextScriptUrl() : ModuleSystem.getCallerContextScriptUrl(true, 1);
+
+                if (contextScriptUrl != null)
+                {
+                    LOGGER.debug("Executing function {} with tagged script caller {}", callback, contextScriptUrl);
+                    result = ModuleSystem.withTaggedCallerContextScriptUrl(contextScriptUrl, () -> {
+                        return callback.call(null);
+                    });
+                }
+                else
+                {
+                    LOGGER.debug("Executing function {} without tagged script caller as no caller could be determined", callback);
+                    result = callback.call(null);
+                }
+            }
+            else
+            {
+                LOGGER.info("Attempted to execute function with a tagged script caller, but provided no callback function to execute");
+            }
+            return result;
+        });
+        this.setMemberImpl("withTaggedCallerScript", withTaggedCallerScript, false);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getMember(final String name)
+    {
+        Objects.requireNonNull(name);
+
+        Object memberValue;
+        if ("config".equals(name))
+        {
+            // access to config function should only be granted in a global scope
+            if (!ModuleSystem.isInUntaggedContext())
+            {
+                throw new ModuleSystemRuntimeException("'require.config' is only accessible in a global scope");
+            }
+            memberValue = this.repositoryConfigFunction;
+        }
+        else
+        {
+            memberValue = super.getMember(name);
+        }
+        return memberValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The error callback is invoked with the signature {@code (dependencies, modules, implicitResults)} of the script-based module system.
+     * Since any implicit result of loading a script is registered as the value of the module itself, the list of implicit results is
+     * identical to the list of resolved modules.
+     */
+    @Override
+    protected Object invokeErrorCallback(final JSObject errorCallback, final List<String> requiredModuleIds, final Object[] resolvedModules,
+            final Object[] resolutionErrors)
+    {
+        final String[] dependencies = requiredModuleIds.toArray(new String[0]);
+        return errorCallback.call(null, new Object[] { dependencies, resolvedModules, resolvedModules });
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.amd;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Instances of this class wrap a module instance that has been tagged as requiring special handling when it is resolved for a caller, as
+ * supported by the {@code define.asSpecialModule} API.
+ *
+ * @author Axel Faust
+ */
+public class SpecialModule
+{
+
+    public static final String FLAG_SECURE_USE_ONLY = "secureUseOnly";
+
+    public static final String FLAG_CALLER_TAGGED = "callerTagged";
+
+    public static final String FLAG_CALLER_PROVIDED = "callerProvided";
+
+    public static final String FLAG_CALLER_BOUND = "callerBound";
+
+    public static final List<String> SUPPORTED_FLAGS = Collections
+            .unmodifiableList(Arrays.asList(FLAG_SECURE_USE_ONLY, FLAG_CALLER_TAGGED, FLAG_CALLER_PROVIDED, FLAG_CALLER_BOUND));
+
+    protected final Object wrapped;
+
+    protected final boolean secureUseOnly;
+
+    protected final boolean callerTagged;
+
+    protected final boolean callerProvided;
+
+    protected final boolean callerBound;
+
+    public SpecialModule(final Object wrapped, final boolean secureUseOnly, final boolean callerTagged, final boolean callerProvided,
+            final boolean callerBound)
+    {
+        this.wrapped = wrapped;
+        this.secureUseOnly = secureUseOnly;
+        this.callerTagged = callerTagged;
+        this.callerProvided = callerProvided;
+        this.callerBound = callerBound;
+    }
+
+    /**
+     * @return the wrapped
+     */
+    public Object getWrapped()
+    {
+        return this.wrapped;
+    }
+
+    /**
+     * @return the secureUseOnly
+     */
+    public boolean isSecureUseOnly()
+    {
+        return this.secureUseOnly;
+    }
+
+    /**
+     * @return the callerTagged
+     */
+    public boolean isCallerTagged()
+    {
+        return this.callerTagged;
+    }
+
+    /**
+     * @return the callerProvided
+     */
+    public boolean isCallerProvided()
+    {
+        return this.callerProvided;
+    }
+
+    /**
+     * @return the callerBound
+     */
+    public boolean isCallerBound()
+    {
+        return this.callerBound;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "SpecialModule [wrapped=" + this.wrapped + ", secureUseOnly=" + this.secureUseOnly + ", callerTagged=" + this.callerTagged
+                + ", callerProvided=" + this.callerProvided + ", callerBound=" + this.callerBound + "]";
+    }
+}
@@ -13,13 +13,19 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.loaders;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.Date;
 import java.text.MessageFormat;
 
@@ -30,6 +36,7 @@ import org.alfresco.scripts.ScriptException;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.alfresco.util.EqualsHelper;
 import org.alfresco.util.ParameterCheck;
 import org.alfresco.util.TempFileProvider;
 import org.apache.commons.io.IOUtils;
@@ -62,10 +69,37 @@ public abstract class AbstractNodeScriptFile implements ScriptFile
 
     protected transient long size = -1;
 
+    protected final ScriptSourceCache sourceCache;
+
+    protected final NodeScriptInvalidationHandler invalidationHandler;
+
+    protected transient long lastModified = -1;
+
+    protected transient String invalidationMarker;
+
+    protected final String cacheFileBaseName;
+
+    protected transient long cacheGeneration = 0;
+
     protected transient File cacheFile;
 
+    protected transient ByteBuffer mappedCacheFile;
+
     public AbstractNodeScriptFile(final NodeRef nodeRef, final NodeService nodeService,
             final RetryingTransactionHelper retryingTransactionHelper)
+    {
+        this(nodeRef, nodeService, retryingTransactionHelper, null);
+    }
+
+    public AbstractNodeScriptFile(final NodeRef nodeRef, final NodeService nodeService,
+            final RetryingTransactionHelper retryingTransactionHelper, final ScriptSourceCache sourceCache)
+    {
+        this(nodeRef, nodeService, retryingTransactionHelper, sourceCache, null);
+    }
+
+    public AbstractNodeScriptFile(final NodeRef nodeRef, final NodeService nodeService,
+            final RetryingTransactionHelper retryingTransactionHelper, final ScriptSourceCache sourceCache,
+            final NodeScriptInvalidationHandler invalidationHandler)
     {
         ParameterCheck.mandatory("nodeRef", nodeRef);
         ParameterCheck.mandatory("nodeService", nodeService);
@@ -74,9 +108,13 @@ public abstract class AbstractNodeScriptFile implements ScriptFile
         this.nodeRef = nodeRef;
         this.nodeService = nodeService;
         this.retryingTransactionHelper = retryingTransactionHelper;
+        this.sourceCache = sourceCache;
+        this.invalidationHandler = invalidationHandler;
 
-        this.cacheFile = new File(CACHE_DIRECTORY, MessageFormat.format("{0}-{1}-{2}.js", nodeRef.getStoreRef().getProtocol(), nodeRef
-                .getStoreRef().getIdentifier(), nodeRef.getId()));
+        this.cacheFileBaseName = MessageFormat.format("{0}-{1}-{2}", nodeRef.getStoreRef().getProtocol(),
+                nodeRef.getStoreRef().getIdentifier(), nodeRef.getId());
+        this.cacheFile = new File(CACHE_DIRECTORY, MessageFormat.format("{0}-{1}.js", this.cacheFileBaseName,
+                String.valueOf(this.cacheGeneration)));
     }
 
     /**
@@ -132,30 +170,40 @@ public abstract class AbstractNodeScriptFile implements ScriptFile
     @Override
     public long getLastModified(final boolean force)
     {
-        final Date modified = this.retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<Date>()
+        final long lastModified;
+        if (this.invalidationHandler != null && !force)
         {
-
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public Date execute()
+            // rely on pushed invalidations instead of reading cm:modified in a transaction on every call
+            // a (seeded) marker is never null, so an evicted marker is detected as a change and causes a revalidation
+            final String invalidationMarker = this.invalidationHandler.getOrSeedInvalidationMarker(this.nodeRef);
+            synchronized (this)
             {
-                final Serializable value = AbstractNodeScriptFile.this.nodeService.getProperty(AbstractNodeScriptFile.this.nodeRef,
-                        ContentModel.PROP_MODIFIED);
-                final Date modified = DefaultTypeConverter.INSTANCE.convert(Date.class, value);
-                return modified;
+                if (this.lastModified == -1 || !EqualsHelper.nullSafeEquals(invalidationMarker, this.invalidationMarker))
+                {
+                    if (this.lastModified != -1)
+                    {
+                        LOGGER.debug("Script node {} has been invalidated - discarding cached script", this.nodeRef);
+                        this.size = -1;
+                        this.discardCachedScript();
+                    }
+
+                    this.invalidationMarker = invalidationMarker;
+                    this.lastModified = this.readLastModified();
+                }
+                lastModified = this.lastModified;
             }
-        });
-
-        final long lastModified = modified != null ? modified.getTime() : System.currentTimeMillis();
-
-        if (this.cacheLastModified != -1 && lastModified > this.cacheLastModified)
+        }
+        else
         {
-            synchronized (this)
+            lastModified = this.readLastModified();
+
+            if (this.cacheLastModified != -1 && lastModified > this.cacheLastModified)
             {
-                this.size = -1;
-                this.cacheFile.delete();
+                synchronized (this)
+                {
+                    this.size = -1;
+                    this.discardCachedScript();
+                }
             }
         }
 
@@ -166,30 +214,40 @@ public abstract class AbstractNodeScriptFile implements ScriptFile
      * {@inheritDoc}
      */
     @Override
-    public synchronized InputStream getInputStream()
+    public InputStream getInputStream()
     {
-        InputStream is;
+        return new ByteBufferInputStream(this.getByteBuffer());
+    }
 
-        if (!this.cacheFile.exists())
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized ByteBuffer getByteBuffer()
+    {
+        ByteBuffer buffer = this.openCachedScriptBuffer();
+        if (buffer == null)
         {
             this.cacheScriptFile();
+            buffer = this.openCachedScriptBuffer();
         }
 
-        if (!this.cacheFile.exists())
+        if (buffer == null)
         {
             throw new ScriptException("Script can't be loaded");
         }
 
-        try
-        {
-            is = new FileInputStream(this.cacheFile);
-        }
-        catch (final IOException ioex)
-        {
-            throw new ScriptException("Error loading cached script file", ioex);
-        }
+        return buffer;
+    }
 
-        return is;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCachedSize()
+    {
+        final long size = this.size;
+        return size > 0 ? size : 0;
     }
 
     /**
@@ -199,31 +257,135 @@ public abstract class AbstractNodeScriptFile implements ScriptFile
     public synchronized void reset()
     {
         this.size = -1;
-        this.cacheFile.delete();
-
+        this.lastModified = -1;
+        this.discardCachedScript();
     }
 
     protected abstract InputStream getInputStreamInternal();
 
+    protected long readLastModified()
+    {
+        final Date modified = this.retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<Date>()
+        {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Date execute()
+            {
+                final Serializable value = AbstractNodeScriptFile.this.nodeService.getProperty(AbstractNodeScriptFile.this.nodeRef,
+                        ContentModel.PROP_MODIFIED);
+                final Date modified = DefaultTypeConverter.INSTANCE.convert(Date.class, value);
+                return modified;
+            }
+        });
+
+        final long lastModified = modified != null ? modified.getTime() : System.currentTimeMillis();
+        return lastModified;
+    }
+
+    protected synchronized ByteBuffer openCachedScriptBuffer()
+    {
+        ByteBuffer buffer = null;
+
+        final byte[] content = this.sourceCache != null ? this.sourceCache.get(this.cacheFile.getName()) : null;
+        if (content != null)
+        {
+            buffer = ByteBuffer.wrap(content).asReadOnlyBuffer();
+        }
+        else
+        {
+            if (this.mappedCacheFile == null && this.cacheFile.exists())
+            {
+                try (final FileChannel channel = FileChannel.open(this.cacheFile.toPath(), StandardOpenOption.READ))
+                {
+                    this.mappedCacheFile = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                }
+                catch (final IOException ioex)
+                {
+                    throw new ScriptException("Error loading cached script file", ioex);
+                }
+            }
+
+            if (this.mappedCacheFile != null)
+            {
+                buffer = this.mappedCacheFile.asReadOnlyBuffer();
+            }
+        }
+
+        return buffer;
+    }
+
+    protected synchronized void discardCachedScript()
+    {
+        if (this.sourceCache != null)
+        {
+            this.sourceCache.remove(this.cacheFile.getName());
+        }
+        this.mappedCacheFile = null;
+        // a file still mapped by a buffer handed out earlier cannot be deleted on some platforms (e.g. Windows)
+        if (this.cacheFile.exists() && !this.cacheFile.delete())
+        {
+            LOGGER.debug("Cache file {} could not be deleted - scheduling deletion on exit", this.cacheFile);
+            this.cacheFile.deleteOnExit();
+        }
+
+        // switch to new file name so a concurrent eviction from the source cache cannot resurrect discarded content
+        this.cacheGeneration++;
+        this.cacheFile = new File(CACHE_DIRECTORY, MessageFormat.format("{0}-{1}.js", this.cacheFileBaseName,
+                String.valueOf(this.cacheGeneration)));
+    }
+
+    protected void writeCacheFile(final InputStream is) throws IOException
+    {
+        // never overwrite cache file in place as it may still be memory mapped
+        this.mappedCacheFile = null;
+        final File tempFile = new File(this.cacheFile.getParentFile(), this.cacheFile.getName() + ".tmp");
+        try (final OutputStream os = new FileOutputStream(tempFile, false))
+        {
+            IOUtils.copy(is, os);
+        }
+
+        Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     protected synchronized void cacheScriptFile()
     {
         try
         {
-            try (final InputStream is = new StrictScriptEnforcingSourceInputStream(this.getInputStreamInternal()))
+            if (this.sourceCache != null)
             {
-                try (final OutputStream os = new FileOutputStream(this.cacheFile, false))
+                final byte[] content;
+                try (final InputStream is = new StrictScriptEnforcingSourceInputStream(this.getInputStreamInternal()))
+                {
+                    content = IOUtils.toByteArray(is);
+                }
+
+                this.mappedCacheFile = null;
+                if (!this.sourceCache.put(this.cacheFile.getName(), content, this.cacheFile))
                 {
-                    IOUtils.copy(is, os);
+                    // exceeds in-memory budget
+                    this.writeCacheFile(new ByteArrayInputStream(content));
                 }
+
+                this.size = content.length;
             }
+            else
+            {
+                try (final InputStream is = new StrictScriptEnforcingSourceInputStream(this.getInputStreamInternal()))
+                {
+                    this.writeCacheFile(is);
+                }
 
-            this.size = this.cacheFile.length();
+                this.size = this.cacheFile.length();
+            }
         }
         catch (final IOException ioex)
         {
             LOGGER.debug("Error caching script file", ioex);
 
-            this.cacheFile.delete();
+            this.discardCachedScript();
             this.size = -1;
 
             throw new ScriptException("Script can't be loaded", ioex);
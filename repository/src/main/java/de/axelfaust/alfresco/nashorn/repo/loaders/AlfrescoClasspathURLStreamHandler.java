@@ -21,9 +21,10 @@ import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.alfresco.util.Pair;
 import org.alfresco.util.PropertyCheck;
@@ -51,9 +52,26 @@ public class AlfrescoClasspathURLStreamHandler extends URLStreamHandler
 
     protected String extensionPath;
 
-    protected final Map<Pair<String, Boolean>, List<String>> precedenceChainByScript = new HashMap<Pair<String, Boolean>, List<String>>();
+    protected ScriptSourceCache scriptSourceCache;
 
-    protected final Map<String, ScriptFile> scriptHandles = new HashMap<String, ScriptFile>();
+    protected ClasspathScriptFileWatcher classpathScriptFileWatcher;
+
+    protected boolean indexScripts = true;
+
+    protected ClasspathScriptIndex scriptIndex;
+
+    protected final ConcurrentMap<Pair<String, Boolean>, List<String>> precedenceChainByScript = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<String, ScriptFile> scriptHandles = new ConcurrentHashMap<String, ScriptFile>();
+
+    protected int resolutionCacheMaxEntries = 10000;
+
+    protected long resolutionTimeToLive = 300000;
+
+    protected long unresolvableTimeToLive = 30000;
+
+    // resolutions of URLs to the effective script path of their precedence chain - only used if the index keeps it up-to-date
+    protected ResolutionCache<String> resolutionCache = new ResolutionCache<>();
 
     {
         try
@@ -104,6 +122,18 @@ public class AlfrescoClasspathURLStreamHandler extends URLStreamHandler
     {
         PropertyCheck.mandatory(this, "registry", this.registry);
 
+        this.resolutionCache = new ResolutionCache<>(this.resolutionCacheMaxEntries, this.resolutionTimeToLive,
+                this.unresolvableTimeToLive);
+        if (this.indexScripts && this.basePath != null && !this.basePath.trim().isEmpty())
+        {
+            this.scriptIndex = new ClasspathScriptIndex(this.basePath.trim(), ClasspathScriptFile.class.getClassLoader(),
+                    this.classpathScriptFileWatcher);
+            // any change of indexed scripts may affect the effective script of a precedence chain
+            this.scriptIndex.setChangeListener(this.resolutionCache::clear);
+            this.scriptIndex.refresh();
+            CacheableResolutionURLConnection.registerCachedResolutions("classpath", this.resolutionCache);
+        }
+
         this.registry.register(this);
     }
 
@@ -113,7 +143,7 @@ public class AlfrescoClasspathURLStreamHandler extends URLStreamHandler
     @Override
     public void destroy()
     {
-        this.reset();
+        this.scriptHandles.values().forEach(x -> x.reset());
     }
 
     /**
@@ -123,6 +153,50 @@ public class AlfrescoClasspathURLStreamHandler extends URLStreamHandler
     public void reset()
     {
         this.scriptHandles.values().forEach(x -> x.reset());
+
+        if (this.scriptIndex != null)
+        {
+            // only re-indexes file system roots not kept up-to-date by the watcher - JAR contents do not change at runtime
+            this.scriptIndex.refresh();
+        }
+        this.resolutionCache.clear();
+    }
+
+    /**
+     * @return the number of script handles currently registered in this instance
+     */
+    public int getScriptHandleCount()
+    {
+        return this.scriptHandles.size();
+    }
+
+    /**
+     * @return the number of bytes of script content currently cached by the script handles registered in this instance
+     */
+    public long getCachedScriptBytes()
+    {
+        long cachedBytes = 0;
+        for (final ScriptFile scriptFile : this.scriptHandles.values())
+        {
+            cachedBytes += scriptFile.getCachedSize();
+        }
+        return cachedBytes;
+    }
+
+    /**
+     * @return the number of URL resolutions currently cached
+     */
+    public int getCachedResolutionCount()
+    {
+        return this.resolutionCache.size();
+    }
+
+    /**
+     * @return the number of script paths in the index of classpath resources
+     */
+    public int getIndexedScriptCount()
+    {
+        return this.scriptIndex != null ? this.scriptIndex.getSize() : 0;
     }
 
     /**
@@ -152,6 +226,60 @@ public class AlfrescoClasspathURLStreamHandler extends URLStreamHandler
         this.extensionPath = extensionPath;
     }
 
+    /**
+     * @param scriptSourceCache
+     *            the scriptSourceCache to set
+     */
+    public void setScriptSourceCache(final ScriptSourceCache scriptSourceCache)
+    {
+        this.scriptSourceCache = scriptSourceCache;
+    }
+
+    /**
+     * @param classpathScriptFileWatcher
+     *            the classpathScriptFileWatcher to set
+     */
+    public void setClasspathScriptFileWatcher(final ClasspathScriptFileWatcher classpathScriptFileWatcher)
+    {
+        this.classpathScriptFileWatcher = classpathScriptFileWatcher;
+    }
+
+    /**
+     * @param indexScripts
+     *            the indexScripts to set
+     */
+    public void setIndexScripts(final boolean indexScripts)
+    {
+        this.indexScripts = indexScripts;
+    }
+
+    /**
+     * @param resolutionCacheMaxEntries
+     *            the resolutionCacheMaxEntries to set
+     */
+    public void setResolutionCacheMaxEntries(final int resolutionCacheMaxEntries)
+    {
+        this.resolutionCacheMaxEntries = resolutionCacheMaxEntries;
+    }
+
+    /**
+     * @param resolutionTimeToLive
+     *            the resolutionTimeToLive to set
+     */
+    public void setResolutionTimeToLive(final long resolutionTimeToLive)
+    {
+        this.resolutionTimeToLive = resolutionTimeToLive;
+    }
+
+    /**
+     * @param unresolvableTimeToLive
+     *            the unresolvableTimeToLive to set
+     */
+    public void setUnresolvableTimeToLive(final long unresolvableTimeToLive)
+    {
+        this.unresolvableTimeToLive = unresolvableTimeToLive;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -170,95 +298,145 @@ public class AlfrescoClasspathURLStreamHandler extends URLStreamHandler
             script = url.getPath();
         }
 
-        final List<String> precendenceChain = this.getOrCreatePrecedenceChain(script, allowExtension);
+        final String resolutionKey = this.scriptIndex != null ? url.getProtocol() + ":" + url.getPath() : null;
+        final ResolutionCache.Resolution<String> cachedResolution = resolutionKey != null ? this.resolutionCache.get(resolutionKey) : null;
 
         URLConnection con = null;
-        for (final String potentialScript : precendenceChain)
+        if (cachedResolution != null)
         {
-            ScriptFile scriptFile = this.scriptHandles.get(potentialScript);
-            if (scriptFile == null)
+            if (cachedResolution.isUnresolvable())
             {
-                scriptFile = new ClasspathScriptFile(potentialScript);
-                this.scriptHandles.put(potentialScript, scriptFile);
+                throw new IOException("Script " + url + " does not exist");
             }
 
+            final ScriptFile scriptFile = this.getOrCreateScriptHandle(cachedResolution.getValue());
             if (scriptFile.exists(false))
             {
                 con = new ScriptFileURLConnection(url, scriptFile);
-                break;
+            }
+            else
+            {
+                this.resolutionCache.invalidate(resolutionKey, cachedResolution);
             }
         }
 
         if (con == null)
         {
-            throw new IOException("Script " + url + " does not exist");
+            // resolution may only be cached if the index will report any change affecting the candidates checked (contents of JAR files
+            // without directory entries never change at runtime)
+            boolean cacheable = resolutionKey != null;
+            final List<String> precendenceChain = this.getOrCreatePrecedenceChain(script, allowExtension);
+            for (final String potentialScript : precendenceChain)
+            {
+                final boolean covered = this.scriptIndex != null && this.scriptIndex.covers(potentialScript);
+                cacheable = cacheable && covered;
+
+                // scripts missing from the index may still exist in JAR files without directory entries - a plain class loader probe
+                // avoids creating handles for scripts that do not exist
+                if (!covered || this.scriptIndex.contains(potentialScript) || this.scriptIndex.probe(potentialScript))
+                {
+                    final ScriptFile scriptFile = this.getOrCreateScriptHandle(potentialScript);
+                    if (scriptFile.exists(false))
+                    {
+                        con = new ScriptFileURLConnection(url, scriptFile);
+                        if (cacheable)
+                        {
+                            this.resolutionCache.put(resolutionKey, potentialScript);
+                        }
+                        break;
+                    }
+                }
+            }
+
+            if (con == null)
+            {
+                if (cacheable)
+                {
+                    this.resolutionCache.putUnresolvable(resolutionKey);
+                }
+                throw new IOException("Script " + url + " does not exist");
+            }
         }
 
         return con;
     }
 
+    protected ScriptFile getOrCreateScriptHandle(final String script)
+    {
+        // single-flight creation - concurrent callers must share the same handle (and cache file) for a script
+        final ScriptFile scriptFile = this.scriptHandles.computeIfAbsent(script,
+                x -> new ClasspathScriptFile(x, this.scriptSourceCache, this.classpathScriptFileWatcher));
+        return scriptFile;
+    }
+
     protected List<String> getOrCreatePrecedenceChain(final String script, final boolean allowExtension)
     {
         final Pair<String, Boolean> key = new Pair<String, Boolean>(script, Boolean.valueOf(allowExtension));
         List<String> precendenceChain = this.precedenceChainByScript.get(key);
         if (precendenceChain == null)
         {
-            precendenceChain = new ArrayList<String>();
-            this.precedenceChainByScript.put(key, precendenceChain);
+            // chain must be complete before it is published to concurrent callers
+            precendenceChain = this.precedenceChainByScript.computeIfAbsent(key, x -> this.createPrecedenceChain(script, allowExtension));
+        }
+        return precendenceChain;
+    }
 
-            if (script.endsWith(".js") || script.endsWith(".nashornjs"))
-            {
-                precendenceChain.add(script);
-            }
-            else
-            {
-                final StringBuilder pathBuilder = new StringBuilder(script);
+    protected List<String> createPrecedenceChain(final String script, final boolean allowExtension)
+    {
+        final List<String> precendenceChain = new ArrayList<String>();
+
+        if (script.endsWith(".js") || script.endsWith(".nashornjs"))
+        {
+            precendenceChain.add(script);
+        }
+        else
+        {
+            final StringBuilder pathBuilder = new StringBuilder(script);
 
-                final int basePathLength = this.basePath != null ? this.basePath.trim().length() : 0;
-                final int extensionPathLength = allowExtension && this.extensionPath != null ? this.extensionPath.trim().length() : 0;
+            final int basePathLength = this.basePath != null ? this.basePath.trim().length() : 0;
+            final int extensionPathLength = allowExtension && this.extensionPath != null ? this.extensionPath.trim().length() : 0;
 
-                for (final String suffix : SUFFIX_PRECEDENCE_LIST)
+            for (final String suffix : SUFFIX_PRECEDENCE_LIST)
+            {
+                if (suffix != null)
+                {
+                    pathBuilder.append(suffix);
+                }
+
+                if (extensionPathLength > 0)
                 {
-                    if (suffix != null)
+                    if (basePathLength > 0)
                     {
-                        pathBuilder.append(suffix);
+                        pathBuilder.insert(basePathLength, '/');
+                        pathBuilder.insert(basePathLength + 1, this.extensionPath);
                     }
-
-                    if (extensionPathLength > 0)
+                    else
                     {
-                        if (basePathLength > 0)
-                        {
-                            pathBuilder.insert(basePathLength, '/');
-                            pathBuilder.insert(basePathLength + 1, this.extensionPath);
-                        }
-                        else
-                        {
-                            pathBuilder.insert(0, this.extensionPath);
-                            pathBuilder.insert(extensionPathLength, '/');
-                        }
-
-                        precendenceChain.add(pathBuilder.toString());
-
-                        if (basePathLength > 0)
-                        {
-                            pathBuilder.delete(basePathLength, basePathLength + extensionPathLength + 1);
-                        }
-                        else
-                        {
-                            pathBuilder.delete(0, extensionPathLength + 1);
-                        }
+                        pathBuilder.insert(0, this.extensionPath);
+                        pathBuilder.insert(extensionPathLength, '/');
                     }
 
                     precendenceChain.add(pathBuilder.toString());
 
-                    if (suffix != null)
+                    if (basePathLength > 0)
                     {
-                        pathBuilder.delete(pathBuilder.length() - suffix.length(), pathBuilder.length());
+                        pathBuilder.delete(basePathLength, basePathLength + extensionPathLength + 1);
+                    }
+                    else
+                    {
+                        pathBuilder.delete(0, extensionPathLength + 1);
                     }
                 }
+
+                precendenceChain.add(pathBuilder.toString());
+
+                if (suffix != null)
+                {
+                    pathBuilder.delete(pathBuilder.length() - suffix.length(), pathBuilder.length());
+                }
             }
         }
-        return precendenceChain;
+        return Collections.unmodifiableList(precendenceChain);
     }
 
 }
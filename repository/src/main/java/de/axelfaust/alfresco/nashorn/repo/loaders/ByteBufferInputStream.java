@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.alfresco.util.ParameterCheck;
+
+/**
+ * Instances of this class provide stream access to the remaining content of a {@link ByteBuffer} (e.g. a memory mapped script file)
+ * without copying the content to an intermediary array.
+ *
+ * @author Axel Faust
+ */
+public class ByteBufferInputStream extends InputStream
+{
+
+    protected final ByteBuffer buffer;
+
+    public ByteBufferInputStream(final ByteBuffer buffer)
+    {
+        ParameterCheck.mandatory("buffer", buffer);
+        this.buffer = buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read()
+    {
+        final int read = this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+    {
+        if (off < 0 || len < 0 || len > b.length - off)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int read;
+        if (len == 0)
+        {
+            read = 0;
+        }
+        else if (!this.buffer.hasRemaining())
+        {
+            read = -1;
+        }
+        else
+        {
+            read = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, read);
+        }
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long skip(final long n)
+    {
+        final int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+        this.buffer.position(this.buffer.position() + skipped);
+        return skipped;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int available()
+    {
+        return this.buffer.remaining();
+    }
+}
@@ -18,41 +18,265 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import org.alfresco.util.Pair;
 import org.alfresco.util.ParameterCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.ResolutionCache.Resolution;
 
 /**
- * Instances of this base class internally use String to {@link URL} resolutions that are cacheable by nature to avoid incurring repeating
- * resolution costs. This base class serves as a uniform entry point for client code that needs to universally or selective clear cached
- * resolutions, i.e. to ensure new script files are picked up.
+ * This base class serves as a uniform entry point for client code that needs to universally or selectively inspect or clear the String to
+ * {@link URL} resolutions that are cached by the URL stream handlers of the various script loaders, i.e. to ensure new script files are
+ * picked up. The actual resolution caches are held by the individual stream handlers, which register them for their kind of cached
+ * resolutions (typically the URL protocol they handle). Each kind is kept separately so that clearing one kind never needs to touch (or
+ * lock) the resolutions of other kinds.
  *
  * @author Axel Faust
  */
 public abstract class CacheableResolutionURLConnection extends URLConnection
 {
 
-    // TODO Expose cached resolutions and sentinels via admin console tool
+    /**
+     * Instances of this interface provide access to the cached resolutions of one kind. Implementations must clear their resolutions in
+     * constant time without blocking concurrent resolvers, e.g. by replacing their internal data structures or by invalidating entries
+     * lazily.
+     *
+     * @author Axel Faust
+     */
+    public static interface CachedResolutions
+    {
 
-    @FunctionalInterface
-    protected static interface CacheReset
+        /**
+         * Clears all cached resolutions.
+         */
+        public void clear();
+
+        /**
+         * Clears all cached resolutions that failed to produce a script to enable retries at resolving the corresponding keys.
+         */
+        public void clearUnresolvable();
+
+        /**
+         * Clears a single cached resolution.
+         *
+         * @param resolutionKey
+         *            the key of the resolution to clear
+         * @return {@code true} if a resolution was cached for the key, {@code false} otherwise
+         */
+        public boolean clear(String resolutionKey);
+
+        /**
+         * Lists the currently cached resolutions.
+         *
+         * @return the cached resolutions
+         */
+        public List<CachedResolution> list();
+
+        /**
+         * Retrieves the statistics of the cached resolutions.
+         *
+         * @return the current statistics
+         */
+        public CachedResolutionStatistics getStatistics();
+    }
+
+    /**
+     * Instances of this class describe a single cached resolution for inspection by administrative tools.
+     *
+     * @author Axel Faust
+     */
+    public static class CachedResolution
     {
 
-        public void resetCache();
+        protected final String key;
+
+        protected final String tenant;
+
+        protected final String resolution;
+
+        protected final long expiresAt;
+
+        /**
+         * Creates a new description of a cached resolution.
+         *
+         * @param key
+         *            the key of the resolution
+         * @param tenant
+         *            the tenant domain the resolution is specific to, or {@code null} if the resolution is not tenant-specific
+         * @param resolution
+         *            the description of the resolved script, or {@code null} if the resolution failed to produce a script
+         * @param expiresAt
+         *            the time (in milliseconds since the epoch) at which the resolution expires, or {@link Long#MAX_VALUE} if the
+         *            resolution does not expire
+         */
+        public CachedResolution(final String key, final String tenant, final String resolution, final long expiresAt)
+        {
+            ParameterCheck.mandatoryString("key", key);
+
+            this.key = key;
+            this.tenant = tenant;
+            this.resolution = resolution;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the key
+         */
+        public String getKey()
+        {
+            return this.key;
+        }
+
+        /**
+         * @return the tenant
+         */
+        public String getTenant()
+        {
+            return this.tenant;
+        }
+
+        /**
+         * @return the resolution
+         */
+        public String getResolution()
+        {
+            return this.resolution;
+        }
+
+        /**
+         * @return {@code true} if the resolution failed to produce a script, {@code false} otherwise
+         */
+        public boolean isUnresolvable()
+        {
+            return this.resolution == null;
+        }
+
+        /**
+         * @return the expiresAt
+         */
+        public long getExpiresAt()
+        {
+            return this.expiresAt;
+        }
     }
 
-    private static final Map<Pair<String, String>, URL> CACHED_RESOLUTION = new HashMap<Pair<String, String>, URL>();
+    /**
+     * Instances of this class provide a snapshot of the statistics of one kind of cached resolutions.
+     *
+     * @author Axel Faust
+     */
+    public static class CachedResolutionStatistics
+    {
+
+        protected final int size;
+
+        protected final long hits;
+
+        protected final long misses;
+
+        protected final long expirations;
+
+        protected final long evictions;
+
+        protected final long invalidations;
+
+        /**
+         * Creates a new statistics snapshot.
+         *
+         * @param size
+         *            the number of currently cached resolutions
+         * @param hits
+         *            the number of lookups served by a cached resolution
+         * @param misses
+         *            the number of lookups that required an actual resolution
+         * @param expirations
+         *            the number of cached resolutions dropped because their time to live had passed
+         * @param evictions
+         *            the number of cached resolutions dropped to keep the cache within its size limit
+         * @param invalidations
+         *            the number of cached resolutions dropped because the resolved script or its structural context changed
+         */
+        public CachedResolutionStatistics(final int size, final long hits, final long misses, final long expirations, final long evictions,
+                final long invalidations)
+        {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.expirations = expirations;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
 
-    private static final Collection<CacheReset> CACHE_RESET_HANDLERS = new ArrayList<CacheReset>();
+        /**
+         * @return the size
+         */
+        public int getSize()
+        {
+            return this.size;
+        }
 
-    private static final Map<String, CacheReset> CACHE_KIND_RESET_HANDLERS = new HashMap<String, CacheReset>();
+        /**
+         * @return the hits
+         */
+        public long getHits()
+        {
+            return this.hits;
+        }
 
-    private static final ReentrantReadWriteLock RESOLUTION_LOCK = new ReentrantReadWriteLock(true);
+        /**
+         * @return the misses
+         */
+        public long getMisses()
+        {
+            return this.misses;
+        }
+
+        /**
+         * @return the expirations
+         */
+        public long getExpirations()
+        {
+            return this.expirations;
+        }
+
+        /**
+         * @return the evictions
+         */
+        public long getEvictions()
+        {
+            return this.evictions;
+        }
+
+        /**
+         * @return the invalidations
+         */
+        public long getInvalidations()
+        {
+            return this.invalidations;
+        }
+    }
+
+    @FunctionalInterface
+    protected static interface CacheReset
+    {
+
+        public void resetCache();
+    }
 
+    /**
+     * Marker for failed resolutions in {@link #registerCachedResolution(String, String, URL)} and
+     * {@link #getCachedResolution(String, String)}.
+     *
+     * @deprecated stream handlers should hold their own {@link ResolutionCache} and register it via
+     *             {@link #registerCachedResolutions(String, CachedResolutions)}
+     */
+    @Deprecated
     protected static final URL SENTINEL;
     static
     {
@@ -68,81 +292,101 @@ public abstract class CacheableResolutionURLConnection extends URLConnection
         SENTINEL = sentinel;
     }
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheableResolutionURLConnection.class);
+
+    private static final Map<String, CachedResolutions> CACHED_RESOLUTIONS_BY_KIND = new ConcurrentHashMap<String, CachedResolutions>();
+
+    // backing caches of the deprecated static registration / lookup operations
+    private static final Map<String, ResolutionCache<URL>> LEGACY_CACHED_RESOLUTIONS_BY_KIND = new ConcurrentHashMap<>();
+
+    private static final Collection<CacheReset> CACHE_RESET_HANDLERS = new CopyOnWriteArrayList<CacheReset>();
+
     protected CacheableResolutionURLConnection(final URL url)
     {
         super(url);
     }
 
+    /**
+     * Retrieves the kinds of cached resolutions that have been registered.
+     *
+     * @return the kinds of cached resolutions
+     */
+    public static Collection<String> getCachedResolutionKinds()
+    {
+        final List<String> cacheKinds = new ArrayList<String>(CACHED_RESOLUTIONS_BY_KIND.keySet());
+        Collections.sort(cacheKinds);
+        return cacheKinds;
+    }
+
+    /**
+     * Lists the cached resolutions of a particular kind.
+     *
+     * @param cacheKind
+     *            the kind of cached resolutions to list
+     * @return the cached resolutions or {@code null} if the kind of cached resolutions has not been registered
+     */
+    public static List<CachedResolution> listCachedResolutions(final String cacheKind)
+    {
+        ParameterCheck.mandatoryString("cacheKind", cacheKind);
+
+        final CachedResolutions cachedResolutions = CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        return cachedResolutions != null ? cachedResolutions.list() : null;
+    }
+
+    /**
+     * Retrieves the statistics of the cached resolutions of a particular kind.
+     *
+     * @param cacheKind
+     *            the kind of cached resolutions
+     * @return the statistics or {@code null} if the kind of cached resolutions has not been registered
+     */
+    public static CachedResolutionStatistics getCachedResolutionStatistics(final String cacheKind)
+    {
+        ParameterCheck.mandatoryString("cacheKind", cacheKind);
+
+        final CachedResolutions cachedResolutions = CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        return cachedResolutions != null ? cachedResolutions.getStatistics() : null;
+    }
+
     /**
      * Clears all cached resolutions.
      */
     public static void clearCachedResolutions()
     {
-        RESOLUTION_LOCK.writeLock().lock();
-        try
-        {
-            CACHED_RESOLUTION.clear();
-        }
-        finally
-        {
-            RESOLUTION_LOCK.writeLock().unlock();
-        }
+        CACHED_RESOLUTIONS_BY_KIND.forEach((cacheKind, cachedResolutions) -> {
+            LOGGER.debug("Clearing cached resolutions of kind {}", cacheKind);
+            cachedResolutions.clear();
+        });
+        LEGACY_CACHED_RESOLUTIONS_BY_KIND.values().forEach(ResolutionCache::clear);
 
-        CACHE_RESET_HANDLERS.forEach(x -> x.resetCache());
+        CACHE_RESET_HANDLERS.forEach(CacheReset::resetCache);
     }
 
     /**
-     * Clears all cached resolutions for a particular kind of cached resolutions (typically one specific sub-type of URL connection).
+     * Clears all cached resolutions for a particular kind of cached resolutions (typically the resolutions of one specific URL protocol).
      *
      * @param cacheKind
      *            the kind of cached resolutions to clear
+     * @return {@code true} if the kind of cached resolutions has been registered, {@code false} otherwise
      */
-    public static void clearCachedResolutions(final String cacheKind)
+    public static boolean clearCachedResolutions(final String cacheKind)
     {
         ParameterCheck.mandatoryString("cacheKind", cacheKind);
 
-        final Collection<Pair<String, String>> keys = new ArrayList<Pair<String, String>>();
-        RESOLUTION_LOCK.readLock().lock();
-        try
+        final CachedResolutions cachedResolutions = CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (cachedResolutions != null)
         {
-            for (final Entry<Pair<String, String>, URL> resolutionEntry : CACHED_RESOLUTION.entrySet())
-            {
-                if (cacheKind.equals(resolutionEntry.getKey().getFirst()))
-                {
-                    keys.add(resolutionEntry.getKey());
-                }
-            }
-        }
-        finally
-        {
-            RESOLUTION_LOCK.readLock().unlock();
+            LOGGER.debug("Clearing cached resolutions of kind {}", cacheKind);
+            cachedResolutions.clear();
         }
 
-        RESOLUTION_LOCK.writeLock().lock();
-        try
-        {
-            CACHED_RESOLUTION.keySet().removeAll(keys);
-            keys.clear();
-
-            // another go-through to pick up any we missed / inserted between read and write lock
-            for (final Entry<Pair<String, String>, URL> resolutionEntry : CACHED_RESOLUTION.entrySet())
-            {
-                if (cacheKind.equals(resolutionEntry.getKey().getFirst()))
-                {
-                    keys.add(resolutionEntry.getKey());
-                }
-            }
-            CACHED_RESOLUTION.keySet().removeAll(keys);
-        }
-        finally
+        final ResolutionCache<URL> legacyCachedResolutions = LEGACY_CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (legacyCachedResolutions != null && legacyCachedResolutions != cachedResolutions)
         {
-            RESOLUTION_LOCK.writeLock().unlock();
+            legacyCachedResolutions.clear();
         }
 
-        if(CACHE_KIND_RESET_HANDLERS.containsKey(cacheKind))
-        {
-            CACHE_KIND_RESET_HANDLERS.get(cacheKind).resetCache();
-        }
+        return cachedResolutions != null;
     }
 
     /**
@@ -152,100 +396,223 @@ public abstract class CacheableResolutionURLConnection extends URLConnection
      *            the kind of cached resolution to clear
      * @param resolutionKey
      *            the specific key for the resolution to clear
+     * @return {@code true} if a resolution was cached for the key, {@code false} otherwise
      */
-    public static void clearCachedResolution(final String cacheKind, final String resolutionKey)
+    public static boolean clearCachedResolution(final String cacheKind, final String resolutionKey)
     {
         ParameterCheck.mandatoryString("cacheKind", cacheKind);
         ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
 
-        RESOLUTION_LOCK.writeLock().lock();
-        try
+        boolean cleared = false;
+        final CachedResolutions cachedResolutions = CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (cachedResolutions != null)
         {
-            CACHED_RESOLUTION.remove(new Pair<String, String>(cacheKind, resolutionKey));
+            LOGGER.debug("Clearing cached resolution {} of kind {}", resolutionKey, cacheKind);
+            cleared = cachedResolutions.clear(resolutionKey);
         }
-        finally
+
+        final ResolutionCache<URL> legacyCachedResolutions = LEGACY_CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (legacyCachedResolutions != null && legacyCachedResolutions != cachedResolutions)
         {
-            RESOLUTION_LOCK.writeLock().unlock();
+            cleared = legacyCachedResolutions.clear(resolutionKey) || cleared;
         }
+
+        return cleared;
     }
 
     /**
-     * Clears all cached resolutions that failed to produce a valid script to enable retries at resolving the corresponding base paths.
+     * Clears all cached resolutions that failed to produce a script to enable retries at resolving the corresponding keys.
      */
-    public static void clearResolutionSentinels()
+    public static void clearUnresolvableResolutions()
     {
-        final Collection<Pair<String, String>> keys = new ArrayList<Pair<String, String>>();
-        RESOLUTION_LOCK.readLock().lock();
-        try
+        CACHED_RESOLUTIONS_BY_KIND.forEach((cacheKind, cachedResolutions) -> {
+            LOGGER.debug("Clearing cached unresolvable resolutions of kind {}", cacheKind);
+            cachedResolutions.clearUnresolvable();
+        });
+        LEGACY_CACHED_RESOLUTIONS_BY_KIND.values().forEach(ResolutionCache::clearUnresolvable);
+    }
+
+    /**
+     * Clears all cached resolutions for a particular kind of cached resolutions that failed to produce a script.
+     *
+     * @param cacheKind
+     *            the kind of cached resolutions to clear
+     * @return {@code true} if the kind of cached resolutions has been registered, {@code false} otherwise
+     */
+    public static boolean clearUnresolvableResolutions(final String cacheKind)
+    {
+        ParameterCheck.mandatoryString("cacheKind", cacheKind);
+
+        final CachedResolutions cachedResolutions = CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (cachedResolutions != null)
         {
-            for (final Entry<Pair<String, String>, URL> resolutionEntry : CACHED_RESOLUTION.entrySet())
-            {
-                if (resolutionEntry.getValue() == SENTINEL)
-                {
-                    keys.add(resolutionEntry.getKey());
-                }
-            }
+            LOGGER.debug("Clearing cached unresolvable resolutions of kind {}", cacheKind);
+            cachedResolutions.clearUnresolvable();
         }
-        finally
+
+        final ResolutionCache<URL> legacyCachedResolutions = LEGACY_CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (legacyCachedResolutions != null && legacyCachedResolutions != cachedResolutions)
         {
-            RESOLUTION_LOCK.readLock().unlock();
+            legacyCachedResolutions.clearUnresolvable();
         }
 
-        RESOLUTION_LOCK.writeLock().lock();
-        try
-        {
-            CACHED_RESOLUTION.keySet().removeAll(keys);
+        return cachedResolutions != null;
+    }
 
-            // another simple go-through to pick up any we missed / inserted between read and write lock
-            CACHED_RESOLUTION.values().remove(SENTINEL);
-        }
-        finally
-        {
-            RESOLUTION_LOCK.writeLock().unlock();
-        }
+    /**
+     * Clears all cached resolutions that failed to produce a valid script to enable retries at resolving the corresponding base paths.
+     *
+     * @deprecated use {@link #clearUnresolvableResolutions()}
+     */
+    @Deprecated
+    public static void clearResolutionSentinels()
+    {
+        clearUnresolvableResolutions();
     }
 
+    protected static void registerCachedResolutions(final String cacheKind, final CachedResolutions cachedResolutions)
+    {
+        ParameterCheck.mandatoryString("cacheKind", cacheKind);
+        ParameterCheck.mandatory("cachedResolutions", cachedResolutions);
+
+        CACHED_RESOLUTIONS_BY_KIND.put(cacheKind, cachedResolutions);
+    }
+
+    /**
+     * Registers a cached resolution in a cache held by this class.
+     *
+     * @param cacheKind
+     *            the kind of cached resolution
+     * @param resolutionKey
+     *            the key of the resolution
+     * @param resolutionValue
+     *            the resolved URL or {@link #SENTINEL} if the resolution failed
+     * @deprecated stream handlers should hold their own {@link ResolutionCache} and register it via
+     *             {@link #registerCachedResolutions(String, CachedResolutions)}
+     */
+    @Deprecated
     protected static void registerCachedResolution(final String cacheKind, final String resolutionKey, final URL resolutionValue)
     {
         ParameterCheck.mandatoryString("cacheKind", cacheKind);
         ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
         ParameterCheck.mandatory("resolutionValue", resolutionValue);
 
-        RESOLUTION_LOCK.writeLock().lock();
-        try
+        final ResolutionCache<URL> legacyCachedResolutions = LEGACY_CACHED_RESOLUTIONS_BY_KIND.computeIfAbsent(cacheKind, x -> {
+            final ResolutionCache<URL> cachedResolutions = new ResolutionCache<URL>();
+            // kinds with a stream handler-specific registration are only cleared alongside the legacy cache
+            CACHED_RESOLUTIONS_BY_KIND.putIfAbsent(cacheKind, cachedResolutions);
+            return cachedResolutions;
+        });
+
+        if (resolutionValue == SENTINEL)
         {
-            CACHED_RESOLUTION.put(new Pair<String, String>(cacheKind, resolutionKey), resolutionValue);
+            legacyCachedResolutions.putUnresolvable(resolutionKey);
         }
-        finally
+        else
         {
-            RESOLUTION_LOCK.writeLock().unlock();
+            legacyCachedResolutions.put(resolutionKey, resolutionValue);
         }
     }
 
+    /**
+     * Retrieves a cached resolution from a cache held by this class.
+     *
+     * @param cacheKind
+     *            the kind of cached resolution
+     * @param resolutionKey
+     *            the key of the resolution
+     * @return the resolved URL, {@link #SENTINEL} if the resolution failed, or {@code null} if no resolution has been cached
+     * @deprecated stream handlers should hold their own {@link ResolutionCache} and register it via
+     *             {@link #registerCachedResolutions(String, CachedResolutions)}
+     */
+    @Deprecated
     protected static URL getCachedResolution(final String cacheKind, final String resolutionKey)
     {
         ParameterCheck.mandatoryString("cacheKind", cacheKind);
         ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
 
-        RESOLUTION_LOCK.readLock().lock();
-        try
-        {
-            final URL url = CACHED_RESOLUTION.get(new Pair<String, String>(cacheKind, resolutionKey));
-            return url;
-        }
-        finally
+        URL url = null;
+        final ResolutionCache<URL> legacyCachedResolutions = LEGACY_CACHED_RESOLUTIONS_BY_KIND.get(cacheKind);
+        if (legacyCachedResolutions != null)
         {
-            RESOLUTION_LOCK.readLock().unlock();
+            final Resolution<URL> resolution = legacyCachedResolutions.get(resolutionKey);
+            if (resolution != null)
+            {
+                url = resolution.isUnresolvable() ? SENTINEL : resolution.getValue();
+            }
         }
+        return url;
     }
 
+    /**
+     * Registers a handler to be invoked when {@link #clearCachedResolutions() all cached resolutions are cleared}.
+     *
+     * @param handler
+     *            the handler to register
+     * @deprecated use {@link #registerCachedResolutions(String, CachedResolutions)} to register the cached resolutions of a kind
+     */
+    @Deprecated
     protected static void registerCacheResetHandler(final CacheReset handler)
     {
+        ParameterCheck.mandatory("handler", handler);
+
         CACHE_RESET_HANDLERS.add(handler);
     }
 
     protected static void registerCacheKindResetHandler(final String cacheKind, final CacheReset handler)
     {
-        CACHE_KIND_RESET_HANDLERS.put(cacheKind, handler);
+        ParameterCheck.mandatoryString("cacheKind", cacheKind);
+        ParameterCheck.mandatory("handler", handler);
+
+        // a plain reset handler can neither distinguish between unresolvable and other resolutions nor provide any insight
+        registerCachedResolutions(cacheKind, new CachedResolutions()
+        {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void clear()
+            {
+                handler.resetCache();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void clearUnresolvable()
+            {
+                handler.resetCache();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean clear(final String resolutionKey)
+            {
+                handler.resetCache();
+                return true;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public List<CachedResolution> list()
+            {
+                return Collections.emptyList();
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public CachedResolutionStatistics getStatistics()
+            {
+                return new CachedResolutionStatistics(0, 0, 0, 0, 0, 0);
+            }
+        });
     }
 }
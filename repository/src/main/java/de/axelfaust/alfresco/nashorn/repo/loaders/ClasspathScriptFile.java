@@ -13,13 +13,19 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.loaders;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.util.UUID;
 
@@ -54,31 +60,54 @@ public class ClasspathScriptFile implements ScriptFile
 
     protected final String filePath;
 
-    protected transient boolean exists = false;
+    protected transient volatile boolean exists = false;
 
-    protected transient boolean existsInJarFile = false;
+    protected transient volatile boolean existsInJarFile = false;
 
-    protected transient long lastExistenceCheck = -1;
+    protected transient volatile long lastExistenceCheck = -1;
 
-    protected transient long lastModified = -1;
+    protected transient volatile long lastModified = -1;
 
-    protected transient long lastModifiedCheck = -1;
+    protected transient volatile long lastModifiedCheck = -1;
 
-    protected transient long size = -1;
+    protected transient volatile long size = -1;
 
     protected transient ClassPathResource resource;
 
+    protected final ScriptSourceCache sourceCache;
+
+    protected final ClasspathScriptFileWatcher watcher;
+
+    protected final String cacheFileBaseName;
+
+    protected transient long cacheGeneration = 0;
+
     protected transient File cacheFile;
 
+    protected transient ByteBuffer mappedCacheFile;
+
     public ClasspathScriptFile(final String filePath)
+    {
+        this(filePath, null);
+    }
+
+    public ClasspathScriptFile(final String filePath, final ScriptSourceCache sourceCache)
+    {
+        this(filePath, sourceCache, null);
+    }
+
+    public ClasspathScriptFile(final String filePath, final ScriptSourceCache sourceCache, final ClasspathScriptFileWatcher watcher)
     {
         ParameterCheck.mandatoryString("filePath", filePath);
 
         this.filePath = filePath;
         this.resource = new ClassPathResource(filePath, this.getClass().getClassLoader());
+        this.sourceCache = sourceCache;
+        this.watcher = watcher;
 
-        this.cacheFile = new File(CACHE_DIRECTORY, MessageFormat.format("{0}-{1}.js", this.resource.getFilename(), UUID.randomUUID()
-                .toString()));
+        this.cacheFileBaseName = MessageFormat.format("{0}-{1}", this.resource.getFilename(), UUID.randomUUID().toString());
+        this.cacheFile = new File(CACHE_DIRECTORY, MessageFormat.format("{0}-{1}.js", this.cacheFileBaseName,
+                String.valueOf(this.cacheGeneration)));
     }
 
     /**
@@ -91,7 +120,7 @@ public class ClasspathScriptFile implements ScriptFile
         boolean exists = this.exists;
 
         // JAR files "should never" cease to exist during runtime
-        if (!this.existsInJarFile || force)
+        if (!this.isWatched(force, this.lastExistenceCheck) && (!this.existsInJarFile || force))
         {
             final long currentTimeMillis = System.currentTimeMillis();
             if (force || currentTimeMillis - this.lastExistenceCheck > DEFAULT_EXISTENCE_CHECK_INTERVAL)
@@ -107,7 +136,7 @@ public class ClasspathScriptFile implements ScriptFile
                         {
                             this.lastModifiedCheck = -1;
 
-                            this.cacheFile.delete();
+                            this.discardCachedScript();
                             this.size = -1;
                         }
                         else if (doesExist && !this.existsInJarFile)
@@ -127,6 +156,11 @@ public class ClasspathScriptFile implements ScriptFile
                         this.lastExistenceCheck = currentTimeMillis;
                     }
                 }
+
+                if (this.watcher != null)
+                {
+                    this.watcher.register(this);
+                }
             }
         }
 
@@ -169,7 +203,7 @@ public class ClasspathScriptFile implements ScriptFile
     public long getLastModified(final boolean force)
     {
         long lastModified = this.exists(force) ? this.lastModified : -1;
-        if (this.exists)
+        if (this.exists && !this.isWatched(force, this.lastModifiedCheck))
         {
             final long currentTimeMillis = System.currentTimeMillis();
             if (force || currentTimeMillis - this.lastModifiedCheck > DEFAULT_LAST_MODIFIED_CHECK_INTERVAL)
@@ -187,9 +221,10 @@ public class ClasspathScriptFile implements ScriptFile
 
                                 if (this.lastModified != -1 && lastModified != this.lastModified)
                                 {
-                                    this.cacheFile.delete();
+                                    this.discardCachedScript();
                                     this.size = -1;
                                 }
+                                this.lastModified = lastModified;
                             }
                             catch (final IOException ioex)
                             {
@@ -198,7 +233,7 @@ public class ClasspathScriptFile implements ScriptFile
                                 lastModified = this.lastModified = -1;
                                 this.exists = this.existsInJarFile = false;
 
-                                this.cacheFile.delete();
+                                this.discardCachedScript();
                                 this.size = -1;
                             }
 
@@ -212,41 +247,72 @@ public class ClasspathScriptFile implements ScriptFile
         return lastModified;
     }
 
+    /**
+     * Checks the existence and last modification of the classpath resource backing this script file, updating the cached metadata. This
+     * operation is meant to be called by a {@link ClasspathScriptFileWatcher watcher} in the background.
+     *
+     * @return {@code true} if the resource has been found to have been added, modified or removed since it was last checked,
+     *         {@code false} otherwise
+     */
+    public boolean refresh()
+    {
+        final boolean checked = this.lastExistenceCheck != -1;
+        final boolean existed = this.exists;
+        final long lastModified = this.lastModified;
+
+        this.getLastModified(true);
+
+        final boolean stale = checked && (existed != this.exists || (lastModified != -1 && lastModified != this.lastModified));
+        return stale;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized InputStream getInputStream()
+    public InputStream getInputStream()
     {
-        InputStream is;
+        return new ByteBufferInputStream(this.getByteBuffer());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized ByteBuffer getByteBuffer()
+    {
+        ByteBuffer buffer;
 
         if (this.exists(false))
         {
-            if (!this.cacheFile.exists())
+            buffer = this.openCachedScriptBuffer();
+            if (buffer == null)
             {
                 this.cacheScriptFile();
+                buffer = this.openCachedScriptBuffer();
             }
 
-            if (!this.cacheFile.exists())
+            if (buffer == null)
             {
                 throw new ScriptException("Script can't be loaded");
             }
-
-            try
-            {
-                is = new FileInputStream(this.cacheFile);
-            }
-            catch (final IOException ioex)
-            {
-                throw new ScriptException("Error loading cached script file", ioex);
-            }
         }
         else
         {
             throw new ScriptException("Script file does not exist");
         }
 
-        return is;
+        return buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCachedSize()
+    {
+        final long size = this.size;
+        return size > 0 ? size : 0;
     }
 
     /**
@@ -261,23 +327,112 @@ public class ClasspathScriptFile implements ScriptFile
         this.lastModified = -1;
         this.lastModifiedCheck = -1;
 
-        this.cacheFile.delete();
+        this.discardCachedScript();
         this.size = -1;
     }
 
+    protected boolean isWatched(final boolean force, final long lastCheck)
+    {
+        // the initial check is always performed inline so metadata is available before the watcher picks up the script
+        final boolean watched = !force && lastCheck != -1 && this.watcher != null && this.watcher.isWatching();
+        return watched;
+    }
+
+    protected synchronized ByteBuffer openCachedScriptBuffer()
+    {
+        ByteBuffer buffer = null;
+
+        final byte[] content = this.sourceCache != null ? this.sourceCache.get(this.cacheFile.getName()) : null;
+        if (content != null)
+        {
+            buffer = ByteBuffer.wrap(content).asReadOnlyBuffer();
+        }
+        else
+        {
+            if (this.mappedCacheFile == null && this.cacheFile.exists())
+            {
+                try (final FileChannel channel = FileChannel.open(this.cacheFile.toPath(), StandardOpenOption.READ))
+                {
+                    this.mappedCacheFile = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                }
+                catch (final IOException ioex)
+                {
+                    throw new ScriptException("Error loading cached script file", ioex);
+                }
+            }
+
+            if (this.mappedCacheFile != null)
+            {
+                buffer = this.mappedCacheFile.asReadOnlyBuffer();
+            }
+        }
+
+        return buffer;
+    }
+
+    protected synchronized void discardCachedScript()
+    {
+        if (this.sourceCache != null)
+        {
+            this.sourceCache.remove(this.cacheFile.getName());
+        }
+        this.mappedCacheFile = null;
+        // a file still mapped by a buffer handed out earlier cannot be deleted on some platforms (e.g. Windows)
+        if (this.cacheFile.exists() && !this.cacheFile.delete())
+        {
+            LOGGER.debug("Cache file {} could not be deleted - scheduling deletion on exit", this.cacheFile);
+            this.cacheFile.deleteOnExit();
+        }
+
+        // switch to new file name so a concurrent eviction from the source cache cannot resurrect discarded content
+        this.cacheGeneration++;
+        this.cacheFile = new File(CACHE_DIRECTORY, MessageFormat.format("{0}-{1}.js", this.cacheFileBaseName,
+                String.valueOf(this.cacheGeneration)));
+    }
+
+    protected void writeCacheFile(final InputStream is) throws IOException
+    {
+        // never overwrite cache file in place as it may still be memory mapped
+        this.mappedCacheFile = null;
+        final File tempFile = new File(this.cacheFile.getParentFile(), this.cacheFile.getName() + ".tmp");
+        try (final OutputStream os = new FileOutputStream(tempFile, false))
+        {
+            IOUtils.copy(is, os);
+        }
+
+        Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
     protected synchronized void cacheScriptFile()
     {
         try
         {
-            try (final InputStream is = new StrictScriptEnforcingSourceInputStream(this.resource.getInputStream()))
+            if (this.sourceCache != null)
             {
-                try (final OutputStream os = new FileOutputStream(this.cacheFile, false))
+                final byte[] content;
+                try (final InputStream is = new StrictScriptEnforcingSourceInputStream(this.resource.getInputStream()))
+                {
+                    content = IOUtils.toByteArray(is);
+                }
+
+                this.mappedCacheFile = null;
+                if (!this.sourceCache.put(this.cacheFile.getName(), content, this.cacheFile))
                 {
-                    IOUtils.copy(is, os);
+                    // exceeds in-memory budget
+                    this.writeCacheFile(new ByteArrayInputStream(content));
                 }
+
+                this.size = content.length;
             }
+            else
+            {
+                try (final InputStream is = new StrictScriptEnforcingSourceInputStream(this.resource.getInputStream()))
+                {
+                    this.writeCacheFile(is);
+                }
 
-            this.size = this.cacheFile.length();
+                this.size = this.cacheFile.length();
+            }
         }
         catch (final IOException ioex)
         {
@@ -285,7 +440,7 @@ public class ClasspathScriptFile implements ScriptFile
 
             this.exists = this.existsInJarFile = false;
 
-            this.cacheFile.delete();
+            this.discardCachedScript();
             this.size = -1;
 
             throw new ScriptException("Script can't be loaded", ioex);
@@ -0,0 +1,505 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.alfresco.util.ParameterCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Instances of this class keep the existence / last modification metadata of {@link ClasspathScriptFile classpath script files}
+ * up-to-date in the background, so request threads only need to read the metadata last determined instead of checking the classpath
+ * resources inline. Script files backed by a file in the file system are watched via a {@link WatchService} on their parent directory,
+ * while all other script files (e.g. contained in JAR files or not yet existing) are checked in a periodic sweep. Additionally, complete
+ * directory trees (e.g. classpath roots) can be {@link #watchDirectoryTree(Path, DirectoryTreeListener) watched} to keep derived state such
+ * as an index of scripts up-to-date without having to re-walk the directories.
+ *
+ * @author Axel Faust
+ */
+public class ClasspathScriptFileWatcher implements InitializingBean, DisposableBean
+{
+
+    public static interface DirectoryTreeListener
+    {
+
+        /**
+         * Handles the change of a file or directory within a watched directory tree.
+         *
+         * @param path
+         *            the path of the changed file or directory
+         * @param exists
+         *            {@code true} if the file has been created or modified, {@code false} if the file or directory has been deleted
+         */
+        public void onFileChanged(Path path, boolean exists);
+
+        /**
+         * Handles the loss of change events within a watched directory tree, requiring the listener to re-check the directory tree.
+         *
+         * @param root
+         *            the root of the watched directory tree
+         */
+        public void onEventsLost(Path root);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathScriptFileWatcher.class);
+
+    protected boolean enabled = true;
+
+    protected long watchPollInterval = 1000;
+
+    protected long sweepInterval = 30000;
+
+    protected volatile ScheduledExecutorService executor;
+
+    protected WatchService watchService;
+
+    protected final Set<ClasspathScriptFile> registeredFiles = ConcurrentHashMap.newKeySet();
+
+    protected final Set<ClasspathScriptFile> sweptFiles = ConcurrentHashMap.newKeySet();
+
+    protected final ConcurrentMap<Path, Set<ClasspathScriptFile>> watchedFilesByPath = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<Path, DirectoryTreeListener> directoryTreeListeners = new ConcurrentHashMap<>();
+
+    protected final AtomicLong refreshes = new AtomicLong();
+
+    protected final AtomicLong staleDetections = new AtomicLong();
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        if (this.enabled)
+        {
+            final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "NashornClasspathScriptFileWatcher");
+                thread.setDaemon(true);
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            });
+
+            try
+            {
+                this.watchService = FileSystems.getDefault().newWatchService();
+                executor.scheduleWithFixedDelay(this::processWatchEvents, this.watchPollInterval, this.watchPollInterval,
+                        TimeUnit.MILLISECONDS);
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.warn("Failed to create watch service - all classpath script files will be checked in periodic sweeps", ioex);
+                this.watchService = null;
+            }
+            executor.scheduleWithFixedDelay(this::sweep, this.sweepInterval, this.sweepInterval, TimeUnit.MILLISECONDS);
+
+            this.executor = executor;
+        }
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy()
+    {
+        final ScheduledExecutorService executor = this.executor;
+        this.executor = null;
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+
+        if (this.watchService != null)
+        {
+            try
+            {
+                this.watchService.close();
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.debug("Error closing watch service", ioex);
+            }
+            this.watchService = null;
+        }
+
+        this.registeredFiles.clear();
+        this.sweptFiles.clear();
+        this.watchedFilesByPath.clear();
+        this.watchedDirectories.clear();
+        this.directoryTreeListeners.clear();
+    }
+
+    /**
+     * @param enabled
+     *            the enabled to set
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param watchPollInterval
+     *            the watchPollInterval to set
+     */
+    public void setWatchPollInterval(final long watchPollInterval)
+    {
+        this.watchPollInterval = watchPollInterval;
+    }
+
+    /**
+     * @param sweepInterval
+     *            the sweepInterval to set
+     */
+    public void setSweepInterval(final long sweepInterval)
+    {
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * Checks if this instance is actively keeping the metadata of registered script files up-to-date.
+     *
+     * @return {@code true} if registered script files may rely on this instance to detect changes, {@code false} if they need to check
+     *         their resources themselves
+     */
+    public boolean isWatching()
+    {
+        return this.executor != null;
+    }
+
+    /**
+     * Registers a script file to have its metadata kept up-to-date by this instance. Registering the same script file multiple times has no
+     * effect.
+     *
+     * @param scriptFile
+     *            the script file to register
+     */
+    public void register(final ClasspathScriptFile scriptFile)
+    {
+        ParameterCheck.mandatory("scriptFile", scriptFile);
+
+        if (this.isWatching() && this.registeredFiles.add(scriptFile))
+        {
+            if (!this.watch(scriptFile))
+            {
+                LOGGER.trace("Classpath script {} will be checked in periodic sweeps", scriptFile.filePath);
+                this.sweptFiles.add(scriptFile);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener to be notified about all changes of files within a directory tree. Directories created within the tree after
+     * registration will be watched as well.
+     *
+     * @param root
+     *            the root of the directory tree to watch
+     * @param listener
+     *            the listener to notify
+     * @return {@code true} if the directory tree is being watched, {@code false} if it cannot be watched and the listener will not be
+     *         notified about any changes
+     */
+    public boolean watchDirectoryTree(final Path root, final DirectoryTreeListener listener)
+    {
+        ParameterCheck.mandatory("root", root);
+        ParameterCheck.mandatory("listener", listener);
+
+        boolean watched = false;
+        if (this.isWatching() && this.watchService != null)
+        {
+            this.directoryTreeListeners.put(root, listener);
+            try
+            {
+                this.registerDirectoryTree(root, null);
+                watched = true;
+
+                LOGGER.debug("Watching directory tree {}", root);
+            }
+            catch (final IOException | ClosedWatchServiceException ex)
+            {
+                LOGGER.debug("Directory tree {} cannot be watched via the file system", root, ex);
+                this.directoryTreeListeners.remove(root, listener);
+            }
+        }
+        return watched;
+    }
+
+    /**
+     * @return the number of script files watched via the file system
+     */
+    public int getWatchedFileCount()
+    {
+        return this.registeredFiles.size() - this.sweptFiles.size();
+    }
+
+    /**
+     * @return the number of script files checked in periodic sweeps
+     */
+    public int getSweptFileCount()
+    {
+        return this.sweptFiles.size();
+    }
+
+    /**
+     * @return the number of background checks of script files
+     */
+    public long getRefreshes()
+    {
+        return this.refreshes.get();
+    }
+
+    /**
+     * @return the number of background checks that detected a script file to have been added, modified or removed
+     */
+    public long getStaleDetections()
+    {
+        return this.staleDetections.get();
+    }
+
+    protected boolean watch(final ClasspathScriptFile scriptFile)
+    {
+        boolean watched = false;
+        if (this.watchService != null)
+        {
+            try
+            {
+                final URL url = scriptFile.resource.getURL();
+                if (ResourceUtils.isFileURL(url))
+                {
+                    final Path path = Paths.get(url.toURI());
+                    final Path directory = path.getParent();
+                    final WatchKey watchKey = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    this.watchedDirectories.put(watchKey, directory);
+                    this.watchedFilesByPath.computeIfAbsent(path, x -> ConcurrentHashMap.newKeySet()).add(scriptFile);
+                    watched = true;
+
+                    LOGGER.trace("Watching classpath script {} via directory {}", scriptFile.filePath, directory);
+                }
+            }
+            catch (final IOException | URISyntaxException | ClosedWatchServiceException ex)
+            {
+                // resources that don't (yet) exist cannot be resolved to a file
+                LOGGER.trace("Classpath script {} cannot be watched via the file system", scriptFile.filePath, ex);
+            }
+        }
+        return watched;
+    }
+
+    protected void registerDirectoryTree(final Path root, final Consumer<Path> fileHandler) throws IOException
+    {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+        {
+
+            /**
+             *
+             * {@inheritDoc}
+             */
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attrs) throws IOException
+            {
+                final WatchKey watchKey = directory.register(ClasspathScriptFileWatcher.this.watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                ClasspathScriptFileWatcher.this.watchedDirectories.put(watchKey, directory);
+                return FileVisitResult.CONTINUE;
+            }
+
+            /**
+             *
+             * {@inheritDoc}
+             */
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+            {
+                if (fileHandler != null)
+                {
+                    fileHandler.accept(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    protected void notifyDirectoryTreeListeners(final Path directory, final WatchEvent<?> event)
+    {
+        this.directoryTreeListeners.forEach((root, listener) -> {
+            if (directory.startsWith(root))
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    listener.onEventsLost(root);
+                }
+                else
+                {
+                    final Path path = directory.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path))
+                    {
+                        try
+                        {
+                            // files may have been created before the new directory could be watched
+                            this.registerDirectoryTree(path, file -> listener.onFileChanged(file, true));
+                        }
+                        catch (final IOException | ClosedWatchServiceException ex)
+                        {
+                            LOGGER.debug("Directory {} cannot be watched via the file system", path, ex);
+                            listener.onEventsLost(root);
+                        }
+                    }
+                    else
+                    {
+                        listener.onFileChanged(path, event.kind() != StandardWatchEventKinds.ENTRY_DELETE);
+                    }
+                }
+            }
+        });
+    }
+
+    protected void processWatchEvents()
+    {
+        try
+        {
+            WatchKey watchKey;
+            while (this.watchService != null && (watchKey = this.watchService.poll()) != null)
+            {
+                final Path directory = this.watchedDirectories.get(watchKey);
+                if (directory != null)
+                {
+                    for (final WatchEvent<?> event : watchKey.pollEvents())
+                    {
+                        this.notifyDirectoryTreeListeners(directory, event);
+
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        {
+                            LOGGER.debug("Watch events for directory {} have been lost - refreshing all classpath scripts within",
+                                    directory);
+                            this.watchedFilesByPath.forEach((path, scriptFiles) -> {
+                                if (directory.equals(path.getParent()))
+                                {
+                                    scriptFiles.forEach(this::refresh);
+                                }
+                            });
+                        }
+                        else
+                        {
+                            final Path path = directory.resolve((Path) event.context());
+                            final Set<ClasspathScriptFile> scriptFiles = this.watchedFilesByPath.get(path);
+                            if (scriptFiles != null)
+                            {
+                                scriptFiles.forEach(this::refresh);
+                            }
+                        }
+                    }
+                }
+
+                if (!watchKey.reset())
+                {
+                    LOGGER.debug("Directory {} can no longer be watched - classpath scripts within will be checked in periodic sweeps",
+                            directory);
+                    this.watchedDirectories.remove(watchKey);
+                    this.watchedFilesByPath.entrySet().removeIf(entry -> {
+                        final boolean inDirectory = entry.getKey().getParent().equals(directory);
+                        if (inDirectory)
+                        {
+                            this.sweptFiles.addAll(entry.getValue());
+                            entry.getValue().forEach(this::refresh);
+                        }
+                        return inDirectory;
+                    });
+                }
+            }
+        }
+        catch (final ClosedWatchServiceException cwsex)
+        {
+            LOGGER.debug("Watch service has been closed");
+        }
+        catch (final RuntimeException rex)
+        {
+            // exceptions must not escape as they would cancel any further executions
+            LOGGER.warn("Error processing watch events for classpath scripts", rex);
+        }
+    }
+
+    protected void sweep()
+    {
+        try
+        {
+            LOGGER.trace("Sweeping {} classpath scripts", this.sweptFiles.size());
+            for (final ClasspathScriptFile scriptFile : this.sweptFiles)
+            {
+                this.refresh(scriptFile);
+
+                // script files that came into existence might now be watched instead
+                if (scriptFile.exists && this.watch(scriptFile))
+                {
+                    this.sweptFiles.remove(scriptFile);
+                }
+            }
+        }
+        catch (final RuntimeException rex)
+        {
+            // exceptions must not escape as they would cancel any further executions
+            LOGGER.warn("Error sweeping classpath scripts", rex);
+        }
+    }
+
+    protected void refresh(final ClasspathScriptFile scriptFile)
+    {
+        this.refreshes.incrementAndGet();
+        try
+        {
+            if (scriptFile.refresh())
+            {
+                LOGGER.debug("Detected change of classpath script {}", scriptFile.filePath);
+                this.staleDetections.incrementAndGet();
+            }
+        }
+        catch (final RuntimeException rex)
+        {
+            LOGGER.debug("Error refreshing classpath script {}", scriptFile.filePath, rex);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.util.ParameterCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.ResourceUtils;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.ClasspathScriptFileWatcher.DirectoryTreeListener;
+
+/**
+ * Instances of this class index all script resources available on the classpath below a specific base path, so that candidate script
+ * paths can be checked via a simple lookup instead of probing the class loader. Only resources with a script suffix ({@code .js} /
+ * {@code .nashornjs}) are indexed and covered by the index. Resources contained in JAR files are only indexed once. Resources in file
+ * system directories are kept up-to-date incrementally if a {@link ClasspathScriptFileWatcher watcher} is available, and are otherwise
+ * re-indexed on every {@link #refresh() refresh}.
+ *
+ * Roots are discovered via the class loader resources of the base path, which does not include JAR files that lack directory entries.
+ * Scripts contained in such JAR files are not indexed and need to be {@link #probe(String) probed} via the class loader. As the contents
+ * of JAR files do not change at runtime, the result of such a probe remains valid as long as no change of the index is reported.
+ *
+ * @author Axel Faust
+ */
+public class ClasspathScriptIndex
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathScriptIndex.class);
+
+    private static final String[] SCRIPT_SUFFIXES = { ".js", ".nashornjs" };
+
+    protected final String basePath;
+
+    protected final String basePathPrefix;
+
+    protected final ClassLoader classLoader;
+
+    protected final ResourcePatternResolver resolver;
+
+    protected final ClasspathScriptFileWatcher watcher;
+
+    // only replaced while holding the monitor of this instance - sets of watched roots are updated concurrently by the watcher
+    protected volatile Map<String, Set<String>> scriptPathsByRoot;
+
+    // only modified while holding the monitor of this instance
+    protected final Set<String> watchedRoots = new HashSet<String>();
+
+    protected volatile Runnable changeListener;
+
+    public ClasspathScriptIndex(final String basePath, final ClassLoader classLoader)
+    {
+        this(basePath, classLoader, null);
+    }
+
+    public ClasspathScriptIndex(final String basePath, final ClassLoader classLoader, final ClasspathScriptFileWatcher watcher)
+    {
+        ParameterCheck.mandatoryString("basePath", basePath);
+        ParameterCheck.mandatory("classLoader", classLoader);
+
+        this.basePath = basePath;
+        this.basePathPrefix = basePath + "/";
+        this.classLoader = classLoader;
+        this.resolver = new PathMatchingResourcePatternResolver(classLoader);
+        this.watcher = watcher;
+    }
+
+    /**
+     * Sets the listener to notify whenever the set of indexed script paths may have changed, e.g. to invalidate resolutions based on the
+     * index.
+     *
+     * @param changeListener
+     *            the changeListener to set
+     */
+    public void setChangeListener(final Runnable changeListener)
+    {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Checks if a script path is covered by this index, i.e. if the index reports any change regarding its existence. A script path that
+     * is covered but not {@link #contains(String) contained} may still exist in a JAR file without directory entries.
+     *
+     * @param scriptPath
+     *            the classpath-relative path of the script
+     * @return {@code true} if the path has been covered by the last (re-)indexing, {@code false} otherwise
+     */
+    public boolean covers(final String scriptPath)
+    {
+        final boolean covers = this.scriptPathsByRoot != null && scriptPath.startsWith(this.basePathPrefix) && isScriptPath(scriptPath);
+        return covers;
+    }
+
+    /**
+     * Checks if a script path is currently known to exist.
+     *
+     * @param scriptPath
+     *            the classpath-relative path of the script
+     * @return {@code true} if the path exists, {@code false} otherwise
+     */
+    public boolean contains(final String scriptPath)
+    {
+        final Map<String, Set<String>> scriptPathsByRoot = this.scriptPathsByRoot;
+        boolean contains = false;
+        if (scriptPathsByRoot != null)
+        {
+            for (final Set<String> rootScriptPaths : scriptPathsByRoot.values())
+            {
+                if (rootScriptPaths.contains(scriptPath))
+                {
+                    contains = true;
+                    break;
+                }
+            }
+        }
+        return contains;
+    }
+
+    /**
+     * Probes the class loader for a script path that is not {@link #contains(String) contained} in the index, e.g. because it is located in
+     * a JAR file without directory entries.
+     *
+     * @param scriptPath
+     *            the classpath-relative path of the script
+     * @return {@code true} if the class loader provides the path, {@code false} otherwise
+     */
+    public boolean probe(final String scriptPath)
+    {
+        final boolean exists = this.classLoader.getResource(scriptPath) != null;
+        return exists;
+    }
+
+    /**
+     * @return the number of indexed script paths
+     */
+    public int getSize()
+    {
+        final Map<String, Set<String>> scriptPathsByRoot = this.scriptPathsByRoot;
+        int size = 0;
+        if (scriptPathsByRoot != null)
+        {
+            for (final Set<String> rootScriptPaths : scriptPathsByRoot.values())
+            {
+                size += rootScriptPaths.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Indexes / re-indexes all script resources below the base path. Roots in JAR files or roots kept up-to-date by a watcher that have
+     * already been indexed will not be indexed again.
+     */
+    public synchronized void refresh()
+    {
+        final long start = System.currentTimeMillis();
+        try
+        {
+            final Map<String, Set<String>> previousScriptPathsByRoot = this.scriptPathsByRoot != null ? this.scriptPathsByRoot
+                    : Collections.<String, Set<String>> emptyMap();
+
+            final Resource[] roots = this.resolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + this.basePathPrefix);
+            final Map<String, Set<String>> scriptPathsByRoot = new LinkedHashMap<String, Set<String>>();
+            for (final Resource root : roots)
+            {
+                final URL rootUrl = root.getURL();
+                final String rootUrlStr = rootUrl.toString();
+
+                Set<String> rootScriptPaths = previousScriptPathsByRoot.get(rootUrlStr);
+                if (rootScriptPaths == null || !(ResourceUtils.isJarURL(rootUrl) || this.watchedRoots.contains(rootUrlStr)))
+                {
+                    rootScriptPaths = this.indexRoot(root, rootUrlStr);
+                }
+                scriptPathsByRoot.put(rootUrlStr, rootScriptPaths);
+            }
+
+            this.watchedRoots.retainAll(scriptPathsByRoot.keySet());
+            this.scriptPathsByRoot = Collections.unmodifiableMap(scriptPathsByRoot);
+
+            LOGGER.debug("Indexed {} scripts in {} classpath roots for {} in {} ms", this.getSize(), scriptPathsByRoot.size(),
+                    this.basePath, System.currentTimeMillis() - start);
+        }
+        catch (final IOException ioex)
+        {
+            LOGGER.warn("Failed to index scripts for {} - classpath will be probed instead", this.basePath, ioex);
+            this.scriptPathsByRoot = null;
+        }
+
+        this.notifyChanged();
+    }
+
+    protected Set<String> indexRoot(final Resource root, final String rootUrlStr) throws IOException
+    {
+        final Set<String> rootScriptPaths;
+
+        final boolean fileSystemRoot = ResourceUtils.isFileURL(root.getURL());
+        if (fileSystemRoot)
+        {
+            final Path rootPath = root.getFile().toPath();
+            rootScriptPaths = ConcurrentHashMap.newKeySet();
+
+            // watch before walking the directories so that no change can be missed in between
+            if (this.watcher != null && !this.watchedRoots.contains(rootUrlStr)
+                    && this.watcher.watchDirectoryTree(rootPath, new RootListener(rootUrlStr, rootPath)))
+            {
+                this.watchedRoots.add(rootUrlStr);
+            }
+
+            final Resource[] resources = this.resolver.getResources(rootUrlStr + "**/*");
+            for (final Resource resource : resources)
+            {
+                // directories are reported as not being readable
+                if (resource.isReadable())
+                {
+                    final String scriptPath = this.toScriptPath(rootPath, resource.getFile().toPath());
+                    if (isScriptPath(scriptPath))
+                    {
+                        rootScriptPaths.add(scriptPath);
+                    }
+                }
+            }
+        }
+        else
+        {
+            final Set<String> jarScriptPaths = new HashSet<String>();
+            final Resource[] resources = this.resolver.getResources(rootUrlStr + "**/*");
+            for (final Resource resource : resources)
+            {
+                final String urlStr = resource.getURL().toString();
+                // directories are reported with a trailing slash
+                if (urlStr.startsWith(rootUrlStr) && !urlStr.endsWith("/"))
+                {
+                    final String scriptPath = this.basePathPrefix + urlStr.substring(rootUrlStr.length());
+                    if (isScriptPath(scriptPath))
+                    {
+                        jarScriptPaths.add(scriptPath);
+                    }
+                }
+            }
+            rootScriptPaths = Collections.unmodifiableSet(jarScriptPaths);
+        }
+
+        LOGGER.trace("Indexed {} scripts in classpath root {}", rootScriptPaths.size(), rootUrlStr);
+        return rootScriptPaths;
+    }
+
+    protected synchronized void reindexRoot(final String rootUrlStr)
+    {
+        final Map<String, Set<String>> scriptPathsByRoot = this.scriptPathsByRoot;
+        if (scriptPathsByRoot != null && scriptPathsByRoot.containsKey(rootUrlStr))
+        {
+            try
+            {
+                final Set<String> rootScriptPaths = this.indexRoot(this.resolver.getResource(rootUrlStr), rootUrlStr);
+                final Map<String, Set<String>> updatedScriptPathsByRoot = new LinkedHashMap<String, Set<String>>(scriptPathsByRoot);
+                updatedScriptPathsByRoot.put(rootUrlStr, rootScriptPaths);
+                this.scriptPathsByRoot = Collections.unmodifiableMap(updatedScriptPathsByRoot);
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.warn("Failed to re-index scripts in classpath root {} - classpath will be probed instead", rootUrlStr, ioex);
+                this.scriptPathsByRoot = null;
+            }
+
+            this.notifyChanged();
+        }
+    }
+
+    protected void onFileChanged(final String rootUrlStr, final Path rootPath, final Path path, final boolean exists)
+    {
+        final Map<String, Set<String>> scriptPathsByRoot = this.scriptPathsByRoot;
+        final Set<String> rootScriptPaths = scriptPathsByRoot != null ? scriptPathsByRoot.get(rootUrlStr) : null;
+        if (rootScriptPaths != null)
+        {
+            final String scriptPath = this.toScriptPath(rootPath, path);
+            if (exists)
+            {
+                if (isScriptPath(scriptPath) && Files.isRegularFile(path) && rootScriptPaths.add(scriptPath))
+                {
+                    LOGGER.trace("Added script {} from classpath root {} to index", scriptPath, rootUrlStr);
+                    this.notifyChanged();
+                }
+            }
+            else
+            {
+                // path may have been a directory
+                final String directoryPrefix = scriptPath + "/";
+                if (rootScriptPaths.removeIf(x -> x.equals(scriptPath) || x.startsWith(directoryPrefix)))
+                {
+                    LOGGER.trace("Removed script(s) {} from classpath root {} from index", scriptPath, rootUrlStr);
+                    this.notifyChanged();
+                }
+            }
+        }
+    }
+
+    protected void notifyChanged()
+    {
+        final Runnable changeListener = this.changeListener;
+        if (changeListener != null)
+        {
+            changeListener.run();
+        }
+    }
+
+    protected String toScriptPath(final Path rootPath, final Path path)
+    {
+        final String relativePath = rootPath.relativize(path).toString();
+        return this.basePathPrefix + relativePath.replace(File.separatorChar, '/');
+    }
+
+    protected static boolean isScriptPath(final String scriptPath)
+    {
+        boolean isScriptPath = false;
+        for (final String suffix : SCRIPT_SUFFIXES)
+        {
+            isScriptPath = isScriptPath || scriptPath.endsWith(suffix);
+        }
+        return isScriptPath;
+    }
+
+    /**
+     * Keeps the indexed script paths of a file system classpath root up-to-date based on changes reported by the watcher.
+     *
+     * @author Axel Faust
+     */
+    protected class RootListener implements DirectoryTreeListener
+    {
+
+        protected final String rootUrlStr;
+
+        protected final Path rootPath;
+
+        protected RootListener(final String rootUrlStr, final Path rootPath)
+        {
+            this.rootUrlStr = rootUrlStr;
+            this.rootPath = rootPath;
+        }
+
+        /**
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public void onFileChanged(final Path path, final boolean exists)
+        {
+            ClasspathScriptIndex.this.onFileChanged(this.rootUrlStr, this.rootPath, path, exists);
+        }
+
+        /**
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEventsLost(final Path root)
+        {
+            LOGGER.debug("Change events for classpath root {} have been lost - re-indexing", this.rootUrlStr);
+            ClasspathScriptIndex.this.reindexRoot(this.rootUrlStr);
+        }
+    }
+}
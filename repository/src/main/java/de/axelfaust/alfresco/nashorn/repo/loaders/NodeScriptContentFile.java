@@ -32,7 +32,20 @@ public class NodeScriptContentFile extends AbstractNodeScriptFile
     public NodeScriptContentFile(final NodeRef nodeRef, final ScriptContent scriptContent, final NodeService nodeService,
             final RetryingTransactionHelper retryingTransactionHelper)
     {
-        super(nodeRef, nodeService, retryingTransactionHelper);
+        this(nodeRef, scriptContent, nodeService, retryingTransactionHelper, null);
+    }
+
+    public NodeScriptContentFile(final NodeRef nodeRef, final ScriptContent scriptContent, final NodeService nodeService,
+            final RetryingTransactionHelper retryingTransactionHelper, final ScriptSourceCache sourceCache)
+    {
+        this(nodeRef, scriptContent, nodeService, retryingTransactionHelper, sourceCache, null);
+    }
+
+    public NodeScriptContentFile(final NodeRef nodeRef, final ScriptContent scriptContent, final NodeService nodeService,
+            final RetryingTransactionHelper retryingTransactionHelper, final ScriptSourceCache sourceCache,
+            final NodeScriptInvalidationHandler invalidationHandler)
+    {
+        super(nodeRef, nodeService, retryingTransactionHelper, sourceCache, invalidationHandler);
         ParameterCheck.mandatory("scriptContent", scriptContent);
 
         this.scriptContent = scriptContent;
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.content.ContentServicePolicies.OnContentUpdatePolicy;
+import org.alfresco.repo.node.NodeServicePolicies.BeforeDeleteNodePolicy;
+import org.alfresco.repo.node.NodeServicePolicies.OnCreateNodePolicy;
+import org.alfresco.repo.node.NodeServicePolicies.OnMoveNodePolicy;
+import org.alfresco.repo.node.NodeServicePolicies.OnUpdatePropertiesPolicy;
+import org.alfresco.repo.policy.Behaviour.NotificationFrequency;
+import org.alfresco.repo.policy.JavaBehaviour;
+import org.alfresco.repo.policy.PolicyComponent;
+import org.alfresco.repo.tenant.TenantUtil;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+import org.alfresco.repo.transaction.TransactionalResourceHelper;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.GUID;
+import org.alfresco.util.Pair;
+import org.alfresco.util.ParameterCheck;
+import org.alfresco.util.PropertyCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Instances of this class track modifications of script nodes (content updates, relevant property changes, moves and deletions) and publish
+ * an invalidation marker for each affected node after the modifying transaction has been committed. The markers are held in a shared
+ * (cluster-wide) cache so that node-backed {@link ScriptFile script files} on all members of a cluster can detect changes by a simple cache
+ * lookup instead of having to read the modification timestamp of the node within a transaction on every load. Only nodes that are
+ * recognizable as scripts by their name or mimetype are tracked so the markers of actually used scripts are not evicted from the (bounded)
+ * cache by unrelated content updates. Since markers may still be evicted, script files {@link #getOrSeedInvalidationMarker(NodeRef) seed} a
+ * marker for every script they cache, so that an evicted marker is never mistaken for the absence of an invalidation.
+ *
+ * Script invalidations are passed on to registered listeners after the modifying transaction has been committed, so that state derived
+ * from script nodes outside of script files can be discarded.
+ *
+ * Additionally, structural changes (creation, renaming, moving and deletion) of nodes are passed on to registered listeners after the
+ * modifying transaction has been committed, so that cached path based resolutions can be invalidated. The changed nodes and their (old /
+ * new) parents are only recorded as candidates within the modifying transaction without reading any node data, so that the typical write
+ * transaction does not pay for script resolution caching. Listeners are expected to return early for nodes that no cached resolution
+ * touches.
+ *
+ * @author Axel Faust
+ */
+public class NodeScriptInvalidationHandler implements InitializingBean, OnContentUpdatePolicy, OnUpdatePropertiesPolicy,
+        OnMoveNodePolicy, BeforeDeleteNodePolicy, OnCreateNodePolicy
+{
+
+    @FunctionalInterface
+    public static interface StructureChangeListener
+    {
+
+        /**
+         * Handles structural changes of nodes after the modifying transaction has been committed.
+         *
+         * @param changedNodes
+         *            the tenant domains and references of the changed nodes, including parents of created / moved / renamed / deleted
+         *            nodes
+         */
+        public void onStructureChanged(Collection<Pair<String, NodeRef>> changedNodes);
+    }
+
+    @FunctionalInterface
+    public static interface ScriptInvalidationListener
+    {
+
+        /**
+         * Handles invalidations of script nodes after the modifying transaction has been committed.
+         *
+         * @param invalidatedNodes
+         *            the references of the invalidated script nodes
+         */
+        public void onScriptsInvalidated(Collection<NodeRef> invalidatedNodes);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NodeScriptInvalidationHandler.class);
+
+    private static final List<String> SCRIPT_NAME_SUFFIXES = Arrays.asList(".js", ".nashornjs");
+
+    private static final String TXN_INVALIDATED_NODES_KEY = NodeScriptInvalidationHandler.class.getName() + "-invalidatedNodes";
+
+    private static final String TXN_STRUCTURALLY_CHANGED_NODES_KEY = NodeScriptInvalidationHandler.class.getName()
+            + "-structurallyChangedNodes";
+
+    private static final String TXN_LISTENER_BOUND_KEY = NodeScriptInvalidationHandler.class.getName() + "-listenerBound";
+
+    protected PolicyComponent policyComponent;
+
+    protected NodeService nodeService;
+
+    protected DictionaryService dictionaryService;
+
+    protected SimpleCache<NodeRef, String> invalidationMarkerCache;
+
+    protected final Collection<StructureChangeListener> structureChangeListeners = new CopyOnWriteArrayList<StructureChangeListener>();
+
+    protected final Collection<ScriptInvalidationListener> scriptInvalidationListeners =
+            new CopyOnWriteArrayList<ScriptInvalidationListener>();
+
+    protected final TransactionListenerAdapter transactionListener = new TransactionListenerAdapter()
+    {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void afterCommit()
+        {
+            NodeScriptInvalidationHandler.this.publishInvalidations();
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "policyComponent", this.policyComponent);
+        PropertyCheck.mandatory(this, "nodeService", this.nodeService);
+        PropertyCheck.mandatory(this, "dictionaryService", this.dictionaryService);
+        PropertyCheck.mandatory(this, "invalidationMarkerCache", this.invalidationMarkerCache);
+
+        this.policyComponent.bindClassBehaviour(OnContentUpdatePolicy.QNAME, ContentModel.TYPE_CONTENT,
+                new JavaBehaviour(this, "onContentUpdate", NotificationFrequency.EVERY_EVENT));
+        // structural changes of any node (i.e. folders or documents taking precedence over scripts) may affect path based resolutions
+        this.policyComponent.bindClassBehaviour(OnUpdatePropertiesPolicy.QNAME, ContentModel.TYPE_BASE,
+                new JavaBehaviour(this, "onUpdateProperties", NotificationFrequency.EVERY_EVENT));
+        this.policyComponent.bindClassBehaviour(OnMoveNodePolicy.QNAME, ContentModel.TYPE_BASE,
+                new JavaBehaviour(this, "onMoveNode", NotificationFrequency.EVERY_EVENT));
+        this.policyComponent.bindClassBehaviour(BeforeDeleteNodePolicy.QNAME, ContentModel.TYPE_BASE,
+                new JavaBehaviour(this, "beforeDeleteNode", NotificationFrequency.EVERY_EVENT));
+        this.policyComponent.bindClassBehaviour(OnCreateNodePolicy.QNAME, ContentModel.TYPE_BASE,
+                new JavaBehaviour(this, "onCreateNode", NotificationFrequency.EVERY_EVENT));
+    }
+
+    /**
+     * @param policyComponent
+     *            the policyComponent to set
+     */
+    public void setPolicyComponent(final PolicyComponent policyComponent)
+    {
+        this.policyComponent = policyComponent;
+    }
+
+    /**
+     * @param nodeService
+     *            the nodeService to set
+     */
+    public void setNodeService(final NodeService nodeService)
+    {
+        this.nodeService = nodeService;
+    }
+
+    /**
+     * @param dictionaryService
+     *            the dictionaryService to set
+     */
+    public void setDictionaryService(final DictionaryService dictionaryService)
+    {
+        this.dictionaryService = dictionaryService;
+    }
+
+    /**
+     * @param invalidationMarkerCache
+     *            the invalidationMarkerCache to set
+     */
+    public void setInvalidationMarkerCache(final SimpleCache<NodeRef, String> invalidationMarkerCache)
+    {
+        this.invalidationMarkerCache = invalidationMarkerCache;
+    }
+
+    /**
+     * Registers a listener to be notified about structural changes of nodes.
+     *
+     * @param listener
+     *            the listener to register
+     */
+    public void registerStructureChangeListener(final StructureChangeListener listener)
+    {
+        ParameterCheck.mandatory("listener", listener);
+        this.structureChangeListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener to be notified about invalidations of script nodes.
+     *
+     * @param listener
+     *            the listener to register
+     */
+    public void registerScriptInvalidationListener(final ScriptInvalidationListener listener)
+    {
+        ParameterCheck.mandatory("listener", listener);
+        this.scriptInvalidationListeners.add(listener);
+    }
+
+    /**
+     * Retrieves the current invalidation marker of a script node, seeding a new marker if none is currently held in the cache. Callers
+     * should treat any change of the marker as an indicator that the script node has been modified (or its marker has been evicted) and any
+     * state derived from it needs to be discarded / revalidated.
+     *
+     * @param nodeRef
+     *            the script node
+     * @return the invalidation marker - never {@code null}
+     */
+    public String getOrSeedInvalidationMarker(final NodeRef nodeRef)
+    {
+        ParameterCheck.mandatory("nodeRef", nodeRef);
+        String marker = this.invalidationMarkerCache.get(nodeRef);
+        if (marker == null)
+        {
+            // never invalidated or evicted - both cases are indistinguishable, so a fresh marker forces a revalidation on next change
+            marker = GUID.generate();
+            this.invalidationMarkerCache.put(nodeRef, marker);
+            LOGGER.trace("Seeded invalidation marker of script node {}", nodeRef);
+        }
+        return marker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onContentUpdate(final NodeRef nodeRef, final boolean newContent)
+    {
+        if (this.isScriptNode(nodeRef))
+        {
+            this.markInvalidated(nodeRef);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onUpdateProperties(final NodeRef nodeRef, final Map<QName, Serializable> before, final Map<QName, Serializable> after)
+    {
+        // changed name affects path based resolution of the node and may take precedence over another previously resolved node
+        if (!EqualsHelper.nullSafeEquals(before.get(ContentModel.PROP_NAME), after.get(ContentModel.PROP_NAME)))
+        {
+            this.markStructurallyChanged(nodeRef);
+            this.markStructurallyChanged(this.nodeService.getPrimaryParent(nodeRef).getParentRef());
+
+            // node may no longer be recognizable as a script after the rename
+            if (this.isScriptNode(nodeRef) || this.isScriptName(before.get(ContentModel.PROP_NAME)))
+            {
+                this.markInvalidated(nodeRef);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onMoveNode(final ChildAssociationRef oldChildAssocRef, final ChildAssociationRef newChildAssocRef)
+    {
+        final NodeRef nodeRef = newChildAssocRef.getChildRef();
+        this.markStructurallyChanged(nodeRef);
+        this.markStructurallyChanged(oldChildAssocRef.getParentRef());
+        this.markStructurallyChanged(newChildAssocRef.getParentRef());
+
+        if (this.isScriptNode(nodeRef))
+        {
+            this.markInvalidated(nodeRef);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeDeleteNode(final NodeRef nodeRef)
+    {
+        this.markStructurallyChanged(nodeRef);
+        // removal may let another node take precedence in the resolution of a module ID
+        this.markStructurallyChanged(this.nodeService.getPrimaryParent(nodeRef).getParentRef());
+
+        if (this.isScriptNode(nodeRef))
+        {
+            this.markInvalidated(nodeRef);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCreateNode(final ChildAssociationRef childAssocRef)
+    {
+        // new node may take precedence over a previously resolved node
+        this.markStructurallyChanged(childAssocRef.getParentRef());
+    }
+
+    protected boolean isScriptNode(final NodeRef nodeRef)
+    {
+        boolean isScriptNode = false;
+        if (this.nodeService.exists(nodeRef))
+        {
+            final QName type = this.nodeService.getType(nodeRef);
+            if (this.dictionaryService.isSubClass(type, ContentModel.TYPE_CONTENT))
+            {
+                isScriptNode = this.isScriptName(this.nodeService.getProperty(nodeRef, ContentModel.PROP_NAME));
+
+                if (!isScriptNode)
+                {
+                    final ContentData contentData = DefaultTypeConverter.INSTANCE.convert(ContentData.class,
+                            this.nodeService.getProperty(nodeRef, ContentModel.PROP_CONTENT));
+                    final String mimetype = contentData != null ? contentData.getMimetype() : null;
+                    // application/javascript, application/x-javascript, text/javascript ...
+                    isScriptNode = mimetype != null && mimetype.toLowerCase(Locale.ENGLISH).contains("javascript");
+                }
+            }
+        }
+        return isScriptNode;
+    }
+
+    protected boolean isScriptName(final Serializable nameValue)
+    {
+        final String name = DefaultTypeConverter.INSTANCE.convert(String.class, nameValue);
+        final String lowerCaseName = name != null ? name.toLowerCase(Locale.ENGLISH) : "";
+        final boolean isScriptName = SCRIPT_NAME_SUFFIXES.stream().anyMatch(lowerCaseName::endsWith);
+        return isScriptName;
+    }
+
+    protected void markInvalidated(final NodeRef nodeRef)
+    {
+        this.bindTransactionListener();
+        final Set<NodeRef> invalidatedNodes = TransactionalResourceHelper.getSet(TXN_INVALIDATED_NODES_KEY);
+        invalidatedNodes.add(nodeRef);
+    }
+
+    protected void markStructurallyChanged(final NodeRef nodeRef)
+    {
+        if (nodeRef != null && !this.structureChangeListeners.isEmpty())
+        {
+            this.bindTransactionListener();
+            final Set<Pair<String, NodeRef>> changedNodes = TransactionalResourceHelper.getSet(TXN_STRUCTURALLY_CHANGED_NODES_KEY);
+            changedNodes.add(new Pair<>(TenantUtil.getCurrentDomain(), nodeRef));
+        }
+    }
+
+    protected void bindTransactionListener()
+    {
+        final Set<Boolean> listenerBound = TransactionalResourceHelper.getSet(TXN_LISTENER_BOUND_KEY);
+        if (listenerBound.add(Boolean.TRUE))
+        {
+            AlfrescoTransactionSupport.bindListener(this.transactionListener);
+        }
+    }
+
+    protected void publishInvalidations()
+    {
+        final Set<NodeRef> invalidatedNodes = TransactionalResourceHelper.getSet(TXN_INVALIDATED_NODES_KEY);
+        if (!invalidatedNodes.isEmpty())
+        {
+            // unique marker so multiple invalidations within the same millisecond can't be mistaken for one another
+            final String marker = GUID.generate();
+            for (final NodeRef nodeRef : invalidatedNodes)
+            {
+                LOGGER.debug("Publishing invalidation of script node {}", nodeRef);
+                this.invalidationMarkerCache.put(nodeRef, marker);
+            }
+
+            final Collection<NodeRef> unmodifiableInvalidatedNodes = Collections.unmodifiableSet(invalidatedNodes);
+            for (final ScriptInvalidationListener listener : this.scriptInvalidationListeners)
+            {
+                try
+                {
+                    listener.onScriptsInvalidated(unmodifiableInvalidatedNodes);
+                }
+                catch (final RuntimeException rex)
+                {
+                    // transaction has already been committed - failing here would only confuse the caller
+                    LOGGER.warn("Script invalidation listener {} failed", listener, rex);
+                }
+            }
+        }
+
+        final Set<Pair<String, NodeRef>> changedNodes = TransactionalResourceHelper.getSet(TXN_STRUCTURALLY_CHANGED_NODES_KEY);
+        if (!changedNodes.isEmpty())
+        {
+            final Collection<Pair<String, NodeRef>> unmodifiableChangedNodes = Collections.unmodifiableSet(changedNodes);
+            for (final StructureChangeListener listener : this.structureChangeListeners)
+            {
+                try
+                {
+                    listener.onStructureChanged(unmodifiableChangedNodes);
+                }
+                catch (final RuntimeException rex)
+                {
+                    // transaction has already been committed - failing here would only confuse the caller
+                    LOGGER.warn("Structure change listener {} failed", listener, rex);
+                }
+            }
+        }
+    }
+}
@@ -20,13 +20,21 @@ import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.alfresco.model.ContentModel;
+import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.tenant.TenantUtil;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
 import org.alfresco.repo.transaction.TransactionalResourceHelper;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
@@ -40,6 +48,7 @@ import org.alfresco.service.cmr.repository.Path;
 import org.alfresco.service.cmr.repository.Path.ChildAssocElement;
 import org.alfresco.service.cmr.repository.Path.Element;
 import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
 import org.alfresco.service.cmr.search.QueryConsistency;
 import org.alfresco.service.cmr.search.ResultSet;
 import org.alfresco.service.cmr.search.ResultSetRow;
@@ -50,11 +59,18 @@ import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.service.namespace.RegexQNamePattern;
+import org.alfresco.util.GUID;
 import org.alfresco.util.Pair;
 import org.alfresco.util.ParameterCheck;
+import org.alfresco.util.PropertyCheck;
 import org.alfresco.util.transaction.TransactionSupportUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolution;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutionStatistics;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutions;
 
 /**
  * This class provides the resolution and stream handling capabilities for node-based AMD script loaders. This could also be (and previously
@@ -63,15 +79,130 @@ import org.slf4j.LoggerFactory;
  *
  * @author Axel Faust
  */
-public class NodeURLStreamHandler extends URLStreamHandler
+public class NodeURLStreamHandler extends URLStreamHandler implements InitializingBean
 {
 
+    /**
+     * Instances of this class represent the resolution of a module ID to a content node / property shared across transactions (and
+     * potentially cluster members). Each resolution is tagged with the resolution generation of its tenant and the structure markers of
+     * all nodes in which a child was looked up by name, as they were current before the resolution was performed. A resolution is only
+     * valid as long as that generation and all these markers are still current and its time to live has not passed. Resolutions that
+     * failed to produce a content node are additionally tagged with the generation of unresolvable resolutions.
+     *
+     * @author Axel Faust
+     */
+    public static class CachedModuleIdResolution implements Serializable
+    {
+
+        private static final long serialVersionUID = -1925503457046264413L;
+
+        protected final NodeRef contentNode;
+
+        protected final QName contentProperty;
+
+        protected final String normalizedModuleId;
+
+        protected final String generation;
+
+        protected final HashMap<NodeRef, String> structureMarkers;
+
+        protected final long expiresAt;
+
+        protected CachedModuleIdResolution(final NodeRef contentNode, final QName contentProperty, final String normalizedModuleId,
+                final String generation, final Map<NodeRef, String> structureMarkers, final long expiresAt)
+        {
+            this.contentNode = contentNode;
+            this.contentProperty = contentProperty;
+            this.normalizedModuleId = normalizedModuleId;
+            this.generation = generation;
+            this.structureMarkers = new HashMap<>(structureMarkers);
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the contentNode
+         */
+        public NodeRef getContentNode()
+        {
+            return this.contentNode;
+        }
+
+        /**
+         * @return the contentProperty
+         */
+        public QName getContentProperty()
+        {
+            return this.contentProperty;
+        }
+
+        /**
+         * @return the normalizedModuleId
+         */
+        public String getNormalizedModuleId()
+        {
+            return this.normalizedModuleId;
+        }
+
+        /**
+         * @return the resolution generation of the tenant in which the resolution was performed
+         */
+        public String getGeneration()
+        {
+            return this.generation;
+        }
+
+        /**
+         * @return the structure markers of the nodes in which a child was looked up by name during the resolution
+         */
+        public Map<NodeRef, String> getStructureMarkers()
+        {
+            return Collections.unmodifiableMap(this.structureMarkers);
+        }
+
+        /**
+         * @return the expiresAt
+         */
+        public long getExpiresAt()
+        {
+            return this.expiresAt;
+        }
+
+        /**
+         * @return {@code true} if the module ID could not be resolved to a content node, {@code false} otherwise
+         */
+        public boolean isUnresolvable()
+        {
+            return this.contentNode == null;
+        }
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger(NodeURLStreamHandler.class);
 
     private static final String TXN_MODULE_ID_RESOLUTION_KEY_PREFIX = NodeURLStreamHandler.class.getName() + "-moduleIdResolution-";
 
     private static final String TXN_LAST_MODULE_ID_KEY = NodeURLStreamHandler.class.getName() + "-lastModuleIdResolution";
 
+    private static final String TXN_RESOLVED_ANCESTRY_KEY = NodeURLStreamHandler.class.getName() + "-resolvedAncestry";
+
+    private static final String TXN_NORMALIZED_PATH_KEY = NodeURLStreamHandler.class.getName() + "-normalizedPath";
+
+    private static final String TXN_SECONDARY_RESOLUTION_KEY = NodeURLStreamHandler.class.getName() + "-secondaryResolution";
+
+    private static final String TXN_RESOLUTION_GENERATION_KEY = NodeURLStreamHandler.class.getName() + "-resolutionGeneration";
+
+    private static final String TXN_PENDING_RESOLUTIONS_KEY = NodeURLStreamHandler.class.getName() + "-pendingResolutions";
+
+    private static final String TXN_LISTENER_BOUND_KEY = NodeURLStreamHandler.class.getName() + "-listenerBound";
+
+    private static final String TXN_STRUCTURE_MARKERS_KEY = NodeURLStreamHandler.class.getName() + "-structureMarkers";
+
+    private static final String TXN_TRAVERSED_PARENT_MARKERS_KEY = NodeURLStreamHandler.class.getName() + "-traversedParentMarkers";
+
+    private static final String TXN_RESOLUTION_MARKERS_KEY = NodeURLStreamHandler.class.getName() + "-resolutionMarkers";
+
+    // shared generation of unresolvable resolutions across all tenants - no valid tenant domain contains a '#'
+    private static final String UNRESOLVABLE_GENERATION_KEY = "#unresolvable";
+
     protected final NamespaceService namespaceService;
 
     protected final DictionaryService dictionaryService;
@@ -84,6 +215,33 @@ public class NodeURLStreamHandler extends URLStreamHandler
 
     protected final SearchService searchService;
 
+    protected SimpleCache<Pair<String, String>, CachedModuleIdResolution> moduleIdResolutionCache;
+
+    protected SimpleCache<String, String> moduleIdResolutionGenerationCache;
+
+    protected SimpleCache<Pair<String, NodeRef>, String> structureMarkerCache;
+
+    protected long resolutionTimeToLive = 3600000;
+
+    protected long unresolvableTimeToLive = 30000;
+
+    protected final ResolutionCounters resolutionCounters = new ResolutionCounters();
+
+    protected final TransactionListenerAdapter transactionListener = new TransactionListenerAdapter()
+    {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void afterCommit()
+        {
+            NodeURLStreamHandler.this.publishPendingResolutions();
+        }
+    };
+
+    protected NodeScriptInvalidationHandler nodeScriptInvalidationHandler;
+
     public NodeURLStreamHandler(final ServiceRegistry serviceRegistry)
     {
         this(serviceRegistry.getNamespaceService(), serviceRegistry.getDictionaryService(), serviceRegistry.getNodeService(),
@@ -108,6 +266,125 @@ public class NodeURLStreamHandler extends URLStreamHandler
         this.searchService = searchService;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        if (this.moduleIdResolutionCache != null)
+        {
+            PropertyCheck.mandatory(this, "moduleIdResolutionGenerationCache", this.moduleIdResolutionGenerationCache);
+            PropertyCheck.mandatory(this, "structureMarkerCache", this.structureMarkerCache);
+            PropertyCheck.mandatory(this, "nodeScriptInvalidationHandler", this.nodeScriptInvalidationHandler);
+
+            this.nodeScriptInvalidationHandler.registerStructureChangeListener(this::onStructureChanged);
+            CacheableResolutionURLConnection.registerCachedResolutions("node", new CachedResolutions()
+            {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void clear()
+                {
+                    NodeURLStreamHandler.this.clearCachedModuleIdResolutions();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void clearUnresolvable()
+                {
+                    NodeURLStreamHandler.this.clearCachedUnresolvableModuleIdResolutions();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public boolean clear(final String resolutionKey)
+                {
+                    return NodeURLStreamHandler.this.clearCachedModuleIdResolution(resolutionKey);
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public List<CachedResolution> list()
+                {
+                    return NodeURLStreamHandler.this.listCachedModuleIdResolutions();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public CachedResolutionStatistics getStatistics()
+                {
+                    return NodeURLStreamHandler.this.resolutionCounters
+                            .toStatistics(NodeURLStreamHandler.this.moduleIdResolutionCache.getKeys().size());
+                }
+            });
+        }
+    }
+
+    /**
+     * @param moduleIdResolutionCache
+     *            the moduleIdResolutionCache to set
+     */
+    public void setModuleIdResolutionCache(final SimpleCache<Pair<String, String>, CachedModuleIdResolution> moduleIdResolutionCache)
+    {
+        this.moduleIdResolutionCache = moduleIdResolutionCache;
+    }
+
+    /**
+     * @param moduleIdResolutionGenerationCache
+     *            the moduleIdResolutionGenerationCache to set
+     */
+    public void setModuleIdResolutionGenerationCache(final SimpleCache<String, String> moduleIdResolutionGenerationCache)
+    {
+        this.moduleIdResolutionGenerationCache = moduleIdResolutionGenerationCache;
+    }
+
+    /**
+     * @param structureMarkerCache
+     *            the structureMarkerCache to set
+     */
+    public void setStructureMarkerCache(final SimpleCache<Pair<String, NodeRef>, String> structureMarkerCache)
+    {
+        this.structureMarkerCache = structureMarkerCache;
+    }
+
+    /**
+     * @param resolutionTimeToLive
+     *            the resolutionTimeToLive to set
+     */
+    public void setResolutionTimeToLive(final long resolutionTimeToLive)
+    {
+        this.resolutionTimeToLive = resolutionTimeToLive;
+    }
+
+    /**
+     * @param unresolvableTimeToLive
+     *            the unresolvableTimeToLive to set
+     */
+    public void setUnresolvableTimeToLive(final long unresolvableTimeToLive)
+    {
+        this.unresolvableTimeToLive = unresolvableTimeToLive;
+    }
+
+    /**
+     * @param nodeScriptInvalidationHandler
+     *            the nodeScriptInvalidationHandler to set
+     */
+    public void setNodeScriptInvalidationHandler(final NodeScriptInvalidationHandler nodeScriptInvalidationHandler)
+    {
+        this.nodeScriptInvalidationHandler = nodeScriptInvalidationHandler;
+    }
+
     public String normalizeModuleId(final String scriptContextUuid, final String moduleId)
     {
         ParameterCheck.mandatoryString("scriptContextUuid", scriptContextUuid);
@@ -135,6 +412,45 @@ public class NodeURLStreamHandler extends URLStreamHandler
     {
         final String normalizedModuleId;
 
+        final CachedModuleIdResolution cachedResolution = this.getCachedModuleIdResolution(moduleId);
+        if (cachedResolution != null && cachedResolution.isUnresolvable())
+        {
+            normalizedModuleId = moduleId;
+
+            LOGGER.debug("Not normalizing {} as it is cached as unresolvable", moduleId);
+        }
+        else if (cachedResolution != null)
+        {
+            normalizedModuleId = cachedResolution.getNormalizedModuleId();
+
+            if (TransactionSupportUtil.isActualTransactionActive())
+            {
+                final Pair<NodeRef, QName> contentNodeAndProperty = new Pair<>(cachedResolution.getContentNode(),
+                        cachedResolution.getContentProperty());
+
+                final Map<Pair<String, String>, Pair<NodeRef, QName>> moduleResolution = TransactionalResourceHelper
+                        .getMap(TXN_MODULE_ID_RESOLUTION_KEY_PREFIX + scriptContextUuid);
+                moduleResolution.put(new Pair<>(TenantUtil.getCurrentDomain(), moduleId), contentNodeAndProperty);
+                moduleResolution.put(new Pair<>(TenantUtil.getCurrentDomain(), normalizedModuleId), contentNodeAndProperty);
+
+                final Map<String, Pair<NodeRef, QName>> lastModuleId = TransactionalResourceHelper.getMap(TXN_LAST_MODULE_ID_KEY);
+                lastModuleId.put(normalizedModuleId, contentNodeAndProperty);
+            }
+
+            LOGGER.debug("Normalized {} to {} via cached resolution", moduleId, normalizedModuleId);
+        }
+        else
+        {
+            normalizedModuleId = this.normalizeModuleIdUncached(scriptContextUuid, moduleId);
+        }
+
+        return normalizedModuleId;
+    }
+
+    protected String normalizeModuleIdUncached(final String scriptContextUuid, final String moduleId)
+    {
+        final String normalizedModuleId;
+
         Pair<NodeRef, QName> contentNodeAndProperty;
 
         if (TransactionSupportUtil.isActualTransactionActive())
@@ -165,23 +481,7 @@ public class NodeURLStreamHandler extends URLStreamHandler
             final NodeRef contentNode = contentNodeAndProperty.getFirst();
             if (contentNode != null)
             {
-                final StringBuilder normalizedIdBuilder = new StringBuilder();
-                normalizedIdBuilder.append(contentNode.getStoreRef().getProtocol());
-                normalizedIdBuilder.append('/');
-                normalizedIdBuilder.append(contentNode.getStoreRef().getIdentifier());
-
-                final Path path = this.nodeService.getPath(contentNode);
-                for (final Element element : path)
-                {
-                    if (element instanceof ChildAssocElement)
-                    {
-                        final NodeRef childRef = ((ChildAssocElement) element).getRef().getChildRef();
-                        final Serializable name = this.nodeService.getProperty(childRef, ContentModel.PROP_NAME);
-
-                        normalizedIdBuilder.append('/');
-                        normalizedIdBuilder.append(name);
-                    }
-                }
+                final StringBuilder normalizedIdBuilder = new StringBuilder(this.getNormalizedPath(contentNode));
 
                 final QName contentProperty = contentNodeAndProperty.getSecond();
                 if (contentProperty != null && !ContentModel.PROP_CONTENT.equals(contentProperty))
@@ -202,6 +502,8 @@ public class NodeURLStreamHandler extends URLStreamHandler
 
                     final Map<String, Pair<NodeRef, QName>> lastModuleId = TransactionalResourceHelper.getMap(TXN_LAST_MODULE_ID_KEY);
                     lastModuleId.put(normalizedModuleId, contentNodeAndProperty);
+
+                    this.cacheModuleIdResolution(moduleId, normalizedModuleId, contentNodeAndProperty);
                 }
 
                 LOGGER.debug("Normalized {} to {}", moduleId, normalizedModuleId);
@@ -209,6 +511,11 @@ public class NodeURLStreamHandler extends URLStreamHandler
             else
             {
                 normalizedModuleId = moduleId;
+
+                if (TransactionSupportUtil.isActualTransactionActive())
+                {
+                    this.cacheUnresolvableModuleId(moduleId);
+                }
             }
         }
         else
@@ -260,14 +567,28 @@ public class NodeURLStreamHandler extends URLStreamHandler
             final Map<String, Pair<NodeRef, QName>> map = TransactionalResourceHelper.getMap(TXN_LAST_MODULE_ID_KEY);
 
             contentNodeAndProperty = map.get(moduleId);
-            if (contentNodeAndProperty == null)
-            {
-                contentNodeAndProperty = this.resolveToContentNode(moduleId);
-            }
         }
         else
         {
-            contentNodeAndProperty = this.resolveToContentNode(moduleId);
+            contentNodeAndProperty = null;
+        }
+
+        if (contentNodeAndProperty == null)
+        {
+            final CachedModuleIdResolution cachedResolution = this.getCachedModuleIdResolution(moduleId);
+            if (cachedResolution != null)
+            {
+                contentNodeAndProperty = new Pair<>(cachedResolution.getContentNode(), cachedResolution.getContentProperty());
+            }
+            else
+            {
+                contentNodeAndProperty = this.resolveToContentNode(moduleId);
+
+                if (contentNodeAndProperty.getFirst() == null && TransactionSupportUtil.isActualTransactionActive())
+                {
+                    this.cacheUnresolvableModuleId(moduleId);
+                }
+            }
         }
 
         // TODO Refactor to use standard ScriptFileURLConnection and sub-class of AbstractNodeScriptFile
@@ -306,12 +627,285 @@ public class NodeURLStreamHandler extends URLStreamHandler
         return con;
     }
 
+    protected CachedModuleIdResolution getCachedModuleIdResolution(final String moduleId)
+    {
+        CachedModuleIdResolution cachedResolution = null;
+        if (this.moduleIdResolutionCache != null)
+        {
+            final String tenantDomain = TenantUtil.getCurrentDomain();
+            // generation is determined before any resolution is performed so a concurrent structural change is never missed
+            final String generation = this.getResolutionGeneration(tenantDomain);
+
+            final Pair<String, String> key = new Pair<>(tenantDomain, moduleId);
+            cachedResolution = this.moduleIdResolutionCache.get(key);
+            if (cachedResolution != null && cachedResolution.getExpiresAt() <= System.currentTimeMillis())
+            {
+                LOGGER.trace("Ignoring expired cached resolution of {}", moduleId);
+                this.moduleIdResolutionCache.remove(key);
+                this.resolutionCounters.recordExpiration();
+                cachedResolution = null;
+            }
+
+            if (cachedResolution != null && !this.toEffectiveGeneration(generation, cachedResolution.isUnresolvable())
+                    .equals(cachedResolution.getGeneration()))
+            {
+                LOGGER.trace("Ignoring cached resolution of {} from outdated generation {}", moduleId, cachedResolution.getGeneration());
+                cachedResolution = null;
+            }
+
+            if (cachedResolution != null && !this.isStructureCurrent(tenantDomain, cachedResolution))
+            {
+                LOGGER.debug("Ignoring cached resolution of {} as the structure of its resolved path changed", moduleId);
+                this.moduleIdResolutionCache.remove(key);
+                this.resolutionCounters.recordInvalidation();
+                cachedResolution = null;
+            }
+
+            if (cachedResolution != null && !cachedResolution.isUnresolvable()
+                    && !this.nodeService.exists(cachedResolution.getContentNode()))
+            {
+                LOGGER.debug("Ignoring cached resolution of {} to deleted node {}", moduleId, cachedResolution.getContentNode());
+                this.resolutionCounters.recordInvalidation();
+                cachedResolution = null;
+            }
+
+            if (cachedResolution != null)
+            {
+                this.resolutionCounters.recordHit();
+            }
+            else
+            {
+                this.resolutionCounters.recordMiss();
+            }
+        }
+        return cachedResolution;
+    }
+
+    protected boolean isStructureCurrent(final String tenantDomain, final CachedModuleIdResolution cachedResolution)
+    {
+        boolean current = true;
+        for (final Entry<NodeRef, String> structureMarker : cachedResolution.getStructureMarkers().entrySet())
+        {
+            // an evicted marker cannot be distinguished from a change
+            current = current && structureMarker.getValue().equals(this.getStructureMarker(tenantDomain, structureMarker.getKey(), false));
+        }
+        return current;
+    }
+
+    protected String getStructureMarker(final String tenantDomain, final NodeRef node, final boolean seed)
+    {
+        final Map<Pair<String, NodeRef>, String> txnMarkers = TransactionSupportUtil.isActualTransactionActive()
+                ? TransactionalResourceHelper.getMap(TXN_STRUCTURE_MARKERS_KEY) : null;
+
+        final Pair<String, NodeRef> key = new Pair<>(tenantDomain, node);
+        String marker = txnMarkers != null ? txnMarkers.get(key) : null;
+        if (marker == null)
+        {
+            marker = this.structureMarkerCache.get(key);
+            if (marker == null && seed)
+            {
+                // only nodes with a marker are considered in structural changes, so the marker must exist before any child lookup
+                marker = GUID.generate();
+                this.structureMarkerCache.put(key, marker);
+            }
+
+            if (marker != null && txnMarkers != null)
+            {
+                txnMarkers.put(key, marker);
+            }
+        }
+        return marker;
+    }
+
+    protected String toEffectiveGeneration(final String generation, final boolean unresolvable)
+    {
+        // unresolvable resolutions can be cleared separately via their own generation
+        return unresolvable ? generation + '/' + this.getResolutionGeneration(UNRESOLVABLE_GENERATION_KEY) : generation;
+    }
+
+    protected String getResolutionGeneration(final String generationKey)
+    {
+        final Map<String, String> txnGenerations = TransactionSupportUtil.isActualTransactionActive()
+                ? TransactionalResourceHelper.getMap(TXN_RESOLUTION_GENERATION_KEY) : null;
+
+        String generation = txnGenerations != null ? txnGenerations.get(generationKey) : null;
+        if (generation == null)
+        {
+            generation = this.moduleIdResolutionGenerationCache.get(generationKey);
+            if (generation == null)
+            {
+                // initial or evicted generation - either way a new generation invalidates any resolution that may still be cached
+                generation = GUID.generate();
+                this.moduleIdResolutionGenerationCache.put(generationKey, generation);
+            }
+
+            if (txnGenerations != null)
+            {
+                txnGenerations.put(generationKey, generation);
+            }
+        }
+        return generation;
+    }
+
+    protected void cacheModuleIdResolution(final String moduleId, final String normalizedModuleId,
+            final Pair<NodeRef, QName> contentNodeAndProperty)
+    {
+        if (this.moduleIdResolutionCache != null)
+        {
+            final String tenantDomain = TenantUtil.getCurrentDomain();
+            final String generation = this.getResolutionGeneration(tenantDomain);
+
+            // ancestry has been recorded in the transaction during resolution / normalization
+            final Map<Pair<String, NodeRef>, Pair<NodeRef, String>> resolvedAncestry = TransactionalResourceHelper
+                    .getMap(TXN_RESOLVED_ANCESTRY_KEY);
+            final Set<Pair<String, NodeRef>> secondaryResolution = TransactionalResourceHelper.getSet(TXN_SECONDARY_RESOLUTION_KEY);
+            boolean resolvedViaSecondary = false;
+            NodeRef node = contentNodeAndProperty.getFirst();
+            while (node != null && !resolvedViaSecondary)
+            {
+                resolvedViaSecondary = secondaryResolution.contains(new Pair<>(tenantDomain, node));
+                final Pair<NodeRef, String> parentAndName = resolvedAncestry.get(new Pair<>(tenantDomain, node));
+                node = parentAndName != null ? parentAndName.getFirst() : null;
+            }
+
+            final Map<Pair<String, String>, Map<NodeRef, String>> resolutionMarkers = TransactionalResourceHelper
+                    .getMap(TXN_RESOLUTION_MARKERS_KEY);
+            final Map<NodeRef, String> structureMarkers = resolutionMarkers.get(new Pair<>(tenantDomain, moduleId));
+
+            // removal of secondary associations is not tracked, and the normalized (primary) path has not been traversed in this case
+            if (!resolvedViaSecondary && structureMarkers != null)
+            {
+                final CachedModuleIdResolution cachedResolution = new CachedModuleIdResolution(contentNodeAndProperty.getFirst(),
+                        contentNodeAndProperty.getSecond(), normalizedModuleId, generation, structureMarkers,
+                        toExpiresAt(this.resolutionTimeToLive));
+
+                this.addPendingResolution(new Pair<>(tenantDomain, moduleId), cachedResolution);
+                this.addPendingResolution(new Pair<>(tenantDomain, normalizedModuleId), cachedResolution);
+            }
+        }
+    }
+
+    protected void cacheUnresolvableModuleId(final String moduleId)
+    {
+        if (this.moduleIdResolutionCache != null)
+        {
+            final String tenantDomain = TenantUtil.getCurrentDomain();
+            final String generation = this.toEffectiveGeneration(this.getResolutionGeneration(tenantDomain), true);
+
+            final Map<Pair<String, String>, Map<NodeRef, String>> resolutionMarkers = TransactionalResourceHelper
+                    .getMap(TXN_RESOLUTION_MARKERS_KEY);
+            final Map<NodeRef, String> structureMarkers = resolutionMarkers.get(new Pair<>(tenantDomain, moduleId));
+            if (structureMarkers != null)
+            {
+                final CachedModuleIdResolution cachedResolution = new CachedModuleIdResolution(null, null, moduleId, generation,
+                        structureMarkers, toExpiresAt(this.unresolvableTimeToLive));
+                this.addPendingResolution(new Pair<>(tenantDomain, moduleId), cachedResolution);
+            }
+        }
+    }
+
+    protected void addPendingResolution(final Pair<String, String> key, final CachedModuleIdResolution cachedResolution)
+    {
+        // shared only after commit - a rolled back transaction must not leave resolutions of uncommitted state behind
+        final Map<Pair<String, String>, CachedModuleIdResolution> pendingResolutions = TransactionalResourceHelper
+                .getMap(TXN_PENDING_RESOLUTIONS_KEY);
+        pendingResolutions.put(key, cachedResolution);
+
+        final Set<Boolean> listenerBound = TransactionalResourceHelper.getSet(TXN_LISTENER_BOUND_KEY);
+        if (listenerBound.add(Boolean.TRUE))
+        {
+            AlfrescoTransactionSupport.bindListener(this.transactionListener);
+        }
+    }
+
+    protected void publishPendingResolutions()
+    {
+        final Map<Pair<String, String>, CachedModuleIdResolution> pendingResolutions = TransactionalResourceHelper
+                .getMap(TXN_PENDING_RESOLUTIONS_KEY);
+        // resolutions of a generation that was replaced in the meantime are harmless - they will never be used
+        pendingResolutions.forEach(this.moduleIdResolutionCache::put);
+    }
+
+    protected void clearCachedModuleIdResolutions()
+    {
+        // new generations for all tenants invalidate any cached resolution without having to clear the (shared) resolution cache
+        this.moduleIdResolutionGenerationCache.clear();
+    }
+
+    protected void clearCachedUnresolvableModuleIdResolutions()
+    {
+        this.moduleIdResolutionGenerationCache.remove(UNRESOLVABLE_GENERATION_KEY);
+    }
+
+    protected boolean clearCachedModuleIdResolution(final String moduleId)
+    {
+        final Pair<String, String> key = new Pair<>(TenantUtil.getCurrentDomain(), moduleId);
+        final boolean cached = this.moduleIdResolutionCache.contains(key);
+        this.moduleIdResolutionCache.remove(key);
+        return cached;
+    }
+
+    protected List<CachedResolution> listCachedModuleIdResolutions()
+    {
+        final long now = System.currentTimeMillis();
+        final Map<String, String> generations = new HashMap<>();
+        final List<CachedResolution> cachedResolutions = new ArrayList<>();
+        for (final Pair<String, String> key : this.moduleIdResolutionCache.getKeys())
+        {
+            final CachedModuleIdResolution cachedResolution = this.moduleIdResolutionCache.get(key);
+            if (cachedResolution != null && cachedResolution.getExpiresAt() > now)
+            {
+                final String generation = generations.computeIfAbsent(key.getFirst(), this::getResolutionGeneration);
+                if (this.toEffectiveGeneration(generation, cachedResolution.isUnresolvable()).equals(cachedResolution.getGeneration()))
+                {
+                    cachedResolutions.add(new CachedResolution(key.getSecond(), key.getFirst(),
+                            cachedResolution.isUnresolvable() ? null : cachedResolution.getNormalizedModuleId(),
+                            cachedResolution.getExpiresAt()));
+                }
+            }
+        }
+        return cachedResolutions;
+    }
+
+    protected void onStructureChanged(final Collection<Pair<String, NodeRef>> changedNodes)
+    {
+        for (final Pair<String, NodeRef> changedNode : changedNodes)
+        {
+            // nodes without a marker are not part of any cached resolution (or their resolutions are already invalid due to eviction)
+            if (this.structureMarkerCache.get(changedNode) != null)
+            {
+                LOGGER.debug("Structure of node {} in tenant {} changed", changedNode.getSecond(), changedNode.getFirst());
+                this.structureMarkerCache.put(changedNode, GUID.generate());
+            }
+        }
+    }
+
+    protected static long toExpiresAt(final long timeToLive)
+    {
+        return timeToLive > 0 ? System.currentTimeMillis() + timeToLive : Long.MAX_VALUE;
+    }
+
     protected Pair<NodeRef, QName> resolveToContentNode(final String moduleId)
     {
+        final boolean txnActive = TransactionSupportUtil.isActualTransactionActive();
+        if (txnActive)
+        {
+            TransactionalResourceHelper.<NodeRef, String> getMap(TXN_TRAVERSED_PARENT_MARKERS_KEY).clear();
+        }
+
         final Pair<NodeRef, String[]> contextAndPath = this.resolveToContextAndPath(moduleId);
         final Pair<NodeRef, QName> contentNodeAndProperty = this
                 .resolveToContentNode(contextAndPath.getFirst(), contextAndPath.getSecond());
 
+        if (txnActive)
+        {
+            // markers of all nodes in which a child was looked up determine whether a (failed) resolution may be reused
+            final Map<NodeRef, String> traversedParentMarkers = TransactionalResourceHelper.getMap(TXN_TRAVERSED_PARENT_MARKERS_KEY);
+            final Map<Pair<String, String>, Map<NodeRef, String>> resolutionMarkers = TransactionalResourceHelper
+                    .getMap(TXN_RESOLUTION_MARKERS_KEY);
+            resolutionMarkers.put(new Pair<>(TenantUtil.getCurrentDomain(), moduleId), new HashMap<>(traversedParentMarkers));
+        }
+
         LOGGER.debug("Resolved node {} and property {} from module id {}", contentNodeAndProperty.getFirst(),
                 contentNodeAndProperty.getSecond(), moduleId);
 
@@ -450,21 +1044,121 @@ public class NodeURLStreamHandler extends URLStreamHandler
         return result;
     }
 
+    /**
+     * Determines the normalized path (store protocol, store identifier and names of all ancestors along the primary path) of a node. This
+     * reuses the ancestry resolved in {@link #resolvePathWithPotentialRemainder(NodeRef, String...) path resolution} within the current
+     * transaction - which only records primary parent associations - and only falls back to loading the primary path of the node / names of
+     * its ancestors for the nodes that were not resolved via their primary parent.
+     *
+     * @param node
+     *            the node for which to determine the normalized path
+     * @return the normalized path
+     */
+    protected String getNormalizedPath(final NodeRef node)
+    {
+        final boolean txnActive = TransactionSupportUtil.isActualTransactionActive();
+        final Pair<String, NodeRef> key = new Pair<>(TenantUtil.getCurrentDomain(), node);
+
+        String normalizedPath = null;
+        if (txnActive)
+        {
+            final Map<Pair<String, NodeRef>, String> normalizedPaths = TransactionalResourceHelper.getMap(TXN_NORMALIZED_PATH_KEY);
+            normalizedPath = normalizedPaths.get(key);
+
+            if (normalizedPath == null)
+            {
+                final Map<Pair<String, NodeRef>, Pair<NodeRef, String>> resolvedAncestry = TransactionalResourceHelper
+                        .getMap(TXN_RESOLVED_ANCESTRY_KEY);
+                final Pair<NodeRef, String> parentAndName = resolvedAncestry.get(key);
+                if (parentAndName != null)
+                {
+                    normalizedPath = this.getNormalizedPath(parentAndName.getFirst()) + '/' + parentAndName.getSecond();
+                }
+            }
+        }
+
+        if (normalizedPath == null)
+        {
+            final StringBuilder normalizedPathBuilder = new StringBuilder();
+            normalizedPathBuilder.append(node.getStoreRef().getProtocol());
+            normalizedPathBuilder.append('/');
+            normalizedPathBuilder.append(node.getStoreRef().getIdentifier());
+
+            NodeRef parentRef = null;
+            final Path path = this.nodeService.getPath(node);
+            for (final Element element : path)
+            {
+                if (element instanceof ChildAssocElement)
+                {
+                    final NodeRef childRef = ((ChildAssocElement) element).getRef().getChildRef();
+                    final Serializable name = this.nodeService.getProperty(childRef, ContentModel.PROP_NAME);
+
+                    normalizedPathBuilder.append('/');
+                    normalizedPathBuilder.append(name);
+
+                    if (txnActive && parentRef != null)
+                    {
+                        final Map<Pair<String, NodeRef>, Pair<NodeRef, String>> resolvedAncestry = TransactionalResourceHelper
+                                .getMap(TXN_RESOLVED_ANCESTRY_KEY);
+                        resolvedAncestry.putIfAbsent(new Pair<>(key.getFirst(), childRef), new Pair<>(parentRef, String.valueOf(name)));
+                    }
+                    parentRef = childRef;
+                }
+            }
+            normalizedPath = normalizedPathBuilder.toString();
+        }
+
+        if (txnActive)
+        {
+            final Map<Pair<String, NodeRef>, String> normalizedPaths = TransactionalResourceHelper.getMap(TXN_NORMALIZED_PATH_KEY);
+            normalizedPaths.put(key, normalizedPath);
+        }
+
+        return normalizedPath;
+    }
+
     protected Pair<NodeRef, String[]> resolvePathWithPotentialRemainder(final NodeRef root, final String... pathFragments)
     {
         NodeRef currentParent = root;
         NodeRef resolvedNode = null;
         final List<String> remainderFragments = new ArrayList<String>();
 
+        final Map<Pair<String, NodeRef>, Pair<NodeRef, String>> resolvedAncestry = TransactionSupportUtil.isActualTransactionActive()
+                ? TransactionalResourceHelper.getMap(TXN_RESOLVED_ANCESTRY_KEY) : null;
+        final Map<NodeRef, String> traversedParentMarkers = resolvedAncestry != null && this.structureMarkerCache != null
+                ? TransactionalResourceHelper.getMap(TXN_TRAVERSED_PARENT_MARKERS_KEY) : null;
+
         for (int idx = 0; idx < pathFragments.length; idx++)
         {
             final String fragment = pathFragments[idx];
             if (resolvedNode == null)
             {
-                final NodeRef childByName = this.childByName(currentParent, fragment, idx >= pathFragments.length - 2);
-                if (childByName != null)
+                if (traversedParentMarkers != null)
+                {
+                    // marker must be determined before the lookup so a concurrent structural change is never missed
+                    traversedParentMarkers.put(currentParent, this.getStructureMarker(TenantUtil.getCurrentDomain(), currentParent, true));
+                }
+
+                final Pair<ChildAssociationRef, String> childAssocAndName = this.childByName(currentParent, fragment,
+                        idx >= pathFragments.length - 2);
+                if (childAssocAndName != null)
                 {
-                    currentParent = childByName;
+                    final NodeRef child = childAssocAndName.getFirst().getChildRef();
+                    if (resolvedAncestry != null)
+                    {
+                        final Pair<String, NodeRef> key = new Pair<>(TenantUtil.getCurrentDomain(), child);
+                        if (childAssocAndName.getFirst().isPrimary())
+                        {
+                            // remember ancestry so normalizing the module ID does not need to load the path / names again
+                            resolvedAncestry.put(key, new Pair<>(currentParent, childAssocAndName.getSecond()));
+                        }
+                        else
+                        {
+                            // normalized ID must be unique and is always based on the primary path
+                            TransactionalResourceHelper.<Pair<String, NodeRef>> getSet(TXN_SECONDARY_RESOLUTION_KEY).add(key);
+                        }
+                    }
+                    currentParent = child;
                 }
                 else
                 {
@@ -486,74 +1180,70 @@ public class NodeURLStreamHandler extends URLStreamHandler
         return result;
     }
 
-    protected NodeRef childByName(final NodeRef parent, final String fragment, final boolean alternativeNameCheck)
+    protected Pair<ChildAssociationRef, String> childByName(final NodeRef parent, final String fragment,
+            final boolean alternativeNameCheck)
     {
-        NodeRef childByName;
+        // all candidate names in order of precedence
+        final List<String> candidateNames = new ArrayList<String>(3);
+        candidateNames.add(fragment);
+        if (alternativeNameCheck && fragment.indexOf('.') == -1)
+        {
+            candidateNames.add(fragment + ".nashornjs");
+            candidateNames.add(fragment + ".js");
+        }
+
+        Pair<ChildAssociationRef, String> childAndName;
 
         final QName parentType = this.nodeService.getType(parent);
         if (this.dictionaryService.isSubClass(parentType, ContentModel.TYPE_FOLDER))
         {
-            childByName = this.nodeService.getChildByName(parent, ContentModel.ASSOC_CONTAINS, fragment);
+            // single lookup for all candidate names
+            final List<ChildAssociationRef> childAssocs = this.nodeService.getChildrenByName(parent, ContentModel.ASSOC_CONTAINS,
+                    candidateNames);
+            childAndName = this.selectByNamePrecedence(childAssocs, candidateNames);
 
-            LOGGER.trace("Resolved {} as cm:contains child by name {} of {}", childByName, fragment, parent);
-
-            if (childByName == null && alternativeNameCheck && fragment.indexOf('.') == -1)
-            {
-                childByName = this.nodeService.getChildByName(parent, ContentModel.ASSOC_CONTAINS, fragment + ".nashornjs");
-
-                LOGGER.trace("Resolved {} as cm:contains child by name {}.nashornjs of {}", childByName, fragment, parent);
-
-                if (childByName == null)
-                {
-                    childByName = this.nodeService.getChildByName(parent, ContentModel.ASSOC_CONTAINS, fragment + ".js");
-
-                    LOGGER.trace("Resolved {} as cm:contains child by name {}.js of {}", childByName, fragment, parent);
-                }
-            }
+            LOGGER.trace("Resolved {} as cm:contains child by names {} of {}", childAndName, candidateNames, parent);
         }
         else if (this.dictionaryService.isSubClass(ContentModel.TYPE_CONTAINER, parentType))
         {
-            childByName = this.childByName(parent, fragment, ContentModel.ASSOC_CHILDREN);
-
-            LOGGER.trace("Resolved {} as sys:children child by name {} of {}", childByName, fragment, parent);
-
-            if (childByName == null && alternativeNameCheck && fragment.indexOf('.') == -1)
-            {
-                childByName = this.childByName(parent, fragment + ".nashornjs", ContentModel.ASSOC_CHILDREN);
-
-                LOGGER.trace("Resolved {} as sys:children child by name {}.nashornjs of {}", childByName, fragment, parent);
+            childAndName = this.childByName(parent, candidateNames, ContentModel.ASSOC_CHILDREN);
 
-                if (childByName == null)
-                {
-                    childByName = this.childByName(parent, fragment + ".js", ContentModel.ASSOC_CHILDREN);
-
-                    LOGGER.trace("Resolved {} as sys:children child by name {}.js of {}", childByName, fragment, parent);
-                }
-            }
+            LOGGER.trace("Resolved {} as sys:children child by names {} of {}", childAndName, candidateNames, parent);
         }
         else
         {
-            childByName = null;
+            childAndName = null;
         }
 
-        LOGGER.debug("Resolved {} as child by fragment {} of {} (alternativeNameCheck={})", childByName, fragment, parent,
+        LOGGER.debug("Resolved {} as child by fragment {} of {} (alternativeNameCheck={})", childAndName, fragment, parent,
                 Boolean.valueOf(alternativeNameCheck));
 
-        return childByName;
+        return childAndName;
     }
 
-    protected NodeRef childByName(final NodeRef parent, final String name, final QName assocTypeQName)
+    protected Pair<ChildAssociationRef, String> childByName(final NodeRef parent, final List<String> candidateNames,
+            final QName assocTypeQName)
     {
         // would be greate if MDQ supported selection by child assoc tyoe
-        final String query = MessageFormat.format("PARENT:\"{0}\" AND =cm:name:\"{1}\"", parent, name.replace("\"", "\\\""));
+        final StringBuilder queryBuilder = new StringBuilder();
+        queryBuilder.append(MessageFormat.format("PARENT:\"{0}\" AND (", parent));
+        for (int idx = 0; idx < candidateNames.size(); idx++)
+        {
+            if (idx != 0)
+            {
+                queryBuilder.append(" OR ");
+            }
+            queryBuilder.append("=cm:name:\"").append(candidateNames.get(idx).replace("\"", "\\\"")).append('"');
+        }
+        queryBuilder.append(')');
 
         final SearchParameters sp = new SearchParameters();
-        sp.setQuery(query);
+        sp.setQuery(queryBuilder.toString());
         sp.setLanguage(SearchService.LANGUAGE_FTS_ALFRESCO);
         sp.setQueryConsistency(QueryConsistency.TRANSACTIONAL);
         sp.addStore(parent.getStoreRef());
 
-        NodeRef child = null;
+        final List<ChildAssociationRef> childAssocs = new ArrayList<ChildAssociationRef>();
         final ResultSet resultSet = this.searchService.query(sp);
         try
         {
@@ -563,37 +1253,85 @@ public class NodeURLStreamHandler extends URLStreamHandler
 
                 final List<ChildAssociationRef> parentAssocs = this.nodeService.getParentAssocs(node, assocTypeQName,
                         RegexQNamePattern.MATCH_ALL);
-
-                boolean continueResultChecks = true;
                 for (final ChildAssociationRef parentAssoc : parentAssocs)
                 {
                     if (parentAssoc.getParentRef().equals(parent))
                     {
-                        if (child == null)
-                        {
-                            child = node;
-                        }
-                        else
-                        {
-                            child = null;
-                            continueResultChecks = false;
-                            break;
-                        }
+                        childAssocs.add(parentAssoc);
                     }
                 }
+            }
+        }
+        finally
+        {
+            resultSet.close();
+        }
+
+        final Pair<ChildAssociationRef, String> childAndName = this.selectByNamePrecedence(childAssocs, candidateNames);
+        return childAndName;
+    }
+
+    protected Pair<ChildAssociationRef, String> selectByNamePrecedence(final List<ChildAssociationRef> childAssocs,
+            final List<String> candidateNames)
+    {
+        Pair<ChildAssociationRef, String> childAndName = null;
 
-                if (!continueResultChecks)
+        if (!childAssocs.isEmpty())
+        {
+            final List<ChildAssociationRef> children = new ArrayList<ChildAssociationRef>(childAssocs.size());
+            final List<String> childNames = new ArrayList<String>(childAssocs.size());
+            for (final ChildAssociationRef childAssoc : childAssocs)
+            {
+                final int existingIdx = this.indexOfChild(children, childAssoc.getChildRef());
+                if (existingIdx == -1)
+                {
+                    children.add(childAssoc);
+                    childNames.add(DefaultTypeConverter.INSTANCE.convert(String.class,
+                            this.nodeService.getProperty(childAssoc.getChildRef(), ContentModel.PROP_NAME)));
+                }
+                else if (childAssoc.isPrimary())
+                {
+                    // same node may be associated multiple times - prefer the primary association
+                    children.set(existingIdx, childAssoc);
+                }
+            }
+
+            for (final String candidateName : candidateNames)
+            {
+                // names are compared case-insensitive just like NodeService.getChildByName
+                int matchIdx = -1;
+                boolean ambiguous = false;
+                for (int idx = 0; idx < children.size() && !ambiguous; idx++)
                 {
+                    if (candidateName.equalsIgnoreCase(childNames.get(idx)))
+                    {
+                        ambiguous = matchIdx != -1;
+                        matchIdx = idx;
+                    }
+                }
+
+                if (matchIdx != -1 && !ambiguous)
+                {
+                    childAndName = new Pair<>(children.get(matchIdx), childNames.get(matchIdx));
                     break;
                 }
             }
         }
-        finally
+
+        return childAndName;
+    }
+
+    protected int indexOfChild(final List<ChildAssociationRef> childAssocs, final NodeRef child)
+    {
+        int idx = -1;
+        for (int candidateIdx = 0; candidateIdx < childAssocs.size() && idx == -1; candidateIdx++)
         {
-            resultSet.close();
+            if (childAssocs.get(candidateIdx).getChildRef().equals(child))
+            {
+                idx = candidateIdx;
+            }
         }
-
-        return child;
+        return idx;
     }
 
     protected boolean isContentNode(final NodeRef node)
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.util.ParameterCheck;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolution;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutionStatistics;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutions;
+
+/**
+ * Instances of this class hold the cached resolutions of one kind of cached resolutions, including resolutions that failed to produce a
+ * value. Lookups use the plain resolution key and never block. {@link #clear() Clearing all resolutions} replaces the internal map while
+ * {@link #clearUnresolvable() clearing failed resolutions} only starts a new generation of failed resolutions, so both are constant-time
+ * operations that do not block concurrent lookups or registrations. Failed resolutions of previous generations are removed lazily.
+ *
+ * Resolutions may be limited by separate times to live for successful and failed resolutions, and the number of resolutions may be
+ * bounded. Expired resolutions are dropped on lookup. When the bound is exceeded, a single registering thread sweeps expired resolutions
+ * and then evicts arbitrary resolutions until the cache is back to 90% of its bound, while concurrent registrations proceed unhindered.
+ *
+ * @param <V>
+ *            the type of resolved values
+ * @author Axel Faust
+ */
+public class ResolutionCache<V> implements CachedResolutions
+{
+
+    /**
+     * Instances of this class represent a single cached resolution.
+     *
+     * @param <V>
+     *            the type of resolved values
+     * @author Axel Faust
+     */
+    public static class Resolution<V>
+    {
+
+        protected final V value;
+
+        protected final long unresolvableGeneration;
+
+        protected final long expiresAt;
+
+        protected Resolution(final V value, final long unresolvableGeneration, final long expiresAt)
+        {
+            this.value = value;
+            this.unresolvableGeneration = unresolvableGeneration;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return the resolved value or {@code null} if the resolution failed
+         */
+        public V getValue()
+        {
+            return this.value;
+        }
+
+        /**
+         * @return {@code true} if the resolution failed to produce a value, {@code false} otherwise
+         */
+        public boolean isUnresolvable()
+        {
+            return this.value == null;
+        }
+
+        /**
+         * @return the time (in milliseconds since the epoch) at which the resolution expires, or {@link Long#MAX_VALUE} if the resolution
+         *         does not expire
+         */
+        public long getExpiresAt()
+        {
+            return this.expiresAt;
+        }
+    }
+
+    protected final int maxEntries;
+
+    protected final long resolutionTimeToLive;
+
+    protected final long unresolvableTimeToLive;
+
+    // replaced instead of cleared so that concurrent lookups never observe a partially cleared map
+    protected volatile ConcurrentMap<String, Resolution<V>> resolutions = new ConcurrentHashMap<>();
+
+    protected final AtomicLong unresolvableGeneration = new AtomicLong();
+
+    protected final AtomicBoolean sweeping = new AtomicBoolean();
+
+    protected final ResolutionCounters counters = new ResolutionCounters();
+
+    /**
+     * Creates a new, unbounded cache of resolutions that never expire.
+     */
+    public ResolutionCache()
+    {
+        this(0, 0, 0);
+    }
+
+    /**
+     * Creates a new cache of resolutions.
+     *
+     * @param maxEntries
+     *            the maximum number of cached resolutions - values of {@code 0} or less leave the cache unbounded
+     * @param resolutionTimeToLive
+     *            the time to live (in milliseconds) of successful resolutions - values of {@code 0} or less disable expiration
+     * @param unresolvableTimeToLive
+     *            the time to live (in milliseconds) of failed resolutions - values of {@code 0} or less disable expiration
+     */
+    public ResolutionCache(final int maxEntries, final long resolutionTimeToLive, final long unresolvableTimeToLive)
+    {
+        this.maxEntries = maxEntries;
+        this.resolutionTimeToLive = resolutionTimeToLive;
+        this.unresolvableTimeToLive = unresolvableTimeToLive;
+    }
+
+    /**
+     * Retrieves a cached resolution.
+     *
+     * @param resolutionKey
+     *            the key of the resolution
+     * @return the cached resolution or {@code null} if no (valid) resolution has been cached for the key
+     */
+    public Resolution<V> get(final String resolutionKey)
+    {
+        final ConcurrentMap<String, Resolution<V>> resolutions = this.resolutions;
+        Resolution<V> resolution = resolutions.get(resolutionKey);
+        if (resolution != null)
+        {
+            if (resolution.expiresAt <= System.currentTimeMillis())
+            {
+                if (resolutions.remove(resolutionKey, resolution))
+                {
+                    this.counters.recordExpiration();
+                }
+                resolution = null;
+            }
+            else if (this.isStale(resolution))
+            {
+                resolutions.remove(resolutionKey, resolution);
+                resolution = null;
+            }
+        }
+
+        if (resolution != null)
+        {
+            this.counters.recordHit();
+        }
+        else
+        {
+            this.counters.recordMiss();
+        }
+        return resolution;
+    }
+
+    /**
+     * Caches the successful resolution of a key.
+     *
+     * @param resolutionKey
+     *            the key of the resolution
+     * @param value
+     *            the resolved value
+     */
+    public void put(final String resolutionKey, final V value)
+    {
+        ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
+        ParameterCheck.mandatory("value", value);
+
+        this.putImpl(resolutionKey, new Resolution<>(value, -1, this.toExpiresAt(this.resolutionTimeToLive)));
+    }
+
+    /**
+     * Caches the failed resolution of a key.
+     *
+     * @param resolutionKey
+     *            the key of the resolution
+     */
+    public void putUnresolvable(final String resolutionKey)
+    {
+        ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
+
+        this.putImpl(resolutionKey,
+                new Resolution<>(null, this.unresolvableGeneration.get(), this.toExpiresAt(this.unresolvableTimeToLive)));
+    }
+
+    /**
+     * Removes a cached resolution.
+     *
+     * @param resolutionKey
+     *            the key of the resolution
+     * @return {@code true} if a resolution was cached for the key, {@code false} otherwise
+     */
+    public boolean remove(final String resolutionKey)
+    {
+        ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
+
+        return this.resolutions.remove(resolutionKey) != null;
+    }
+
+    /**
+     * Removes a cached resolution because the resolved value is no longer valid.
+     *
+     * @param resolutionKey
+     *            the key of the resolution
+     * @param resolution
+     *            the resolution found to be invalid
+     */
+    public void invalidate(final String resolutionKey, final Resolution<V> resolution)
+    {
+        ParameterCheck.mandatoryString("resolutionKey", resolutionKey);
+        ParameterCheck.mandatory("resolution", resolution);
+
+        if (this.resolutions.remove(resolutionKey, resolution))
+        {
+            this.counters.recordInvalidation();
+        }
+    }
+
+    /**
+     * @return the number of currently cached resolutions (including failed resolutions that have not yet been removed lazily)
+     */
+    public int size()
+    {
+        return this.resolutions.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        this.resolutions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearUnresolvable()
+    {
+        this.unresolvableGeneration.incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clear(final String resolutionKey)
+    {
+        return this.remove(resolutionKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CachedResolution> list()
+    {
+        final long now = System.currentTimeMillis();
+        final List<CachedResolution> cachedResolutions = new ArrayList<>();
+        this.resolutions.forEach((resolutionKey, resolution) -> {
+            if (resolution.expiresAt > now && !this.isStale(resolution))
+            {
+                cachedResolutions.add(new CachedResolution(resolutionKey, null,
+                        resolution.value != null ? String.valueOf(resolution.value) : null, resolution.expiresAt));
+            }
+        });
+        return cachedResolutions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CachedResolutionStatistics getStatistics()
+    {
+        return this.counters.toStatistics(this.resolutions.size());
+    }
+
+    protected void putImpl(final String resolutionKey, final Resolution<V> resolution)
+    {
+        final ConcurrentMap<String, Resolution<V>> resolutions = this.resolutions;
+        resolutions.put(resolutionKey, resolution);
+
+        if (this.maxEntries > 0 && resolutions.size() > this.maxEntries && this.sweeping.compareAndSet(false, true))
+        {
+            try
+            {
+                this.sweep(resolutions);
+            }
+            finally
+            {
+                this.sweeping.set(false);
+            }
+        }
+    }
+
+    protected void sweep(final ConcurrentMap<String, Resolution<V>> resolutions)
+    {
+        final long now = System.currentTimeMillis();
+        resolutions.forEach((resolutionKey, resolution) -> {
+            if (resolution.expiresAt <= now)
+            {
+                if (resolutions.remove(resolutionKey, resolution))
+                {
+                    this.counters.recordExpiration();
+                }
+            }
+            else if (this.isStale(resolution))
+            {
+                resolutions.remove(resolutionKey, resolution);
+            }
+        });
+
+        // evicting a bit more than necessary avoids sweeping again on the next registration
+        final int targetSize = this.maxEntries - this.maxEntries / 10;
+        final Iterator<Resolution<V>> resolutionIterator = resolutions.values().iterator();
+        while (resolutions.size() > targetSize && resolutionIterator.hasNext())
+        {
+            resolutionIterator.next();
+            resolutionIterator.remove();
+            this.counters.recordEviction();
+        }
+    }
+
+    protected boolean isStale(final Resolution<V> resolution)
+    {
+        return resolution.isUnresolvable() && resolution.unresolvableGeneration != this.unresolvableGeneration.get();
+    }
+
+    protected long toExpiresAt(final long timeToLive)
+    {
+        return timeToLive > 0 ? System.currentTimeMillis() + timeToLive : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutionStatistics;
+
+/**
+ * Instances of this class track the usage of the cached resolutions of one kind. Counters are never reset, not even when all cached
+ * resolutions are cleared, so that the statistics reflect the whole lifetime of a stream handler.
+ *
+ * @author Axel Faust
+ */
+public class ResolutionCounters
+{
+
+    protected final LongAdder hits = new LongAdder();
+
+    protected final LongAdder misses = new LongAdder();
+
+    protected final LongAdder expirations = new LongAdder();
+
+    protected final LongAdder evictions = new LongAdder();
+
+    protected final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Records a lookup served by a cached resolution.
+     */
+    public void recordHit()
+    {
+        this.hits.increment();
+    }
+
+    /**
+     * Records a lookup that required an actual resolution.
+     */
+    public void recordMiss()
+    {
+        this.misses.increment();
+    }
+
+    /**
+     * Records a cached resolution dropped because its time to live had passed.
+     */
+    public void recordExpiration()
+    {
+        this.expirations.increment();
+    }
+
+    /**
+     * Records a cached resolution dropped to keep the cache within its size limit.
+     */
+    public void recordEviction()
+    {
+        this.evictions.increment();
+    }
+
+    /**
+     * Records a cached resolution dropped because the resolved script or its structural context changed.
+     */
+    public void recordInvalidation()
+    {
+        this.invalidations.increment();
+    }
+
+    /**
+     * Creates a snapshot of the current counters.
+     *
+     * @param size
+     *            the number of currently cached resolutions
+     * @return the statistics snapshot
+     */
+    public CachedResolutionStatistics toStatistics(final int size)
+    {
+        return new CachedResolutionStatistics(size, this.hits.sum(), this.misses.sum(), this.expirations.sum(), this.evictions.sum(),
+                this.invalidations.sum());
+    }
+}
@@ -17,6 +17,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import org.alfresco.scripts.ScriptException;
 import org.alfresco.util.ParameterCheck;
 import org.apache.commons.io.IOUtils;
@@ -93,6 +94,29 @@ public class ScriptContentFile implements ScriptFile
         return is;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized ByteBuffer getByteBuffer()
+    {
+        if (this.byteBuffer == null)
+        {
+            this.cacheScriptFile();
+        }
+
+        return ByteBuffer.wrap(this.byteBuffer).asReadOnlyBuffer();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getCachedSize()
+    {
+        return this.byteBuffer != null ? this.byteBuffer.length : 0;
+    }
+
     /**
      * {@inheritDoc}
      */
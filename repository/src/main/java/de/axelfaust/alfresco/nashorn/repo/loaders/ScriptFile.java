@@ -13,7 +13,12 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.loaders;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.alfresco.scripts.ScriptException;
+import org.apache.commons.io.IOUtils;
 
 /**
  * @author Axel Faust
@@ -58,6 +63,37 @@ public interface ScriptFile
      */
     InputStream getInputStream();
 
+    /**
+     * Retrieves a read-only buffer of the scripts content. Implementations should provide buffers backed by the cached script content
+     * (e.g. a memory mapped file) without copying it, so large scripts can be read repeatedly without producing garbage. The default
+     * implementation copies the content of {@link #getInputStream() the input stream} into a new buffer.
+     *
+     * @return a new read-only buffer for the script contents positioned at the start of the script
+     */
+    default ByteBuffer getByteBuffer()
+    {
+        try (final InputStream is = this.getInputStream())
+        {
+            final byte[] bytes = IOUtils.toByteArray(is);
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        catch (final IOException ioex)
+        {
+            throw new ScriptException("Script can't be loaded", ioex);
+        }
+    }
+
+    /**
+     * Retrieves the number of bytes of script content currently cached by this instance (in memory or on disk). In contrast to
+     * {@link #getSize(boolean) getSize} this operation never triggers any checks or caching of the script content.
+     *
+     * @return the number of cached bytes or {@code 0} if no content is currently cached
+     */
+    default long getCachedSize()
+    {
+        return 0;
+    }
+
     /**
      * Resets any cached state for the script.
      */
@@ -71,6 +71,7 @@ public class ScriptFileURLConnection extends URLConnection
     @Override
     public InputStream getInputStream() throws IOException
     {
-        return this.scriptFile.getInputStream();
+        // stream directly from the (potentially memory mapped) script buffer
+        return new ByteBufferInputStream(this.scriptFile.getByteBuffer());
     }
 }
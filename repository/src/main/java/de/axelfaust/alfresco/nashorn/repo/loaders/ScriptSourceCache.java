@@ -0,0 +1,335 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.loaders;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.util.ParameterCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Instances of this class hold the (strict mode enforced) source of {@link ScriptFile script files} in memory, limited by a total byte
+ * budget. The least recently used sources are evicted if the budget would be exceeded, and are written to the spill file provided by the
+ * owning script file (if any) so they can still be served from disk without re-reading them from their origin. Evicted sources that are
+ * removed or replaced before they have been written are not spilled.
+ *
+ * @author Axel Faust
+ */
+public class ScriptSourceCache
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptSourceCache.class);
+
+    /**
+     * Simple holder of a single cached script source.
+     *
+     * @author Axel Faust
+     */
+    protected static class CachedSource
+    {
+
+        protected final byte[] content;
+
+        protected final File spillFile;
+
+        // guarded by sources of the owning cache
+        protected boolean discarded = false;
+
+        protected CachedSource(final byte[] content, final File spillFile)
+        {
+            this.content = content;
+            this.spillFile = spillFile;
+        }
+    }
+
+    protected long maxBytes = 32 * 1024 * 1024;
+
+    protected long maxEntryBytes = 1024 * 1024;
+
+    protected final Map<String, CachedSource> sources = new LinkedHashMap<String, CachedSource>(128, 0.75f, true);
+
+    protected long currentBytes = 0;
+
+    // evicted sources not yet written to their spill file - guarded by sources
+    protected final Map<String, CachedSource> pendingSpills = new HashMap<String, CachedSource>();
+
+    protected final AtomicLong hits = new AtomicLong();
+
+    protected final AtomicLong misses = new AtomicLong();
+
+    protected final AtomicLong evictions = new AtomicLong();
+
+    protected final AtomicLong spills = new AtomicLong();
+
+    /**
+     * @param maxBytes
+     *            the maxBytes to set
+     */
+    public void setMaxBytes(final long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param maxEntryBytes
+     *            the maxEntryBytes to set
+     */
+    public void setMaxEntryBytes(final long maxEntryBytes)
+    {
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    /**
+     * Retrieves the cached source for a specific key.
+     *
+     * @param key
+     *            the key of the cached source
+     * @return the cached source or {@code null} if no source is cached for the key - the returned array must not be modified
+     */
+    public byte[] get(final String key)
+    {
+        ParameterCheck.mandatoryString("key", key);
+
+        final CachedSource source;
+        synchronized (this.sources)
+        {
+            source = this.sources.get(key);
+        }
+
+        if (source != null)
+        {
+            this.hits.incrementAndGet();
+        }
+        else
+        {
+            this.misses.incrementAndGet();
+        }
+
+        return source != null ? source.content : null;
+    }
+
+    /**
+     * Puts a source into the cache if it fits into the configured budget, evicting the least recently used sources as necessary.
+     *
+     * @param key
+     *            the key of the source to cache
+     * @param content
+     *            the content of the source - must not be modified after being passed to this operation
+     * @param spillFile
+     *            the file to which the source should be written if it is evicted from the cache, or {@code null} if the source should
+     *            simply be dropped
+     * @return {@code true} if the source has been cached, {@code false} if it exceeds the configured budget
+     */
+    public boolean put(final String key, final byte[] content, final File spillFile)
+    {
+        ParameterCheck.mandatoryString("key", key);
+        ParameterCheck.mandatory("content", content);
+
+        final boolean cached = content.length <= this.maxEntryBytes && content.length <= this.maxBytes;
+        if (cached)
+        {
+            final List<Map.Entry<String, CachedSource>> evictedSources = new ArrayList<Map.Entry<String, CachedSource>>();
+            synchronized (this.sources)
+            {
+                this.discardPendingSpill(key);
+
+                final CachedSource replacedSource = this.sources.put(key, new CachedSource(content, spillFile));
+                this.currentBytes += content.length;
+                if (replacedSource != null)
+                {
+                    this.currentBytes -= replacedSource.content.length;
+                }
+
+                final Iterator<Map.Entry<String, CachedSource>> iterator = this.sources.entrySet().iterator();
+                while (this.currentBytes > this.maxBytes && iterator.hasNext())
+                {
+                    final Map.Entry<String, CachedSource> eldest = iterator.next();
+                    if (!eldest.getKey().equals(key))
+                    {
+                        iterator.remove();
+                        this.currentBytes -= eldest.getValue().content.length;
+                        evictedSources.add(new AbstractMap.SimpleImmutableEntry<String, CachedSource>(eldest));
+                        if (eldest.getValue().spillFile != null)
+                        {
+                            this.pendingSpills.put(eldest.getKey(), eldest.getValue());
+                        }
+                        LOGGER.trace("Evicted script source {}", eldest.getKey());
+                    }
+                }
+            }
+
+            this.evictions.addAndGet(evictedSources.size());
+            // file I/O should not be performed while holding the lock
+            evictedSources.forEach(x -> this.spill(x.getKey(), x.getValue()));
+        }
+        else
+        {
+            LOGGER.debug("Script source {} with {} bytes exceeds the configured budget", key, content.length);
+            // never keep a stale source for the key
+            this.remove(key);
+        }
+        return cached;
+    }
+
+    /**
+     * Removes a cached source.
+     *
+     * @param key
+     *            the key of the cached source
+     */
+    public void remove(final String key)
+    {
+        ParameterCheck.mandatoryString("key", key);
+
+        synchronized (this.sources)
+        {
+            this.discardPendingSpill(key);
+
+            final CachedSource source = this.sources.remove(key);
+            if (source != null)
+            {
+                this.currentBytes -= source.content.length;
+            }
+        }
+    }
+
+    /**
+     * Removes all cached sources.
+     */
+    public void clear()
+    {
+        synchronized (this.sources)
+        {
+            this.sources.clear();
+            this.currentBytes = 0;
+
+            this.pendingSpills.values().forEach(x -> x.discarded = true);
+            this.pendingSpills.clear();
+        }
+    }
+
+    /**
+     * @return the number of lookups served from memory
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups that could not be served from memory
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of sources evicted due to the byte budget
+     */
+    public long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return the number of evicted sources written to disk
+     */
+    public long getSpills()
+    {
+        return this.spills.get();
+    }
+
+    /**
+     * @return the number of bytes currently held in memory
+     */
+    public long getCurrentBytes()
+    {
+        synchronized (this.sources)
+        {
+            return this.currentBytes;
+        }
+    }
+
+    protected void discardPendingSpill(final String key)
+    {
+        // evicted source is stale once its key has been removed or replaced
+        final CachedSource pendingSpill = this.pendingSpills.remove(key);
+        if (pendingSpill != null)
+        {
+            pendingSpill.discarded = true;
+        }
+    }
+
+    protected void spill(final String key, final CachedSource source)
+    {
+        if (source.spillFile != null)
+        {
+            File tempFile = null;
+            try
+            {
+                // unique temporary file in target directory so concurrent writers never share it and readers never see partial content
+                tempFile = File.createTempFile(source.spillFile.getName(), ".spill", source.spillFile.getParentFile());
+                try (final OutputStream os = new FileOutputStream(tempFile, false))
+                {
+                    os.write(source.content);
+                }
+
+                synchronized (this.sources)
+                {
+                    if (!source.discarded)
+                    {
+                        Files.move(tempFile.toPath(), source.spillFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                        this.spills.incrementAndGet();
+                    }
+                    else
+                    {
+                        LOGGER.trace("Skipped spilling discarded script source {}", key);
+                    }
+                    this.pendingSpills.remove(key, source);
+                }
+            }
+            catch (final IOException ioex)
+            {
+                LOGGER.debug("Error writing evicted script source to {}", source.spillFile, ioex);
+                synchronized (this.sources)
+                {
+                    this.pendingSpills.remove(key, source);
+                }
+            }
+            finally
+            {
+                if (tempFile != null && tempFile.exists())
+                {
+                    tempFile.delete();
+                }
+            }
+        }
+    }
+}
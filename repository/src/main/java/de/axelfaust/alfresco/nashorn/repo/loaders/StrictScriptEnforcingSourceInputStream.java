@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Axel Faust
+ * Copyright 2016, 2017 Axel Faust
  *
  * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
  * this file except in compliance with the License. You may obtain a copy of the License at
@@ -13,14 +13,21 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.loaders;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
+ * Instances of this class ensure that a script is executed in strict mode by injecting a {@code 'use strict';} directive before the first
+ * expression of the script, unless the script already starts with that directive. The prologue of the script (leading whitespace and
+ * comments) is scanned byte-by-byte for any ASCII-compatible charset - as soon as the first expression has been found, all remaining
+ * content is passed through from the source stream unmodified and without any intermediary buffering. Consistent with previous
+ * implementations, a line break is added at the end of the script if it does not already end with one.
+ *
  * @author Axel Faust
  */
 public class StrictScriptEnforcingSourceInputStream extends InputStream
@@ -28,30 +35,62 @@ public class StrictScriptEnforcingSourceInputStream extends InputStream
 
     public static final String USE_STRICT_INJECTION = "'use strict'; ";
 
-    protected volatile boolean strictFoundOrInjected = false;
+    protected static final String USE_STRICT_DIRECTIVE = "use strict";
+
+    // all characters relevant to the prologue scan
+    protected static final String ASCII_COMPATIBILITY_PROBE = "'\"/*; \t\r\n" + USE_STRICT_DIRECTIVE;
 
-    protected volatile boolean inBlockComment = false;
+    protected static final int SCAN_CONTINUE = -1;
 
-    protected volatile boolean endOfSourceReached = false;
+    protected static final int SCAN_NO_INJECTION = -2;
 
-    protected transient byte[] buffer;
+    protected static final int INITIAL_BUFFER_SIZE = 4096;
 
-    protected transient int bufPos = -1;
+    protected final InputStream in;
 
     protected final Charset charset;
 
-    protected final BufferedReader reader;
+    protected final boolean asciiCompatible;
+
+    protected boolean directiveHandled = false;
+
+    protected boolean endOfSourceReached = false;
+
+    // prologue scan state
+    protected boolean inBlockComment = false;
+
+    protected boolean inLineComment = false;
+
+    protected int last = '\n';
+
+    protected int slashPosition = -1;
+
+    protected int directiveQuote = -1;
+
+    protected int directiveStart = -1;
+
+    protected int directiveMatched = 0;
+
+    // prologue including any injected directive
+    protected byte[] head;
+
+    protected int headPos = 0;
+
+    protected int lastSourceByte = -1;
+
+    protected boolean trailingLineBreakEmitted = false;
 
     public StrictScriptEnforcingSourceInputStream(final InputStream in)
     {
-        this.charset = StandardCharsets.UTF_8;
-        this.reader = new BufferedReader(new InputStreamReader(in, this.charset));
+        this(in, StandardCharsets.UTF_8);
     }
 
     public StrictScriptEnforcingSourceInputStream(final InputStream in, final Charset charset)
     {
+        this.in = in;
         this.charset = charset;
-        this.reader = new BufferedReader(new InputStreamReader(in, charset));
+        this.asciiCompatible = Arrays.equals(ASCII_COMPATIBILITY_PROBE.getBytes(StandardCharsets.US_ASCII),
+                ASCII_COMPATIBILITY_PROBE.getBytes(charset));
     }
 
     /**
@@ -60,20 +99,78 @@ public class StrictScriptEnforcingSourceInputStream extends InputStream
     @Override
     public int read() throws IOException
     {
+        this.ensureDirectiveHandled();
+
         int read;
-        if ((this.bufPos == -1 || this.buffer == null || this.bufPos >= this.buffer.length) && !this.endOfSourceReached)
+        if (this.headPos < this.head.length)
         {
-            this.fillBufferWithNextLine();
+            read = this.head[this.headPos++] & 0xff;
         }
-
-        if (this.buffer != null && this.bufPos < this.buffer.length)
+        else if (this.endOfSourceReached)
         {
-            read = this.buffer[this.bufPos++];
+            read = -1;
         }
         else
+        {
+            read = this.in.read();
+            if (read == -1)
+            {
+                read = this.endOfSourceRead();
+            }
+            else
+            {
+                this.lastSourceByte = read;
+            }
+        }
+
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (off < 0 || len < 0 || len > b.length - off)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        this.ensureDirectiveHandled();
+
+        int read;
+        if (this.headPos < this.head.length)
+        {
+            read = Math.min(len, this.head.length - this.headPos);
+            System.arraycopy(this.head, this.headPos, b, off, read);
+            this.headPos += read;
+        }
+        else if (this.endOfSourceReached)
         {
             read = -1;
         }
+        else
+        {
+            read = this.in.read(b, off, len);
+            if (read == -1)
+            {
+                read = this.endOfSourceRead();
+                if (read != -1)
+                {
+                    b[off] = (byte) read;
+                    read = 1;
+                }
+            }
+            else if (read > 0)
+            {
+                this.lastSourceByte = b[off + read - 1] & 0xff;
+            }
+        }
 
         return read;
     }
@@ -82,131 +179,284 @@ public class StrictScriptEnforcingSourceInputStream extends InputStream
      * {@inheritDoc}
      */
     @Override
-    public synchronized void close() throws IOException
+    public int available() throws IOException
+    {
+        int available;
+        if (this.head != null && this.headPos < this.head.length)
+        {
+            available = this.head.length - this.headPos;
+        }
+        else if (this.endOfSourceReached)
+        {
+            available = 0;
+        }
+        else
+        {
+            available = this.in.available();
+        }
+        return available;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
     {
         this.endOfSourceReached = true;
-        this.reader.close();
+        if (this.head != null)
+        {
+            this.headPos = this.head.length;
+        }
+        this.in.close();
     }
 
-    protected synchronized void fillBufferWithNextLine() throws IOException
+    protected void ensureDirectiveHandled() throws IOException
     {
-        final String line = this.reader.readLine();
-        if (line != null)
+        if (!this.directiveHandled)
         {
-            final StringBuilder lineBuilder = new StringBuilder(line.length());
-            if (!this.strictFoundOrInjected)
+            if (this.endOfSourceReached)
+            {
+                throw new IOException("Stream closed");
+            }
+
+            if (this.asciiCompatible)
+            {
+                this.handleDirectiveInBytes();
+            }
+            else
+            {
+                this.handleDirectiveInCharacters();
+            }
+            this.directiveHandled = true;
+        }
+    }
+
+    protected void handleDirectiveInBytes() throws IOException
+    {
+        byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        int limit = 0;
+        int scanPos = 0;
+        boolean bomChecked = false;
+        int injectAt = SCAN_CONTINUE;
+
+        while (injectAt == SCAN_CONTINUE)
+        {
+            if (limit == buffer.length)
+            {
+                // prologue (typically a license header) larger than expected
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            final int read = this.in.read(buffer, limit, buffer.length - limit);
+            if (read == -1)
+            {
+                this.endOfSourceReached = true;
+            }
+            else
+            {
+                limit += read;
+            }
+
+            if (!bomChecked && (limit >= 3 || this.endOfSourceReached))
             {
-                char last = '\n';
-                for (int idx = 0; idx < line.length(); idx++)
+                // byte order mark must not be preceded by any injection
+                if (limit >= 3 && StandardCharsets.UTF_8.equals(this.charset) && (buffer[0] & 0xff) == 0xef
+                        && (buffer[1] & 0xff) == 0xbb && (buffer[2] & 0xff) == 0xbf)
                 {
-                    char c = line.charAt(idx);
-                    if (Character.isWhitespace(c))
-                    {
-                        if (Character.isWhitespace(last) || this.inBlockComment)
-                        {
-                            lineBuilder.append(c);
-                        }
-                        else
-                        {
-                            // whitespace after any non-comment content
-                            // inject 'use strict';
-                            lineBuilder.insert(lineBuilder.length() - 2, "'use strict';");
-                            lineBuilder.append(line.substring(idx));
-                            this.strictFoundOrInjected = true;
-                            break;
-                        }
-                    }
-                    else if (c == '/')
-                    {
-                        if (Character.isWhitespace(last))
-                        {
-                            lineBuilder.append(c);
-                        }
-                        else if (this.inBlockComment)
-                        {
-                            lineBuilder.append(c);
-                            if (last == '*')
-                            {
-                                this.inBlockComment = false;
-                                // dummy line break to avoid misinterpreting *// as */ and //
-                                c = '\n';
-                            }
-                        }
-                        else if (last != '/')
-                        {
-                            // potentially a regex literal
-                            // inject 'use strict';
-                            lineBuilder.insert(lineBuilder.length() - 2, USE_STRICT_INJECTION);
-                            lineBuilder.append(line.substring(idx));
-                            this.strictFoundOrInjected = true;
-                            break;
-                        }
-                        else
-                        {
-                            // line comment
-                            lineBuilder.append(line.substring(idx));
-                            break;
-                        }
-                    }
-                    else if (!this.inBlockComment && last == '/')
-                    {
-                        if (c != '*')
-                        {
-                            // potentially a regex literal
-                            // inject 'use strict';
-                            lineBuilder.insert(lineBuilder.length() - 2, USE_STRICT_INJECTION);
-                            lineBuilder.append(line.substring(idx));
-                            this.strictFoundOrInjected = true;
-                            break;
-                        }
-                        lineBuilder.append(c);
-                        this.inBlockComment = true;
-                    }
-                    else if (this.inBlockComment)
-                    {
-                        lineBuilder.append(c);
-                    }
-                    else
-                    {
-                        final String remainder = line.substring(idx);
-                        if (c == '"' || c == '\'')
-                        {
-                            if (!remainder.matches("(['\"])use strict\\1\\s*;.*"))
-                            {
-                                // some arbitrary literal expression
-                                // inject 'use strict';
-                                lineBuilder.append(USE_STRICT_INJECTION);
-                            }
-                            lineBuilder.append(remainder);
-                            this.strictFoundOrInjected = true;
-                        }
-                        else
-                        {
-                            // non-whitespace, non-quote character outside of a block or line comment
-                            // inject 'use strict';
-                            lineBuilder.append(USE_STRICT_INJECTION);
-                            lineBuilder.append(remainder);
-                            this.strictFoundOrInjected = true;
-                        }
-                        break;
-                    }
-
-                    last = c;
+                    scanPos = 3;
                 }
+                bomChecked = true;
             }
-            else
+
+            while (bomChecked && injectAt == SCAN_CONTINUE && scanPos < limit)
             {
-                lineBuilder.append(line);
+                final int c = buffer[scanPos] & 0xff;
+                injectAt = this.scan(c, scanPos, c < 0x80 && Character.isWhitespace(c));
+                scanPos++;
             }
 
-            lineBuilder.append('\n');
-            this.buffer = lineBuilder.toString().getBytes(this.charset);
-            this.bufPos = 0;
+            if (injectAt == SCAN_CONTINUE && this.endOfSourceReached)
+            {
+                injectAt = this.endOfSourceScan();
+            }
+        }
+
+        final boolean addTrailingLineBreak = this.endOfSourceReached && limit > 0 && buffer[limit - 1] != '\n';
+        final int headLength = limit + (addTrailingLineBreak ? 1 : 0);
+        if (injectAt >= 0)
+        {
+            final byte[] injection = USE_STRICT_INJECTION.getBytes(this.charset);
+            this.head = new byte[headLength + injection.length];
+            System.arraycopy(buffer, 0, this.head, 0, injectAt);
+            System.arraycopy(injection, 0, this.head, injectAt, injection.length);
+            System.arraycopy(buffer, injectAt, this.head, injectAt + injection.length, limit - injectAt);
         }
         else
         {
-            this.reader.close();
-            this.endOfSourceReached = true;
+            this.head = headLength == buffer.length ? buffer : Arrays.copyOf(buffer, headLength);
+        }
+
+        if (addTrailingLineBreak)
+        {
+            this.head[this.head.length - 1] = '\n';
+        }
+        this.lastSourceByte = limit > 0 ? buffer[limit - 1] & 0xff : -1;
+    }
+
+    protected void handleDirectiveInCharacters() throws IOException
+    {
+        // scanning bytes is not possible for charsets such as UTF-16 - fully decode and re-encode instead (uncommon for scripts)
+        final StringBuilder scriptBuilder = new StringBuilder(INITIAL_BUFFER_SIZE);
+        try (final Reader reader = new InputStreamReader(this.in, this.charset))
+        {
+            final char[] buffer = new char[INITIAL_BUFFER_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) != -1)
+            {
+                scriptBuilder.append(buffer, 0, read);
+            }
+        }
+        this.endOfSourceReached = true;
+
+        int injectAt = SCAN_CONTINUE;
+        for (int idx = 0; injectAt == SCAN_CONTINUE && idx < scriptBuilder.length(); idx++)
+        {
+            final char c = scriptBuilder.charAt(idx);
+            injectAt = this.scan(c, idx, Character.isWhitespace(c));
         }
+        if (injectAt == SCAN_CONTINUE)
+        {
+            injectAt = this.endOfSourceScan();
+        }
+
+        if (injectAt >= 0)
+        {
+            scriptBuilder.insert(injectAt, USE_STRICT_INJECTION);
+        }
+        if (scriptBuilder.length() > 0 && scriptBuilder.charAt(scriptBuilder.length() - 1) != '\n')
+        {
+            scriptBuilder.append('\n');
+        }
+        this.head = scriptBuilder.toString().getBytes(this.charset);
+    }
+
+    /**
+     * Processes the next character of the script prologue.
+     *
+     * @param c
+     *            the character to process
+     * @param position
+     *            the position of the character
+     * @param whitespace
+     *            {@code true} if the character is a whitespace character
+     * @return the position at which the {@code 'use strict';} directive needs to be injected, {@link #SCAN_NO_INJECTION} if the script
+     *         already starts with the directive, or {@link #SCAN_CONTINUE} if more characters need to be processed
+     */
+    protected int scan(final int c, final int position, final boolean whitespace)
+    {
+        int result = SCAN_CONTINUE;
+        if (this.directiveQuote != -1)
+        {
+            if (this.directiveMatched < USE_STRICT_DIRECTIVE.length())
+            {
+                result = c == USE_STRICT_DIRECTIVE.charAt(this.directiveMatched) ? SCAN_CONTINUE : this.directiveStart;
+                this.directiveMatched++;
+            }
+            else if (this.directiveMatched == USE_STRICT_DIRECTIVE.length())
+            {
+                result = c == this.directiveQuote ? SCAN_CONTINUE : this.directiveStart;
+                this.directiveMatched++;
+            }
+            else if (c == ';')
+            {
+                result = SCAN_NO_INJECTION;
+            }
+            else if (c != ' ' && c != '\t' && c != 0x0b && c != '\f')
+            {
+                // some arbitrary literal expression
+                result = this.directiveStart;
+            }
+        }
+        else if (this.inLineComment)
+        {
+            if (c == '\n' || c == '\r')
+            {
+                this.inLineComment = false;
+                this.last = c;
+            }
+        }
+        else if (this.inBlockComment)
+        {
+            if (c == '/' && this.last == '*')
+            {
+                this.inBlockComment = false;
+                // dummy line break to avoid misinterpreting *// as */ and //
+                this.last = '\n';
+            }
+            else
+            {
+                this.last = c;
+            }
+        }
+        else if (this.last == '/')
+        {
+            if (c == '/')
+            {
+                this.inLineComment = true;
+            }
+            else if (c == '*')
+            {
+                this.inBlockComment = true;
+                // avoid misinterpreting /*/ as a complete block comment
+                this.last = '\n';
+            }
+            else
+            {
+                // potentially a regex literal
+                result = this.slashPosition;
+            }
+        }
+        else if (whitespace)
+        {
+            this.last = c;
+        }
+        else if (c == '/')
+        {
+            this.slashPosition = position;
+            this.last = c;
+        }
+        else if (c == '"' || c == '\'')
+        {
+            // potentially the directive itself
+            this.directiveQuote = c;
+            this.directiveStart = position;
+        }
+        else
+        {
+            // non-whitespace, non-quote character outside of a block or line comment
+            result = position;
+        }
+        return result;
+    }
+
+    protected int endOfSourceRead()
+    {
+        this.endOfSourceReached = true;
+
+        int read = -1;
+        if (!this.trailingLineBreakEmitted && this.lastSourceByte != -1 && this.lastSourceByte != '\n')
+        {
+            this.trailingLineBreakEmitted = true;
+            read = '\n';
+        }
+        return read;
+    }
+
+    protected int endOfSourceScan()
+    {
+        // incomplete directive is just some arbitrary literal - anything else is only whitespace / comments
+        final int result = this.directiveQuote != -1 ? this.directiveStart : SCAN_NO_INJECTION;
+        return result;
     }
 }
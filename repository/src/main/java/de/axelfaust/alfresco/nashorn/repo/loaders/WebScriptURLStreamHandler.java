@@ -22,24 +22,50 @@ import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
+import org.alfresco.repo.tenant.TenantService;
+import org.alfresco.repo.tenant.TenantUtil;
+import org.alfresco.repo.tenant.TenantUtil.TenantRunAsWork;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.Path;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.ISO9075;
+import org.alfresco.util.Pair;
 import org.alfresco.util.ParameterCheck;
 import org.alfresco.util.PropertyCheck;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.extensions.webscripts.MultiScriptLoader;
 import org.springframework.extensions.webscripts.ScriptContent;
 import org.springframework.extensions.webscripts.ScriptLoader;
 import org.springframework.extensions.webscripts.SearchPath;
+import org.springframework.extensions.webscripts.Store;
 
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolution;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutionStatistics;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutions;
 import de.axelfaust.alfresco.nashorn.repo.processor.ResettableScriptProcessorElement;
 
 /**
@@ -49,23 +75,142 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
         ResettableScriptProcessorElement
 {
 
+    /**
+     * Instances of this class represent the result of resolving a module ID against the stores of the search path.
+     *
+     * @author Axel Faust
+     */
+    protected static class ScriptResolution
+    {
+
+        protected final ScriptContent scriptContent;
+
+        // indices of the store and suffix of the resolved script in their precedence order (-1 if the module ID could not be resolved)
+        protected final int storeIndex;
+
+        protected final int suffixIndex;
+
+        protected ScriptResolution(final ScriptContent scriptContent, final int storeIndex, final int suffixIndex)
+        {
+            this.scriptContent = scriptContent;
+            this.storeIndex = storeIndex;
+            this.suffixIndex = suffixIndex;
+        }
+    }
+
+    /**
+     * Instances of this class represent the cached result of {@link WebScriptURLStreamHandler#resolveScriptContent(String) resolving} a
+     * module ID.
+     *
+     * @author Axel Faust
+     */
+    protected static class CachedScriptResolution
+    {
+
+        protected final ScriptContent scriptContent;
+
+        protected final int storeIndex;
+
+        protected final int suffixIndex;
+
+        protected final Set<NodeRef> ancestry;
+
+        protected final long expiresAt;
+
+        protected final long unresolvableGeneration;
+
+        protected CachedScriptResolution(final ScriptResolution resolution, final Set<NodeRef> ancestry, final long expiresAt,
+                final long unresolvableGeneration)
+        {
+            this.scriptContent = resolution.scriptContent;
+            this.storeIndex = resolution.storeIndex;
+            this.suffixIndex = resolution.suffixIndex;
+            this.ancestry = ancestry;
+            this.expiresAt = expiresAt;
+            this.unresolvableGeneration = unresolvableGeneration;
+        }
+
+        /**
+         * Checks if this resolution may be affected by a script being added to a store, i.e. if that script could make an unresolvable
+         * module ID resolvable or would take precedence over the resolved script.
+         *
+         * @param storeIndex
+         *            the index of the store
+         * @return {@code true} if this resolution may be affected, {@code false} otherwise
+         */
+        protected boolean isShadowableBy(final int storeIndex)
+        {
+            // suffixes take precedence over stores, so a script with a preferred suffix shadows the resolved script in any store
+            final boolean shadowable = this.scriptContent == null || this.suffixIndex > 0 || storeIndex < this.storeIndex;
+            return shadowable;
+        }
+    }
+
+    /**
+     * Instances of this class hold the cached module ID resolutions together with their indices, so that all of them can be
+     * {@link WebScriptURLStreamHandler#clearCachedResolutions() cleared} at once by replacing the instance without blocking concurrent
+     * resolvers.
+     *
+     * @author Axel Faust
+     */
+    protected static class CachedResolutionState
+    {
+
+        protected final ConcurrentMap<Pair<String, String>, CachedScriptResolution> cachedResolutions = new ConcurrentHashMap<>();
+
+        // keys of cached resolutions by the tenant domain and reference of any node in the ancestry of the resolved script
+        protected final ConcurrentMap<Pair<String, NodeRef>, Set<Pair<String, String>>> resolutionKeysByAncestor =
+                new ConcurrentHashMap<>();
+
+        // keys of cached resolutions by tenant domain that scripts added to a store may affect, i.e. of unresolvable modules or resolved
+        // scripts that do not take precedence over the scripts of all stores
+        protected final ConcurrentMap<String, Set<Pair<String, String>>> shadowableKeysByTenant = new ConcurrentHashMap<>();
+    }
+
     private static final Logger LOGGER = LoggerFactory.getLogger(WebScriptURLStreamHandler.class);
 
     private static final List<String> SUFFIX_PRECEDENCE_LIST = Arrays.asList(null, ".nashornjs", ".js");
 
     private static final String CLASSPATH_PATH_DESCRIPTION_PREFIX = "classpath*:";
 
+    private static final ConcurrentMap<Class<?>, Optional<Field>> NODE_REF_FIELDS = new ConcurrentHashMap<>();
+
     protected Registry registry;
 
     protected NodeService nodeService;
 
+    protected NamespaceService namespaceService;
+
     protected SearchPath searchPath;
 
     protected RetryingTransactionHelper retryingTransactionHelper;
 
-    protected MultiScriptLoader scriptLoader;
+    protected volatile List<ScriptLoader> scriptLoaders;
 
-    protected final Map<String, ScriptFile> scriptHandles = new HashMap<String, ScriptFile>();
+    protected ScriptSourceCache scriptSourceCache;
+
+    protected ClasspathScriptFileWatcher classpathScriptFileWatcher;
+
+    protected NodeScriptInvalidationHandler nodeScriptInvalidationHandler;
+
+    protected final ConcurrentMap<String, ScriptFile> scriptHandles = new ConcurrentHashMap<String, ScriptFile>();
+
+    protected boolean cacheResolutions = true;
+
+    protected int resolutionCacheMaxEntries = 10000;
+
+    protected long resolutionTimeToLive = 300000;
+
+    protected long unresolvableTimeToLive = 30000;
+
+    protected volatile CachedResolutionState cachedResolutionState = new CachedResolutionState();
+
+    // cached unresolvable modules of previous generations are treated as expired
+    protected final AtomicLong unresolvableGeneration = new AtomicLong();
+
+    protected final AtomicBoolean sweepingCachedResolutions = new AtomicBoolean();
+
+    protected final ResolutionCounters resolutionCounters = new ResolutionCounters();
 
     protected final ThreadLocal<Map<URL, ScriptContent>> boundScriptContents = new ThreadLocal<Map<URL, ScriptContent>>()
     {
@@ -102,11 +247,69 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
     public void afterPropertiesSet()
     {
         PropertyCheck.mandatory(this, "nodeService", this.nodeService);
+        PropertyCheck.mandatory(this, "namespaceService", this.namespaceService);
         PropertyCheck.mandatory(this, "searchPath", this.searchPath);
         PropertyCheck.mandatory(this, "retryingTransactionHelper", this.retryingTransactionHelper);
 
         PropertyCheck.mandatory(this, "registry", this.registry);
 
+        if (this.cacheResolutions)
+        {
+            if (this.nodeScriptInvalidationHandler != null)
+            {
+                this.nodeScriptInvalidationHandler.registerStructureChangeListener(this::onStructureChanged);
+            }
+            CacheableResolutionURLConnection.registerCachedResolutions("webscript", new CachedResolutions()
+            {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void clear()
+                {
+                    WebScriptURLStreamHandler.this.clearCachedResolutions();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public void clearUnresolvable()
+                {
+                    WebScriptURLStreamHandler.this.clearCachedUnresolvableResolutions();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public boolean clear(final String resolutionKey)
+                {
+                    return WebScriptURLStreamHandler.this.clearCachedResolution(resolutionKey);
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public List<CachedResolution> list()
+                {
+                    return WebScriptURLStreamHandler.this.listCachedResolutions();
+                }
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                public CachedResolutionStatistics getStatistics()
+                {
+                    return WebScriptURLStreamHandler.this.resolutionCounters
+                            .toStatistics(WebScriptURLStreamHandler.this.getCachedResolutionCount());
+                }
+            });
+        }
+
         this.registry.register(this);
     }
 
@@ -126,6 +329,105 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
     public void reset()
     {
         this.scriptHandles.values().forEach(x -> x.reset());
+        this.clearCachedResolutions();
+    }
+
+    /**
+     * Clears all cached module ID resolutions.
+     */
+    public void clearCachedResolutions()
+    {
+        this.cachedResolutionState = new CachedResolutionState();
+    }
+
+    /**
+     * Clears all cached resolutions of module IDs that could not be resolved.
+     */
+    public void clearCachedUnresolvableResolutions()
+    {
+        this.unresolvableGeneration.incrementAndGet();
+    }
+
+    /**
+     * Clears the cached resolution of a module ID in the current tenant.
+     *
+     * @param moduleId
+     *            the module ID
+     * @return {@code true} if a resolution was cached for the module ID, {@code false} otherwise
+     */
+    public boolean clearCachedResolution(final String moduleId)
+    {
+        ParameterCheck.mandatoryString("moduleId", moduleId);
+
+        final CachedResolutionState state = this.cachedResolutionState;
+        final Pair<String, String> key = new Pair<>(TenantUtil.getCurrentDomain(), moduleId);
+        final CachedScriptResolution cachedResolution = state.cachedResolutions.get(key);
+        return cachedResolution != null && this.removeCachedResolution(state, key, cachedResolution);
+    }
+
+    /**
+     * Lists the valid cached module ID resolutions of all tenants.
+     *
+     * @return the cached resolutions
+     */
+    public List<CachedResolution> listCachedResolutions()
+    {
+        final long now = System.currentTimeMillis();
+        final List<CachedResolution> cachedResolutions = new ArrayList<>();
+        this.cachedResolutionState.cachedResolutions.forEach((key, cachedResolution) -> {
+            if (this.isValid(cachedResolution, now))
+            {
+                cachedResolutions.add(new CachedResolution(key.getSecond(), key.getFirst(),
+                        cachedResolution.scriptContent != null ? cachedResolution.scriptContent.getPathDescription() : null,
+                        cachedResolution.expiresAt));
+            }
+        });
+        return cachedResolutions;
+    }
+
+    /**
+     * @return the number of script handles currently registered in this instance
+     */
+    public int getScriptHandleCount()
+    {
+        return this.scriptHandles.size();
+    }
+
+    /**
+     * @return the number of bytes of script content currently cached by the script handles registered in this instance
+     */
+    public long getCachedScriptBytes()
+    {
+        long cachedBytes = 0;
+        for (final ScriptFile scriptFile : this.scriptHandles.values())
+        {
+            cachedBytes += scriptFile.getCachedSize();
+        }
+        return cachedBytes;
+    }
+
+    /**
+     * @return the number of module ID resolutions currently cached
+     */
+    public int getCachedResolutionCount()
+    {
+        return this.cachedResolutionState.cachedResolutions.size();
+    }
+
+    /**
+     * @return the number of module ID resolutions served from the cache
+     */
+    public long getResolutionCacheHits()
+    {
+        return this.resolutionCounters.toStatistics(0).getHits();
+    }
+
+    /**
+     * @return the number of module ID resolutions that had to be performed via the script loaders
+     */
+    public long getResolutionCacheMisses()
+    {
+        return this.resolutionCounters.toStatistics(0).getMisses();
     }
 
     /**
@@ -146,6 +448,15 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
         this.nodeService = nodeService;
     }
 
+    /**
+     * @param namespaceService
+     *            the namespaceService to set
+     */
+    public void setNamespaceService(final NamespaceService namespaceService)
+    {
+        this.namespaceService = namespaceService;
+    }
+
     /**
      * @param searchPath
      *            the searchPath to set
@@ -164,6 +475,69 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
         this.retryingTransactionHelper = retryingTransactionHelper;
     }
 
+    /**
+     * @param scriptSourceCache
+     *            the scriptSourceCache to set
+     */
+    public void setScriptSourceCache(final ScriptSourceCache scriptSourceCache)
+    {
+        this.scriptSourceCache = scriptSourceCache;
+    }
+
+    /**
+     * @param classpathScriptFileWatcher
+     *            the classpathScriptFileWatcher to set
+     */
+    public void setClasspathScriptFileWatcher(final ClasspathScriptFileWatcher classpathScriptFileWatcher)
+    {
+        this.classpathScriptFileWatcher = classpathScriptFileWatcher;
+    }
+
+    /**
+     * @param nodeScriptInvalidationHandler
+     *            the nodeScriptInvalidationHandler to set
+     */
+    public void setNodeScriptInvalidationHandler(final NodeScriptInvalidationHandler nodeScriptInvalidationHandler)
+    {
+        this.nodeScriptInvalidationHandler = nodeScriptInvalidationHandler;
+    }
+
+    /**
+     * @param cacheResolutions
+     *            the cacheResolutions to set
+     */
+    public void setCacheResolutions(final boolean cacheResolutions)
+    {
+        this.cacheResolutions = cacheResolutions;
+    }
+
+    /**
+     * @param resolutionCacheMaxEntries
+     *            the resolutionCacheMaxEntries to set
+     */
+    public void setResolutionCacheMaxEntries(final int resolutionCacheMaxEntries)
+    {
+        this.resolutionCacheMaxEntries = resolutionCacheMaxEntries;
+    }
+
+    /**
+     * @param resolutionTimeToLive
+     *            the resolutionTimeToLive to set
+     */
+    public void setResolutionTimeToLive(final long resolutionTimeToLive)
+    {
+        this.resolutionTimeToLive = resolutionTimeToLive;
+    }
+
+    /**
+     * @param unresolvableTimeToLive
+     *            the unresolvableTimeToLive to set
+     */
+    public void setUnresolvableTimeToLive(final long unresolvableTimeToLive)
+    {
+        this.unresolvableTimeToLive = unresolvableTimeToLive;
+    }
+
     /**
      * Binds an URL to a script content to avoid re-resolving when {@link #openConnection(URL) opening the connection}.
      *
@@ -202,17 +576,48 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
     {
         ParameterCheck.mandatoryString("moduleId", moduleId);
 
-        // lazy init since we might have only partially initialized searchPath during afterPropertiesSet
-        if (this.scriptLoader == null)
+        ScriptContent scriptContent;
+        if (this.cacheResolutions)
+        {
+            final Pair<String, String> key = new Pair<>(TenantUtil.getCurrentDomain(), moduleId);
+            final long now = System.currentTimeMillis();
+            final CachedResolutionState state = this.cachedResolutionState;
+            final CachedScriptResolution cachedResolution = state.cachedResolutions.get(key);
+            if (cachedResolution != null && this.isValid(cachedResolution, now))
+            {
+                LOGGER.trace("Using cached resolution of module {} to {}", moduleId, cachedResolution.scriptContent);
+                this.resolutionCounters.recordHit();
+                scriptContent = cachedResolution.scriptContent;
+            }
+            else
+            {
+                if (cachedResolution != null && this.removeCachedResolution(state, key, cachedResolution)
+                        && cachedResolution.expiresAt <= now)
+                {
+                    this.resolutionCounters.recordExpiration();
+                }
+                this.resolutionCounters.recordMiss();
+                final ScriptResolution resolution = this.resolveScriptContentImpl(moduleId);
+                scriptContent = resolution.scriptContent;
+                this.cacheResolution(key, resolution, now);
+            }
+        }
+        else
         {
-            final List<ScriptLoader> loaders = new ArrayList<ScriptLoader>();
-            this.searchPath.getStores().forEach(x -> loaders.add(x.getScriptLoader()));
-            this.scriptLoader = new MultiScriptLoader(loaders.toArray(new ScriptLoader[0]));
+            scriptContent = this.resolveScriptContentImpl(moduleId).scriptContent;
         }
 
-        ScriptContent scriptContent = null;
-        for (final String suffix : SUFFIX_PRECEDENCE_LIST)
+        return scriptContent;
+    }
+
+    protected ScriptResolution resolveScriptContentImpl(final String moduleId)
+    {
+        final List<ScriptLoader> scriptLoaders = this.getOrCreateScriptLoaders();
+
+        // same precedence as a MultiScriptLoader, but keeping track of the store that provided the script
+        for (int suffixIndex = 0; suffixIndex < SUFFIX_PRECEDENCE_LIST.size(); suffixIndex++)
         {
+            final String suffix = SUFFIX_PRECEDENCE_LIST.get(suffixIndex);
             String script;
             if (suffix != null)
             {
@@ -223,14 +628,17 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
                 script = moduleId;
             }
 
-            scriptContent = this.scriptLoader.getScript(script);
-            if (scriptContent != null)
+            for (int storeIndex = 0; storeIndex < scriptLoaders.size(); storeIndex++)
             {
-                break;
+                final ScriptContent scriptContent = scriptLoaders.get(storeIndex).getScript(script);
+                if (scriptContent != null)
+                {
+                    return new ScriptResolution(scriptContent, storeIndex, suffixIndex);
+                }
             }
         }
 
-        return scriptContent;
+        return new ScriptResolution(null, -1, -1);
     }
 
     /**
@@ -258,12 +666,9 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
         {
             final String path = pathDescription.substring(CLASSPATH_PATH_DESCRIPTION_PREFIX.length());
             final String lookup = "classpath:" + path;
-            scriptFile = this.scriptHandles.get(lookup);
-            if (scriptFile == null)
-            {
-                scriptFile = new ClasspathScriptFile(path);
-                this.scriptHandles.put(lookup, scriptFile);
-            }
+            // single-flight creation - concurrent callers must share the same handle (and cache file) for a script
+            scriptFile = this.scriptHandles.computeIfAbsent(lookup,
+                    x -> new ClasspathScriptFile(path, this.scriptSourceCache, this.classpathScriptFileWatcher));
             // no need to check scriptFile.exists() since the scriptLoader found it to be existing
         }
         else
@@ -272,12 +677,10 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
             if (scriptNode != null)
             {
                 final String lookup = "node:" + scriptNode;
-                scriptFile = this.scriptHandles.get(lookup);
-                if (scriptFile == null)
-                {
-                    scriptFile = new NodeScriptContentFile(scriptNode, scriptContent, this.nodeService, this.retryingTransactionHelper);
-                    this.scriptHandles.put(lookup, scriptFile);
-                }
+                final ScriptContent nodeScriptContent = scriptContent;
+                scriptFile = this.scriptHandles.computeIfAbsent(lookup,
+                        x -> new NodeScriptContentFile(scriptNode, nodeScriptContent, this.nodeService, this.retryingTransactionHelper,
+                                this.scriptSourceCache, this.nodeScriptInvalidationHandler));
             }
             else
             {
@@ -288,17 +691,419 @@ public class WebScriptURLStreamHandler extends URLStreamHandler implements Initi
         return new ScriptFileURLConnection(url, scriptFile);
     }
 
+    protected boolean isValid(final CachedScriptResolution cachedResolution, final long now)
+    {
+        final boolean valid = cachedResolution.expiresAt > now
+                && (cachedResolution.scriptContent != null || cachedResolution.unresolvableGeneration == this.unresolvableGeneration.get());
+        return valid;
+    }
+
+    protected void cacheResolution(final Pair<String, String> key, final ScriptResolution resolution, final long now)
+    {
+        final CachedResolutionState state = this.cachedResolutionState;
+        try
+        {
+            final CachedScriptResolution cachedResolution;
+            if (resolution.scriptContent != null)
+            {
+                // scripts not backed by nodes (e.g. classpath scripts) are only affected by changes in stores taking precedence
+                final NodeRef scriptNode = this.tryGetNodeRef(resolution.scriptContent);
+                final Set<NodeRef> ancestry = scriptNode != null ? this.getAncestry(scriptNode) : Collections.emptySet();
+                cachedResolution = new CachedScriptResolution(resolution, ancestry, toExpiresAt(now, this.resolutionTimeToLive), -1);
+            }
+            else
+            {
+                cachedResolution = new CachedScriptResolution(resolution, Collections.emptySet(),
+                        toExpiresAt(now, this.unresolvableTimeToLive), this.unresolvableGeneration.get());
+            }
+            state.cachedResolutions.compute(key, (x, previousResolution) -> {
+                if (previousResolution != null)
+                {
+                    this.unindexCachedResolution(state, key, previousResolution);
+                }
+                this.indexCachedResolution(state, key, cachedResolution);
+                return cachedResolution;
+            });
+        }
+        catch (final RuntimeException rex)
+        {
+            // without the ancestry, structural changes could not be mapped to the resolution
+            LOGGER.debug("Failed to determine ancestry of script for module {} - resolution will not be cached", key.getSecond(), rex);
+        }
+
+        if (this.resolutionCacheMaxEntries > 0 && state.cachedResolutions.size() > this.resolutionCacheMaxEntries
+                && this.sweepingCachedResolutions.compareAndSet(false, true))
+        {
+            try
+            {
+                this.sweepCachedResolutions(state, now);
+            }
+            finally
+            {
+                this.sweepingCachedResolutions.set(false);
+            }
+        }
+    }
+
+    protected void sweepCachedResolutions(final CachedResolutionState state, final long now)
+    {
+        state.cachedResolutions.forEach((cachedKey, cachedResolution) -> {
+            if (!this.isValid(cachedResolution, now) && this.removeCachedResolution(state, cachedKey, cachedResolution)
+                    && cachedResolution.expiresAt <= now)
+            {
+                this.resolutionCounters.recordExpiration();
+            }
+        });
+
+        // evicting a bit more than necessary avoids sweeping again on the next resolution
+        final int targetSize = this.resolutionCacheMaxEntries - this.resolutionCacheMaxEntries / 10;
+        final Iterator<Entry<Pair<String, String>, CachedScriptResolution>> entryIterator = state.cachedResolutions.entrySet().iterator();
+        while (state.cachedResolutions.size() > targetSize && entryIterator.hasNext())
+        {
+            final Entry<Pair<String, String>, CachedScriptResolution> entry = entryIterator.next();
+            if (this.removeCachedResolution(state, entry.getKey(), entry.getValue()))
+            {
+                this.resolutionCounters.recordEviction();
+            }
+        }
+    }
+
+    protected Set<NodeRef> getAncestry(final NodeRef scriptNode)
+    {
+        // path of the script store may not be accessible to the current user
+        final Path path = AuthenticationUtil.runAsSystem(new RunAsWork<Path>()
+        {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public Path doWork()
+            {
+                return WebScriptURLStreamHandler.this.nodeService.getPath(scriptNode);
+            }
+        });
+
+        final Set<NodeRef> ancestry = new HashSet<>();
+        for (final Path.Element element : path)
+        {
+            if (element instanceof Path.ChildAssocElement)
+            {
+                ancestry.add(((Path.ChildAssocElement) element).getRef().getChildRef());
+            }
+        }
+        ancestry.add(scriptNode);
+        return ancestry;
+    }
+
+    protected void indexCachedResolution(final CachedResolutionState state, final Pair<String, String> key,
+            final CachedScriptResolution cachedResolution)
+    {
+        if (isShadowable(cachedResolution))
+        {
+            state.shadowableKeysByTenant.compute(key.getFirst(), (x, keys) -> {
+                final Set<Pair<String, String>> effectiveKeys = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                effectiveKeys.add(key);
+                return effectiveKeys;
+            });
+        }
+
+        cachedResolution.ancestry.forEach(ancestor -> {
+            state.resolutionKeysByAncestor.compute(new Pair<>(key.getFirst(), ancestor), (x, keys) -> {
+                final Set<Pair<String, String>> effectiveKeys = keys != null ? keys : ConcurrentHashMap.newKeySet();
+                effectiveKeys.add(key);
+                return effectiveKeys;
+            });
+        });
+    }
+
+    protected void unindexCachedResolution(final CachedResolutionState state, final Pair<String, String> key,
+            final CachedScriptResolution cachedResolution)
+    {
+        if (isShadowable(cachedResolution))
+        {
+            state.shadowableKeysByTenant.computeIfPresent(key.getFirst(), (x, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+
+        cachedResolution.ancestry.forEach(ancestor -> {
+            state.resolutionKeysByAncestor.computeIfPresent(new Pair<>(key.getFirst(), ancestor), (x, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        });
+    }
+
+    protected boolean removeCachedResolution(final CachedResolutionState state, final Pair<String, String> key,
+            final CachedScriptResolution cachedResolution)
+    {
+        final boolean[] removed = { false };
+        state.cachedResolutions.computeIfPresent(key, (x, currentResolution) -> {
+            CachedScriptResolution effectiveResolution = currentResolution;
+            if (currentResolution == cachedResolution)
+            {
+                this.unindexCachedResolution(state, key, currentResolution);
+                effectiveResolution = null;
+                removed[0] = true;
+            }
+            return effectiveResolution;
+        });
+        return removed[0];
+    }
+
+    protected void onStructureChanged(final Collection<Pair<String, NodeRef>> changedNodes)
+    {
+        final CachedResolutionState state = this.cachedResolutionState;
+        final Set<Pair<String, String>> invalidatedKeys = new HashSet<>();
+        final Map<String, List<NodeRef>> changedNodesByTenant = new HashMap<>();
+
+        final Map<String, Integer> storeBasePaths = state.shadowableKeysByTenant.isEmpty() ? Collections.emptyMap()
+                : this.getRepositoryStoreBasePaths();
+        final Set<String> storeRefs = new HashSet<>();
+        storeBasePaths.keySet().forEach(storeBasePath -> storeRefs.add(toStoreRefString(storeBasePath)));
+
+        changedNodes.forEach(changedNode -> {
+            final Set<Pair<String, String>> keys = state.resolutionKeysByAncestor.get(changedNode);
+            if (keys != null)
+            {
+                invalidatedKeys.addAll(keys);
+            }
+
+            // only changes in the stores of repository web script stores of tenants with shadowable resolutions need to be mapped
+            if (state.shadowableKeysByTenant.containsKey(changedNode.getFirst())
+                    && storeRefs.contains(toBaseStoreRefString(changedNode.getSecond().getStoreRef())))
+            {
+                changedNodesByTenant.computeIfAbsent(changedNode.getFirst(), x -> new ArrayList<>()).add(changedNode.getSecond());
+            }
+        });
+
+        changedNodesByTenant.forEach((tenant, tenantChangedNodes) -> {
+            invalidatedKeys.addAll(this.collectShadowedKeys(state, tenant, tenantChangedNodes, storeBasePaths));
+        });
+
+        invalidatedKeys.forEach(key -> {
+            final CachedScriptResolution cachedResolution = state.cachedResolutions.get(key);
+            if (cachedResolution != null && this.removeCachedResolution(state, key, cachedResolution))
+            {
+                LOGGER.debug("Structure of cached resolution of module {} changed", key.getSecond());
+                this.resolutionCounters.recordInvalidation();
+            }
+        });
+    }
+
+    protected Set<Pair<String, String>> collectShadowedKeys(final CachedResolutionState state, final String tenant,
+            final List<NodeRef> changedNodes, final Map<String, Integer> storeBasePaths)
+    {
+        final Set<Pair<String, String>> affectedKeys = new HashSet<>();
+        final Set<Pair<String, String>> shadowableKeys = state.shadowableKeysByTenant.get(tenant);
+        if (shadowableKeys != null)
+        {
+            final List<String> changedPaths = this.getChangedNodePaths(tenant, changedNodes);
+            for (final String changedPath : changedPaths)
+            {
+                storeBasePaths.forEach((storeBasePath, storeIndex) -> {
+                    if (changedPath.equals(storeBasePath) || storeBasePath.startsWith(changedPath + "/"))
+                    {
+                        LOGGER.trace("Web script store {} of tenant {} changed structurally", storeBasePath, tenant);
+                        this.collectShadowedKeys(state, shadowableKeys, storeIndex.intValue(), null, affectedKeys);
+                    }
+                    else if (changedPath.startsWith(storeBasePath + "/"))
+                    {
+                        final String relativePath = this.toRelativeScriptPath(changedPath.substring(storeBasePath.length() + 1));
+                        this.collectShadowedKeys(state, shadowableKeys, storeIndex.intValue(), relativePath, affectedKeys);
+                    }
+                });
+            }
+        }
+        return affectedKeys;
+    }
+
+    protected void collectShadowedKeys(final CachedResolutionState state, final Set<Pair<String, String>> shadowableKeys,
+            final int storeIndex, final String relativePath, final Set<Pair<String, String>> affectedKeys)
+    {
+        shadowableKeys.forEach(key -> {
+            final CachedScriptResolution cachedResolution = state.cachedResolutions.get(key);
+            if (cachedResolution != null && cachedResolution.isShadowableBy(storeIndex)
+                    && (relativePath == null || isAffectedModule(key.getSecond(), relativePath)))
+            {
+                affectedKeys.add(key);
+            }
+        });
+    }
+
+    protected List<String> getChangedNodePaths(final String tenant, final List<NodeRef> changedNodes)
+    {
+        // structure changes are handled after commit of the modifying transaction
+        final List<String> changedPaths = TenantUtil.runAsSystemTenant(new TenantRunAsWork<List<String>>()
+        {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public List<String> doWork()
+            {
+                return WebScriptURLStreamHandler.this.retryingTransactionHelper
+                        .doInTransaction(new RetryingTransactionCallback<List<String>>()
+                        {
+
+                            /**
+                             * {@inheritDoc}
+                             */
+                            @Override
+                            public List<String> execute()
+                            {
+                                final List<String> paths = new ArrayList<>();
+                                for (final NodeRef changedNode : changedNodes)
+                                {
+                                    // deleted nodes can neither make unresolvable modules resolvable nor shadow resolved scripts
+                                    if (WebScriptURLStreamHandler.this.nodeService.exists(changedNode))
+                                    {
+                                        final Path path = WebScriptURLStreamHandler.this.nodeService.getPath(changedNode);
+                                        paths.add(toBaseStoreRefString(changedNode.getStoreRef())
+                                                + path.toPrefixString(WebScriptURLStreamHandler.this.namespaceService));
+                                    }
+                                }
+                                return paths;
+                            }
+                        }, true, true);
+            }
+        }, tenant);
+        return changedPaths;
+    }
+
+    protected Map<String, Integer> getRepositoryStoreBasePaths()
+    {
+        // indices must match the precedence order of the script loaders
+        final Map<String, Integer> storeBasePaths = new HashMap<>();
+        int storeIndex = 0;
+        for (final Store store : this.searchPath.getStores())
+        {
+            final String basePath = store.getBasePath();
+            // repository stores use the store reference followed by the prefixed path of the store folder as base path
+            if (basePath != null && basePath.contains(StoreRef.URI_FILLER) && !basePath.startsWith(CLASSPATH_PATH_DESCRIPTION_PREFIX))
+            {
+                storeBasePaths.putIfAbsent(basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath,
+                        Integer.valueOf(storeIndex));
+            }
+            storeIndex++;
+        }
+        return storeBasePaths;
+    }
+
+    protected String toRelativeScriptPath(final String relativePrefixedPath)
+    {
+        final StringBuilder relativePathBuilder = new StringBuilder(relativePrefixedPath.length());
+        for (final String element : relativePrefixedPath.split("/"))
+        {
+            final int prefixSeparatorIdx = element.indexOf(QName.NAMESPACE_PREFIX);
+            final String name = ISO9075.decode(prefixSeparatorIdx != -1 ? element.substring(prefixSeparatorIdx + 1) : element);
+            if (name.length() >= QName.MAX_LENGTH)
+            {
+                // association names are truncated and may no longer match the name of the node
+                return null;
+            }
+
+            if (relativePathBuilder.length() > 0)
+            {
+                relativePathBuilder.append('/');
+            }
+            relativePathBuilder.append(name);
+        }
+        return relativePathBuilder.toString();
+    }
+
+    protected static boolean isAffectedModule(final String moduleId, final String changedPath)
+    {
+        final String effectiveModuleId = moduleId.startsWith("/") ? moduleId.substring(1) : moduleId;
+
+        boolean affected = effectiveModuleId.equals(changedPath) || effectiveModuleId.startsWith(changedPath + "/");
+        if (!affected && changedPath.startsWith(effectiveModuleId))
+        {
+            final String suffix = changedPath.substring(effectiveModuleId.length());
+            affected = SUFFIX_PRECEDENCE_LIST.contains(suffix);
+        }
+        return affected;
+    }
+
+    protected static boolean isShadowable(final CachedScriptResolution cachedResolution)
+    {
+        // resolutions of the first suffix in the first store cannot be shadowed by any store
+        return cachedResolution.scriptContent == null || cachedResolution.suffixIndex > 0 || cachedResolution.storeIndex > 0;
+    }
+
+    protected static long toExpiresAt(final long now, final long timeToLive)
+    {
+        return timeToLive > 0 ? now + timeToLive : Long.MAX_VALUE;
+    }
+
+    protected static String toStoreRefString(final String storeBasePath)
+    {
+        final int pathSeparatorIdx = storeBasePath.indexOf('/', storeBasePath.indexOf(StoreRef.URI_FILLER) + StoreRef.URI_FILLER.length());
+        return pathSeparatorIdx != -1 ? storeBasePath.substring(0, pathSeparatorIdx) : storeBasePath;
+    }
+
+    protected static String toBaseStoreRefString(final StoreRef storeRef)
+    {
+        String identifier = storeRef.getIdentifier();
+        // tenant-specific stores use the same base path as their counterpart in the default tenant
+        if (identifier.startsWith(TenantService.SEPARATOR))
+        {
+            final int separatorIdx = identifier.indexOf(TenantService.SEPARATOR, 1);
+            if (separatorIdx != -1)
+            {
+                identifier = identifier.substring(separatorIdx + 1);
+            }
+        }
+        return storeRef.getProtocol() + StoreRef.URI_FILLER + identifier;
+    }
+
+    protected List<ScriptLoader> getOrCreateScriptLoaders()
+    {
+        List<ScriptLoader> scriptLoaders = this.scriptLoaders;
+        if (scriptLoaders == null)
+        {
+            synchronized (this)
+            {
+                scriptLoaders = this.scriptLoaders;
+                // lazy init since we might have only partially initialized searchPath during afterPropertiesSet
+                if (scriptLoaders == null)
+                {
+                    final List<ScriptLoader> loaders = new ArrayList<ScriptLoader>();
+                    this.searchPath.getStores().forEach(x -> loaders.add(x.getScriptLoader()));
+                    scriptLoaders = Collections.unmodifiableList(loaders);
+                    this.scriptLoaders = scriptLoaders;
+                }
+            }
+        }
+        return scriptLoaders;
+    }
+
     protected NodeRef tryGetNodeRef(final ScriptContent scriptContent)
     {
         NodeRef result;
+        final Optional<Field> nodeRefField = NODE_REF_FIELDS.computeIfAbsent(scriptContent.getClass(), cls -> {
+            Optional<Field> field;
+            try
+            {
+                final Field declaredField = cls.getDeclaredField("nodeRef");
+                declaredField.setAccessible(true);
+                field = Optional.of(declaredField);
+            }
+            catch (final NoSuchFieldException | SecurityException e)
+            {
+                field = Optional.empty();
+            }
+            return field;
+        });
+
         try
         {
-            // TODO Cache field for better performance
-            final Field nodeRefField = scriptContent.getClass().getDeclaredField("nodeRef");
-            nodeRefField.setAccessible(true);
-            result = (NodeRef) nodeRefField.get(scriptContent);
+            result = nodeRefField.isPresent() ? (NodeRef) nodeRefField.get().get(scriptContent) : null;
         }
-        catch (final IllegalAccessException | NoSuchFieldException e)
+        catch (final IllegalAccessException e)
         {
             result = null;
         }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.processor;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Instances of this class allocate dense data slots to model-aware containers. Slots of containers that have been garbage collected are
+ * re-used (lowest slot first) to keep the per-model data arrays dense.
+ *
+ * @author Axel Faust
+ */
+public class ContainerSlotAllocator
+{
+
+    /**
+     * Instances of this class track the slot allocated to a model-aware container so that slot can be released once the container has been
+     * garbage collected.
+     *
+     * @author Axel Faust
+     */
+    protected static class ContainerSlotReference extends WeakReference<Object>
+    {
+
+        protected final int slot;
+
+        protected ContainerSlotReference(final Object container, final int slot, final ReferenceQueue<Object> releasedContainers)
+        {
+            super(container, releasedContainers);
+            this.slot = slot;
+        }
+
+        /**
+         * @return the slot allocated to the container
+         */
+        public int getSlot()
+        {
+            return this.slot;
+        }
+    }
+
+    protected final ReferenceQueue<Object> releasedContainers = new ReferenceQueue<>();
+
+    // references must be kept reachable until they have been enqueued
+    protected final Set<ContainerSlotReference> slotReferences = new HashSet<>();
+
+    protected final BitSet freeSlots = new BitSet();
+
+    protected int nextSlot = 0;
+
+    /**
+     * Allocates a dense data slot for a new model-aware container.
+     *
+     * @param container
+     *            the container for which to allocate a slot
+     * @return the slot allocated to the container
+     */
+    public int allocateSlot(final Object container)
+    {
+        synchronized (this.slotReferences)
+        {
+            ContainerSlotReference releasedReference;
+            while ((releasedReference = (ContainerSlotReference) this.releasedContainers.poll()) != null)
+            {
+                this.slotReferences.remove(releasedReference);
+                this.freeSlots.set(releasedReference.slot);
+            }
+
+            int slot = this.freeSlots.nextSetBit(0);
+            if (slot == -1)
+            {
+                slot = this.nextSlot++;
+            }
+            else
+            {
+                this.freeSlots.clear(slot);
+            }
+
+            this.slotReferences.add(this.createSlotReference(container, slot));
+            return slot;
+        }
+    }
+
+    protected ContainerSlotReference createSlotReference(final Object container, final int slot)
+    {
+        return new ContainerSlotReference(container, slot, this.releasedContainers);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.processor;
+
+/**
+ * Instances of this class cache the last script model resolved by a model-aware container to avoid the thread-local lookup of the current
+ * model on every access.
+ *
+ * The cached model is shared by all threads using the same container and is deliberately neither volatile nor thread-local. Reference
+ * writes are atomic, so any thread only ever sees {@code null} or a fully constructed model, and a cached model is only ever reused after
+ * {@link NashornScriptModel#getCurrentModel(NashornScriptModel)} has verified that it belongs to the current thread and is still that
+ * thread's current model. A model cached by another thread (or a stale read) merely causes a fallback to the regular thread-local lookup,
+ * so concurrent use of a container can only cost performance but never yields the data of a foreign model.
+ *
+ * @author Axel Faust
+ */
+class CurrentModelCache
+{
+
+    private NashornScriptModel lastModel;
+
+    /**
+     * Retrieves the currently active model, reusing the last model resolved via this cache if it is still the currently active model of
+     * the current thread.
+     *
+     * @return the current model
+     */
+    NashornScriptModel getCurrentModel()
+    {
+        final NashornScriptModel lastModel = this.lastModel;
+        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel(lastModel);
+        if (currentModel != lastModel)
+        {
+            this.lastModel = currentModel;
+        }
+        return currentModel;
+    }
+}
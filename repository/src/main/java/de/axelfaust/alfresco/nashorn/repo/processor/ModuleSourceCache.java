@@ -0,0 +1,499 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.util.MD5;
+import org.alfresco.util.ParameterCheck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Instances of this class cache the effective source of AMD modules loaded from URLs, keyed by the script URL and validated by last
+ * modification timestamp, size or - if the former are not provided by the URL connection - the content digest. Handing a cached source to
+ * the Nashorn {@code load} function allows the engine to reuse the script class it compiled for an identical source via its in-process class
+ * cache (see {@code --class-cache-size}) without having to re-read / re-decode the script from its origin. Since the class cache of the
+ * engine is bounded by entry count, the number of entries of this cache should never exceed its size - any source beyond that limit only
+ * saves the read / decode but not the compilation.
+ *
+ * Script contexts keep using an instance of this class for all module loads after they have been bootstrapped, so sources are validated
+ * against the last modification timestamp and size reported by their origin on every lookup, which the script file abstractions of the
+ * loaders provide from their own cached / watched state without reading the script. Only while a thread bootstraps a script context (see
+ * {@link #enterBootstrapPhase()}) are sources validated just once per {@link #requireRevalidation() validation generation}, so that
+ * bootstrapping a pool of script contexts does not open a connection to the origin for every module in every context. Callers are expected
+ * to start a new validation generation whenever script contexts are reset.
+ *
+ * Instances of this class are thread-safe and survive resets of the script contexts of the processor. Concurrent requests for a source that
+ * is not (or no longer) validly cached are coordinated so that only the first thread reads the script while all others wait for its result.
+ *
+ * @author Axel Faust
+ */
+public class ModuleSourceCache
+{
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModuleSourceCache.class);
+
+    /**
+     * Instances of this class represent a cached module source.
+     *
+     * @author Axel Faust
+     */
+    public static class ModuleSource
+    {
+
+        protected final String name;
+
+        protected final String script;
+
+        protected final long lastModified;
+
+        protected final long size;
+
+        protected final String digest;
+
+        protected final long validationGeneration;
+
+        protected ModuleSource(final String name, final String script, final long lastModified, final long size, final String digest,
+                final long validationGeneration)
+        {
+            this.name = name;
+            this.script = script;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.digest = digest;
+            this.validationGeneration = validationGeneration;
+        }
+
+        /**
+         * @return the name of the source, i.e. the script URL
+         */
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * @return the script source
+         */
+        public String getScript()
+        {
+            return this.script;
+        }
+
+        /**
+         * @return the digest of the script content
+         */
+        public String getDigest()
+        {
+            return this.digest;
+        }
+
+        protected long getRetainedBytes()
+        {
+            // Java strings are (at most) two bytes per character
+            return 2L * this.script.length();
+        }
+    }
+
+    protected final int maxEntries;
+
+    protected final long maxBytes;
+
+    protected final Map<String, ModuleSource> sources;
+
+    // guarded by sources
+    protected long retainedBytes = 0;
+
+    protected final AtomicLong validationGeneration = new AtomicLong();
+
+    protected final ThreadLocal<Boolean> inBootstrapPhase = new ThreadLocal<>();
+
+    protected final AtomicLong hits = new AtomicLong();
+
+    protected final AtomicLong misses = new AtomicLong();
+
+    protected final AtomicLong evictions = new AtomicLong();
+
+    protected final AtomicLong revalidations = new AtomicLong();
+
+    protected final ConcurrentMap<String, CompletableFuture<ModuleSource>> pendingSources = new ConcurrentHashMap<>();
+
+    protected final AtomicLong sharedLoads = new AtomicLong();
+
+    public ModuleSourceCache(final int maxEntries, final long maxBytes)
+    {
+        if (maxEntries <= 0)
+        {
+            throw new IllegalArgumentException("maxEntries must be a positive number");
+        }
+        if (maxBytes <= 0)
+        {
+            throw new IllegalArgumentException("maxBytes must be a positive number");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.sources = new LinkedHashMap<String, ModuleSource>(Math.min(maxEntries, 256), 0.75f, true);
+    }
+
+    /**
+     * Retrieves the source of a module from a script URL, using a cached source if it is still valid.
+     *
+     * @param normalizedId
+     *            the normalized ID of the module
+     * @param url
+     *            the URL of the script defining the module
+     * @return the source of the module
+     * @throws IOException
+     *             if the script cannot be read
+     */
+    public ModuleSource getSource(final String normalizedId, final URL url) throws IOException
+    {
+        ParameterCheck.mandatoryString("normalizedId", normalizedId);
+        ParameterCheck.mandatory("url", url);
+
+        final String urlStr = url.toString();
+        final long validationGeneration = this.validationGeneration.get();
+
+        ModuleSource cachedSource;
+        synchronized (this.sources)
+        {
+            cachedSource = this.sources.get(urlStr);
+        }
+
+        ModuleSource source;
+        if (cachedSource != null && cachedSource.validationGeneration == validationGeneration
+                && Boolean.TRUE.equals(this.inBootstrapPhase.get()))
+        {
+            LOGGER.trace("Using cached source of module {} from {} (validated in generation {})", normalizedId, urlStr,
+                    validationGeneration);
+            this.hits.incrementAndGet();
+            source = cachedSource;
+        }
+        else
+        {
+            final CompletableFuture<ModuleSource> pendingSource = new CompletableFuture<ModuleSource>();
+            final CompletableFuture<ModuleSource> activeSource = this.pendingSources.putIfAbsent(urlStr, pendingSource);
+            if (activeSource != null)
+            {
+                LOGGER.trace("Waiting for concurrent load of source of module {} from {}", normalizedId, urlStr);
+                this.sharedLoads.incrementAndGet();
+                source = awaitSource(activeSource);
+            }
+            else
+            {
+                try
+                {
+                    source = this.loadSource(normalizedId, url, urlStr, cachedSource, validationGeneration);
+                    pendingSource.complete(source);
+                }
+                catch (final IOException | RuntimeException e)
+                {
+                    // source may no longer exist - don't keep stale state around
+                    this.evict(urlStr);
+                    pendingSource.completeExceptionally(e);
+                    throw e;
+                }
+                finally
+                {
+                    this.pendingSources.remove(urlStr, pendingSource);
+                }
+            }
+        }
+
+        return source;
+    }
+
+    protected ModuleSource loadSource(final String normalizedId, final URL url, final String urlStr, final ModuleSource cachedSource,
+            final long validationGeneration) throws IOException
+    {
+        final URLConnection connection = url.openConnection();
+        final long lastModified = connection.getLastModified();
+        final long size = connection.getContentLengthLong();
+
+        final ModuleSource source;
+        if (cachedSource != null && lastModified > 0 && cachedSource.lastModified == lastModified && cachedSource.size == size)
+        {
+            LOGGER.trace("Revalidated cached source of module {} from {} (lastModified: {})", normalizedId, urlStr, lastModified);
+            this.hits.incrementAndGet();
+            this.revalidations.incrementAndGet();
+            source = new ModuleSource(urlStr, cachedSource.script, lastModified, size, cachedSource.digest, validationGeneration);
+        }
+        else
+        {
+            final byte[] bytes;
+            try (InputStream is = connection.getInputStream())
+            {
+                bytes = readFully(is);
+            }
+            final String digest = MD5.Digest(bytes);
+
+            if (cachedSource != null && cachedSource.digest.equals(digest))
+            {
+                LOGGER.trace("Revalidated cached source of module {} from {} (digest: {})", normalizedId, urlStr, digest);
+                this.hits.incrementAndGet();
+                this.revalidations.incrementAndGet();
+                // keep the script instance but remember the current validation state
+                source = new ModuleSource(urlStr, cachedSource.script, lastModified, size, digest, validationGeneration);
+            }
+            else
+            {
+                LOGGER.debug("Caching source of module {} from {} (lastModified: {}, digest: {})", normalizedId, urlStr, lastModified,
+                        digest);
+                this.misses.incrementAndGet();
+                source = new ModuleSource(urlStr, decode(bytes), lastModified, size, digest, validationGeneration);
+            }
+        }
+
+        this.store(urlStr, source);
+
+        return source;
+    }
+
+    protected void store(final String urlStr, final ModuleSource source)
+    {
+        final long sourceBytes = source.getRetainedBytes();
+        synchronized (this.sources)
+        {
+            final ModuleSource replacedSource = this.sources.remove(urlStr);
+            if (replacedSource != null)
+            {
+                this.retainedBytes -= replacedSource.getRetainedBytes();
+            }
+
+            if (sourceBytes > this.maxBytes)
+            {
+                LOGGER.debug("Not caching source from {} as its size exceeds the limit of the cache", urlStr);
+            }
+            else
+            {
+                this.sources.put(urlStr, source);
+                this.retainedBytes += sourceBytes;
+
+                final Iterator<Map.Entry<String, ModuleSource>> entries = this.sources.entrySet().iterator();
+                // eldest entries (in access order) are evicted first
+                while ((this.sources.size() > this.maxEntries || this.retainedBytes > this.maxBytes) && entries.hasNext())
+                {
+                    final Map.Entry<String, ModuleSource> eldest = entries.next();
+                    entries.remove();
+                    this.retainedBytes -= eldest.getValue().getRetainedBytes();
+                    this.evictions.incrementAndGet();
+                    LOGGER.trace("Evicting source from {}", eldest.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a new validation generation, requiring all cached sources to be validated against their origin on their next use.
+     */
+    public void requireRevalidation()
+    {
+        final long generation = this.validationGeneration.incrementAndGet();
+        LOGGER.debug("Started validation generation {} of module source cache", generation);
+    }
+
+    /**
+     * Marks the current thread as bootstrapping a script context, allowing it to use sources already validated in the current validation
+     * generation without validating them again. Each call must be paired with a call to {@link #exitBootstrapPhase()}.
+     */
+    public void enterBootstrapPhase()
+    {
+        this.inBootstrapPhase.set(Boolean.TRUE);
+    }
+
+    /**
+     * Marks the current thread as no longer bootstrapping a script context.
+     */
+    public void exitBootstrapPhase()
+    {
+        this.inBootstrapPhase.remove();
+    }
+
+    /**
+     * Removes the cached source of a specific script URL.
+     *
+     * @param url
+     *            the URL of the script
+     */
+    public void evict(final String url)
+    {
+        ParameterCheck.mandatoryString("url", url);
+        synchronized (this.sources)
+        {
+            final ModuleSource removedSource = this.sources.remove(url);
+            if (removedSource != null)
+            {
+                this.retainedBytes -= removedSource.getRetainedBytes();
+                LOGGER.trace("Evicted source from {}", url);
+            }
+        }
+    }
+
+    /**
+     * Removes all cached module sources.
+     */
+    public void clear()
+    {
+        synchronized (this.sources)
+        {
+            this.sources.clear();
+            this.retainedBytes = 0;
+        }
+    }
+
+    /**
+     * @return the number of currently cached module sources
+     */
+    public int getSize()
+    {
+        synchronized (this.sources)
+        {
+            return this.sources.size();
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes retained by currently cached module sources
+     */
+    public long getRetainedBytes()
+    {
+        synchronized (this.sources)
+        {
+            return this.retainedBytes;
+        }
+    }
+
+    /**
+     * Retrieves the number of lookups that could be served with a cached source (including sources that had to be revalidated). This does
+     * <b>not</b> reflect whether the engine actually reused a compiled script class for the source, which depends on its own class cache and
+     * cannot be observed from the outside.
+     *
+     * @return the number of lookups that could be served with a cached source
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups that required the source to be cached (again)
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of lookups that required a connection to the origin of a cached source to validate it
+     */
+    public long getRevalidations()
+    {
+        return this.revalidations.get();
+    }
+
+    /**
+     * @return the number of sources evicted due to the entry / byte limits of the cache
+     */
+    public long getEvictions()
+    {
+        return this.evictions.get();
+    }
+
+    /**
+     * @return the number of lookups that were served by waiting for a concurrent thread loading the same source
+     */
+    public long getSharedLoads()
+    {
+        return this.sharedLoads.get();
+    }
+
+    protected static ModuleSource awaitSource(final CompletableFuture<ModuleSource> activeSource) throws IOException
+    {
+        try
+        {
+            return activeSource.get();
+        }
+        catch (final InterruptedException iex)
+        {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException iioex = new InterruptedIOException(
+                    "Interrupted while waiting for concurrent load of module source");
+            iioex.initCause(iex);
+            throw iioex;
+        }
+        catch (final ExecutionException eex)
+        {
+            final Throwable cause = eex.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Concurrent load of module source failed", cause);
+        }
+    }
+
+    protected static byte[] readFully(final InputStream is) throws IOException
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(8192);
+        final byte[] buffer = new byte[8192];
+        int bytesRead;
+        while ((bytesRead = is.read(buffer)) != -1)
+        {
+            os.write(buffer, 0, bytesRead);
+        }
+        return os.toByteArray();
+    }
+
+    protected static String decode(final byte[] bytes)
+    {
+        // Nashorn decodes URL sources as UTF-8 unless a byte order mark indicates otherwise
+        final String script;
+        if (bytes.length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf)
+        {
+            script = new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        }
+        else if (bytes.length >= 2 && (bytes[0] & 0xff) == 0xfe && (bytes[1] & 0xff) == 0xff)
+        {
+            script = new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16BE);
+        }
+        else if (bytes.length >= 2 && (bytes[0] & 0xff) == 0xff && (bytes[1] & 0xff) == 0xfe)
+        {
+            script = new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16LE);
+        }
+        else
+        {
+            script = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return script;
+    }
+}
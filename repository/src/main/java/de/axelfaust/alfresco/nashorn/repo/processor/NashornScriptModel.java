@@ -15,13 +15,12 @@ package de.axelfaust.alfresco.nashorn.repo.processor;
 
 import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 import javax.script.ScriptContext;
 
@@ -39,6 +38,10 @@ public class NashornScriptModel implements Closeable
 
     private static final ThreadLocal<List<NashornScriptModel>> PENDING_MODELS = new ThreadLocal<>();
 
+    private static final int INITIAL_CONTAINER_SLOTS = 64;
+
+    private static final ContainerSlotAllocator CONTAINER_SLOTS = new ContainerSlotAllocator();
+
     /**
      * Opens a new script model and activates it for the current thread. Any currently active model will be put into a pending state until
      * the new model is closed.
@@ -60,6 +63,7 @@ public class NashornScriptModel implements Closeable
                 PENDING_MODELS.set(pendingModels);
             }
             pendingModels.add(currentModel);
+            currentModel.current = false;
         }
 
         CURRENT_MODEL.set(model);
@@ -165,13 +169,49 @@ public class NashornScriptModel implements Closeable
         return currentModel;
     }
 
+    /**
+     * Retrieves the currently active model, reusing a model previously resolved by the caller if it is still the currently active model of
+     * the current thread.
+     *
+     * @param lastModel
+     *            the model previously resolved by the caller - may be {@code null}
+     * @return the current model
+     */
+    protected static NashornScriptModel getCurrentModel(final NashornScriptModel lastModel)
+    {
+        final NashornScriptModel currentModel;
+        // the current flag is only ever modified by the thread owning the model, so it is safe to read after the thread check
+        if (lastModel != null && lastModel.thread == Thread.currentThread() && lastModel.current)
+        {
+            currentModel = lastModel;
+        }
+        else
+        {
+            currentModel = getCurrentModel();
+        }
+        return currentModel;
+    }
+
+    /**
+     * Allocates a dense data slot for a new model-aware container.
+     *
+     * @param container
+     *            the container for which to allocate a slot
+     * @return the slot allocated to the container
+     */
+    protected static int allocateContainerSlot(final Object container)
+    {
+        return CONTAINER_SLOTS.allocateSlot(container);
+    }
+
     private final Thread thread = Thread.currentThread();
 
-    private final Map<UUID, List<?>> indexedContainers = new HashMap<>();
+    // owners guard against stale data of a previous container for a re-used slot and keep the owning containers from being collected
+    private Object[] containerOwners = new Object[INITIAL_CONTAINER_SLOTS];
 
-    private final Map<UUID, Map<?, ?>> associativeContainers = new HashMap<>();
+    private Object[] containerData = new Object[INITIAL_CONTAINER_SLOTS];
 
-    private final Map<UUID, Set<?>> uniqueEntryContainers = new HashMap<>();
+    private boolean current = true;
 
     private boolean closed = false;
 
@@ -209,48 +249,81 @@ public class NashornScriptModel implements Closeable
         {
             final NashornScriptModel pendingModel = pendingModels.remove(pendingModels.size() - 1);
             CURRENT_MODEL.set(pendingModel);
+            pendingModel.current = true;
         }
         else
         {
             CURRENT_MODEL.remove();
         }
 
+        this.current = false;
         this.closed = true;
+
+        // containers may still reference this model as their last resolved model, so data must be released explicitly
+        this.containerOwners = null;
+        this.containerData = null;
     }
 
-    protected <V> List<V> getOrCreateIndexContainerData(final UUID containerUUID)
+    protected <V> List<V> getOrCreateIndexContainerData(final Object container, final int slot)
     {
         @SuppressWarnings("unchecked")
-        List<V> list = (List<V>) this.indexedContainers.get(containerUUID);
+        List<V> list = (List<V>) this.getContainerData(container, slot);
         if (list == null)
         {
             list = new ArrayList<>();
-            this.indexedContainers.put(containerUUID, list);
+            this.setContainerData(container, slot, list);
         }
         return list;
     }
 
-    protected <K, V> Map<K, V> getOrCreateAssociativeContainerData(final UUID containerUUID)
+    protected <K, V> Map<K, V> getOrCreateAssociativeContainerData(final Object container, final int slot)
     {
         @SuppressWarnings("unchecked")
-        Map<K, V> map = (Map<K, V>) this.associativeContainers.get(containerUUID);
+        Map<K, V> map = (Map<K, V>) this.getContainerData(container, slot);
         if (map == null)
         {
             map = new LinkedHashMap<>();
-            this.associativeContainers.put(containerUUID, map);
+            this.setContainerData(container, slot, map);
         }
         return map;
     }
 
-    protected <V> Set<V> getOrCreateUniqueEntryContainerData(final UUID containerUUID)
+    protected <V> Set<V> getOrCreateUniqueEntryContainerData(final Object container, final int slot)
     {
         @SuppressWarnings("unchecked")
-        Set<V> set = (Set<V>) this.uniqueEntryContainers.get(containerUUID);
+        Set<V> set = (Set<V>) this.getContainerData(container, slot);
         if (set == null)
         {
             set = new HashSet<>();
-            this.uniqueEntryContainers.put(containerUUID, set);
+            this.setContainerData(container, slot, set);
         }
         return set;
     }
+
+    private Object getContainerData(final Object container, final int slot)
+    {
+        final Object[] containerOwners = this.containerOwners;
+        final Object data;
+        if (slot < containerOwners.length && containerOwners[slot] == container)
+        {
+            data = this.containerData[slot];
+        }
+        else
+        {
+            data = null;
+        }
+        return data;
+    }
+
+    private void setContainerData(final Object container, final int slot, final Object data)
+    {
+        if (slot >= this.containerOwners.length)
+        {
+            final int newLength = Math.max(slot + 1, this.containerOwners.length * 2);
+            this.containerOwners = Arrays.copyOf(this.containerOwners, newLength);
+            this.containerData = Arrays.copyOf(this.containerData, newLength);
+        }
+        this.containerOwners[slot] = container;
+        this.containerData[slot] = data;
+    }
 }
@@ -21,7 +21,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 import jdk.nashorn.api.scripting.AbstractJSObject;
 
@@ -91,7 +90,9 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
         Object getInitialValue(int index);
     }
 
-    private final UUID uuid = UUID.randomUUID();
+    private final int slot = NashornScriptModel.allocateContainerSlot(this);
+
+    private final CurrentModelCache modelCache = new CurrentModelCache();
 
     private final DataContainerType type;
 
@@ -134,11 +135,11 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     public Object getMember(final String name)
     {
         Object result;
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
-                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                 switch (name)
                 {
                     case "length":
@@ -180,7 +181,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
                 }
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 result = associativeContainerData.get(name);
                 if (result == null)
                 {
@@ -220,11 +221,11 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     public Object getSlot(final int idx)
     {
         Object result;
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
-                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                 if (idx >= 0 && idx < indexContainerData.size())
                 {
                     result = indexContainerData.get(idx);
@@ -252,7 +253,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
 
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 result = associativeContainerData.get(Integer.valueOf(idx));
 
                 if (result == EXPLICIT_NULL)
@@ -276,14 +277,14 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     public boolean hasMember(final String name)
     {
         boolean result;
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
                 try
                 {
                     final int idx = Integer.parseInt(name);
-                    final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                    final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                     result = idx >= 0 && idx < indexContainerData.size();
                 }
                 catch (final NumberFormatException nex)
@@ -292,7 +293,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
                 }
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 result = associativeContainerData.containsKey(name);
                 break;
             default:
@@ -310,15 +311,15 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     public boolean hasSlot(final int idx)
     {
         boolean result;
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
-                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                 result = idx >= 0 && idx < indexContainerData.size();
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 result = associativeContainerData.containsKey(Integer.valueOf(idx));
                 break;
             default:
@@ -335,14 +336,14 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     @Override
     public void removeMember(final String name)
     {
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
                 try
                 {
                     final int idx = Integer.parseInt(name);
-                    final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                    final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                     if (idx >= 0 && idx < indexContainerData.size())
                     {
                         indexContainerData.remove(idx);
@@ -358,7 +359,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
                 }
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 associativeContainerData.remove(name);
                 break;
             default:
@@ -373,14 +374,14 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     @Override
     public void setMember(final String name, final Object value)
     {
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
                 try
                 {
                     final int idx = Integer.parseInt(name);
-                    final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                    final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                     if (idx >= 0 && idx < indexContainerData.size())
                     {
                         indexContainerData.set(idx, value == null ? EXPLICIT_NULL : value);
@@ -400,7 +401,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
                 }
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 associativeContainerData.put(name, value == null ? EXPLICIT_NULL : value);
                 break;
             default:
@@ -415,11 +416,11 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     @Override
     public void setSlot(final int idx, final Object value)
     {
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
-                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                 if (idx >= 0 && idx < indexContainerData.size())
                 {
                     indexContainerData.set(idx, value == null ? EXPLICIT_NULL : value);
@@ -434,7 +435,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
                 }
                 break;
             case ASSOCIATIVE:
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 associativeContainerData.put(Integer.valueOf(idx), value == null ? EXPLICIT_NULL : value);
                 break;
             default:
@@ -451,12 +452,12 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     {
         final Set<String> keys;
 
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
                 keys = new LinkedHashSet<String>();
-                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                 for (int idx = 0, max = indexContainerData.size(); idx < max; idx++)
                 {
                     keys.add(String.valueOf(idx));
@@ -464,7 +465,7 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
                 break;
             case ASSOCIATIVE:
                 keys = new HashSet<String>();
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 for (final Object key : associativeContainerData.keySet())
                 {
                     keys.add(String.valueOf(key));
@@ -486,17 +487,17 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     {
         final Collection<Object> values;
 
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
+        final NashornScriptModel currentModel = this.getCurrentModel();
         switch (this.type)
         {
             case INDEXED:
                 values = new ArrayList<Object>();
-                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this.uuid);
+                final List<Object> indexContainerData = currentModel.getOrCreateIndexContainerData(this, this.slot);
                 values.addAll(indexContainerData);
                 break;
             case ASSOCIATIVE:
                 values = new ArrayList<Object>();
-                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+                final Map<Object, Object> associativeContainerData = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
                 values.addAll(associativeContainerData.values());
                 break;
             default:
@@ -517,4 +518,9 @@ public class NashornScriptModelAwareContainer extends AbstractJSObject
     {
         return this.type == DataContainerType.INDEXED;
     }
+
+    protected NashornScriptModel getCurrentModel()
+    {
+        return this.modelCache.getCurrentModel();
+    }
 }
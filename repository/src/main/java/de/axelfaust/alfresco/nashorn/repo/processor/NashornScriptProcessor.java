@@ -22,22 +22,37 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
 
 import jdk.nashorn.api.scripting.URLReader;
 
 import org.alfresco.repo.jscript.ClasspathScriptLocation;
 import org.alfresco.repo.processor.BaseProcessor;
+import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.service.cmr.module.ModuleDependency;
 import org.alfresco.service.cmr.module.ModuleDetails;
 import org.alfresco.service.cmr.module.ModuleService;
@@ -59,7 +74,9 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.core.io.Resource;
 
+import de.axelfaust.alfresco.nashorn.repo.amd.RepositoryModuleSystem;
 import de.axelfaust.alfresco.nashorn.repo.loaders.CallerProvidedURLStreamHandler;
+import de.axelfaust.alfresco.nashorn.repo.loaders.NodeScriptInvalidationHandler;
 
 /**
  * @author Axel Faust
@@ -78,12 +95,129 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
 
     private static final String SCRIPT_AMD = "amd.js";
 
+    private static final String SCRIPT_AMD_MODULE_SYSTEM = "amd-module-system.js";
+
     private static final String SCRIPT_NO_SUCH_PROPERTY = "noSuchProperty.js";
 
     private static final String SCRIPE_AMD_SCRIPT_RUNNER = "amd-script-runner.js";
 
     private static final ThreadLocal<Boolean> inEngineContextInitialization = new ThreadLocal<Boolean>();
 
+    private static final ThreadLocal<ModuleSourceCache> moduleSourceCacheForInitialization = new ThreadLocal<ModuleSourceCache>();
+
+    private static final ThreadLocal<PooledScriptContext> currentPooledScriptContext = new ThreadLocal<PooledScriptContext>();
+
+    /**
+     * Instances of this class hold the state of one fully bootstrapped script context (global object). If pooling is enabled, a script
+     * context can be checked out of the pool by a single script execution at a time.
+     *
+     * @author Axel Faust
+     */
+    protected static class PooledScriptContext
+    {
+
+        protected final Bindings engineBindings;
+
+        protected final AMDScriptRunner amdRunner;
+
+        protected PooledScriptContext(final Bindings engineBindings, final AMDScriptRunner amdRunner)
+        {
+            this.engineBindings = engineBindings;
+            this.amdRunner = amdRunner;
+        }
+    }
+
+    /**
+     * Instances of this class represent one generation of script context state as created by an initialisation or reset of the processor.
+     * Script executions pin the generation that is current when they start and complete on it even if a reset swaps in a newer generation
+     * in the meantime.
+     *
+     * @author Axel Faust
+     */
+    protected static class ScriptContextGeneration
+    {
+
+        protected final long generation;
+
+        protected final PooledScriptContext primaryContext;
+
+        protected final BlockingQueue<PooledScriptContext> pool;
+
+        protected ScriptContextGeneration(final long generation, final PooledScriptContext primaryContext,
+                final BlockingQueue<PooledScriptContext> pool)
+        {
+            this.generation = generation;
+            this.primaryContext = primaryContext;
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Instances of this class aggregate the durations of one bootstrap phase across all script contexts bootstrapped since startup, as
+     * contexts may be bootstrapped concurrently.
+     *
+     * @author Axel Faust
+     */
+    public static class BootstrapPhaseStatistics
+    {
+
+        protected final AtomicLong count = new AtomicLong();
+
+        protected final AtomicLong totalMillis = new AtomicLong();
+
+        protected final AtomicLong maxMillis = new AtomicLong();
+
+        protected void record(final long millis)
+        {
+            this.count.incrementAndGet();
+            this.totalMillis.addAndGet(millis);
+            this.maxMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        /**
+         * @return the number of bootstraps that completed the phase
+         */
+        public long getCount()
+        {
+            return this.count.get();
+        }
+
+        /**
+         * @return the sum of the durations (in milliseconds) of the phase across all bootstraps
+         */
+        public long getTotalMillis()
+        {
+            return this.totalMillis.get();
+        }
+
+        /**
+         * @return the maximum duration (in milliseconds) of the phase in any bootstrap
+         */
+        public long getMaxMillis()
+        {
+            return this.maxMillis.get();
+        }
+
+        /**
+         * @return the average duration (in milliseconds) of the phase
+         */
+        public long getAverageMillis()
+        {
+            final long count = this.count.get();
+            return count > 0 ? this.totalMillis.get() / count : 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            return "{count=" + this.getCount() + ", total=" + this.getTotalMillis() + ", max=" + this.getMaxMillis() + ", avg="
+                    + this.getAverageMillis() + "}";
+        }
+    }
+
     /**
      * Checks if the current thread is currently involved in script engine context initialization.
      *
@@ -95,6 +229,19 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         return result;
     }
 
+    /**
+     * Retrieves the cache of module sources to be used by the script engine context being initialized by the current thread. Script
+     * contexts retain the cache for all module loads after they have been initialized.
+     *
+     * @return the module source cache or {@code null} if caching of module sources is disabled or the current thread is not initializing
+     *         a script engine context
+     */
+    public static ModuleSourceCache getModuleSourceCache()
+    {
+        final ModuleSourceCache moduleSourceCache = moduleSourceCacheForInitialization.get();
+        return moduleSourceCache;
+    }
+
     protected ScriptEngine engine;
 
     protected NamespaceService namespaceService;
@@ -111,14 +258,46 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
 
     protected boolean executeArbitraryScriptStringsAsSecure = false;
 
-    protected AMDModulePreloader amdPreloader;
-
-    protected AMDScriptRunner amdRunner;
+    protected volatile ScriptContextGeneration scriptContextGeneration;
 
-    protected final ReentrantReadWriteLock initialisationStateLock = new ReentrantReadWriteLock(true);
+    protected final ReentrantLock scriptContextInitialisationLock = new ReentrantLock();
 
     protected final List<ResettableScriptProcessorElement> resettableProcessorElements = new ArrayList<ResettableScriptProcessorElement>();
 
+    protected int scriptContextPoolSize = 0;
+
+    protected long scriptContextPoolCheckoutTimeout = 30000;
+
+    protected int scriptContextPoolBootstrapThreads = 1;
+
+    protected final AtomicLong scriptContextPoolCheckouts = new AtomicLong();
+
+    protected final AtomicLong scriptContextPoolCheckoutTimeouts = new AtomicLong();
+
+    protected final AtomicLong scriptContextPoolWaitTime = new AtomicLong();
+
+    protected final AtomicLong scriptContextPoolMaxWaitTime = new AtomicLong();
+
+    // bootstrap scripts are compiled only once and evaluated against every new script context (global)
+    protected final Map<String, CompiledScript> compiledBootstrapScripts = new ConcurrentHashMap<String, CompiledScript>();
+
+    // aggregated across all (potentially concurrent) bootstraps in order of the first occurrence of each phase
+    protected final Map<String, BootstrapPhaseStatistics> bootstrapPhaseStatistics = Collections
+            .synchronizedMap(new LinkedHashMap<String, BootstrapPhaseStatistics>());
+
+    protected int moduleSourceCacheMaxEntries = 0;
+
+    protected long moduleSourceCacheMaxBytes = 16 * 1024 * 1024;
+
+    // class cache of the engine (--class-cache-size) - compiled scripts can only be reused for as many sources
+    protected int nashornClassCacheSize = 50;
+
+    protected ModuleSourceCache moduleSourceCache;
+
+    protected boolean useJavaModuleSystem = false;
+
+    protected NodeScriptInvalidationHandler nodeScriptInvalidationHandler;
+
     /**
      * {@inheritDoc}
      */
@@ -191,6 +370,218 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         this.executeArbitraryScriptStringsAsSecure = executeArbitraryScriptStringsAsSecure;
     }
 
+    /**
+     * @param scriptContextPoolSize
+     *            the scriptContextPoolSize to set - values less than {@code 1} disable pooling so that all script executions share a single
+     *            script context
+     */
+    public void setScriptContextPoolSize(final int scriptContextPoolSize)
+    {
+        this.scriptContextPoolSize = scriptContextPoolSize;
+    }
+
+    /**
+     * @param scriptContextPoolCheckoutTimeout
+     *            the scriptContextPoolCheckoutTimeout to set (in milliseconds) - values less than {@code 1} will wait indefinitely
+     */
+    public void setScriptContextPoolCheckoutTimeout(final long scriptContextPoolCheckoutTimeout)
+    {
+        this.scriptContextPoolCheckoutTimeout = scriptContextPoolCheckoutTimeout;
+    }
+
+    /**
+     * @param scriptContextPoolBootstrapThreads
+     *            the scriptContextPoolBootstrapThreads to set - values less than {@code 2} bootstrap all pooled script contexts sequentially
+     */
+    public void setScriptContextPoolBootstrapThreads(final int scriptContextPoolBootstrapThreads)
+    {
+        this.scriptContextPoolBootstrapThreads = scriptContextPoolBootstrapThreads;
+    }
+
+    /**
+     * @param moduleSourceCacheMaxEntries
+     *            the moduleSourceCacheMaxEntries to set - values less than {@code 1} disable caching of module sources
+     */
+    public void setModuleSourceCacheMaxEntries(final int moduleSourceCacheMaxEntries)
+    {
+        this.moduleSourceCacheMaxEntries = moduleSourceCacheMaxEntries;
+    }
+
+    /**
+     * @param moduleSourceCacheMaxBytes
+     *            the moduleSourceCacheMaxBytes to set - the approximate in-memory budget for cached module sources
+     */
+    public void setModuleSourceCacheMaxBytes(final long moduleSourceCacheMaxBytes)
+    {
+        this.moduleSourceCacheMaxBytes = moduleSourceCacheMaxBytes;
+    }
+
+    /**
+     * @param nashornClassCacheSize
+     *            the nashornClassCacheSize to set - must match the {@code --class-cache-size} of the engine and limits the number of cached
+     *            module sources
+     */
+    public void setNashornClassCacheSize(final int nashornClassCacheSize)
+    {
+        this.nashornClassCacheSize = nashornClassCacheSize;
+    }
+
+    /**
+     * @param useJavaModuleSystem
+     *            the useJavaModuleSystem to set - {@code true} bootstraps script contexts with the Java-based module system instead of the
+     *            script-based AMD module system
+     */
+    public void setUseJavaModuleSystem(final boolean useJavaModuleSystem)
+    {
+        this.useJavaModuleSystem = useJavaModuleSystem;
+    }
+
+    /**
+     * @param nodeScriptInvalidationHandler
+     *            the nodeScriptInvalidationHandler to set
+     */
+    public void setNodeScriptInvalidationHandler(final NodeScriptInvalidationHandler nodeScriptInvalidationHandler)
+    {
+        this.nodeScriptInvalidationHandler = nodeScriptInvalidationHandler;
+    }
+
+    /**
+     * Retrieves the number of pooled script contexts that have been checked out since startup.
+     *
+     * @return the number of checkouts
+     */
+    public long getScriptContextPoolCheckouts()
+    {
+        return this.scriptContextPoolCheckouts.get();
+    }
+
+    /**
+     * Retrieves the number of attempts to check out a pooled script context that failed due to a timeout since startup.
+     *
+     * @return the number of checkout timeouts
+     */
+    public long getScriptContextPoolCheckoutTimeouts()
+    {
+        return this.scriptContextPoolCheckoutTimeouts.get();
+    }
+
+    /**
+     * Retrieves the accumulated time script executions have spent waiting for a pooled script context since startup.
+     *
+     * @return the accumulated wait time in milliseconds
+     */
+    public long getScriptContextPoolWaitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.scriptContextPoolWaitTime.get());
+    }
+
+    /**
+     * Retrieves the maximum time a single script execution has spent waiting for a pooled script context since startup.
+     *
+     * @return the maximum wait time in milliseconds
+     */
+    public long getScriptContextPoolMaxWaitTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.scriptContextPoolMaxWaitTime.get());
+    }
+
+    /**
+     * Retrieves the number of pooled script contexts that are currently not checked out.
+     *
+     * @return the number of available script contexts or {@code -1} if pooling is not enabled
+     */
+    public int getScriptContextPoolAvailable()
+    {
+        final ScriptContextGeneration scriptContextGeneration = this.scriptContextGeneration;
+        return scriptContextGeneration != null && scriptContextGeneration.pool != null ? scriptContextGeneration.pool.size() : -1;
+    }
+
+    /**
+     * Retrieves the aggregated durations of the individual phases of all bootstraps of script contexts since startup.
+     *
+     * @return the statistics of the bootstrap phases keyed by the phase name, in the order of execution
+     */
+    public Map<String, BootstrapPhaseStatistics> getBootstrapPhaseStatistics()
+    {
+        synchronized (this.bootstrapPhaseStatistics)
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<String, BootstrapPhaseStatistics>(this.bootstrapPhaseStatistics));
+        }
+    }
+
+    /**
+     * Retrieves the number of module loads that have been served with a source from the module source cache since startup. This only counts
+     * reuse of script sources - whether the engine was able to reuse a compiled script class for a source depends on its class cache and
+     * is not reflected by this number.
+     *
+     * @return the number of cache hits or {@code -1} if caching of module sources is disabled
+     */
+    public long getModuleSourceCacheHits()
+    {
+        return this.moduleSourceCache != null ? this.moduleSourceCache.getHits() : -1;
+    }
+
+    /**
+     * Retrieves the number of module loads that could not be served by the module source cache since startup.
+     *
+     * @return the number of cache misses or {@code -1} if caching of module sources is disabled
+     */
+    public long getModuleSourceCacheMisses()
+    {
+        return this.moduleSourceCache != null ? this.moduleSourceCache.getMisses() : -1;
+    }
+
+    /**
+     * Retrieves the number of module sources that have been evicted from the module source cache since startup.
+     *
+     * @return the number of cache evictions or {@code -1} if caching of module sources is disabled
+     */
+    public long getModuleSourceCacheEvictions()
+    {
+        return this.moduleSourceCache != null ? this.moduleSourceCache.getEvictions() : -1;
+    }
+
+    /**
+     * Retrieves the number of module loads since startup for which a cached source had to be validated against its origin.
+     *
+     * @return the number of revalidations or {@code -1} if caching of module sources is disabled
+     */
+    public long getModuleSourceCacheRevalidations()
+    {
+        return this.moduleSourceCache != null ? this.moduleSourceCache.getRevalidations() : -1;
+    }
+
+    /**
+     * Retrieves the approximate number of bytes retained by the module source cache.
+     *
+     * @return the number of retained bytes or {@code -1} if caching of module sources is disabled
+     */
+    public long getModuleSourceCacheRetainedBytes()
+    {
+        return this.moduleSourceCache != null ? this.moduleSourceCache.getRetainedBytes() : -1;
+    }
+
+    /**
+     * Retrieves the number of module sources currently held in the module source cache.
+     *
+     * @return the number of cached module sources or {@code -1} if caching of module sources is disabled
+     */
+    public int getModuleSourceCacheSize()
+    {
+        return this.moduleSourceCache != null ? this.moduleSourceCache.getSize() : -1;
+    }
+
+    /**
+     * Retrieves the number of the currently active generation of script context state, which is incremented by every successful reset.
+     *
+     * @return the number of the current script context generation or {@code -1} if the processor has not yet been initialised
+     */
+    public long getScriptContextGeneration()
+    {
+        final ScriptContextGeneration scriptContextGeneration = this.scriptContextGeneration;
+        return scriptContextGeneration != null ? scriptContextGeneration.generation : -1;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -206,10 +597,30 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         PropertyCheck.mandatory(this, "globalProperties", this.globalProperties);
         PropertyCheck.mandatory(this, "amdConfig", this.amdConfig);
 
-        this.initialisationStateLock.writeLock().lock();
+        if (this.moduleSourceCacheMaxEntries > 0 && this.moduleSourceCacheMaxBytes > 0)
+        {
+            int maxEntries = this.moduleSourceCacheMaxEntries;
+            if (this.nashornClassCacheSize > 0 && maxEntries > this.nashornClassCacheSize)
+            {
+                LOGGER.warn(
+                        "Module source cache size of {} exceeds class cache size of {} of the script engine - limiting cache to class cache size",
+                        Integer.valueOf(maxEntries), Integer.valueOf(this.nashornClassCacheSize));
+                maxEntries = this.nashornClassCacheSize;
+            }
+            this.moduleSourceCache = new ModuleSourceCache(maxEntries, this.moduleSourceCacheMaxBytes);
+
+            if (this.nodeScriptInvalidationHandler != null)
+            {
+                // node URLs can't be mapped back from node references - revalidate all sources on the next bootstrap instead
+                // (module loads after bootstrap always validate the source against the invalidation-aware node script file)
+                this.nodeScriptInvalidationHandler.registerScriptInvalidationListener(x -> this.moduleSourceCache.requireRevalidation());
+            }
+        }
+
+        this.scriptContextInitialisationLock.lock();
         try
         {
-            this.initScriptContext();
+            this.scriptContextGeneration = this.initScriptContextGeneration();
         }
         catch (final ScriptException sex)
         {
@@ -217,7 +628,7 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         }
         finally
         {
-            this.initialisationStateLock.writeLock().unlock();
+            this.scriptContextInitialisationLock.unlock();
         }
 
         super.register();
@@ -337,10 +748,11 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
     @Override
     public void reset()
     {
-        this.initialisationStateLock.writeLock().lock();
+        // new generation is built without blocking script executions - running executions complete on the old generation
+        this.scriptContextInitialisationLock.lock();
         try
         {
-            this.initScriptContext();
+            this.scriptContextGeneration = this.initScriptContextGeneration();
         }
         catch (final ScriptException sex)
         {
@@ -348,7 +760,7 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         }
         finally
         {
-            this.initialisationStateLock.writeLock().unlock();
+            this.scriptContextInitialisationLock.unlock();
         }
 
         this.resettableProcessorElements.forEach(x -> x.reset());
@@ -356,60 +768,258 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
 
     protected Object executeAMDLoadableScript(final AMDLoadableScript script, final Map<String, Object> model)
     {
-        this.initialisationStateLock.readLock().lock();
-        try
+        // single volatile read instead of a lock - a concurrent reset will not affect this execution
+        final ScriptContextGeneration scriptContextGeneration = this.scriptContextGeneration;
+        // nested script executions (e.g. scripts calling other scripts via ScriptService) re-use the script context of the caller
+        final PooledScriptContext callerPooledContext = currentPooledScriptContext.get();
+        final PooledScriptContext pooledContext = callerPooledContext != null ? callerPooledContext : this
+                .checkoutPooledScriptContext(scriptContextGeneration);
+        try (final NashornScriptModel scriptModel = NashornScriptModel.openModel())
+        {
+            LOGGER.debug("Executing AMD-loadable script {}", script);
+            final String moduleId;
+            if (script.getLoaderName() != null && !script.getLoaderName().isEmpty())
+            {
+                moduleId = MessageFormat.format("{0}!{1}", script.getLoaderName(), script.getScriptModuleId());
+            }
+            else
+            {
+                moduleId = script.getScriptModuleId();
+            }
+
+            final AMDScriptRunner amdRunner = pooledContext != null ? pooledContext.amdRunner
+                    : scriptContextGeneration.primaryContext.amdRunner;
+            try
+            {
+                final Object scriptResult = amdRunner.run(moduleId, model);
+                LOGGER.debug("Return value of AMD-loadable script {}: {}", script, scriptResult);
+
+                // TODO Convert / unwrap scriptResult for Java (could also be done in runner)
+                return scriptResult;
+            }
+            catch (final RuntimeException ex)
+            {
+                LOGGER.debug("Error executing AMD-loadable script", ex);
+                throw ex;
+            }
+        }
+        finally
         {
-            try (final NashornScriptModel scriptModel = NashornScriptModel.openModel())
+            if (callerPooledContext == null && pooledContext != null)
             {
-                LOGGER.debug("Executing AMD-loadable script {}", script);
-                final String moduleId;
-                if (script.getLoaderName() != null && !script.getLoaderName().isEmpty())
+                this.returnPooledScriptContext(scriptContextGeneration, pooledContext);
+            }
+        }
+    }
+
+    protected PooledScriptContext checkoutPooledScriptContext(final ScriptContextGeneration scriptContextGeneration)
+    {
+        final BlockingQueue<PooledScriptContext> scriptContextPool = scriptContextGeneration.pool;
+        PooledScriptContext pooledContext = null;
+        if (scriptContextPool != null)
+        {
+            pooledContext = scriptContextPool.poll();
+            if (pooledContext == null)
+            {
+                LOGGER.debug("No pooled script context available - waiting for script context to be returned");
+                final long waitStart = System.nanoTime();
+                try
                 {
-                    moduleId = MessageFormat.format("{0}!{1}", script.getLoaderName(), script.getScriptModuleId());
+                    if (this.scriptContextPoolCheckoutTimeout > 0)
+                    {
+                        pooledContext = scriptContextPool.poll(this.scriptContextPoolCheckoutTimeout, TimeUnit.MILLISECONDS);
+                    }
+                    else
+                    {
+                        pooledContext = scriptContextPool.take();
+                    }
                 }
-                else
+                catch (final InterruptedException iex)
                 {
-                    moduleId = script.getScriptModuleId();
+                    Thread.currentThread().interrupt();
+                    throw new org.alfresco.scripts.ScriptException("Interrupted while waiting for pooled script context", iex);
                 }
-
-                try
+                finally
                 {
-                    final Object scriptResult = this.amdRunner.run(moduleId, model);
-                    LOGGER.debug("Return value of AMD-loadable script {}: {}", script, scriptResult);
+                    final long waitTime = System.nanoTime() - waitStart;
+                    this.scriptContextPoolWaitTime.addAndGet(waitTime);
+                    this.scriptContextPoolMaxWaitTime.accumulateAndGet(waitTime, Math::max);
+                    LOGGER.debug("Waited {}ms for pooled script context", Long.valueOf(TimeUnit.NANOSECONDS.toMillis(waitTime)));
+                }
 
-                    // TODO Convert / unwrap scriptResult for Java (could also be done in runner)
-                    return scriptResult;
+                if (pooledContext == null)
+                {
+                    this.scriptContextPoolCheckoutTimeouts.incrementAndGet();
+                    throw new org.alfresco.scripts.ScriptException("Timed out waiting for pooled script context");
                 }
-                catch (final RuntimeException ex)
+            }
+
+            this.scriptContextPoolCheckouts.incrementAndGet();
+            currentPooledScriptContext.set(pooledContext);
+        }
+        return pooledContext;
+    }
+
+    protected void returnPooledScriptContext(final ScriptContextGeneration scriptContextGeneration, final PooledScriptContext pooledContext)
+    {
+        currentPooledScriptContext.remove();
+
+        // always return to the pool of the generation it was checked out from (discarded with that generation after a reset)
+        final BlockingQueue<PooledScriptContext> scriptContextPool = scriptContextGeneration.pool;
+        if (scriptContextPool != null)
+        {
+            scriptContextPool.offer(pooledContext);
+        }
+    }
+
+    protected ScriptContextGeneration initScriptContextGeneration() throws ScriptException
+    {
+        final ScriptContextGeneration previousGeneration = this.scriptContextGeneration;
+        final long generation = previousGeneration != null ? previousGeneration.generation + 1 : 0;
+
+        LOGGER.debug("Initializing script context generation {}", Long.valueOf(generation));
+
+        if (this.moduleSourceCache != null)
+        {
+            // bootstrap validates sources once per generation instead of once per loaded module in every (pooled) script context
+            this.moduleSourceCache.requireRevalidation();
+        }
+
+        final PooledScriptContext primaryContext = this.initScriptContext();
+        final BlockingQueue<PooledScriptContext> pool;
+        if (this.scriptContextPoolSize > 0)
+        {
+            LOGGER.debug("Initializing pool of {} script contexts", Integer.valueOf(this.scriptContextPoolSize));
+
+            pool = new LinkedBlockingQueue<PooledScriptContext>(this.scriptContextPoolSize);
+            // primary script context can be pooled as well
+            pool.add(primaryContext);
+
+            final int additionalContexts = this.scriptContextPoolSize - 1;
+            final int bootstrapThreads = Math.min(this.scriptContextPoolBootstrapThreads, additionalContexts);
+            if (bootstrapThreads > 1)
+            {
+                pool.addAll(this.initScriptContextsConcurrently(additionalContexts, bootstrapThreads));
+            }
+            else
+            {
+                while (pool.size() < this.scriptContextPoolSize)
                 {
-                    LOGGER.debug("Error executing AMD-loadable script", ex);
-                    throw ex;
+                    pool.add(this.initScriptContext());
                 }
             }
+
+            LOGGER.info("Pool of {} script contexts initialized", Integer.valueOf(this.scriptContextPoolSize));
         }
-        finally
+        else
         {
-            this.initialisationStateLock.readLock().unlock();
+            pool = null;
         }
+
+        final ScriptContextGeneration scriptContextGeneration = new ScriptContextGeneration(generation, primaryContext, pool);
+        return scriptContextGeneration;
     }
 
-    protected void initScriptContext() throws ScriptException
+    /**
+     * Bootstraps a number of script contexts concurrently. Each script context uses its own global and can be bootstrapped independently
+     * of any other, so independent script contexts are the unit of parallelism. Base and extension modules preloaded within a single
+     * script context are still preloaded sequentially in dependency order, as a single global cannot evaluate several
+     * {@code define.preload} calls concurrently, and module IDs can only be resolved to script sources by the (script-based) loader modules
+     * of that global. Concurrent bootstrap therefore only applies to the additional contexts of a script context pool.
+     *
+     * @param count
+     *            the number of script contexts to bootstrap
+     * @param threads
+     *            the number of threads to use
+     * @return the bootstrapped script contexts
+     * @throws ScriptException
+     *             if any script context could not be bootstrapped
+     */
+    protected List<PooledScriptContext> initScriptContextsConcurrently(final int count, final int threads) throws ScriptException
     {
-        final Bindings oldEngineBindings = this.engine.getBindings(ScriptContext.ENGINE_SCOPE);
-        final AMDModulePreloader oldPreloader = this.amdPreloader;
-        final AMDScriptRunner oldAMDRunner = this.amdRunner;
+        LOGGER.debug("Initializing {} script contexts using {} threads", Integer.valueOf(count), Integer.valueOf(threads));
+
+        // bootstrap threads do not inherit the authentication / tenant context of the initiating thread
+        final String tenantDomain = TenantUtil.getCurrentDomain();
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "NashornScriptContextBootstrap-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        });
 
+        try
+        {
+            final List<Future<PooledScriptContext>> futures = new ArrayList<Future<PooledScriptContext>>(count);
+            for (int idx = 0; idx < count; idx++)
+            {
+                futures.add(executor.submit(() -> {
+                    return TenantUtil.runAsSystemTenant(this::initScriptContext, tenantDomain);
+                }));
+            }
+
+            final List<PooledScriptContext> scriptContexts = new ArrayList<PooledScriptContext>(count);
+            for (final Future<PooledScriptContext> future : futures)
+            {
+                scriptContexts.add(future.get());
+            }
+            return scriptContexts;
+        }
+        catch (final ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            // checked exceptions are wrapped by the run-as handling
+            if (cause instanceof RuntimeException && cause.getClass() == RuntimeException.class && cause.getCause() != null)
+            {
+                cause = cause.getCause();
+            }
+
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof ScriptException)
+            {
+                throw (ScriptException) cause;
+            }
+            throw new org.alfresco.scripts.ScriptException("Unknown error initializing script context", cause);
+        }
+        catch (final InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new org.alfresco.scripts.ScriptException("Interrupted while initializing script contexts", ex);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    protected PooledScriptContext initScriptContext() throws ScriptException
+    {
         LOGGER.debug("Initializing new script context");
 
+        final Map<String, Long> phaseDurations = new LinkedHashMap<String, Long>();
+        final long bootstrapStart = System.nanoTime();
+        long phaseStart = bootstrapStart;
+
         inEngineContextInitialization.set(Boolean.TRUE);
+        moduleSourceCacheForInitialization.set(this.moduleSourceCache);
+        if (this.moduleSourceCache != null)
+        {
+            this.moduleSourceCache.enterBootstrapPhase();
+        }
         try (NashornScriptModel model = NashornScriptModel.openModel())
         {
-            // create new (unpolluted) engine bindings
+            // create new (unpolluted) engine bindings in a dedicated context so multiple script contexts can be initialised concurrently
+            final ScriptContext scriptContext = new SimpleScriptContext();
             final Bindings engineBindings = this.engine.createBindings();
-            this.engine.setBindings(engineBindings, ScriptContext.ENGINE_SCOPE);
+            scriptContext.setBindings(engineBindings, ScriptContext.ENGINE_SCOPE);
 
             final Bindings globalBindings = new SimpleBindings();
-            this.engine.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
+            scriptContext.setBindings(globalBindings, ScriptContext.GLOBAL_SCOPE);
 
             // only available during initialisation
             globalBindings.put("applicationContext", this.applicationContext);
@@ -420,22 +1030,36 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
             // 1) simple logger facade for SLF4J
             LOGGER.debug("Bootstrapping simple logger");
             resource = NashornScriptProcessor.class.getResource(SCRIPT_SIMPLE_LOGGER);
-            this.executeScriptFromResource(resource);
+            this.executeBootstrapScriptFromResource(resource, scriptContext);
+            phaseStart = recordBootstrapPhase(phaseDurations, "simpleLogger", phaseStart);
 
             // 2) AMD loader and noSuchProperty to be used for all scripts apart from bootstrap
-            LOGGER.debug("Setting up AMD");
-            resource = NashornScriptProcessor.class.getResource(SCRIPT_AMD);
-            this.executeScriptFromResource(resource);
+            final AMDModulePreloader amdPreloader;
+            if (this.useJavaModuleSystem)
+            {
+                LOGGER.debug("Setting up Java-based AMD module system");
+                resource = NashornScriptProcessor.class.getResource(SCRIPT_AMD_MODULE_SYSTEM);
+                final RepositoryModuleSystem moduleSystem = (RepositoryModuleSystem) this.executeBootstrapScriptFromResource(resource,
+                        scriptContext);
+                amdPreloader = moduleSystem::preloadModule;
+            }
+            else
+            {
+                LOGGER.debug("Setting up AMD");
+                resource = NashornScriptProcessor.class.getResource(SCRIPT_AMD);
+                this.executeBootstrapScriptFromResource(resource, scriptContext);
 
-            resource = NashornScriptProcessor.class.getResource(SCRIPT_NO_SUCH_PROPERTY);
-            this.executeScriptFromResource(resource);
+                final Object define = engineBindings.get("define");
+                amdPreloader = ((Invocable) this.engine).getInterface(define, AMDModulePreloader.class);
+            }
 
-            final Object define = this.engine.get("define");
-            this.amdPreloader = ((Invocable) this.engine).getInterface(define, AMDModulePreloader.class);
+            resource = NashornScriptProcessor.class.getResource(SCRIPT_NO_SUCH_PROPERTY);
+            this.executeBootstrapScriptFromResource(resource, scriptContext);
 
             // 3) the nashorn loader plugin so we can control access to globals
             LOGGER.debug("Setting up nashorn AMD loader");
-            this.preloadAMDModule("loaderMetaLoader", "nashorn", "nashorn");
+            this.preloadAMDModule(scriptContext, "loaderMetaLoader", "nashorn", "nashorn");
+            phaseStart = recordBootstrapPhase(phaseDurations, "amd", phaseStart);
 
             // 4) remove Nashorn globals
             LOGGER.debug("Removing disallowed Nashorn globals \"{}\" and \"{}\"", NASHORN_GLOBAL_PROPERTIES_TO_ALWAYS_REMOVE,
@@ -459,15 +1083,18 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
             // 6) AMD config
             LOGGER.debug("Applying AMD config \"{}\"", this.amdConfig);
             resource = this.amdConfig.getURL();
-            this.executeScriptFromResource(resource);
+            this.executeScriptFromResource(resource, scriptContext);
+            phaseStart = recordBootstrapPhase(phaseDurations, "amdConfig", phaseStart);
 
             // 7) configured JavaScript base modules
             LOGGER.debug("Bootstrapping base modules");
-            this.initScriptContextBaseModules(this.amdPreloader);
+            this.initScriptContextBaseModules(scriptContext, amdPreloader);
+            phaseStart = recordBootstrapPhase(phaseDurations, "baseModules", phaseStart);
 
             // 8) configured JavaScript extension modules
             LOGGER.debug("Bootstrapping extension modules");
-            this.initScriptContextExtensions(this.amdPreloader);
+            this.initScriptContextExtensions(scriptContext, amdPreloader);
+            phaseStart = recordBootstrapPhase(phaseDurations, "extensionModules", phaseStart);
 
             // 9) remove any init data that shouldn't be publicly available
             globalBindings.clear();
@@ -475,21 +1102,24 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
             // 10) obtain the runner interface
             LOGGER.debug("Preparing AMD script runner");
             resource = NashornScriptProcessor.class.getResource(SCRIPE_AMD_SCRIPT_RUNNER);
-            final Object scriptRunnerObj = this.executeScriptFromResource(resource);
-            this.amdRunner = ((Invocable) this.engine).getInterface(scriptRunnerObj, AMDScriptRunner.class);
+            final Object scriptRunnerObj = this.executeBootstrapScriptFromResource(resource, scriptContext);
+            final AMDScriptRunner amdRunner = ((Invocable) this.engine).getInterface(scriptRunnerObj, AMDScriptRunner.class);
+            recordBootstrapPhase(phaseDurations, "scriptRunner", phaseStart);
+            phaseDurations.put("total", Long.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - bootstrapStart)));
+            for (final Map.Entry<String, Long> phaseDuration : phaseDurations.entrySet())
+            {
+                this.bootstrapPhaseStatistics.computeIfAbsent(phaseDuration.getKey(), phase -> new BootstrapPhaseStatistics())
+                        .record(phaseDuration.getValue().longValue());
+            }
 
-            LOGGER.info("New script context initialized");
+            LOGGER.info("New script context initialized - bootstrap phase durations (ms): {}", phaseDurations);
+            return new PooledScriptContext(engineBindings, amdRunner);
         }
         catch (final Throwable t)
         {
             LOGGER.warn("Initialization of script context failed", t);
 
-            // reset
-            this.engine.setBindings(oldEngineBindings, ScriptContext.ENGINE_SCOPE);
-            this.engine.getBindings(ScriptContext.GLOBAL_SCOPE).clear();
-            this.amdPreloader = oldPreloader;
-            this.amdRunner = oldAMDRunner;
-
+            // nothing to roll back - the partially initialised script context is simply discarded
             if (t instanceof RuntimeException)
             {
                 throw (RuntimeException) t;
@@ -506,10 +1136,16 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         finally
         {
             inEngineContextInitialization.remove();
+            moduleSourceCacheForInitialization.remove();
+            if (this.moduleSourceCache != null)
+            {
+                this.moduleSourceCache.exitBootstrapPhase();
+            }
         }
     }
 
-    protected void initScriptContextBaseModules(final AMDModulePreloader amdPreloader) throws ScriptException
+    protected void initScriptContextBaseModules(final ScriptContext scriptContext, final AMDModulePreloader amdPreloader)
+            throws ScriptException
     {
         final Object extensionScriptsValue = this.globalProperties.get("nashornJavaScriptProcessor.baseScripts");
         if (extensionScriptsValue instanceof String && !((String) extensionScriptsValue).trim().isEmpty())
@@ -531,13 +1167,14 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
 
                 if (moduleIdValue instanceof String && loaderNameValue instanceof String)
                 {
-                    this.preloadAMDModule(loaderNameValue, moduleIdValue, aliasModuleIdValue);
+                    this.preloadAMDModule(scriptContext, loaderNameValue, moduleIdValue, aliasModuleIdValue);
                 }
             }
         }
     }
 
-    protected void initScriptContextExtensions(final AMDModulePreloader amdPreloader) throws ScriptException
+    protected void initScriptContextExtensions(final ScriptContext scriptContext, final AMDModulePreloader amdPreloader)
+            throws ScriptException
     {
         final Map<String, Pair<ModuleDetails, Boolean>> modules = new HashMap<String, Pair<ModuleDetails, Boolean>>();
 
@@ -554,14 +1191,14 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
 
         for (final ModuleDetails module : this.moduleService.getAllModules())
         {
-            this.initScriptContextExtensions(modules, module);
+            this.initScriptContextExtensions(scriptContext, modules, module);
         }
 
         // TODO Load custom extensions outside of module context (i.e. definitions by customer in alfresco-global.properties)
     }
 
-    protected void initScriptContextExtensions(final Map<String, Pair<ModuleDetails, Boolean>> modules, final ModuleDetails module)
-            throws ScriptException
+    protected void initScriptContextExtensions(final ScriptContext scriptContext, final Map<String, Pair<ModuleDetails, Boolean>> modules,
+            final ModuleDetails module) throws ScriptException
     {
         final String moduleId = module.getId();
         final Pair<ModuleDetails, Boolean> moduleExecution = modules.get(moduleId);
@@ -574,7 +1211,7 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
                 if (dependencyState != null)
                 {
                     // just recurse - will check execution state therein
-                    this.initScriptContextExtensions(modules, dependencyState.getFirst());
+                    this.initScriptContextExtensions(scriptContext, modules, dependencyState.getFirst());
                 }
                 // else missing dependency - ModuleService should have failed startup
             }
@@ -604,7 +1241,7 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
 
                     if (moduleIdValue instanceof String && loaderNameValue instanceof String)
                     {
-                        this.preloadAMDModule(loaderNameValue, moduleIdValue, aliasModuleIdValue);
+                        this.preloadAMDModule(scriptContext, loaderNameValue, moduleIdValue, aliasModuleIdValue);
                     }
                 }
             }
@@ -614,68 +1251,99 @@ public class NashornScriptProcessor extends BaseProcessor implements ScriptProce
         }
     }
 
-    protected void preloadAMDModule(final Object loaderNameValue, final Object moduleIdValue, final Object aliasModuleIdValue)
-            throws ScriptException
+    protected void preloadAMDModule(final ScriptContext scriptContext, final Object loaderNameValue, final Object moduleIdValue,
+            final Object aliasModuleIdValue) throws ScriptException
     {
-        this.initialisationStateLock.readLock().lock();
+        LOGGER.debug("Pre-loading module {}!{}", loaderNameValue, moduleIdValue);
+
+        String call;
+        if (aliasModuleIdValue != null)
+        {
+            call = MessageFormat.format("define.preload(''{0}!{1}'', ''{2}'');", loaderNameValue, moduleIdValue, aliasModuleIdValue);
+        }
+        else
+        {
+            call = MessageFormat.format("define.preload(''{0}!{1}'');", loaderNameValue, moduleIdValue);
+        }
+
         try
         {
-            LOGGER.debug("Pre-loading module {}!{}", loaderNameValue, moduleIdValue);
+            // TODO Determine if it's possible to still use ScriptContext attributes in scripts called via extracted interfaces
+            // TODO Determine why we can't get AMDModulePreloader interface for define.preload()
+            // final ScriptObjectMirror define = (ScriptObjectMirror) this.engine.getContext().getAttribute("define");
+            // define.callMember("preload", fullModuleId);
+            // this.amdPreloader.preload(fullModuleId);
+            this.engine.eval(call, scriptContext);
+        }
+        catch (final RuntimeException ex)
+        {
+            LOGGER.error("Error preloading module {}!{}", loaderNameValue, moduleIdValue);
+            throw ex;
+        }
+    }
 
-            String call;
-            if (aliasModuleIdValue != null)
-            {
-                call = MessageFormat.format("define.preload(''{0}!{1}'', ''{2}'');", loaderNameValue, moduleIdValue, aliasModuleIdValue);
-            }
-            else
+    protected Object executeBootstrapScriptFromResource(final URL resource, final ScriptContext scriptContext) throws ScriptException
+    {
+        final String resourceKey = resource.toString();
+        CompiledScript compiledScript = this.compiledBootstrapScripts.get(resourceKey);
+        if (compiledScript == null)
+        {
+            // compilation uses the default context of the engine - must not be done concurrently
+            synchronized (this.compiledBootstrapScripts)
             {
-                call = MessageFormat.format("define.preload(''{0}!{1}'');", loaderNameValue, moduleIdValue);
+                compiledScript = this.compiledBootstrapScripts.get(resourceKey);
+                if (compiledScript == null)
+                {
+                    LOGGER.debug("Compiling bootstrap script from resource {}", resource);
+                    try (Reader reader = new URLReader(resource))
+                    {
+                        this.engine.getContext().setAttribute(ScriptEngine.FILENAME, resourceKey, ScriptContext.ENGINE_SCOPE);
+                        compiledScript = ((Compilable) this.engine).compile(reader);
+                        this.compiledBootstrapScripts.put(resourceKey, compiledScript);
+                    }
+                    catch (final IOException e)
+                    {
+                        throw new ScriptException(e);
+                    }
+                }
             }
+        }
 
-            try
-            {
-                // TODO Determine if it's possible to still use ScriptContext attributes in scripts called via extracted interfaces
-                // TODO Determine why we can't get AMDModulePreloader interface for define.preload()
-                // final ScriptObjectMirror define = (ScriptObjectMirror) this.engine.getContext().getAttribute("define");
-                // define.callMember("preload", fullModuleId);
-                // this.amdPreloader.preload(fullModuleId);
-                this.engine.eval(call);
-            }
-            catch (final RuntimeException ex)
-            {
-                LOGGER.error("Error preloading module {}!{}", loaderNameValue, moduleIdValue);
-                throw ex;
-            }
+        LOGGER.debug("Executing compiled bootstrap script from resource {}", resource);
+        try
+        {
+            // evaluates against the new global of the script context being initialised
+            return compiledScript.eval(scriptContext);
         }
         finally
         {
-            this.initialisationStateLock.readLock().unlock();
+            LOGGER.trace("Execution of compiled bootstrap script from resource {} completed", resource);
         }
     }
 
-    protected Object executeScriptFromResource(final URL resource) throws ScriptException
+    protected Object executeScriptFromResource(final URL resource, final ScriptContext scriptContext) throws ScriptException
     {
-        this.initialisationStateLock.readLock().lock();
-        try
+        LOGGER.debug("Executing script from resource {}", resource);
+        try (Reader reader = new URLReader(resource))
         {
-            LOGGER.debug("Executing script from resource {}", resource);
-            try (Reader reader = new URLReader(resource))
-            {
-                this.engine.getContext().setAttribute(ScriptEngine.FILENAME, resource.toString(), ScriptContext.ENGINE_SCOPE);
-                return this.engine.eval(reader);
-            }
-            catch (final IOException e)
-            {
-                throw new ScriptException(e);
-            }
-            finally
-            {
-                LOGGER.trace("Execution of script from resource {} completed", resource);
-            }
+            scriptContext.setAttribute(ScriptEngine.FILENAME, resource.toString(), ScriptContext.ENGINE_SCOPE);
+            return this.engine.eval(reader, scriptContext);
+        }
+        catch (final IOException e)
+        {
+            throw new ScriptException(e);
         }
         finally
         {
-            this.initialisationStateLock.readLock().unlock();
+            LOGGER.trace("Execution of script from resource {} completed", resource);
         }
     }
+
+    protected static long recordBootstrapPhase(final Map<String, Long> phaseDurations, final String phase, final long phaseStart)
+    {
+        final long now = System.nanoTime();
+        phaseDurations.put(phase, Long.valueOf(TimeUnit.NANOSECONDS.toMillis(now - phaseStart)));
+        LOGGER.debug("Bootstrap phase {} completed", phase);
+        return now;
+    }
 }
@@ -17,7 +17,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.UUID;
 
 /**
  * @author Axel Faust
@@ -25,7 +24,9 @@ import java.util.UUID;
 public class ScriptModelAwareList<V> implements List<V>
 {
 
-    private final UUID uuid = UUID.randomUUID();
+    private final int slot = NashornScriptModel.allocateContainerSlot(this);
+
+    private final CurrentModelCache modelCache = new CurrentModelCache();
 
     /**
      * {@inheritDoc}
@@ -236,8 +237,13 @@ public class ScriptModelAwareList<V> implements List<V>
 
     protected List<V> doGetList()
     {
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
-        final List<V> list = currentModel.getOrCreateIndexContainerData(this.uuid);
+        final NashornScriptModel currentModel = this.getCurrentModel();
+        final List<V> list = currentModel.getOrCreateIndexContainerData(this, this.slot);
         return list;
     }
+
+    protected NashornScriptModel getCurrentModel()
+    {
+        return this.modelCache.getCurrentModel();
+    }
 }
@@ -16,7 +16,6 @@ package de.axelfaust.alfresco.nashorn.repo.processor;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
 /**
  * @author Axel Faust
@@ -24,7 +23,9 @@ import java.util.UUID;
 public class ScriptModelAwareMap<K, V> implements Map<K, V>
 {
 
-    private final UUID uuid = UUID.randomUUID();
+    private final int slot = NashornScriptModel.allocateContainerSlot(this);
+
+    private final CurrentModelCache modelCache = new CurrentModelCache();
 
     /**
      * {@inheritDoc}
@@ -136,8 +137,13 @@ public class ScriptModelAwareMap<K, V> implements Map<K, V>
 
     protected Map<K, V> doGetMap()
     {
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
-        final Map<K, V> map = currentModel.getOrCreateAssociativeContainerData(this.uuid);
+        final NashornScriptModel currentModel = this.getCurrentModel();
+        final Map<K, V> map = currentModel.getOrCreateAssociativeContainerData(this, this.slot);
         return map;
     }
+
+    protected NashornScriptModel getCurrentModel()
+    {
+        return this.modelCache.getCurrentModel();
+    }
 }
@@ -16,7 +16,6 @@ package de.axelfaust.alfresco.nashorn.repo.processor;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
-import java.util.UUID;
 
 /**
  * @author Axel Faust
@@ -24,7 +23,9 @@ import java.util.UUID;
 public class ScriptModelAwareSet<V> implements Set<V>
 {
 
-    private final UUID uuid = UUID.randomUUID();
+    private final int slot = NashornScriptModel.allocateContainerSlot(this);
+
+    private final CurrentModelCache modelCache = new CurrentModelCache();
 
     /**
      * {@inheritDoc}
@@ -145,8 +146,13 @@ public class ScriptModelAwareSet<V> implements Set<V>
 
     protected Set<V> doGetSet()
     {
-        final NashornScriptModel currentModel = NashornScriptModel.getCurrentModel();
-        final Set<V> set = currentModel.getOrCreateUniqueEntryContainerData(this.uuid);
+        final NashornScriptModel currentModel = this.getCurrentModel();
+        final Set<V> set = currentModel.getOrCreateUniqueEntryContainerData(this, this.slot);
         return set;
     }
+
+    protected NashornScriptModel getCurrentModel()
+    {
+        return this.modelCache.getCurrentModel();
+    }
 }
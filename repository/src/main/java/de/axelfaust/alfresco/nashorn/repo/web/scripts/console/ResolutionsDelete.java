@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.web.scripts.console;
+
+import java.io.IOException;
+
+import org.springframework.extensions.webscripts.AbstractWebScript;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.WebScriptException;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+import org.springframework.extensions.webscripts.WebScriptResponse;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection;
+
+/**
+ * Web script to invalidate cached script URL resolutions of the script loaders - either all, all of a specific kind or a single
+ * resolution of a specific kind, optionally limited to resolutions that failed to produce a script.
+ *
+ * @author Axel Faust
+ */
+public class ResolutionsDelete extends AbstractWebScript
+{
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final WebScriptRequest request, final WebScriptResponse response) throws IOException
+    {
+        final String cacheKind = request.getParameter("kind");
+        final String resolutionKey = request.getParameter("key");
+        final boolean unresolvableOnly = Boolean.parseBoolean(request.getParameter("unresolvable"));
+
+        if (cacheKind != null && !cacheKind.trim().isEmpty())
+        {
+            final boolean known;
+            if (resolutionKey != null && !resolutionKey.trim().isEmpty())
+            {
+                known = CacheableResolutionURLConnection.getCachedResolutionKinds().contains(cacheKind.trim());
+                if (known && !CacheableResolutionURLConnection.clearCachedResolution(cacheKind.trim(), resolutionKey.trim()))
+                {
+                    throw new WebScriptException(Status.STATUS_NOT_FOUND,
+                            "No cached resolution " + resolutionKey.trim() + " of kind " + cacheKind.trim());
+                }
+            }
+            else if (unresolvableOnly)
+            {
+                known = CacheableResolutionURLConnection.clearUnresolvableResolutions(cacheKind.trim());
+            }
+            else
+            {
+                known = CacheableResolutionURLConnection.clearCachedResolutions(cacheKind.trim());
+            }
+
+            if (!known)
+            {
+                throw new WebScriptException(Status.STATUS_NOT_FOUND, "No cached resolutions of kind " + cacheKind.trim()
+                        + " - available kinds: " + CacheableResolutionURLConnection.getCachedResolutionKinds());
+            }
+        }
+        else if (resolutionKey != null && !resolutionKey.trim().isEmpty())
+        {
+            throw new WebScriptException(Status.STATUS_BAD_REQUEST, "A single cached resolution can only be cleared for a specific kind");
+        }
+        else if (unresolvableOnly)
+        {
+            CacheableResolutionURLConnection.clearUnresolvableResolutions();
+        }
+        else
+        {
+            CacheableResolutionURLConnection.clearCachedResolutions();
+        }
+
+        response.setStatus(Status.STATUS_NO_CONTENT);
+    }
+}
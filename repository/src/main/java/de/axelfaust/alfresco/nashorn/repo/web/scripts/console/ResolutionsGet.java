@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.web.scripts.console;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.repo.content.MimetypeMap;
+import org.json.JSONException;
+import org.springframework.extensions.webscripts.AbstractWebScript;
+import org.springframework.extensions.webscripts.Cache;
+import org.springframework.extensions.webscripts.Status;
+import org.springframework.extensions.webscripts.WebScriptException;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+import org.springframework.extensions.webscripts.WebScriptResponse;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolution;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutionStatistics;
+
+/**
+ * Web script to list the statistics and - optionally - entries of cached script URL resolutions of the script loaders.
+ *
+ * @author Axel Faust
+ */
+public class ResolutionsGet extends AbstractWebScript
+{
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final WebScriptRequest request, final WebScriptResponse response) throws IOException
+    {
+        final String cacheKind = request.getParameter("kind");
+        final boolean includeEntries = Boolean.parseBoolean(request.getParameter("entries"));
+
+        final Collection<String> cacheKinds = cacheKind != null && !cacheKind.trim().isEmpty() ? Collections.singletonList(cacheKind.trim())
+                : CacheableResolutionURLConnection.getCachedResolutionKinds();
+
+        final List<Object> kindModels = new ArrayList<Object>();
+        for (final String kind : cacheKinds)
+        {
+            final CachedResolutionStatistics statistics = CacheableResolutionURLConnection.getCachedResolutionStatistics(kind);
+            if (statistics == null)
+            {
+                throw new WebScriptException(Status.STATUS_NOT_FOUND, "No cached resolutions of kind " + kind + " - available kinds: "
+                        + CacheableResolutionURLConnection.getCachedResolutionKinds());
+            }
+
+            final Map<String, Object> statisticsModel = new HashMap<String, Object>();
+            statisticsModel.put("size", Integer.valueOf(statistics.getSize()));
+            statisticsModel.put("hits", Long.valueOf(statistics.getHits()));
+            statisticsModel.put("misses", Long.valueOf(statistics.getMisses()));
+            statisticsModel.put("expirations", Long.valueOf(statistics.getExpirations()));
+            statisticsModel.put("evictions", Long.valueOf(statistics.getEvictions()));
+            statisticsModel.put("invalidations", Long.valueOf(statistics.getInvalidations()));
+
+            final Map<String, Object> kindModel = new HashMap<String, Object>();
+            kindModel.put("kind", kind);
+            kindModel.put("statistics", statisticsModel);
+
+            if (includeEntries)
+            {
+                final List<Object> entryModels = new ArrayList<Object>();
+                for (final CachedResolution cachedResolution : CacheableResolutionURLConnection.listCachedResolutions(kind))
+                {
+                    final Map<String, Object> entryModel = new HashMap<String, Object>();
+                    entryModel.put("key", cachedResolution.getKey());
+                    entryModel.put("tenant", cachedResolution.getTenant());
+                    entryModel.put("resolution", cachedResolution.getResolution());
+                    entryModel.put("unresolvable", Boolean.valueOf(cachedResolution.isUnresolvable()));
+                    if (cachedResolution.getExpiresAt() != Long.MAX_VALUE)
+                    {
+                        entryModel.put("expiresAt", new Date(cachedResolution.getExpiresAt()));
+                    }
+                    entryModels.add(entryModel);
+                }
+                kindModel.put("entries", entryModels);
+            }
+
+            kindModels.add(kindModel);
+        }
+
+        final Map<String, Object> resultModel = new HashMap<String, Object>();
+        resultModel.put("kinds", kindModels);
+
+        final Cache cache = new Cache();
+        cache.setNeverCache(true);
+        response.setCache(cache);
+
+        response.setContentEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(MimetypeMap.MIMETYPE_JSON);
+
+        try
+        {
+            final Object jsonObj = ExecutePost.toJSON(resultModel);
+            response.getWriter().write(jsonObj.toString());
+        }
+        catch (final JSONException e)
+        {
+            throw new WebScriptException(Status.STATUS_INTERNAL_SERVER_ERROR, "Error writing json response.", e);
+        }
+    }
+}
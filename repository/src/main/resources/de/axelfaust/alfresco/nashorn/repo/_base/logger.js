@@ -16,18 +16,22 @@
 define([ 'nashorn!Java' ], function _base_logger__root(Java)
 {
     'use strict';
-    var loggerModule, loggerModuleProto, getLogger, loggerByScriptUrl = {}, loggerHooks;
+    var ConcurrentHashMap, loggerModuleProto, loggerModuleProperties, getLogger, bindLoggerModule, loggerByScriptUrl,
+            loggerModuleByScriptUrl, loggerHooks;
 
-    getLogger = function _base_logger__getLogger()
+    ConcurrentHashMap = Java.type('java.util.concurrent.ConcurrentHashMap');
+
+    // module state is shared between concurrent script executions
+    loggerByScriptUrl = new ConcurrentHashMap();
+    loggerModuleByScriptUrl = new ConcurrentHashMap();
+
+    getLogger = function _base_logger__getLogger(callerScriptURL)
     {
-        var callerScriptURL, callerScriptModuleId, callerScriptModuleLoader, logger;
+        var callerScriptModuleId, callerScriptModuleLoader, logger, key;
 
-        callerScriptURL = require.getCallerScriptURL();
-        if (loggerByScriptUrl.hasOwnProperty(callerScriptURL))
-        {
-            logger = loggerByScriptUrl[callerScriptURL];
-        }
-        else
+        key = String(callerScriptURL);
+        logger = loggerByScriptUrl.get(key);
+        if (logger === null)
         {
             callerScriptModuleId = require.getScriptFileModuleId(callerScriptURL);
             callerScriptModuleLoader = require.getScriptFileModuleLoader(callerScriptURL);
@@ -42,7 +46,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
                 // TODO Try to simplify (common) script URLs for shorter, easier-to-handle logger names
                 logger = getSimpleLogger('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor.logger.' + callerScriptURL);
             }
-            loggerByScriptUrl[callerScriptURL] = logger;
+            loggerByScriptUrl.putIfAbsent(key, logger);
         }
 
         return logger;
@@ -57,7 +61,8 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
     /**
      * This module provides basic logging capabilities and delegates to SLF4J (which in turn will most likely be backed by Log4J). The
      * logging functionality of this module is caller-aware, meaning that each script will log into a distinct logger depending on its
-     * module ID or - when no module ID can be determined for a caller - the URL it was loaded from.
+     * module ID or - when no module ID can be determined for a caller - the URL it was loaded from. Each script is bound to its logger when
+     * it resolves this module as a dependency, so checks of disabled log levels do not need to determine the caller.
      * 
      * @module _base/logger
      * @requires module:nashorn!Java
@@ -66,8 +71,9 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
     loggerModuleProto = {
 
         /**
-         * Adds a hook to be called whenever a logging call is made on a specific level. Only one hook can be registered for a specific log
-         * level. Hooks are only registered for the duration of the script execution.
+         * Adds a hook to be called whenever a logging call is made on a specific level while that level is enabled for the caller script's
+         * logger. Only one hook can be registered for a specific log level. Hooks are only registered for the duration of the script
+         * execution.
          * 
          * @instance
          * @memberOf module:_base/logger
@@ -99,7 +105,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         trace : function _base_logger__trace()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             if (logger.traceEnabled)
             {
                 if (arguments.length <= 1)
@@ -115,11 +121,12 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
                     // two or more varargs => safe to simply call logger with array of varargs
                     logger.trace(arguments[0], Array.prototype.slice.call(arguments, 1));
                 }
-            }
 
-            if ('trace' in loggerHooks)
-            {
-                loggerHooks.trace.apply(null, arguments);
+                // hooks are only relevant for enabled log levels - no need to look up the hook container otherwise
+                if ('trace' in loggerHooks)
+                {
+                    loggerHooks.trace.apply(null, arguments);
+                }
             }
         },
 
@@ -132,7 +139,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         isTraceEnabled : function _base_logger__isTraceEnabled()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             return logger.traceEnabled;
         },
 
@@ -151,7 +158,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         debug : function _base_logger__debug()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             if (logger.debugEnabled)
             {
                 if (arguments.length <= 1)
@@ -167,11 +174,11 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
                     // two or more varargs => safe to simply call logger with array of varargs
                     logger.debug(arguments[0], Array.prototype.slice.call(arguments, 1));
                 }
-            }
 
-            if ('debug' in loggerHooks)
-            {
-                loggerHooks.debug.apply(null, arguments);
+                if ('debug' in loggerHooks)
+                {
+                    loggerHooks.debug.apply(null, arguments);
+                }
             }
         },
 
@@ -184,7 +191,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         isDebugEnabled : function _base_logger__isDebugEnabled()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             return logger.debugEnabled;
         },
 
@@ -203,7 +210,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         info : function _base_logger__info()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             if (logger.infoEnabled)
             {
                 if (arguments.length <= 1)
@@ -219,11 +226,11 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
                     // two or more varargs => safe to simply call logger with array of varargs
                     logger.info(arguments[0], Array.prototype.slice.call(arguments, 1));
                 }
-            }
 
-            if ('info' in loggerHooks)
-            {
-                loggerHooks.info.apply(null, arguments);
+                if ('info' in loggerHooks)
+                {
+                    loggerHooks.info.apply(null, arguments);
+                }
             }
         },
 
@@ -236,7 +243,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         isInfoEnabled : function _base_logger__isInfoEnabled()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             return logger.infoEnabled;
         },
 
@@ -255,7 +262,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         warn : function _base_logger__warn()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             if (logger.warnEnabled)
             {
                 if (arguments.length <= 1)
@@ -271,11 +278,11 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
                     // two or more varargs => safe to simply call logger with array of varargs
                     logger.warn(arguments[0], Array.prototype.slice.call(arguments, 1));
                 }
-            }
 
-            if ('warn' in loggerHooks)
-            {
-                loggerHooks.warn.apply(null, arguments);
+                if ('warn' in loggerHooks)
+                {
+                    loggerHooks.warn.apply(null, arguments);
+                }
             }
         },
 
@@ -288,7 +295,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         isWarnEnabled : function _base_logger__isWarnEnabled()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             return logger.warnEnabled;
         },
 
@@ -307,7 +314,7 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         error : function _base_logger__error()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             if (logger.errorEnabled)
             {
                 if (arguments.length <= 1)
@@ -323,11 +330,11 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
                     // two or more varargs => safe to simply call logger with array of varargs
                     logger.error(arguments[0], Array.prototype.slice.call(arguments, 1));
                 }
-            }
 
-            if ('error' in loggerHooks)
-            {
-                loggerHooks.error.apply(null, arguments);
+                if ('error' in loggerHooks)
+                {
+                    loggerHooks.error.apply(null, arguments);
+                }
             }
         },
 
@@ -340,14 +347,14 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
          */
         isErrorEnabled : function _base_logger__isErrorEnabled()
         {
-            var logger = getLogger();
+            var logger = this.getLogger();
             return logger.errorEnabled;
         }
     };
 
     Object.freeze(loggerModuleProto);
 
-    loggerModule = Object.create(loggerModuleProto, {
+    loggerModuleProperties = {
         /**
          * Flag representing enablement of the trace log level
          * 
@@ -428,8 +435,53 @@ define([ 'nashorn!Java' ], function _base_logger__root(Java)
             },
             enumerable : true
         }
-    });
-    Object.freeze(loggerModule);
+    };
+
+    bindLoggerModule = function _base_logger__bindLoggerModule(callerScriptURL)
+    {
+        var loggerModule, boundLogger = null;
+
+        if (typeof callerScriptURL === 'string')
+        {
+            loggerModule = loggerModuleByScriptUrl.get(callerScriptURL);
+            if (loggerModule === null)
+            {
+                loggerModule = Object.create(loggerModuleProto, {
+                    getLogger : {
+                        // logger is resolved lazily on first use as the module ID of the caller may not yet be known
+                        value : function _base_logger__getBoundLogger()
+                        {
+                            if (boundLogger === null)
+                            {
+                                boundLogger = getLogger(callerScriptURL);
+                            }
+                            return boundLogger;
+                        }
+                    }
+                });
+                Object.defineProperties(loggerModule, loggerModuleProperties);
+                Object.freeze(loggerModule);
+
+                loggerModuleByScriptUrl.putIfAbsent(callerScriptURL, loggerModule);
+                loggerModule = loggerModuleByScriptUrl.get(callerScriptURL);
+            }
+        }
+        else
+        {
+            loggerModule = Object.create(loggerModuleProto, {
+                getLogger : {
+                    value : function _base_logger__getCallerLogger()
+                    {
+                        return getLogger(require.getCallerScriptURL());
+                    }
+                }
+            });
+            Object.defineProperties(loggerModule, loggerModuleProperties);
+            Object.freeze(loggerModule);
+        }
+
+        return loggerModule;
+    };
 
-    return define.asSpecialModule(loggerModule, [ 'callerTagged' ]);
+    return define.asSpecialModule(bindLoggerModule, [ 'callerBound' ]);
 });
\ No newline at end of file
@@ -1,18 +1,14 @@
 /* globals -require */
 /* globals getSimpleLogger: false */
 // despite this file's name it has nothing to do with Node.js
-define('node', [ 'define', 'nashorn!Java', 'serviceRegistry!NamespaceService', 'serviceRegistry!DictionaryService',
-        'serviceRegistry!NodeService', 'serviceRegistry!PermissionService', 'serviceRegistry!ContentService',
-        'serviceRegistry!SearchService' ], function node_loader(define, Java, NamespaceService, DictionaryService, NodeService,
-        PermissionService, ContentService, SearchService)
+define('node', [ 'define', 'nashorn!Java', 'spring!de.axelfaust.alfresco.nashorn.repo-nodeURLStreamHandler' ], function node_loader(
+        define, Java, urlHandler)
 {
     'use strict';
-    var loader, logger, URL, NodeURLHandler, urlHandler, NashornScriptModel, executionState, UUID, isObject;
+    var loader, logger, URL, NashornScriptModel, executionState, UUID, isObject;
 
     logger = getSimpleLogger('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor.loader.node');
     URL = Java.type('java.net.URL');
-    NodeURLHandler = Java.type('de.axelfaust.alfresco.nashorn.repo.loaders.NodeURLStreamHandler');
-    urlHandler = new NodeURLHandler(NamespaceService, DictionaryService, NodeService, PermissionService, ContentService, SearchService);
 
     NashornScriptModel = Java.type('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptModel');
     executionState = NashornScriptModel.newAssociativeContainer();
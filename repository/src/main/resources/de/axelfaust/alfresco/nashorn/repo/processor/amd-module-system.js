@@ -0,0 +1,186 @@
+/* globals -require */
+/* globals -define */
+/* globals Java: false */
+/* globals getSimpleLogger: false */
+/* globals applicationContext: false */
+/* globals load: false */
+/* globals __FILE__: false */
+(function amdModuleSystem()
+{
+    'use strict';
+
+    var MODULE_SYSTEM_SCRIPT_URL, RepositoryModuleSystem, URL, GloballyRegisteredURLStreamHandler, moduleSourceCache, logger, nashornLoad,
+    // internal fns
+    loadFromURL, isolatedScopeBuilder, nashornLoader,
+    // the actual module system
+    moduleSystem;
+
+    // source name of this script is known statically - no need to walk the stack for the URL of built-in modules
+    MODULE_SYSTEM_SCRIPT_URL = __FILE__;
+
+    RepositoryModuleSystem = Java.type('de.axelfaust.alfresco.nashorn.repo.amd.RepositoryModuleSystem');
+    URL = Java.type('java.net.URL');
+
+    logger = getSimpleLogger('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor.amd.common');
+
+    try
+    {
+        GloballyRegisteredURLStreamHandler = Java.type('de.axelfaust.alfresco.nashorn.jdk8wa.GloballyRegisteredURLStreamHandler');
+    }
+    catch (ignore)
+    {
+        if (logger.infoEnabled)
+        {
+            logger.info('JDK 8 workarounds library not available');
+        }
+    }
+
+    // module source cache only obtainable during engine setup (if enabled) but used for all module loads of the script context
+    moduleSourceCache = Java.type('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor').getModuleSourceCache();
+    nashornLoad = load;
+
+    loadFromURL = function amdModuleSystem__loadFromURL(scope, url)
+    {
+        var source, result;
+
+        if (moduleSourceCache)
+        {
+            // cached source allows Nashorn to reuse the script class compiled for identical source
+            source = moduleSourceCache.getSource(String(url), url);
+            result = nashornLoad.call(scope, {
+                name : source.name,
+                script : source.script
+            });
+        }
+        else
+        {
+            result = nashornLoad.call(scope, url);
+        }
+
+        return result;
+    };
+
+    isolatedScopeBuilder = function amdModuleSystem__isolatedScopeBuilder(require, define)
+    {
+        // script-bound variants
+        var scope = Object.create(this, {
+            define : {
+                value : define
+            },
+            require : {
+                value : require
+            }
+        });
+        return scope;
+    }.bind(this);
+
+    nashornLoader = function amdModuleSystem__nashornLoader(url, scope)
+    {
+        var result;
+
+        if (GloballyRegisteredURLStreamHandler)
+        {
+            GloballyRegisteredURLStreamHandler.startScriptLoad();
+            try
+            {
+                result = loadFromURL(scope, url);
+                GloballyRegisteredURLStreamHandler.endScriptLoad();
+            }
+            catch (e)
+            {
+                GloballyRegisteredURLStreamHandler.endScriptLoad();
+                throw e;
+            }
+        }
+        else
+        {
+            result = loadFromURL(scope, url);
+        }
+
+        return result;
+    };
+
+    moduleSystem = new RepositoryModuleSystem(Object, isolatedScopeBuilder, nashornLoader);
+
+    (function amdModuleSystem__loaderMetaloader__init()
+    {
+        var streamHandler, loaderMetaLoader;
+
+        // applicationContext only set during engine setup
+        streamHandler = applicationContext ? applicationContext.getBean('de.axelfaust.alfresco.nashorn.repo-classpathURLStreamHandler')
+                : null;
+
+        if (streamHandler === null)
+        {
+            streamHandler = (function()
+            {
+                var AlfrescoClasspathURLStreamHandler;
+
+                AlfrescoClasspathURLStreamHandler = Java
+                        .type('de.axelfaust.alfresco.nashorn.repo.loaders.AlfrescoClasspathURLStreamHandler');
+                streamHandler = new AlfrescoClasspathURLStreamHandler();
+                streamHandler.basePath = 'alfresco';
+                streamHandler.extensionPath = 'extension';
+
+                return streamHandler;
+            }());
+        }
+
+        /**
+         * This loader module provides the ability to bootstrap / load the other
+         * core module loaders of the Nashorn script engine AMD framework.
+         *
+         * @module loaderMetaLoader
+         * @author Axel Faust
+         */
+        loaderMetaLoader = {
+            /**
+             * Loads a core module loader from the classpath location
+             * de/axelfaust/alfresco/nashorn/repo/loaders without any support
+             * for overriding via Alfresco extension paths.
+             *
+             * @instance
+             * @param {string}
+             *            normalizedId - the normalized ID of the module to load
+             * @param {function}
+             *            require - the context-sensitive require function
+             * @param {function}
+             *            load - the callback to load either a pre-built object
+             *            as the module result or a script defining a module
+             *            from a script URL
+             */
+            load : function amdModuleSystem__loaderMetaLoader__load(normalizedId, /*
+                                                                                     * jshint
+                                                                                     * unused:
+                                                                                     * false
+                                                                                     */require, load)
+            {
+                var url = new URL('rawclasspath', null, -1, 'de/axelfaust/alfresco/nashorn/repo/loaders/' + normalizedId, streamHandler);
+
+                if (logger.debugEnabled)
+                {
+                    logger.debug('Loading loader module {} from classpath', normalizedId);
+                }
+
+                load(url, true);
+            }
+        };
+        Object.freeze(loaderMetaLoader.load);
+        Object.freeze(loaderMetaLoader);
+
+        moduleSystem.registerBuiltInModule('loaderMetaLoader', MODULE_SYSTEM_SCRIPT_URL, loaderMetaLoader);
+    }());
+
+    Object.defineProperties(this, {
+        require : {
+            value : moduleSystem.requireFunction,
+            enumerable : false
+        },
+        define : {
+            value : moduleSystem.defineFunction,
+            enumerable : false
+        }
+    });
+
+    return moduleSystem;
+}.call(this));
@@ -5,11 +5,12 @@
 /* globals getSimpleLogger: false */
 /* globals applicationContext: false */
 /* globals load: false */
+/* globals __FILE__: false */
 (function amd()
 {
     'use strict';
 
-    var moduleRegistry, moduleManagement, DUMMY_MODULE,
+    var moduleRegistry, moduleManagement, DUMMY_MODULE, AMD_SCRIPT_URL,
     // core AMD config and backup state
     mappings = {}, packages = {},
     // internal fns
@@ -22,6 +23,9 @@
     DUMMY_MODULE = {};
     Object.freeze(DUMMY_MODULE);
 
+    // source name of this script is known statically - no need to walk the stack for the URL of built-in modules
+    AMD_SCRIPT_URL = __FILE__;
+
     NashornUtils = Java.type('de.axelfaust.alfresco.nashorn.common.util.NashornUtils');
     Throwable = Java.type('java.lang.Throwable');
     AMDUnavailableModuleException = Java.type('de.axelfaust.alfresco.nashorn.repo.processor.AMDUnavailableModuleException');
@@ -54,6 +58,11 @@
                 enumerable : true,
                 writable : true
             },
+            callerBound : {
+                value : false,
+                enumerable : true,
+                writable : true
+            },
             secureUseOnly : {
                 value : false,
                 enumerable : true,
@@ -372,15 +381,16 @@
 
     moduleRegistry = (function amd__moduleRegistry()
     {
-        var NashornScriptProcessor, active, backup, internal, result;
+        var NashornScriptProcessor, newActiveStruct, active, shared, internal, result;
 
         NashornScriptProcessor = Java.type('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor');
 
-        (function amd__moduleRegistry__initActiveStruct()
+        newActiveStruct = function amd__moduleRegistry__newActiveStruct()
         {
             var NashornScriptModel = Java.type('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptModel');
 
-            active = Object.create(Object.prototype, {
+            // per-request delta to the shared state
+            return Object.create(Object.prototype, {
                 modules : {
                     value : NashornScriptModel.newAssociativeContainer()
                 },
@@ -394,14 +404,20 @@
                     value : NashornScriptModel.newAssociativeContainer()
                 }
             });
-        }());
+        };
+        active = newActiveStruct();
 
-        backup = Object.create(Object.prototype, {
+        // shared state is only ever written during engine context initialisation and treated as immutable afterwards
+        // prototype-less objects allow for simple lookups without any prototype members getting in the way
+        shared = Object.create(Object.prototype, {
             modules : {
-                value : {}
+                value : Object.create(null)
+            },
+            moduleIdsByUrl : {
+                value : Object.create(null)
             },
             moduleListenersByModule : {
-                value : {}
+                value : Object.create(null)
             }
         });
 
@@ -409,30 +425,31 @@
                 {
 
                     copySharedModule : {
-                        value : function amd__moduleRegistry__internal__copySharedModule(backupModule)
+                        value : function amd__moduleRegistry__internal__copySharedModule(sharedModule)
                         {
                             var module, normalizedId, am;
 
                             am = active.modules;
 
-                            // simply use backup-ed module as prototype
+                            // only uninitialised modules are copied
+                            // simply use shared module as prototype
                             // prevent prototype mutation by re-adding mutables
                             // locally
-                            module = Object.create(backupModule, {
+                            module = Object.create(sharedModule, {
                                 initialized : {
-                                    value : backupModule.initialized,
+                                    value : false,
                                     enumerable : true,
-                                    writable : !backupModule.initialized
+                                    writable : true
                                 },
                                 constructing : {
                                     value : false,
                                     enumerable : true,
-                                    writable : !backupModule.initialized
+                                    writable : true
                                 },
                                 result : {
-                                    value : backupModule.result,
+                                    value : sharedModule.result,
                                     enumerable : true,
-                                    writable : !backupModule.initialized
+                                    writable : true
                                 }
                             });
 
@@ -455,7 +472,7 @@
                     getModule : {
                         value : function amd__moduleRegistry__internal__getModule(moduleId)
                         {
-                            var module;
+                            var module, sharedModule;
 
                             module = active.modules[moduleId];
                             if (commonLogger.traceEnabled)
@@ -463,13 +480,25 @@
                                 commonLogger.trace('Module {} has {}been defined', moduleId, isObject(module) ? '' : 'not ');
                             }
 
-                            if (!isObject(module) && moduleId in backup.modules)
+                            if (!isObject(module))
                             {
-                                if (commonLogger.traceEnabled)
+                                sharedModule = shared.modules[moduleId];
+                                if (sharedModule !== undefined)
                                 {
-                                    commonLogger.trace('Restoring module {} from shared AMD loader state', moduleId);
+                                    if (sharedModule.initialized === true || sharedModule === DUMMY_MODULE)
+                                    {
+                                        // immutable - can be used as-is without being tracked in the per-request delta
+                                        module = sharedModule;
+                                    }
+                                    else
+                                    {
+                                        if (commonLogger.traceEnabled)
+                                        {
+                                            commonLogger.trace('Restoring module {} from shared AMD loader state', moduleId);
+                                        }
+                                        module = this.copySharedModule(sharedModule);
+                                    }
                                 }
-                                module = this.copySharedModule(backup.modules[moduleId]);
                             }
 
                             if (module === undefined)
@@ -493,7 +522,7 @@
 
                             if (copiedListener === undefined)
                             {
-                                // simply use backup-ed listener as prototype
+                                // simply use shared listener as prototype
                                 // prevent prototype mutation by re-adding
                                 // mutables locally
                                 copiedListener = Object.create(listener, {
@@ -527,14 +556,14 @@
                                         : 'not ');
                             }
 
-                            if (!Array.isArray(listeners) && moduleId in backup.moduleListenersByModule)
+                            if (!Array.isArray(listeners) && moduleId in shared.moduleListenersByModule)
                             {
                                 if (commonLogger.traceEnabled)
                                 {
                                     commonLogger.trace('Restoring listeners for module {} from shared AMD loader state', moduleId);
                                 }
 
-                                listeners = Array.prototype.slice.call(backup.moduleListenersByModule[moduleId], 0);
+                                listeners = Array.prototype.slice.call(shared.moduleListenersByModule[moduleId], 0);
                                 listeners.forEach(this.copySharedListenerInModuleList);
 
                                 aml[moduleId] = listeners;
@@ -548,46 +577,13 @@
                         }
                     },
 
-                    updateSharedStateModules : {
-                        value : function amd__moduleRegistry__internal__updateSharedStateModules()
-                        {
-                            var moduleId, am, bm, transferredModuleIds;
-
-                            am = active.modules;
-                            bm = backup.modules;
-
-                            transferredModuleIds = [];
-                            // can't use hasOwnProperty on JSObject am and no
-                            // prototype exists to inject unwanted/unintended
-                            // properties
-                            /* jshint forin: false */
-                            for (moduleId in am)
-                            {
-                                if (!bm.hasOwnProperty(moduleId) && isObject(am[moduleId]) && am[moduleId] !== DUMMY_MODULE)
-                                {
-                                    bm[moduleId] = am[moduleId];
-                                    transferredModuleIds.push(moduleId);
-                                }
-
-                                delete am[moduleId];
-                            }
-                            /* jshint forin: true */
-
-                            if (commonLogger.traceEnabled)
-                            {
-                                commonLogger.trace('Transferred registered modules {} to shared state', JSON
-                                        .stringify(transferredModuleIds));
-                            }
-                        }
-                    },
-
                     updateSharedStateListeners : {
                         value : function amd__moduleRegistry__internal__updateSharedStateListeners()
                         {
-                            var moduleId, albm, blbm;
+                            var moduleId, albm, slbm;
 
                             albm = active.moduleListenersByModule;
-                            blbm = backup.moduleListenersByModule;
+                            slbm = shared.moduleListenersByModule;
 
                             // can't use hasOwnProperty on JSObject albm and no
                             // prototype exists to inject unwanted/unintended
@@ -597,10 +593,8 @@
                             {
                                 if (Array.isArray(albm[moduleId]))
                                 {
-                                    blbm[moduleId] = albm[moduleId];
+                                    slbm[moduleId] = albm[moduleId];
                                 }
-
-                                delete albm[moduleId];
                             }
                             /* jshint forin: true */
 
@@ -657,9 +651,9 @@
                                             var listeners = internal.getModuleListeners(dependency);
 
                                             if (NashornScriptProcessor.isInEngineContextInitialization()
-                                                    && !(dependency in backup.moduleListenersByModule))
+                                                    && !(dependency in shared.moduleListenersByModule))
                                             {
-                                                backup.moduleListenersByModule[dependency] = listeners;
+                                                shared.moduleListenersByModule[dependency] = listeners;
                                             }
 
                                             listeners.push(listener);
@@ -680,7 +674,7 @@
                             getModuleByUrl : {
                                 value : function amd__moduleRegistry__getModuleByUrl(moduleUrl)
                                 {
-                                    var module, backedUpModules;
+                                    var module, moduleId;
 
                                     if (moduleUrl in active.modulesByUrl)
                                     {
@@ -688,21 +682,15 @@
                                     }
                                     else
                                     {
-                                        backedUpModules = backup.modules;
-                                        Object.keys(backedUpModules).forEach(
-                                                function amd__moduleRegistry__getModuleByUrl_forEachModuleId(moduleId)
-                                                {
-                                                    if (module === undefined && backedUpModules[moduleId].url === moduleUrl)
-                                                    {
-                                                        // this inheritantly
-                                                        // marks the module as
-                                                        // "active" in current
-                                                        // execution context to
-                                                        // improve future
-                                                        // lookups by url
-                                                        module = internal.getModule(moduleId);
-                                                    }
-                                                });
+                                        moduleId = shared.moduleIdsByUrl[moduleUrl];
+                                        if (moduleId !== undefined)
+                                        {
+                                            // uninitialised modules are
+                                            // inheritantly marked as "active"
+                                            // in current execution context to
+                                            // improve future lookups by url
+                                            module = internal.getModule(moduleId);
+                                        }
                                     }
 
                                     return module;
@@ -712,11 +700,12 @@
                             addModule : {
                                 value : function amd__moduleRegistry__addModule(module, moduleId, fullModuleId)
                                 {
-                                    var am, amu, bm, moduleIds;
+                                    var am, amu, sm, smu, moduleIds;
 
                                     am = active.modules;
                                     amu = active.modulesByUrl;
-                                    bm = backup.modules;
+                                    sm = shared.modules;
+                                    smu = shared.moduleIdsByUrl;
                                     moduleIds = [];
 
                                     if (typeof moduleId === 'string')
@@ -739,14 +728,20 @@
                                         am[moduleId] = module;
                                     });
 
-                                    // if still in initialisation add to backup
+                                    // if still in initialisation add to shared state
                                     if (NashornScriptProcessor.isInEngineContextInitialization())
                                     {
-                                        moduleIds.forEach(function amd__moduleRegistry__addModule_backupForEachModuleIdVariant(moduleId)
+                                        moduleIds.forEach(function amd__moduleRegistry__addModule_shareForEachModuleIdVariant(moduleId)
                                         {
-                                            bm[moduleId] = module;
+                                            sm[moduleId] = module;
                                         });
 
+                                        // first module of a script is the primary module for lookups by url
+                                        if (typeof module.url === 'string' && moduleIds.length !== 0 && !(module.url in smu))
+                                        {
+                                            smu[module.url] = moduleIds[0];
+                                        }
+
                                         if (moduleIds.length !== 0)
                                         {
                                             if (commonLogger.traceEnabled)
@@ -811,8 +806,10 @@
                                     {
                                         commonLogger.debug('Updating AMD loader shared state');
                                     }
-                                    internal.updateSharedStateModules();
                                     internal.updateSharedStateListeners();
+                                    // modules have already been added to shared state on registration
+                                    // discard the initialisation delta (copies + missed-resolution markers) in one go
+                                    active = newActiveStruct();
                                 }
                             }
                         });
@@ -824,7 +821,8 @@
 
     moduleManagement = (function amd__moduleManagement__init()
     {
-        var nashornLoad, Adapter, defaultScope, URL, GloballyRegisteredURLStreamHandler, SpecialModuleHandler, internal, external;
+        var nashornLoad, Adapter, defaultScope, URL, GloballyRegisteredURLStreamHandler, SpecialModuleHandler, moduleSourceCache;
+        var loadFromURL, internal, external;
 
         nashornLoad = load;
         Adapter = JSAdapter;
@@ -844,6 +842,29 @@
         }
 
         SpecialModuleHandler = Java.type('de.axelfaust.alfresco.nashorn.repo.utils.SpecialModuleHandler');
+        // module source cache only obtainable during engine setup (if enabled) but used for all module loads of the script context
+        moduleSourceCache = Java.type('de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptProcessor').getModuleSourceCache();
+
+        loadFromURL = function amd__moduleManagement__loadFromURL(scope, url, normalizedId)
+        {
+            var source, result;
+
+            if (moduleSourceCache)
+            {
+                // cached source allows Nashorn to reuse the script class compiled for identical source
+                source = moduleSourceCache.getSource(normalizedId, url);
+                result = nashornLoad.call(scope, {
+                    name : source.name,
+                    script : source.script
+                });
+            }
+            else
+            {
+                result = nashornLoad.call(scope, url);
+            }
+
+            return result;
+        };
 
         internal = Object
                 .create(
@@ -934,7 +955,7 @@
                                             GloballyRegisteredURLStreamHandler.startScriptLoad();
                                             try
                                             {
-                                                implicitResult = nashornLoad.call(customScope, url);
+                                                implicitResult = loadFromURL(customScope, url, normalizedId);
                                                 GloballyRegisteredURLStreamHandler.endScriptLoad();
                                             }
                                             catch (e)
@@ -945,7 +966,7 @@
                                         }
                                         else
                                         {
-                                            implicitResult = nashornLoad.call(customScope, url);
+                                            implicitResult = loadFromURL(customScope, url, normalizedId);
                                         }
 
                                         // no module defined yet by requested
@@ -1422,7 +1443,14 @@
                         // this requires updating when we introduce new flags
                         // but it is worth limiting use of special module
                         // handler when not needed for reduced complexity
-                        if (moduleResult.callerTagged || moduleResult.callerProvided)
+                        if (moduleResult.callerBound && typeof moduleResult.wrapped === 'function')
+                        {
+                            // module binds itself to the caller once instead of
+                            // requiring the caller to be tagged / looked up on
+                            // every call
+                            moduleResult = moduleResult.wrapped(callerUrl);
+                        }
+                        else if (moduleResult.callerTagged || moduleResult.callerProvided)
                         {
                             moduleResult = new SpecialModuleHandler(moduleResult.wrapped, moduleResult, callerUrl, withTaggedCaller);
                         }
@@ -2068,7 +2096,10 @@
      * @instance
      * @memberof define
      * @param {object|function}
-     *            module - the actual module instance
+     *            module - the actual module instance (or for the 'callerBound'
+     *            flag a function that is called with the script URL of the
+     *            requesting caller to provide the module instance bound to
+     *            that caller)
      * @param {string[]}
      *            flags - the feature flags to be applied to the module
      */
@@ -2159,7 +2190,7 @@
 
     // mininum object to identify define as AMD compatible
     define.amd = {
-        supportedModuleFlags : [ 'secureUseOnly', 'callerTagged', 'callerProvided' ]
+        supportedModuleFlags : [ 'secureUseOnly', 'callerTagged', 'callerProvided', 'callerBound' ]
     };
 
     // freeze all the things
@@ -2248,7 +2279,7 @@
                 enumerable : true
             },
             url : {
-                value : NashornUtils.getCallerScriptURL(false, false),
+                value : AMD_SCRIPT_URL,
                 enumerable : true
             },
             initialized : {
@@ -2276,7 +2307,7 @@
             enumerable : true
         },
         url : {
-            value : NashornUtils.getCallerScriptURL(false, false),
+            value : AMD_SCRIPT_URL,
             enumerable : true
         },
         initialized : {
@@ -2303,7 +2334,7 @@
             enumerable : true
         },
         url : {
-            value : NashornUtils.getCallerScriptURL(false, false),
+            value : AMD_SCRIPT_URL,
             enumerable : true
         },
         initialized : {
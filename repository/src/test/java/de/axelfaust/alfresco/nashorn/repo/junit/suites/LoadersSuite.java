@@ -18,13 +18,16 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders.ClasspathScriptFileTests;
+import de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders.ClasspathScriptIndexTests;
+import de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders.ResolutionCacheTests;
 import de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders.StrictScriptEnforcingSourceInputStreamTests;
 
 /**
  * @author Axel Faust
  */
 @RunWith(Suite.class)
-@SuiteClasses({ StrictScriptEnforcingSourceInputStreamTests.class, ClasspathScriptFileTests.class })
+@SuiteClasses({ StrictScriptEnforcingSourceInputStreamTests.class, ClasspathScriptFileTests.class, ClasspathScriptIndexTests.class,
+        ResolutionCacheTests.class })
 public class LoadersSuite
 {
     // intentionally empty
@@ -53,6 +53,8 @@ public class SimpleScriptTestCase extends TestCase implements ScriptContextReusi
 
     private static final String SCRIPT_AMD = "amd.js";
 
+    private static final String SCRIPT_AMD_MODULE_SYSTEM = "amd-module-system.js";
+
     private static final String SCRIPT_NO_SUCH_PROPERTY = "noSuchProperty.js";
 
     public static void initializeAMD(final ScriptEngine engine, final ScriptContext scriptContext) throws ScriptException
@@ -63,6 +65,14 @@ public class SimpleScriptTestCase extends TestCase implements ScriptContextReusi
         loadScriptResource(engine, scriptContext, NashornScriptProcessor.class, SCRIPT_NO_SUCH_PROPERTY);
     }
 
+    public static void initializeJavaModuleSystem(final ScriptEngine engine, final ScriptContext scriptContext) throws ScriptException
+    {
+        // load core scripts in the same order as the script processor with useJavaModuleSystem enabled
+        loadScriptResource(engine, scriptContext, NashornScriptProcessor.class, SCRIPT_SIMPLE_LOGGER);
+        loadScriptResource(engine, scriptContext, NashornScriptProcessor.class, SCRIPT_AMD_MODULE_SYSTEM);
+        loadScriptResource(engine, scriptContext, NashornScriptProcessor.class, SCRIPT_NO_SUCH_PROPERTY);
+    }
+
     public static void removeGlobals(final ScriptEngine engine, final ScriptContext scriptContext, final String... globalProperties)
             throws ScriptException
     {
@@ -13,11 +13,23 @@
  */
 package de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 import de.axelfaust.alfresco.nashorn.repo.loaders.ClasspathScriptFile;
+import de.axelfaust.alfresco.nashorn.repo.loaders.ClasspathScriptFileWatcher;
 import de.axelfaust.alfresco.nashorn.repo.loaders.ScriptFile;
+import de.axelfaust.alfresco.nashorn.repo.loaders.ScriptSourceCache;
 
 /**
  * @author Axel Faust
@@ -47,5 +59,121 @@ public class ClasspathScriptFileTests
         Assert.assertEquals("test1.js last modification time is not -1", -1, scriptFile.getLastModified(false));
     }
 
-    // TODO Test dynamic exist - miss - exist
+    @Test
+    public void existingFileWithSourceCache() throws Exception
+    {
+        final ScriptSourceCache sourceCache = new ScriptSourceCache();
+        final ScriptFile scriptFile = new ClasspathScriptFile("de/axelfaust/alfresco/nashorn/repo/loaders/empty.js", sourceCache);
+
+        Assert.assertEquals("empty.js is not of a expected size", 13 + 1, scriptFile.getSize(false));
+        Assert.assertEquals("empty.js has not been cached in memory", 13 + 1, sourceCache.getCurrentBytes());
+
+        try (final InputStream is = scriptFile.getInputStream())
+        {
+            Assert.assertEquals("empty.js does not have expected content", "'use strict';\n",
+                    IOUtils.toString(is, StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals("empty.js has not been served from memory", 1, sourceCache.getHits());
+
+        scriptFile.reset();
+        Assert.assertEquals("empty.js has not been removed from memory", 0, sourceCache.getCurrentBytes());
+    }
+
+    @Test
+    public void existingFileExceedingSourceCacheBudget() throws Exception
+    {
+        final ScriptSourceCache sourceCache = new ScriptSourceCache();
+        sourceCache.setMaxBytes(10);
+        final ScriptFile scriptFile = new ClasspathScriptFile("de/axelfaust/alfresco/nashorn/repo/loaders/empty.js", sourceCache);
+
+        Assert.assertEquals("empty.js is not of a expected size", 13 + 1, scriptFile.getSize(false));
+        Assert.assertEquals("empty.js has been cached in memory", 0, sourceCache.getCurrentBytes());
+
+        try (final InputStream is = scriptFile.getInputStream())
+        {
+            Assert.assertEquals("empty.js does not have expected content", "'use strict';\n",
+                    IOUtils.toString(is, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void existingFileWithWatcher()
+    {
+        final ClasspathScriptFileWatcher watcher = new ClasspathScriptFileWatcher();
+        watcher.afterPropertiesSet();
+        try
+        {
+            final ScriptFile scriptFile = new ClasspathScriptFile("de/axelfaust/alfresco/nashorn/repo/loaders/empty.js", null, watcher);
+
+            Assert.assertTrue("empty.js does not exist", scriptFile.exists(false));
+            final long lastModified = scriptFile.getLastModified(false);
+            Assert.assertTrue("empty.js last modification time is not a positive integer", lastModified > 0);
+            Assert.assertEquals("empty.js last modification time is not stable", lastModified, scriptFile.getLastModified(false));
+            Assert.assertEquals("empty.js has not been registered with watcher", 1,
+                    watcher.getWatchedFileCount() + watcher.getSweptFileCount());
+            Assert.assertEquals("empty.js has been detected as changed", 0, watcher.getStaleDetections());
+        }
+        finally
+        {
+            watcher.destroy();
+        }
+    }
+
+    @Test
+    public void dynamicFileWithWatcher() throws Exception
+    {
+        final Path directory = Paths.get(ClasspathScriptFileTests.class.getResource("/de/axelfaust/alfresco/nashorn/repo/loaders/empty.js")
+                .toURI()).getParent();
+        final String fileName = "dynamic-" + UUID.randomUUID().toString() + ".js";
+        final Path path = directory.resolve(fileName);
+
+        final ClasspathScriptFileWatcher watcher = new ClasspathScriptFileWatcher();
+        watcher.setWatchPollInterval(100);
+        watcher.setSweepInterval(100);
+        watcher.afterPropertiesSet();
+        try
+        {
+            final ScriptFile scriptFile = new ClasspathScriptFile("de/axelfaust/alfresco/nashorn/repo/loaders/" + fileName, null, watcher);
+
+            Assert.assertFalse(fileName + " does exist", scriptFile.exists(false));
+            Assert.assertEquals(fileName + " has not been registered with watcher for periodic sweeps", 1, watcher.getSweptFileCount());
+
+            Files.write(path, "'use strict';\n".getBytes(StandardCharsets.UTF_8));
+            awaitCondition(fileName + " has not been detected as created", () -> scriptFile.exists(false));
+            Assert.assertEquals(fileName + " is not of a expected size", 13 + 1, scriptFile.getSize(false));
+            final long lastModified = scriptFile.getLastModified(false);
+            Assert.assertTrue(fileName + " last modification time is not a positive integer", lastModified > 0);
+            awaitCondition(fileName + " has not been moved to watch service", () -> watcher.getWatchedFileCount() == 1);
+
+            Files.write(path, "'use strict';\nvar x;\n".getBytes(StandardCharsets.UTF_8));
+            // file system timestamps may be too coarse to differ from the initial write
+            Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified + 10000));
+            awaitCondition(fileName + " has not been detected as modified", () -> scriptFile.getLastModified(false) != lastModified);
+            Assert.assertEquals(fileName + " is not of a expected size after modification", 13 + 7 + 1, scriptFile.getSize(false));
+
+            Files.delete(path);
+            awaitCondition(fileName + " has not been detected as deleted", () -> !scriptFile.exists(false));
+            Assert.assertEquals(fileName + " last modification time is not -1", -1, scriptFile.getLastModified(false));
+
+            Assert.assertTrue(fileName + " changes have not been counted", watcher.getStaleDetections() >= 3);
+        }
+        finally
+        {
+            watcher.destroy();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void awaitCondition(final String message, final BooleanSupplier condition) throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean())
+        {
+            if (System.currentTimeMillis() > deadline)
+            {
+                Assert.fail(message);
+            }
+            Thread.sleep(50);
+        }
+    }
 }
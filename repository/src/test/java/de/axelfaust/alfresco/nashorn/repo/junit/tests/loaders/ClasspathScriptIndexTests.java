@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.ClasspathScriptFileWatcher;
+import de.axelfaust.alfresco.nashorn.repo.loaders.ClasspathScriptIndex;
+
+/**
+ * @author Axel Faust
+ */
+public class ClasspathScriptIndexTests
+{
+
+    private static final String BASE_PATH = "de/axelfaust/alfresco/nashorn/repo/loaders";
+
+    @Test
+    public void indexedScripts()
+    {
+        final ClasspathScriptIndex index = new ClasspathScriptIndex(BASE_PATH, ClasspathScriptIndexTests.class.getClassLoader());
+        index.refresh();
+
+        Assert.assertTrue("empty.js is not covered by index", index.covers(BASE_PATH + "/empty.js"));
+        Assert.assertTrue("empty.js has not been indexed", index.contains(BASE_PATH + "/empty.js"));
+        Assert.assertTrue("test.js has not been indexed", index.contains(BASE_PATH + "/test.js"));
+
+        Assert.assertTrue("test1.js is not covered by index", index.covers(BASE_PATH + "/test1.js"));
+        Assert.assertFalse("test1.js has been indexed", index.contains(BASE_PATH + "/test1.js"));
+
+        Assert.assertFalse("script outside of base path is covered by index", index.covers("de/axelfaust/alfresco/nashorn/repo/empty.js"));
+    }
+
+    @Test
+    public void refreshedIndex()
+    {
+        final ClasspathScriptIndex index = new ClasspathScriptIndex(BASE_PATH, ClasspathScriptIndexTests.class.getClassLoader());
+        Assert.assertFalse("empty.js is covered by index before indexing", index.covers(BASE_PATH + "/empty.js"));
+
+        index.refresh();
+        final int size = index.getSize();
+        Assert.assertTrue("index does not contain any scripts", size >= 2);
+
+        index.refresh();
+        Assert.assertEquals("index size changed on refresh without changes", size, index.getSize());
+        Assert.assertTrue("empty.js is no longer indexed after refresh", index.contains(BASE_PATH + "/empty.js"));
+    }
+
+    @Test
+    public void watchedIndex() throws Exception
+    {
+        final Path directory = Paths.get(ClasspathScriptIndexTests.class.getResource("/" + BASE_PATH + "/empty.js").toURI()).getParent();
+        final String baseName = "indexed-" + UUID.randomUUID().toString();
+        final Path scriptPath = directory.resolve(baseName + ".js");
+        final Path textPath = directory.resolve(baseName + ".txt");
+        final Path subDirectoryPath = directory.resolve(baseName);
+        final Path subDirectoryScriptPath = subDirectoryPath.resolve("nested.js");
+
+        final ClasspathScriptFileWatcher watcher = new ClasspathScriptFileWatcher();
+        watcher.setWatchPollInterval(100);
+        watcher.afterPropertiesSet();
+        try
+        {
+            final ClasspathScriptIndex index = new ClasspathScriptIndex(BASE_PATH, ClasspathScriptIndexTests.class.getClassLoader(),
+                    watcher);
+            index.refresh();
+            final int size = index.getSize();
+
+            Files.write(textPath, "text".getBytes(StandardCharsets.UTF_8));
+            Files.write(scriptPath, "'use strict';\n".getBytes(StandardCharsets.UTF_8));
+            awaitCondition(baseName + ".js has not been added to index", () -> index.contains(BASE_PATH + "/" + baseName + ".js"));
+            Assert.assertFalse(baseName + ".txt is covered by index", index.covers(BASE_PATH + "/" + baseName + ".txt"));
+            Assert.assertFalse(baseName + ".txt has been indexed", index.contains(BASE_PATH + "/" + baseName + ".txt"));
+            Assert.assertEquals("index size does not reflect added script", size + 1, index.getSize());
+
+            Files.createDirectory(subDirectoryPath);
+            Files.write(subDirectoryScriptPath, "'use strict';\n".getBytes(StandardCharsets.UTF_8));
+            awaitCondition(baseName + "/nested.js has not been added to index",
+                    () -> index.contains(BASE_PATH + "/" + baseName + "/nested.js"));
+
+            Files.delete(scriptPath);
+            awaitCondition(baseName + ".js has not been removed from index", () -> !index.contains(BASE_PATH + "/" + baseName + ".js"));
+
+            index.refresh();
+            Assert.assertTrue(baseName + "/nested.js is no longer indexed after refresh",
+                    index.contains(BASE_PATH + "/" + baseName + "/nested.js"));
+        }
+        finally
+        {
+            watcher.destroy();
+            Files.deleteIfExists(scriptPath);
+            Files.deleteIfExists(textPath);
+            Files.deleteIfExists(subDirectoryScriptPath);
+            Files.deleteIfExists(subDirectoryPath);
+        }
+    }
+
+    private static void awaitCondition(final String message, final BooleanSupplier condition) throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean())
+        {
+            if (System.currentTimeMillis() > deadline)
+            {
+                Assert.fail(message);
+            }
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolution;
+import de.axelfaust.alfresco.nashorn.repo.loaders.CacheableResolutionURLConnection.CachedResolutionStatistics;
+import de.axelfaust.alfresco.nashorn.repo.loaders.ResolutionCache;
+import de.axelfaust.alfresco.nashorn.repo.loaders.ResolutionCache.Resolution;
+
+/**
+ * @author Axel Faust
+ */
+public class ResolutionCacheTests
+{
+
+    @Test
+    public void cachedResolutions()
+    {
+        final ResolutionCache<String> cache = new ResolutionCache<>();
+        cache.put("resolved", "path/to/resolved.js");
+        cache.putUnresolvable("unresolvable");
+
+        final Resolution<String> resolved = cache.get("resolved");
+        Assert.assertNotNull("resolution has not been cached", resolved);
+        Assert.assertFalse("resolution is considered unresolvable", resolved.isUnresolvable());
+        Assert.assertEquals("resolved value does not match", "path/to/resolved.js", resolved.getValue());
+
+        final Resolution<String> unresolvable = cache.get("unresolvable");
+        Assert.assertNotNull("unresolvable resolution has not been cached", unresolvable);
+        Assert.assertTrue("unresolvable resolution is not considered unresolvable", unresolvable.isUnresolvable());
+
+        Assert.assertNull("resolution has been found for unknown key", cache.get("unknown"));
+
+        Assert.assertTrue("removal did not report cached resolution", cache.remove("resolved"));
+        Assert.assertNull("resolution is still cached after removal", cache.get("resolved"));
+        Assert.assertFalse("removal reported cached resolution for unknown key", cache.remove("unknown"));
+    }
+
+    @Test
+    public void clearedUnresolvableResolutions()
+    {
+        final ResolutionCache<String> cache = new ResolutionCache<>();
+        cache.put("resolved", "path/to/resolved.js");
+        cache.putUnresolvable("unresolvable");
+
+        cache.clearUnresolvable();
+
+        Assert.assertNull("unresolvable resolution is still cached after clearing unresolvable resolutions", cache.get("unresolvable"));
+        Assert.assertNotNull("resolution has been cleared with unresolvable resolutions", cache.get("resolved"));
+
+        cache.putUnresolvable("unresolvable");
+        Assert.assertNotNull("unresolvable resolution cannot be cached again after clearing", cache.get("unresolvable"));
+    }
+
+    @Test
+    public void clearedResolutions()
+    {
+        final ResolutionCache<String> cache = new ResolutionCache<>();
+        cache.put("resolved", "path/to/resolved.js");
+        cache.putUnresolvable("unresolvable");
+
+        cache.clear();
+
+        Assert.assertEquals("cache is not empty after clearing", 0, cache.size());
+        Assert.assertNull("resolution is still cached after clearing", cache.get("resolved"));
+        Assert.assertNull("unresolvable resolution is still cached after clearing", cache.get("unresolvable"));
+    }
+
+    @Test
+    public void expiredResolutions() throws Exception
+    {
+        final ResolutionCache<String> cache = new ResolutionCache<>(0, 60000, 1);
+        cache.put("resolved", "path/to/resolved.js");
+        cache.putUnresolvable("unresolvable");
+
+        Thread.sleep(10);
+
+        Assert.assertNull("unresolvable resolution has not expired", cache.get("unresolvable"));
+        Assert.assertNotNull("resolution has expired before its time to live", cache.get("resolved"));
+
+        final CachedResolutionStatistics statistics = cache.getStatistics();
+        Assert.assertEquals("expiration has not been counted", 1, statistics.getExpirations());
+        Assert.assertEquals("hit has not been counted", 1, statistics.getHits());
+        Assert.assertEquals("miss has not been counted", 1, statistics.getMisses());
+    }
+
+    @Test
+    public void boundedResolutions()
+    {
+        final ResolutionCache<String> cache = new ResolutionCache<>(10, 0, 0);
+        for (int idx = 0; idx <= 10; idx++)
+        {
+            cache.put("resolved" + idx, "path/to/resolved" + idx + ".js");
+        }
+
+        Assert.assertEquals("cache has not been evicted down to 90% of its bound", 9, cache.size());
+        Assert.assertEquals("evictions have not been counted", 2, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void listedResolutions()
+    {
+        final ResolutionCache<String> cache = new ResolutionCache<>();
+        cache.put("resolved", "path/to/resolved.js");
+        cache.putUnresolvable("unresolvable");
+        cache.putUnresolvable("cleared");
+        cache.clearUnresolvable();
+        cache.putUnresolvable("unresolvable");
+
+        Assert.assertTrue("single resolution has not been cleared", cache.clear("resolved"));
+        cache.put("other", "path/to/other.js");
+
+        final List<CachedResolution> cachedResolutions = cache.list();
+        Assert.assertEquals("cleared resolutions have been listed", 2, cachedResolutions.size());
+        for (final CachedResolution cachedResolution : cachedResolutions)
+        {
+            if ("other".equals(cachedResolution.getKey()))
+            {
+                Assert.assertEquals("listed resolution does not match", "path/to/other.js", cachedResolution.getResolution());
+                Assert.assertFalse("listed resolution is considered unresolvable", cachedResolution.isUnresolvable());
+            }
+            else
+            {
+                Assert.assertEquals("unexpected resolution has been listed", "unresolvable", cachedResolution.getKey());
+                Assert.assertTrue("listed unresolvable resolution is not considered unresolvable", cachedResolution.isUnresolvable());
+            }
+            Assert.assertEquals("resolution without time to live expires", Long.MAX_VALUE, cachedResolution.getExpiresAt());
+        }
+    }
+}
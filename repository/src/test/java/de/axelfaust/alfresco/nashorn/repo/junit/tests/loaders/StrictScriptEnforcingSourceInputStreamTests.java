@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Axel Faust
+ * Copyright 2016, 2017 Axel Faust
  *
  * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
  * this file except in compliance with the License. You may obtain a copy of the License at
@@ -15,6 +15,7 @@ package de.axelfaust.alfresco.nashorn.repo.junit.tests.loaders;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -90,6 +91,35 @@ public class StrictScriptEnforcingSourceInputStreamTests
         this.testScript(multiLineBlockCommentWithWhiteSpacesScript, -1);
     }
 
+    @Test
+    public void contentPassedThroughUnmodified() throws Exception
+    {
+        final String script = "/* license header */\r\nprint(typeof Function);\r\n\r\n// trailing comment without line break";
+        final String expectedScript = "/* license header */\r\n" + USE_STRICT_PREFIX
+                + "print(typeof Function);\r\n\r\n// trailing comment without line break\n";
+
+        Assert.assertEquals(expectedScript, this.readBulk(script, 7));
+        Assert.assertEquals(expectedScript, this.readBulk(script, 8192));
+        Assert.assertEquals(expectedScript, this.readSingleBytes(script));
+
+        final String scriptWithDirective = "'use strict';\r\nprint(typeof Function);";
+        Assert.assertEquals(scriptWithDirective + "\n", this.readBulk(scriptWithDirective, 8192));
+        Assert.assertEquals(scriptWithDirective + "\n", this.readSingleBytes(scriptWithDirective));
+
+        final String scriptWithLineBreak = "print(typeof Function);\n";
+        Assert.assertEquals(USE_STRICT_PREFIX + scriptWithLineBreak, this.readBulk(scriptWithLineBreak, 8192));
+    }
+
+    @Test
+    public void multiByteCharactersPreserved() throws Exception
+    {
+        final String script = "\uFEFF// Kommentar mit Umlauten \u00e4\u00f6\u00fc\nprint('\u20ac');";
+        final String expectedScript = "\uFEFF// Kommentar mit Umlauten \u00e4\u00f6\u00fc\n" + USE_STRICT_PREFIX + "print('\u20ac');\n";
+
+        Assert.assertEquals(expectedScript, this.readBulk(script, 3));
+        Assert.assertEquals(expectedScript, this.readSingleBytes(script));
+    }
+
     protected void testScript(final String script, final int expectedLineWithUseStrict) throws IOException
     {
         final String[] lines = script.split(LINE_BREAK_PATTERN);
@@ -115,6 +145,37 @@ public class StrictScriptEnforcingSourceInputStreamTests
         Assert.assertEquals(lines.length, linesRead);
     }
 
+    protected String readBulk(final String script, final int bufferSize) throws IOException
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (final InputStream ssis = new StrictScriptEnforcingSourceInputStream(
+                new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8))))
+        {
+            final byte[] buffer = new byte[bufferSize];
+            int read;
+            while ((read = ssis.read(buffer)) != -1)
+            {
+                os.write(buffer, 0, read);
+            }
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    protected String readSingleBytes(final String script) throws IOException
+    {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (final InputStream ssis = new StrictScriptEnforcingSourceInputStream(
+                new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8))))
+        {
+            int read;
+            while ((read = ssis.read()) != -1)
+            {
+                os.write(read);
+            }
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     protected BufferedReader asScriptReader(final String script)
     {
         final InputStream is = new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
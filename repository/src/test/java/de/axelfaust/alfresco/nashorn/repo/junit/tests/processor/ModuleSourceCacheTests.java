@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.junit.tests.processor;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.axelfaust.alfresco.nashorn.repo.processor.ModuleSourceCache;
+
+/**
+ * @author Axel Faust
+ */
+public class ModuleSourceCacheTests
+{
+
+    private static final String MODULE_ID = "classpath!test/module";
+
+    @Test
+    public void editAfterBootstrap() throws Exception
+    {
+        final Path scriptPath = Files.createTempFile("moduleSourceCache-", ".js");
+        try
+        {
+            final URL url = scriptPath.toUri().toURL();
+            this.writeScript(scriptPath, "define('test/module', [], function(){ return 1; });", 0);
+
+            final ModuleSourceCache cache = new ModuleSourceCache(10, 1024 * 1024);
+            cache.requireRevalidation();
+
+            cache.enterBootstrapPhase();
+            try
+            {
+                Assert.assertTrue("source has not been loaded during bootstrap",
+                        cache.getSource(MODULE_ID, url).getScript().contains("return 1;"));
+            }
+            finally
+            {
+                cache.exitBootstrapPhase();
+            }
+
+            Assert.assertTrue("unchanged source has not been served from cache",
+                    cache.getSource(MODULE_ID, url).getScript().contains("return 1;"));
+            Assert.assertEquals("unchanged source has not been revalidated after bootstrap", 1, cache.getRevalidations());
+
+            // same size, different modification timestamp - must not be served from cache without a reset
+            this.writeScript(scriptPath, "define('test/module', [], function(){ return 2; });", 10000);
+            Assert.assertTrue("edited source has not been loaded after bootstrap",
+                    cache.getSource(MODULE_ID, url).getScript().contains("return 2;"));
+            Assert.assertEquals("edited source has not been counted as a miss", 2, cache.getMisses());
+        }
+        finally
+        {
+            Files.deleteIfExists(scriptPath);
+        }
+    }
+
+    @Test
+    public void validatedOncePerGenerationDuringBootstrap() throws Exception
+    {
+        final Path scriptPath = Files.createTempFile("moduleSourceCache-", ".js");
+        try
+        {
+            final URL url = scriptPath.toUri().toURL();
+            this.writeScript(scriptPath, "define('test/module', [], function(){ return 1; });", 0);
+
+            final ModuleSourceCache cache = new ModuleSourceCache(10, 1024 * 1024);
+            cache.enterBootstrapPhase();
+            try
+            {
+                cache.getSource(MODULE_ID, url);
+                cache.getSource(MODULE_ID, url);
+                Assert.assertEquals("source has been revalidated within the same generation during bootstrap", 0,
+                        cache.getRevalidations());
+
+                cache.requireRevalidation();
+                cache.getSource(MODULE_ID, url);
+                Assert.assertEquals("source has not been revalidated in a new generation", 1, cache.getRevalidations());
+            }
+            finally
+            {
+                cache.exitBootstrapPhase();
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(scriptPath);
+        }
+    }
+
+    protected void writeScript(final Path scriptPath, final String script, final long lastModifiedOffset) throws Exception
+    {
+        Files.write(scriptPath, script.getBytes(StandardCharsets.UTF_8));
+        // file system timestamps may be too coarse to reflect quick successive writes
+        Files.setLastModifiedTime(scriptPath, FileTime.fromMillis(System.currentTimeMillis() + lastModifiedOffset));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package de.axelfaust.alfresco.nashorn.repo.junit.tests.processor;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.axelfaust.alfresco.nashorn.repo.processor.ContainerSlotAllocator;
+import de.axelfaust.alfresco.nashorn.repo.processor.NashornScriptModel;
+
+/**
+ * @author Axel Faust
+ */
+public class NashornScriptModelTests
+{
+
+    private static final long THREAD_TIMEOUT = 5000;
+
+    @Test
+    public void nestedModels()
+    {
+        final Map<String, String> map = NashornScriptModel.newMap();
+        final List<String> list = NashornScriptModel.newList();
+
+        try (NashornScriptModel outerModel = NashornScriptModel.openModel())
+        {
+            map.put("outer", "value");
+            list.add("outer");
+
+            try (NashornScriptModel innerModel = NashornScriptModel.openModel())
+            {
+                Assert.assertTrue("map of inner model contains data of outer model", map.isEmpty());
+                Assert.assertTrue("list of inner model contains data of outer model", list.isEmpty());
+
+                map.put("inner", "value");
+                list.add("inner");
+                Assert.assertEquals("map of inner model does not contain exactly one entry", 1, map.size());
+                Assert.assertTrue("map of inner model does not contain inner entry", map.containsKey("inner"));
+            }
+
+            // cached inner model must not be reused after it has been closed
+            Assert.assertEquals("map of outer model does not contain exactly one entry", 1, map.size());
+            Assert.assertTrue("map of outer model does not contain outer entry", map.containsKey("outer"));
+            Assert.assertFalse("map of outer model contains inner entry", map.containsKey("inner"));
+            Assert.assertEquals("list of outer model has unexpected contents", "outer", list.get(0));
+            Assert.assertEquals("list of outer model does not contain exactly one element", 1, list.size());
+        }
+
+        try (NashornScriptModel model = NashornScriptModel.openModel())
+        {
+            Assert.assertTrue("map of new model contains data of a closed model", map.isEmpty());
+        }
+    }
+
+    @Test
+    public void closedModelIsNotReused()
+    {
+        final Map<String, String> map = NashornScriptModel.newMap();
+
+        try (NashornScriptModel model = NashornScriptModel.openModel())
+        {
+            map.put("key", "value");
+        }
+
+        try
+        {
+            map.isEmpty();
+            Assert.fail("container could still be used after the last model has been closed");
+        }
+        catch (final IllegalStateException expected)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void sharedContainerAcrossThreads() throws Exception
+    {
+        final Map<String, String> map = NashornScriptModel.newMap();
+        final CountDownLatch otherThreadUsedMap = new CountDownLatch(1);
+        final CountDownLatch otherThreadMayFinish = new CountDownLatch(1);
+        final AtomicReference<Throwable> otherThreadFailure = new AtomicReference<>();
+
+        final Thread otherThread = new Thread(() -> {
+            try (NashornScriptModel model = NashornScriptModel.openModel())
+            {
+                map.put("other", "value");
+                otherThreadUsedMap.countDown();
+                otherThreadMayFinish.await(THREAD_TIMEOUT, TimeUnit.MILLISECONDS);
+
+                Assert.assertEquals("map of other thread does not contain exactly one entry", 1, map.size());
+                Assert.assertTrue("map of other thread does not contain its own entry", map.containsKey("other"));
+            }
+            catch (final Throwable t)
+            {
+                otherThreadFailure.set(t);
+            }
+        });
+
+        try (NashornScriptModel model = NashornScriptModel.openModel())
+        {
+            map.put("this", "value");
+
+            otherThread.start();
+            Assert.assertTrue("other thread did not use map in time", otherThreadUsedMap.await(THREAD_TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // model cached by the other thread must not be reused by this thread
+            Assert.assertEquals("map of this thread does not contain exactly one entry", 1, map.size());
+            Assert.assertTrue("map of this thread does not contain its own entry", map.containsKey("this"));
+
+            otherThreadMayFinish.countDown();
+            otherThread.join(THREAD_TIMEOUT);
+
+            Assert.assertTrue("map of this thread does not contain its own entry", map.containsKey("this"));
+        }
+
+        if (otherThreadFailure.get() != null)
+        {
+            throw new AssertionError("Other thread failed", otherThreadFailure.get());
+        }
+    }
+
+    @Test
+    public void slotReuseOfReleasedContainer()
+    {
+        final List<Reference<Object>> allocatedReferences = new ArrayList<>();
+        final ContainerSlotAllocator allocator = new ContainerSlotAllocator()
+        {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected ContainerSlotReference createSlotReference(final Object container, final int slot)
+            {
+                final ContainerSlotReference slotReference = super.createSlotReference(container, slot);
+                allocatedReferences.add(slotReference);
+                return slotReference;
+            }
+        };
+
+        final Object firstContainer = new Object();
+        final Object secondContainer = new Object();
+        final int firstSlot = allocator.allocateSlot(firstContainer);
+        final int secondSlot = allocator.allocateSlot(secondContainer);
+        Assert.assertTrue("same slot has been allocated to different containers", firstSlot != secondSlot);
+
+        // enqueue the reference as the garbage collector would once the container has been collected
+        Assert.assertTrue("slot reference could not be enqueued", allocatedReferences.get(0).enqueue());
+
+        Assert.assertEquals("slot of released container has not been re-used", firstSlot, allocator.allocateSlot(new Object()));
+        Assert.assertEquals("new slot has not been allocated after all released slots have been re-used", secondSlot + 1,
+                allocator.allocateSlot(new Object()));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Axel Faust
+ *
+ * Licensed under the Eclipse Public License (EPL), Version 1.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * https://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+(function javaModuleSystemTest()
+{
+    // need to bind ctxt early - won't be available when testObj.<fn> is invoked via extracted interface
+    var testObj, ctxt = context;
+
+    testObj = {
+
+        getTestFunctionNames : function javaModuleSystemTest_getTestFunctionNames()
+        {
+            return Java.to([ 'testBasicDefine', 'testMiss', 'testArgsLookup' ], 'java.util.List');
+        },
+
+        beforeScript : function javaModuleSystemTest_beforeScript()
+        {
+            var SimpleScriptTestCase = Java.type('de.axelfaust.alfresco.nashorn.repo.junit.tests.SimpleScriptTestCase');
+
+            SimpleScriptTestCase.initializeJavaModuleSystem(engine, ctxt);
+
+            // now we can use define
+            define.preload('loaderMetaLoader!nashorn', 'nashorn');
+
+            // we don't remove Java here to allow simpler use of org.junit.Assert
+            SimpleScriptTestCase.removeGlobals(engine, ctxt, [ 'print', 'Packages', 'JavaImporter', 'JSAdapter', 'com', 'edu', 'java',
+                    'javax', 'javafx', 'org' ]);
+
+            // need to add fake spring loader to provide fake global-properties
+            define('spring', [], function javaModuleSystemTest_beforeScript_defineSpring()
+            {
+                var loader, Properties;
+
+                Properties = Java.type('java.util.Properties');
+
+                loader = {
+                    load : function javaModuleSystemTest_beforeScript_defineSpring_load(normalizedId, require, load)
+                    {
+                        if (normalizedId === 'global-properties')
+                        {
+                            load(new Properties(), false);
+                        }
+                    }
+                };
+
+                return loader;
+            });
+
+            define.preload('loaderMetaLoader!globalProperties');
+            define.preload('loaderMetaLoader!legacyRootObjects');
+            define.preload('loaderMetaLoader!args');
+
+            // empty config
+            require.config({});
+        },
+
+        testBasicDefine : function javaModuleSystemTest_testBasicDefine(testCase)
+        {
+            'use strict';
+            var Assert = Java.type('org.junit.Assert'), resolvedModule = null;
+
+            define('basic', [], function javaModuleSystemTest_testBasicDefine_basicFactory()
+            {
+                return 'basic';
+            });
+
+            require([ 'basic' ], function javaModuleSystemTest_testBasicDefine_callback(basic)
+            {
+                resolvedModule = basic;
+            });
+
+            Assert.assertEquals('"basic" module should have been resolved via Java-based module system', 'basic', resolvedModule);
+        },
+
+        // noSuchProperty must be set up for the Java-based module system just as for the script-based one
+        testMiss : function javaModuleSystemTest_testMiss(testCase)
+        {
+            'use strict';
+            var globalValue, accessError = null, Assert = Java.type('org.junit.Assert');
+
+            try
+            {
+                globalValue = unknownVariable;
+            }
+            catch (e)
+            {
+                accessError = e;
+            }
+
+            Assert.assertTrue('unknownVariable should not have been defined', globalValue === undefined);
+            Assert.assertNotNull('An error should have been thrown and caught', accessError);
+            Assert.assertTrue('accessError should have been a ReferenceError', accessError instanceof ReferenceError);
+        },
+
+        testArgsLookup : function javaModuleSystemTest_testArgsLookup(testCase)
+        {
+            'use strict';
+            var globalValue, accessError = null, Assert = Java.type('org.junit.Assert'), registeredValue;
+
+            require([ 'args' ], function javaModuleSystemTest_testArgsLookup_register(args)
+            {
+                registeredValue = 'registeredValue';
+                args.setArgumentModel({
+                    unknownVariable : registeredValue
+                });
+            });
+
+            try
+            {
+                globalValue = unknownVariable;
+            }
+            catch (e)
+            {
+                accessError = e;
+            }
+
+            Assert.assertFalse('unknownVariable should have been defined', globalValue === undefined);
+            Assert.assertNull('An error should have not been thrown and caught', accessError);
+            Assert.assertEquals('unknownVariable should have been resolved to argument', globalValue, registeredValue);
+        }
+    };
+    return testObj;
+}());